@@ -2,13 +2,20 @@ package com.sloyardms.trackerapi.bookmark;
 
 import com.sloyardms.trackerapi.bookmark.dto.BookmarkCreateDto;
 import com.sloyardms.trackerapi.bookmark.dto.BookmarkDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsApplyDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsReplaceDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsResultDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsUpdateDto;
 import com.sloyardms.trackerapi.bookmark.dto.BookmarkUpdateDto;
+import com.sloyardms.trackerapi.common.web.CountMode;
+import com.sloyardms.trackerapi.common.web.CursorPage;
 import com.sloyardms.trackerapi.note.dto.NoteCreateDto;
 import com.sloyardms.trackerapi.note.dto.NoteDto;
 import com.sloyardms.trackerapi.security.AuthUtils;
+import com.sloyardms.trackerapi.tag.dto.TagDto;
 import jakarta.validation.Valid;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
@@ -16,6 +23,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -23,9 +31,11 @@ import java.util.UUID;
 public class BookmarkController {
 
     private final BookmarkService bookmarkService;
+    private final BookmarkTagService bookmarkTagService;
 
-    public BookmarkController(BookmarkService bookmarkService) {
+    public BookmarkController(BookmarkService bookmarkService, BookmarkTagService bookmarkTagService) {
         this.bookmarkService = bookmarkService;
+        this.bookmarkTagService = bookmarkTagService;
     }
 
     @GetMapping("/ping")
@@ -39,13 +49,22 @@ public class BookmarkController {
     }
 
     @GetMapping("/user/{userUuid}")
-    public ResponseEntity<Page<BookmarkDto>> getAllByUserUuid(
+    public ResponseEntity<Slice<BookmarkDto>> getAllByUserUuid(
             @PathVariable UUID userUuid,
-            @PageableDefault(size = 10, sort = "createdAt") Pageable pageable) {
-        Page<BookmarkDto> bookmarks = bookmarkService.getAllBookmarksByUserUuid(userUuid, pageable);
+            @PageableDefault(size = 10, sort = "createdAt") Pageable pageable,
+            @RequestParam(defaultValue = "exact") CountMode count) {
+        Slice<BookmarkDto> bookmarks = bookmarkService.getAllBookmarksByUserUuid(userUuid, pageable, count);
         return ResponseEntity.ok(bookmarks);
     }
 
+    @GetMapping("/user/{userUuid}/cursor")
+    public ResponseEntity<CursorPage<BookmarkDto>> getAllByUserUuidAfter(
+            @PathVariable UUID userUuid,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(bookmarkService.getBookmarksByUserUuidAfter(userUuid, cursor, size));
+    }
+
     @PostMapping
     public ResponseEntity<BookmarkDto> create(@Valid @RequestBody BookmarkCreateDto bookmarkCreateDto){
         UUID userUuid = AuthUtils.getCurrentUserId();
@@ -56,15 +75,36 @@ public class BookmarkController {
 
     @PatchMapping("/{uuid}")
     public ResponseEntity<BookmarkDto> update(@PathVariable UUID uuid, @RequestBody BookmarkUpdateDto bookmarkUpdateDto){
-        return ResponseEntity.ok(bookmarkService.update(uuid, bookmarkUpdateDto));
+        UUID userUuid = AuthUtils.getCurrentUserId();
+        return ResponseEntity.ok(bookmarkService.update(userUuid, uuid, bookmarkUpdateDto));
     }
 
     @DeleteMapping("/{uuid}")
     public ResponseEntity<Void> delete(@PathVariable UUID uuid){
-        bookmarkService.delete(uuid);
+        UUID userUuid = AuthUtils.getCurrentUserId();
+        bookmarkService.delete(userUuid, uuid);
         return ResponseEntity.noContent().build();
     }
 
+    // TAG ENDPOINTS
+    @PutMapping("/{uuid}/tags")
+    public ResponseEntity<List<TagDto>> replaceTags(@PathVariable UUID uuid, @Valid @RequestBody BookmarkTagsReplaceDto replaceDto){
+        UUID userUuid = AuthUtils.getCurrentUserId();
+        return ResponseEntity.ok(bookmarkTagService.replaceTags(userUuid, uuid, replaceDto));
+    }
+
+    @PatchMapping("/{uuid}/tags")
+    public ResponseEntity<List<TagDto>> updateTags(@PathVariable UUID uuid, @Valid @RequestBody BookmarkTagsUpdateDto updateDto){
+        UUID userUuid = AuthUtils.getCurrentUserId();
+        return ResponseEntity.ok(bookmarkTagService.updateTags(userUuid, uuid, updateDto));
+    }
+
+    @PostMapping("/tags:apply")
+    public ResponseEntity<BookmarkTagsResultDto> applyTags(@Valid @RequestBody BookmarkTagsApplyDto applyDto){
+        UUID userUuid = AuthUtils.getCurrentUserId();
+        return ResponseEntity.ok(bookmarkTagService.applyTags(userUuid, applyDto));
+    }
+
     // NOTE ENDPOINTS
     @PostMapping("/{uuid}/notes")
     public ResponseEntity<NoteDto> createNote(@PathVariable UUID uuid, @Valid @RequestBody NoteCreateDto noteCreateDto){
@@ -77,11 +117,20 @@ public class BookmarkController {
     }
 
     @GetMapping("/{uuid}/notes")
-    public ResponseEntity<Page<NoteDto>> getAllNotesByBookmarkUuid(
+    public ResponseEntity<Slice<NoteDto>> getAllNotesByBookmarkUuid(
             @PathVariable UUID uuid,
-            @PageableDefault(size = 10, sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable){
-        Page<NoteDto> notes = bookmarkService.getAllNotesByBookmarkUuid(uuid, pageable);
+            @PageableDefault(size = 10, sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable,
+            @RequestParam(defaultValue = "exact") CountMode count){
+        Slice<NoteDto> notes = bookmarkService.getAllNotesByBookmarkUuid(uuid, pageable, count);
         return ResponseEntity.ok(notes);
     }
 
+    @GetMapping("/{uuid}/notes/cursor")
+    public ResponseEntity<CursorPage<NoteDto>> getAllNotesByBookmarkUuidAfter(
+            @PathVariable UUID uuid,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(bookmarkService.getNotesByBookmarkUuidAfter(uuid, cursor, size));
+    }
+
 }
@@ -1,14 +1,55 @@
 package com.sloyardms.trackerapi.bookmark;
 
 import com.sloyardms.trackerapi.bookmark.entity.Bookmark;
+import com.sloyardms.trackerapi.bookmark.projection.BookmarkProjection;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * The listings load the group of each bookmark with a join, as it is mapped into every BookmarkDto and would
+ * otherwise be loaded with one query per bookmark.
+ */
 public interface BookmarkRepository extends JpaRepository<Bookmark, UUID> {
 
+    @Query("""
+        SELECT new com.sloyardms.trackerapi.bookmark.projection.BookmarkProjection(
+            b.uuid, b.userUuid, g.uuid, g.name, g.description, b.title, b.url, b.description, b.favorite,
+            b.createdAt, b.updatedAt, b.deletedAt)
+        FROM Bookmark b LEFT JOIN b.group g
+        WHERE b.uuid = :uuid
+    """)
+    Optional<BookmarkProjection> findProjectionByUuid(UUID uuid);
+
+    @EntityGraph(attributePaths = "group")
     Page<Bookmark> findAllByUserUuid(UUID userUuid, Pageable pageable);
 
+    @EntityGraph(attributePaths = "group")
+    Slice<Bookmark> findSliceByUserUuid(UUID userUuid, Pageable pageable);
+
+    // PostgreSQL plan of the rows of findAllByUserUuid, for its estimated total
+    @Query(value = "EXPLAIN SELECT 1 FROM bookmarks WHERE user_uuid = :userUuid", nativeQuery = true)
+    List<String> explainAllByUserUuid(UUID userUuid);
+
+    // Keyset pagination, served by the (user_uuid, created_at, bookmark_uuid) index
+    @EntityGraph(attributePaths = "group")
+    List<Bookmark> findAllByUserUuidOrderByCreatedAtAscUuidAsc(UUID userUuid, Limit limit);
+
+    @EntityGraph(attributePaths = "group")
+    @Query("""
+        SELECT b FROM Bookmark b
+        WHERE b.userUuid = :userUuid AND (b.createdAt, b.uuid) > (:createdAt, :uuid)
+        ORDER BY b.createdAt, b.uuid
+    """)
+    List<Bookmark> findAllByUserUuidAfter(UUID userUuid, Instant createdAt, UUID uuid, Limit limit);
+
 }
@@ -8,36 +8,67 @@ import com.sloyardms.trackerapi.bookmark.exception.BookmarkNotFoundException;
 import com.sloyardms.trackerapi.bookmark.exception.BookmarkTitleAlreadyExistsException;
 import com.sloyardms.trackerapi.bookmark.exception.BookmarkUrlAlreadyExistsException;
 import com.sloyardms.trackerapi.bookmark.mapper.BookmarkMapper;
+import com.sloyardms.trackerapi.bookmark.projection.BookmarkProjection;
+import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.common.service.PageCounter;
+import com.sloyardms.trackerapi.common.web.CountMode;
+import com.sloyardms.trackerapi.common.web.CursorPage;
+import com.sloyardms.trackerapi.common.web.KeysetCursor;
+import com.sloyardms.trackerapi.file_deletion.FileDeletionService;
 import com.sloyardms.trackerapi.group.GroupRepository;
 import com.sloyardms.trackerapi.group.entity.Group;
 import com.sloyardms.trackerapi.group.exception.GroupNotFoundException;
 import com.sloyardms.trackerapi.note.NoteService;
 import com.sloyardms.trackerapi.note.dto.NoteCreateDto;
 import com.sloyardms.trackerapi.note.dto.NoteDto;
+import com.sloyardms.trackerapi.note_image.NoteImageService;
+import com.sloyardms.trackerapi.tag_summary.TagCountBuffer;
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDelta;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public class BookmarkService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     //Services
     private final NoteService noteService;
+    private final NoteImageService noteImageService;
+    private final ImageStorageService imageStorageService;
+    private final FileDeletionService fileDeletionService;
+    private final PageCounter pageCounter;
+    private final TagCountBuffer tagCountBuffer;
 
     //Repositories
     private final BookmarkRepository bookmarkRepository;
+    private final BookmarkTagJdbcRepository bookmarkTagJdbcRepository;
     private final BookmarkMapper bookmarkMapper;
     private final GroupRepository groupRepository;
 
-    public BookmarkService(BookmarkRepository bookmarkRepository, BookmarkMapper bookmarkMapper, GroupRepository groupRepository, NoteService bookmarkService) {
+    public BookmarkService(BookmarkRepository bookmarkRepository, BookmarkMapper bookmarkMapper, GroupRepository groupRepository, NoteService bookmarkService,
+                           NoteImageService noteImageService, ImageStorageService imageStorageService, FileDeletionService fileDeletionService,
+                           PageCounter pageCounter, TagCountBuffer tagCountBuffer, BookmarkTagJdbcRepository bookmarkTagJdbcRepository) {
         this.bookmarkRepository = bookmarkRepository;
+        this.bookmarkTagJdbcRepository = bookmarkTagJdbcRepository;
         this.bookmarkMapper = bookmarkMapper;
         this.groupRepository = groupRepository;
         this.noteService = bookmarkService;
+        this.noteImageService = noteImageService;
+        this.imageStorageService = imageStorageService;
+        this.fileDeletionService = fileDeletionService;
+        this.pageCounter = pageCounter;
+        this.tagCountBuffer = tagCountBuffer;
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -61,25 +92,64 @@ public class BookmarkService {
 
     @Transactional(readOnly = true)
     public BookmarkDto getById(UUID uuid) {
-        Bookmark bookmarkDb = bookmarkRepository.findById(uuid).orElseThrow(() -> new BookmarkNotFoundException(uuid));
-        return bookmarkMapper.toDto(bookmarkDb);
+        BookmarkProjection bookmark = bookmarkRepository.findProjectionByUuid(uuid)
+                .orElseThrow(() -> new BookmarkNotFoundException(uuid));
+        return bookmarkMapper.fromProjection(bookmark);
     }
 
     @Transactional(readOnly = true)
-    public Page<BookmarkDto> getAllBookmarksByUserUuid(UUID userUuid, Pageable pageable) {
-        Page<Bookmark> bookmarks = bookmarkRepository.findAllByUserUuid(userUuid, pageable);
+    public Slice<BookmarkDto> getAllBookmarksByUserUuid(UUID userUuid, Pageable pageable, CountMode count) {
+        Slice<Bookmark> bookmarks = pageCounter.fetch(count, pageable,
+                p -> bookmarkRepository.findAllByUserUuid(userUuid, p),
+                p -> bookmarkRepository.findSliceByUserUuid(userUuid, p),
+                () -> bookmarkRepository.explainAllByUserUuid(userUuid));
         return bookmarks.map(bookmarkMapper::toDto);
     }
 
+    /**
+     * Get a page of the bookmarks of a user, oldest first, starting after the given cursor. Pages are found through
+     * the index rather than skipped over, so every page costs the same, and no count is run.
+     *
+     * @param userUuid UUID of the user
+     * @param cursor   Cursor returned with the previous page, or null for the first page
+     * @param size     Page size, capped to {@value #MAX_CURSOR_PAGE_SIZE}
+     * @return CursorPage with the bookmarks
+     * @throws com.sloyardms.trackerapi.common.exception.InvalidCursorException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<BookmarkDto> getBookmarksByUserUuidAfter(UUID userUuid, String cursor, int size) {
+        int pageSize = Math.clamp(size, 1, MAX_CURSOR_PAGE_SIZE);
+        //One extra row tells whether there is a next page
+        Limit limit = Limit.of(pageSize + 1);
+
+        List<Bookmark> bookmarks;
+        if (cursor == null || cursor.isEmpty()) {
+            bookmarks = bookmarkRepository.findAllByUserUuidOrderByCreatedAtAscUuidAsc(userUuid, limit);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            bookmarks = bookmarkRepository.findAllByUserUuidAfter(userUuid, after.createdAt(), after.uuid(), limit);
+        }
+        return CursorPage.of(bookmarks, pageSize, b -> new KeysetCursor(b.getCreatedAt(), b.getUuid()))
+                .map(bookmarkMapper::toDto);
+    }
+
     @Transactional(rollbackFor = Exception.class)
-    public BookmarkDto update(UUID uuid, BookmarkUpdateDto bookmarkUpdateDto) {
+    public BookmarkDto update(UUID userUuid, UUID uuid, BookmarkUpdateDto bookmarkUpdateDto) {
+        //Lock before loading, so the group and tags read are the ones the counters change from
+        UUID previousGroupUuid = lockBookmark(userUuid, uuid);
         Bookmark bookmarkDb = bookmarkRepository.findById(uuid).orElseThrow(()-> new BookmarkNotFoundException(uuid));
 
         //Set base attributes to update if any
         bookmarkMapper.updateFromDto(bookmarkUpdateDto, bookmarkDb);
 
-        //Set group
+        //Set group, moving the tags of the bookmark to the counters of the new group
         assignGroupToBookmark(bookmarkDb, bookmarkUpdateDto.getGroupUuid());
+        UUID groupUuid = groupUuidOf(bookmarkDb);
+        if (!Objects.equals(previousGroupUuid, groupUuid)) {
+            Set<UUID> tagUuids = findTagUuids(uuid);
+            adjustTagCounts(userUuid, previousGroupUuid, tagUuids, -1);
+            adjustTagCounts(userUuid, groupUuid, tagUuids, 1);
+        }
 
         Bookmark savedBookmark = saveBookmarkChanges(bookmarkDb);
         return bookmarkMapper.toDto(savedBookmark);
@@ -99,11 +169,56 @@ public class BookmarkService {
     }
 
     @Transactional(rollbackFor = Exception.class)
-    public void delete(UUID uuid){
-        bookmarkRepository.findById(uuid).orElseThrow(() -> new BookmarkNotFoundException(uuid));
+    public void delete(UUID userUuid, UUID uuid){
+        UUID groupUuid = lockBookmark(userUuid, uuid);
+        //Notes and images are removed by the database cascade, release their shared content first
+        noteImageService.releaseContentByBookmarkUuid(uuid);
+        //Schedule the deletion of the bookmark folder, the files are removed once the rows are gone
+        fileDeletionService.deleteFolder(imageStorageService.generateBookmarkFolderPath(userUuid, uuid));
+        adjustTagCounts(userUuid, groupUuid, findTagUuids(uuid), -1);
         bookmarkRepository.deleteById(uuid);
     }
 
+    /**
+     * Lock a bookmark of a user until the end of the transaction, the way tag changes do, so its tags and group can't
+     * change while they are counted.
+     *
+     * @return UUID of the group of the bookmark, null if it has none
+     * @throws BookmarkNotFoundException if the user has no such bookmark
+     */
+    private UUID lockBookmark(UUID userUuid, UUID uuid){
+        Map<UUID, UUID> groups = bookmarkTagJdbcRepository.lockBookmarks(userUuid, List.of(uuid));
+        if(!groups.containsKey(uuid)){
+            throw new BookmarkNotFoundException(uuid);
+        }
+        return groups.get(uuid);
+    }
+
+    private Set<UUID> findTagUuids(UUID uuid){
+        return bookmarkTagJdbcRepository.findTagUuids(List.of(uuid)).getOrDefault(uuid, Set.of());
+    }
+
+    /**
+     * Change the usage counters of the tags of a bookmark in a group.
+     *
+     * @param userUuid  UUID of the owner of the bookmark
+     * @param groupUuid UUID of the group; nothing is counted for bookmarks without a group
+     * @param tagUuids  UUIDs of the tags of the bookmark
+     * @param delta     1 to count the bookmark, -1 to stop counting it
+     */
+    private void adjustTagCounts(UUID userUuid, UUID groupUuid, Set<UUID> tagUuids, int delta){
+        if(groupUuid == null || tagUuids.isEmpty()){
+            return;
+        }
+        tagCountBuffer.add(tagUuids.stream()
+                .map(tagUuid -> new TagCountDelta(userUuid, groupUuid, tagUuid, delta))
+                .toList());
+    }
+
+    private UUID groupUuidOf(Bookmark bookmark){
+        return bookmark.getGroup() != null ? bookmark.getGroup().getUuid() : null;
+    }
+
     /**
      * Assigns a Group to the given Bookmark based on the provided group UUID.
      * <p>
@@ -135,13 +250,30 @@ public class BookmarkService {
     }
 
     @Transactional(readOnly = true)
-    public Page<NoteDto> getAllNotesByBookmarkUuid(UUID bookmarkUuid, Pageable pageable) {
+    public Slice<NoteDto> getAllNotesByBookmarkUuid(UUID bookmarkUuid, Pageable pageable, CountMode count) {
         //Verify bookmark exists
         if(!bookmarkRepository.existsById(bookmarkUuid)){
             throw new BookmarkNotFoundException(bookmarkUuid);
         }
 
-        return noteService.getAllNotesByBookmarkUuid(bookmarkUuid, pageable);
+        return noteService.getAllNotesByBookmarkUuid(bookmarkUuid, pageable, count);
+    }
+
+    /**
+     * Get a page of the notes of a bookmark, newest first, starting after the position of a cursor.
+     *
+     * @param bookmarkUuid Bookmark UUID
+     * @param cursor       Cursor returned with the previous page, or null for the first page
+     * @param size         Page size, capped to {@value #MAX_CURSOR_PAGE_SIZE}
+     * @return CursorPage with the notes
+     * @throws BookmarkNotFoundException if the bookmark does not exist
+     * @throws com.sloyardms.trackerapi.common.exception.InvalidCursorException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<NoteDto> getNotesByBookmarkUuidAfter(UUID bookmarkUuid, String cursor, int size) {
+        int pageSize = Math.clamp(size, 1, MAX_CURSOR_PAGE_SIZE);
+        KeysetCursor after = (cursor == null || cursor.isEmpty()) ? null : KeysetCursor.decode(cursor);
+        return noteService.getNotesByBookmarkUuidAfter(bookmarkUuid, after, pageSize);
     }
 
 }
@@ -0,0 +1,169 @@
+package com.sloyardms.trackerapi.bookmark;
+
+import com.sloyardms.trackerapi.common.jdbc.DatabasePlatform;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Plain JDBC access to {@code bookmark_tags}, so tag changes write only the rows that change instead of the whole
+ * tag collection of each bookmark. Runs in the current JPA transaction.
+ * <p>
+ * Statements taking many UUIDs are run in chunks of {@value #IN_CHUNK_SIZE}, to stay within the bind parameter limit.
+ */
+@Repository
+public class BookmarkTagJdbcRepository {
+
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    // Bookmarks are locked in UUID order, so two transactions locking many bookmarks can't deadlock. PostgreSQL takes
+    // the weaker NO KEY UPDATE lock, which doesn't block the inserts of notes and images referring to the bookmarks
+    private static final String LOCK_BOOKMARKS_SQL = """
+        SELECT bookmark_uuid, group_uuid FROM bookmarks
+        WHERE user_uuid = ? AND bookmark_uuid IN (%s)
+        ORDER BY bookmark_uuid
+        FOR %s
+    """;
+
+    private static final String FIND_TAGS_SQL = """
+        SELECT bookmark_uuid, tag_uuid FROM bookmark_tags
+        WHERE bookmark_uuid IN (%s)
+    """;
+
+    private static final String FIND_USER_TAGS_SQL = """
+        SELECT tag_uuid FROM tags
+        WHERE user_uuid = ? AND tag_uuid IN (%s)
+    """;
+
+    private static final String INSERT_SQL = "INSERT INTO bookmark_tags (bookmark_uuid, tag_uuid) VALUES (?, ?)";
+
+    private static final String DELETE_SQL = "DELETE FROM bookmark_tags WHERE bookmark_uuid = ? AND tag_uuid = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+
+    public BookmarkTagJdbcRepository(JdbcTemplate jdbcTemplate, DatabasePlatform databasePlatform) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+    }
+
+    /**
+     * Lock the bookmarks of a user until the end of the transaction, so their tags and group can't change meanwhile.
+     *
+     * @param userUuid      UUID of the user
+     * @param bookmarkUuids UUIDs of the bookmarks, sorted
+     * @return Map with the group UUID of each bookmark found, null for bookmarks without a group
+     */
+    public Map<UUID, UUID> lockBookmarks(UUID userUuid, List<UUID> bookmarkUuids) {
+        String lock = databasePlatform.isPostgres() ? "NO KEY UPDATE" : "UPDATE";
+        Map<UUID, UUID> groups = new HashMap<>();
+        for (List<UUID> chunk : chunks(bookmarkUuids)) {
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(userUuid);
+            args.addAll(chunk);
+            jdbcTemplate.query(LOCK_BOOKMARKS_SQL.formatted(placeholders(chunk.size()), lock),
+                    rs -> {
+                        groups.put(rs.getObject("bookmark_uuid", UUID.class), rs.getObject("group_uuid", UUID.class));
+                    },
+                    args.toArray());
+        }
+        return groups;
+    }
+
+    /**
+     * Find the tags of many bookmarks.
+     *
+     * @param bookmarkUuids UUIDs of the bookmarks
+     * @return Map with the tag UUIDs of each bookmark that has tags
+     */
+    public Map<UUID, Set<UUID>> findTagUuids(Collection<UUID> bookmarkUuids) {
+        Map<UUID, Set<UUID>> tags = new HashMap<>();
+        for (List<UUID> chunk : chunks(bookmarkUuids)) {
+            jdbcTemplate.query(FIND_TAGS_SQL.formatted(placeholders(chunk.size())),
+                    rs -> {
+                        tags.computeIfAbsent(rs.getObject("bookmark_uuid", UUID.class), b -> new HashSet<>())
+                                .add(rs.getObject("tag_uuid", UUID.class));
+                    },
+                    chunk.toArray());
+        }
+        return tags;
+    }
+
+    /**
+     * Find which of the tags belong to a user.
+     *
+     * @param userUuid UUID of the user
+     * @param tagUuids UUIDs of the tags
+     * @return Set with the UUIDs of the tags of the user
+     */
+    public Set<UUID> findUserTagUuids(UUID userUuid, Collection<UUID> tagUuids) {
+        if (tagUuids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<UUID> found = new HashSet<>();
+        for (List<UUID> chunk : chunks(tagUuids)) {
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(userUuid);
+            args.addAll(chunk);
+            found.addAll(jdbcTemplate.queryForList(FIND_USER_TAGS_SQL.formatted(placeholders(chunk.size())),
+                    UUID.class, args.toArray()));
+        }
+        return found;
+    }
+
+    /**
+     * Insert bookmark tags with a single JDBC batch.
+     *
+     * @param bookmarkTags Rows to insert, sorted
+     */
+    public void insertAll(List<BookmarkTag> bookmarkTags) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, bookmarkTags, bookmarkTags.size(), (ps, bookmarkTag) -> {
+            ps.setObject(1, bookmarkTag.bookmarkUuid());
+            ps.setObject(2, bookmarkTag.tagUuid());
+        });
+    }
+
+    /**
+     * Delete bookmark tags with a single JDBC batch.
+     *
+     * @param bookmarkTags Rows to delete, sorted
+     */
+    public void deleteAll(List<BookmarkTag> bookmarkTags) {
+        jdbcTemplate.batchUpdate(DELETE_SQL, bookmarkTags, bookmarkTags.size(), (ps, bookmarkTag) -> {
+            ps.setObject(1, bookmarkTag.bookmarkUuid());
+            ps.setObject(2, bookmarkTag.tagUuid());
+        });
+    }
+
+    private static List<List<UUID>> chunks(Collection<UUID> uuids) {
+        List<UUID> list = List.copyOf(uuids);
+        List<List<UUID>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += IN_CHUNK_SIZE) {
+            chunks.add(list.subList(from, Math.min(from + IN_CHUNK_SIZE, list.size())));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Row of {@code bookmark_tags}.
+     *
+     * @param bookmarkUuid Bookmark UUID
+     * @param tagUuid      Tag UUID
+     */
+    public record BookmarkTag(UUID bookmarkUuid, UUID tagUuid) {
+    }
+
+}
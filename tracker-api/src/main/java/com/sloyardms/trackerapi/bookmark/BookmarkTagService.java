@@ -0,0 +1,180 @@
+package com.sloyardms.trackerapi.bookmark;
+
+import com.sloyardms.trackerapi.bookmark.BookmarkTagJdbcRepository.BookmarkTag;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsApplyDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsReplaceDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsResultDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsUpdateDto;
+import com.sloyardms.trackerapi.bookmark.exception.BookmarkBatchTooLargeException;
+import com.sloyardms.trackerapi.bookmark.exception.BookmarkNotFoundException;
+import com.sloyardms.trackerapi.tag.TagRepository;
+import com.sloyardms.trackerapi.tag.dto.TagDto;
+import com.sloyardms.trackerapi.tag.exception.TagNotFoundException;
+import com.sloyardms.trackerapi.tag.mapper.TagMapper;
+import com.sloyardms.trackerapi.tag_summary.TagCountBuffer;
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDelta;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Attaches tags to bookmarks and detaches them. The current tags of the bookmarks are read once, and only the rows
+ * that change are inserted and deleted, with one JDBC batch each, along with the changes to the tag usage counters.
+ * <p>
+ * The counter changes go through {@link TagCountBuffer}: in journal mode, the default, they are written in the same
+ * transaction as the tags; otherwise they are buffered in memory once it commits and written by the next flush.
+ */
+@Service
+public class BookmarkTagService {
+
+    private static final Comparator<BookmarkTag> ROW_ORDER = Comparator.comparing(BookmarkTag::bookmarkUuid)
+            .thenComparing(BookmarkTag::tagUuid);
+
+    private final int MAX_BATCH_SIZE;
+
+    private final BookmarkTagJdbcRepository bookmarkTagJdbcRepository;
+    private final TagRepository tagRepository;
+    private final TagMapper tagMapper;
+    private final TagCountBuffer tagCountBuffer;
+
+    public BookmarkTagService(BookmarkTagJdbcRepository bookmarkTagJdbcRepository, TagRepository tagRepository,
+                              TagMapper tagMapper, TagCountBuffer tagCountBuffer,
+                              @Value("${app.bookmark.tags.max-batch-size}") int maxBatchSize) {
+        this.bookmarkTagJdbcRepository = bookmarkTagJdbcRepository;
+        this.tagRepository = tagRepository;
+        this.tagMapper = tagMapper;
+        this.tagCountBuffer = tagCountBuffer;
+        this.MAX_BATCH_SIZE = maxBatchSize;
+    }
+
+    /**
+     * Set the tags of a bookmark, detaching the ones not listed.
+     *
+     * @param userUuid     UUID of the user
+     * @param bookmarkUuid UUID of the bookmark
+     * @param replaceDto   Tags of the bookmark
+     * @return List with the tags of the bookmark, by name
+     * @throws BookmarkNotFoundException if the user has no such bookmark
+     * @throws TagNotFoundException if the user has no such tag
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<TagDto> replaceTags(UUID userUuid, UUID bookmarkUuid, BookmarkTagsReplaceDto replaceDto) {
+        changeTags(userUuid, List.of(bookmarkUuid), new HashSet<>(replaceDto.getTagUuids()), Set.of(), true);
+        return getTags(bookmarkUuid);
+    }
+
+    /**
+     * Attach and detach tags of a bookmark, leaving its other tags as they are.
+     *
+     * @param userUuid     UUID of the user
+     * @param bookmarkUuid UUID of the bookmark
+     * @param updateDto    Tags to attach and to detach; a tag in both lists is attached
+     * @return List with the tags of the bookmark, by name
+     * @throws BookmarkNotFoundException if the user has no such bookmark
+     * @throws TagNotFoundException if the user has no such tag to attach
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<TagDto> updateTags(UUID userUuid, UUID bookmarkUuid, BookmarkTagsUpdateDto updateDto) {
+        changeTags(userUuid, List.of(bookmarkUuid), new HashSet<>(updateDto.getAdd()), new HashSet<>(updateDto.getRemove()), false);
+        return getTags(bookmarkUuid);
+    }
+
+    /**
+     * Attach and detach tags of many bookmarks at once.
+     *
+     * @param userUuid UUID of the user
+     * @param applyDto Bookmarks, and tags to attach and to detach; a tag in both lists is attached
+     * @return BookmarkTagsResultDto with the number of tags attached and detached
+     * @throws BookmarkBatchTooLargeException if there are no bookmarks or more than the configured maximum
+     * @throws BookmarkNotFoundException if the user has no such bookmark
+     * @throws TagNotFoundException if the user has no such tag to attach
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public BookmarkTagsResultDto applyTags(UUID userUuid, BookmarkTagsApplyDto applyDto) {
+        Set<UUID> bookmarkUuids = new HashSet<>(applyDto.getBookmarkUuids());
+        if (bookmarkUuids.isEmpty() || bookmarkUuids.size() > MAX_BATCH_SIZE) {
+            throw new BookmarkBatchTooLargeException(bookmarkUuids.size(), MAX_BATCH_SIZE);
+        }
+        return changeTags(userUuid, bookmarkUuids, new HashSet<>(applyDto.getAdd()), new HashSet<>(applyDto.getRemove()), false);
+    }
+
+    /**
+     * Lock the bookmarks, diff their current tags against the change and write only the difference.
+     *
+     * @param replace true to detach every tag not in {@code add}, false to detach only the tags in {@code remove}
+     */
+    private BookmarkTagsResultDto changeTags(UUID userUuid, Collection<UUID> bookmarkUuids, Set<UUID> add,
+                                             Set<UUID> remove, boolean replace) {
+        Set<UUID> userTags = bookmarkTagJdbcRepository.findUserTagUuids(userUuid, add);
+        for (UUID tagUuid : add) {
+            if (!userTags.contains(tagUuid)) {
+                throw new TagNotFoundException(tagUuid);
+            }
+        }
+
+        List<UUID> sortedBookmarkUuids = bookmarkUuids.stream().sorted().toList();
+        Map<UUID, UUID> groups = bookmarkTagJdbcRepository.lockBookmarks(userUuid, sortedBookmarkUuids);
+        for (UUID bookmarkUuid : sortedBookmarkUuids) {
+            if (!groups.containsKey(bookmarkUuid)) {
+                throw new BookmarkNotFoundException(bookmarkUuid);
+            }
+        }
+
+        Map<UUID, Set<UUID>> currentTags = bookmarkTagJdbcRepository.findTagUuids(sortedBookmarkUuids);
+        List<BookmarkTag> inserts = new ArrayList<>();
+        List<BookmarkTag> deletes = new ArrayList<>();
+        Map<CounterKey, Integer> counterChanges = new HashMap<>();
+        for (UUID bookmarkUuid : sortedBookmarkUuids) {
+            Set<UUID> current = currentTags.getOrDefault(bookmarkUuid, Set.of());
+            UUID groupUuid = groups.get(bookmarkUuid);
+            for (UUID tagUuid : add) {
+                if (!current.contains(tagUuid)) {
+                    inserts.add(new BookmarkTag(bookmarkUuid, tagUuid));
+                    countChange(counterChanges, groupUuid, tagUuid, 1);
+                }
+            }
+            for (UUID tagUuid : current) {
+                if (!add.contains(tagUuid) && (replace || remove.contains(tagUuid))) {
+                    deletes.add(new BookmarkTag(bookmarkUuid, tagUuid));
+                    countChange(counterChanges, groupUuid, tagUuid, -1);
+                }
+            }
+        }
+
+        if (!deletes.isEmpty()) {
+            deletes.sort(ROW_ORDER);
+            bookmarkTagJdbcRepository.deleteAll(deletes);
+        }
+        if (!inserts.isEmpty()) {
+            inserts.sort(ROW_ORDER);
+            bookmarkTagJdbcRepository.insertAll(inserts);
+        }
+        tagCountBuffer.add(counterChanges.entrySet().stream()
+                .filter(change -> change.getValue() != 0)
+                .map(change -> new TagCountDelta(userUuid, change.getKey().groupUuid(), change.getKey().tagUuid(), change.getValue()))
+                .toList());
+
+        return new BookmarkTagsResultDto(sortedBookmarkUuids.size(), inserts.size(), deletes.size());
+    }
+
+    /**
+     * Add up the changes to a counter; nothing is counted for bookmarks without a group.
+     */
+    private void countChange(Map<CounterKey, Integer> counterChanges, UUID groupUuid, UUID tagUuid, int delta) {
+        if (groupUuid != null) {
+            counterChanges.merge(new CounterKey(groupUuid, tagUuid), delta, Integer::sum);
+        }
+    }
+
+    private List<TagDto> getTags(UUID bookmarkUuid) {
+        return tagRepository.findProjectionsByBookmarkUuid(bookmarkUuid).stream()
+                .map(tagMapper::fromProjection)
+                .toList();
+    }
+
+    private record CounterKey(UUID groupUuid, UUID tagUuid) {
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.sloyardms.trackerapi.bookmark.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookmarkTagsReplaceDto {
+
+    @NotNull
+    @Size(max = 100)
+    private List<@NotNull UUID> tagUuids;
+
+}
@@ -0,0 +1,18 @@
+package com.sloyardms.trackerapi.bookmark.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookmarkTagsResultDto {
+
+    private int bookmarks;
+    private int added;
+    private int removed;
+
+}
@@ -27,6 +27,7 @@ import java.util.UUID;
 },
         indexes = {
                 @Index(name = "bookmarks_user_uuid_index", columnList = "user_uuid"),
+                @Index(name = "bookmarks_user_uuid_created_at_index", columnList = "user_uuid, created_at, bookmark_uuid"),
                 @Index(name = "bookmarks_group_uuid_index", columnList = "group_uuid"),
         })
 public class Bookmark extends Auditable {
@@ -0,0 +1,9 @@
+package com.sloyardms.trackerapi.bookmark.exception;
+
+public class BookmarkBatchTooLargeException extends RuntimeException {
+
+    public BookmarkBatchTooLargeException(final int size, final int maxSize) {
+        super("A batch must contain between 1 and " + maxSize + " bookmarks, got " + size);
+    }
+
+}
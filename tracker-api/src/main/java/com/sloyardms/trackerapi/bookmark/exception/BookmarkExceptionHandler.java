@@ -54,4 +54,16 @@ public class BookmarkExceptionHandler {
         );
     }
 
+    @ExceptionHandler(BookmarkBatchTooLargeException.class)
+    public ResponseEntity<ProblemDetail> handleBookmarkBatchTooLarge(BookmarkBatchTooLargeException ex, HttpServletRequest request){
+        log.warn("Bookmark batch too large at [{}]: {}", request.getRequestURI(), ex.getMessage());
+        return ProblemDetailUtil.buildProblemDetail(
+                HttpStatus.BAD_REQUEST,
+                "/bookmark-batch-too-large",
+                "Bookmark batch too large",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+    }
+
 }
@@ -3,6 +3,8 @@ package com.sloyardms.trackerapi.bookmark.mapper;
 import com.sloyardms.trackerapi.bookmark.dto.BookmarkDto;
 import com.sloyardms.trackerapi.bookmark.dto.BookmarkUpdateDto;
 import com.sloyardms.trackerapi.bookmark.entity.Bookmark;
+import com.sloyardms.trackerapi.bookmark.projection.BookmarkProjection;
+import com.sloyardms.trackerapi.group.dto.GroupDto;
 import com.sloyardms.trackerapi.group.mapper.GroupMapper;
 import org.mapstruct.*;
 
@@ -11,6 +13,16 @@ public interface BookmarkMapper {
 
     BookmarkDto toDto(Bookmark bookmark);
 
+    @Mapping(target = "group", source = ".")
+    BookmarkDto fromProjection(BookmarkProjection projection);
+
+    default GroupDto groupFromProjection(BookmarkProjection projection) {
+        if (projection.groupUuid() == null) {
+            return null;
+        }
+        return new GroupDto(projection.groupUuid(), projection.groupName(), projection.groupDescription());
+    }
+
     @Mapping(target = "group", ignore = true)
     @Mapping(target = "tags", ignore = true)
     @Mapping(target = "notes", ignore = true)
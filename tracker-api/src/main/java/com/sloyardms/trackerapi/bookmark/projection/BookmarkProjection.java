@@ -0,0 +1,23 @@
+package com.sloyardms.trackerapi.bookmark.projection;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Columns of a bookmark and its group, read with a constructor expression for read-only endpoints.
+ */
+public record BookmarkProjection(
+        UUID uuid,
+        UUID userUuid,
+        UUID groupUuid,
+        String groupName,
+        String groupDescription,
+        String title,
+        String url,
+        String description,
+        boolean favorite,
+        Instant createdAt,
+        Instant updatedAt,
+        Instant deletedAt
+) {
+}
@@ -0,0 +1,16 @@
+package com.sloyardms.trackerapi.bookmark_image;
+
+import com.sloyardms.trackerapi.bookmark_image.entity.BookmarkImage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface BookmarkImageRepository extends JpaRepository<BookmarkImage, UUID> {
+
+    @Query("SELECT bi.uuid FROM BookmarkImage bi WHERE bi.uuid IN :uuids")
+    List<UUID> findExistingUuids(Collection<UUID> uuids);
+
+}
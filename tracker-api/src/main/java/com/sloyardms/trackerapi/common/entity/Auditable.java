@@ -3,19 +3,32 @@ package com.sloyardms.trackerapi.common.entity;
 import jakarta.persistence.Column;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.domain.Persistable;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.Instant;
+import java.util.UUID;
 
+/**
+ * Base of the entities with an assigned UUID and audit timestamps.
+ * <p>
+ * An assigned id doesn't tell Spring Data whether an entity is new, so {@code save} would merge it, reading the row
+ * before inserting it. Entities are instead new until they are persisted or loaded, and saving a new one is a single
+ * INSERT.
+ */
 @Getter
 @Setter
 @MappedSuperclass
 @EntityListeners(AuditingEntityListener.class)
-public abstract class Auditable {
+public abstract class Auditable implements Persistable<UUID> {
 
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
@@ -25,4 +38,27 @@ public abstract class Auditable {
     @Column(name = "updated_at", nullable = false)
     private Instant updatedAt;
 
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean persisted;
+
+    public abstract UUID getUuid();
+
+    @Override
+    public UUID getId() {
+        return getUuid();
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
 }
@@ -0,0 +1,9 @@
+package com.sloyardms.trackerapi.common.enums;
+
+public enum ImageProcessingStatus {
+
+    PENDING,
+    READY,
+    FAILED
+
+}
@@ -0,0 +1,24 @@
+package com.sloyardms.trackerapi.common.enums;
+
+public enum ResizeMode {
+
+    FIT_WIDTH,
+    FIT_HEIGHT,
+    FIT_BOTH;
+
+    /**
+     * Get the ResizeMode for the given property value (fit-width, fit-height, fit-both).
+     *
+     * @param value Property value, case-insensitive
+     * @return Matching ResizeMode, or FIT_BOTH if the value is not recognized
+     */
+    public static ResizeMode fromValue(String value) {
+        if (value == null) return FIT_BOTH;
+        return switch (value.trim().toLowerCase()) {
+            case "fit-width" -> FIT_WIDTH;
+            case "fit-height" -> FIT_HEIGHT;
+            default -> FIT_BOTH;
+        };
+    }
+
+}
@@ -18,6 +18,7 @@ import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.servlet.NoHandlerFoundException;
 
 import java.util.stream.Collectors;
@@ -41,15 +42,85 @@ public class GlobalExceptionHandler {
         );
     }
 
-    @ExceptionHandler(ImageDeletionException.class)
-    public ResponseEntity<ProblemDetail> handleImageDeletionError(ImageDeletionException ex, HttpServletRequest request) {
+    @ExceptionHandler(UnsupportedImageWidthException.class)
+    public ResponseEntity<ProblemDetail> handleUnsupportedImageWidth(UnsupportedImageWidthException ex, HttpServletRequest request) {
 
-        log.error("Error deleting image at [{}]: {}", request.getRequestURI(), ex.getMessage(), ex);
+        log.error("Unsupported image width at [{}]: {}", request.getRequestURI(), ex.getMessage(), ex);
 
         return ProblemDetailUtil.buildProblemDetail(
-                HttpStatus.INTERNAL_SERVER_ERROR,
-                "/image-deletion-error",
-                "Error deleting image",
+                HttpStatus.BAD_REQUEST,
+                "/unsupported-image-width",
+                "Unsupported image width",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+    }
+
+    @ExceptionHandler(RenditionCapacityExceededException.class)
+    public ResponseEntity<ProblemDetail> handleRenditionCapacityExceeded(RenditionCapacityExceededException ex, HttpServletRequest request) {
+
+        log.warn("Rendition capacity exceeded at [{}]: {}", request.getRequestURI(), ex.getMessage());
+
+        return ProblemDetailUtil.buildProblemDetail(
+                HttpStatus.TOO_MANY_REQUESTS,
+                "/rendition-capacity-exceeded",
+                "Rendition capacity exceeded",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ProblemDetail> handleInvalidCursor(InvalidCursorException ex, HttpServletRequest request) {
+
+        log.error("Invalid cursor at [{}]: {}", request.getRequestURI(), ex.getMessage(), ex);
+
+        return ProblemDetailUtil.buildProblemDetail(
+                HttpStatus.BAD_REQUEST,
+                "/invalid-cursor",
+                "Invalid cursor",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+    }
+
+    @ExceptionHandler(InvalidImageException.class)
+    public ResponseEntity<ProblemDetail> handleInvalidImage(InvalidImageException ex, HttpServletRequest request) {
+
+        log.error("Invalid image at [{}]: {}", request.getRequestURI(), ex.getMessage(), ex);
+
+        return ProblemDetailUtil.buildProblemDetail(
+                HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                "/invalid-image",
+                "Invalid image",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+    }
+
+    @ExceptionHandler(ImageTooLargeException.class)
+    public ResponseEntity<ProblemDetail> handleImageTooLarge(ImageTooLargeException ex, HttpServletRequest request) {
+
+        log.error("Image too large at [{}]: {}", request.getRequestURI(), ex.getMessage(), ex);
+
+        return ProblemDetailUtil.buildProblemDetail(
+                HttpStatus.PAYLOAD_TOO_LARGE,
+                "/image-too-large",
+                "Image too large",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ProblemDetail> handleMaxUploadSizeExceeded(MaxUploadSizeExceededException ex, HttpServletRequest request) {
+
+        log.error("Upload too large at [{}]: {}", request.getRequestURI(), ex.getMessage(), ex);
+
+        return ProblemDetailUtil.buildProblemDetail(
+                HttpStatus.PAYLOAD_TOO_LARGE,
+                "/upload-too-large",
+                "Upload too large",
                 ex.getMessage(),
                 request.getRequestURI()
         );
@@ -0,0 +1,9 @@
+package com.sloyardms.trackerapi.common.exception;
+
+public class ImageTooLargeException extends RuntimeException {
+
+    public ImageTooLargeException(final String filename, final String limit) {
+        super("Image " + filename + " exceeds the maximum allowed " + limit);
+    }
+
+}
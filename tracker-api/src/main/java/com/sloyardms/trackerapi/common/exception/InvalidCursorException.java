@@ -0,0 +1,9 @@
+package com.sloyardms.trackerapi.common.exception;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(final String cursor) {
+        super("Invalid page cursor: " + cursor);
+    }
+
+}
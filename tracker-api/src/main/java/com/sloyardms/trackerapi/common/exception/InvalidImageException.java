@@ -0,0 +1,13 @@
+package com.sloyardms.trackerapi.common.exception;
+
+public class InvalidImageException extends RuntimeException {
+
+    public InvalidImageException(final String filename) {
+        super("File " + filename + " is not a supported image");
+    }
+
+    public InvalidImageException(final String filename, Throwable e) {
+        super("File " + filename + " is not a supported image", e);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.sloyardms.trackerapi.common.exception;
+
+public class RenditionCapacityExceededException extends RuntimeException {
+
+    public RenditionCapacityExceededException() {
+        super("Too many image renditions are being rendered. Please try again later");
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.sloyardms.trackerapi.common.exception;
+
+import java.util.List;
+
+public class UnsupportedImageWidthException extends RuntimeException {
+
+    public UnsupportedImageWidthException(final int width, final List<Integer> supportedWidths) {
+        super("Image width " + width + " is not supported, use one of " + supportedWidths);
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.sloyardms.trackerapi.common.image;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Thrown when decoding or encoding an image goes over its CPU budget. The image is treated like any other image
+ * that could not be processed.
+ */
+public class ImageBudgetExceededException extends IOException {
+
+    public ImageBudgetExceededException(final Path source, final Duration budget) {
+        super("Processing image " + source + " exceeded the CPU budget of " + budget);
+    }
+
+}
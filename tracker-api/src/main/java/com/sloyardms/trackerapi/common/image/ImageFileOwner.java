@@ -0,0 +1,20 @@
+package com.sloyardms.trackerapi.common.image;
+
+/**
+ * Row an image file in the blob store belongs to, derived from the layout of its key.
+ *
+ * @param type Table the row is in
+ * @param id   UUID of the image, or content hash for content-addressed files
+ */
+public record ImageFileOwner(
+        Type type,
+        String id
+) {
+
+    public enum Type {
+        NOTE_IMAGE,
+        BOOKMARK_IMAGE,
+        CONTENT
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.sloyardms.trackerapi.common.image;
+
+/**
+ * Information read from the header of an image file, without decoding its pixels.
+ *
+ * @param format Format name reported by the image reader (jpeg, png...)
+ * @param width  Width in pixels
+ * @param height Height in pixels
+ */
+public record ImageHeader(String format, int width, int height) {
+}
@@ -0,0 +1,121 @@
+package com.sloyardms.trackerapi.common.image;
+
+import com.sloyardms.trackerapi.common.exception.ImageTooLargeException;
+import com.sloyardms.trackerapi.common.exception.InvalidImageException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Validates spooled uploads before they are decoded. Only the first bytes and the image header are read, so the
+ * cost does not depend on the size of the image.
+ */
+@Component
+public class ImageInspector {
+
+    private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final int MAX_DIMENSION;
+    // Limit on width x height, since an image within the dimension limit can still have far too many pixels to decode
+    private final long MAX_PIXELS;
+
+    public ImageInspector(
+            @Value("${app.image.upload.max-dimension}") int maxDimension,
+            @Value("${app.image.upload.max-pixels}") long maxPixels,
+            @Value("${app.image.decode.max-pixels}") long maxDecodedPixels
+    ) {
+        // An accepted image over the decode budget would be subsampled, and stored below its own resolution
+        if (maxPixels > maxDecodedPixels) {
+            throw new IllegalStateException("app.image.upload.max-pixels (" + maxPixels
+                    + ") must not exceed app.image.decode.max-pixels (" + maxDecodedPixels + ")");
+        }
+        this.MAX_DIMENSION = maxDimension;
+        this.MAX_PIXELS = maxPixels;
+    }
+
+    /**
+     * Check the file is a supported image and its dimensions and pixel count are within the configured limits.
+     *
+     * @param path     Path of the spooled upload
+     * @param filename Name of the original image file (the one from the request), used in error messages
+     * @return ImageHeader with the format and dimensions of the image
+     * @throws InvalidImageException  if the file is not a supported image
+     * @throws ImageTooLargeException if the image is wider or taller than the configured limit, or has too many pixels
+     * @throws IOException            if the file could not be read
+     */
+    public ImageHeader validate(Path path, String filename) throws IOException {
+        if (!hasSupportedSignature(path)) {
+            throw new InvalidImageException(filename);
+        }
+
+        ImageHeader header = readHeader(path, filename);
+        if (header.width() > MAX_DIMENSION || header.height() > MAX_DIMENSION) {
+            throw new ImageTooLargeException(filename, "dimension of " + MAX_DIMENSION + "px");
+        }
+        if ((long) header.width() * header.height() > MAX_PIXELS) {
+            throw new ImageTooLargeException(filename, "pixel count of " + MAX_PIXELS);
+        }
+        return header;
+    }
+
+    /**
+     * Read the format and dimensions from the image header. The pixels are not decoded.
+     *
+     * @param path     Path of the image
+     * @param filename Name of the original image file, used in error messages
+     * @return ImageHeader of the image
+     * @throws InvalidImageException if no installed reader supports the image
+     * @throws IOException           if the file could not be read
+     */
+    public ImageHeader readHeader(Path path, String filename) throws IOException {
+        try (ImageInputStream inputStream = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = (inputStream != null) ? ImageIO.getImageReaders(inputStream) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new InvalidImageException(filename);
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(inputStream, true, true);
+                return new ImageHeader(reader.getFormatName().toLowerCase(), reader.getWidth(0), reader.getHeight(0));
+            } catch (IOException e) {
+                throw new InvalidImageException(filename, e);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Check the magic bytes of the file against the supported image formats (JPEG, PNG). WebP is not accepted, since
+     * there is no installed reader to decode it.
+     *
+     * @param path Path of the file
+     * @return true if the file starts with a supported image signature
+     * @throws IOException if the file could not be read
+     */
+    private boolean hasSupportedSignature(Path path) throws IOException {
+        byte[] head;
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            head = inputStream.readNBytes(PNG_MAGIC.length);
+        }
+
+        return startsWith(head, 0, JPEG_MAGIC) || startsWith(head, 0, PNG_MAGIC);
+    }
+
+    private boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        if (data.length < offset + prefix.length) return false;
+        return Arrays.equals(data, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+
+}
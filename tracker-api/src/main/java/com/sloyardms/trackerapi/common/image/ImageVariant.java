@@ -0,0 +1,43 @@
+package com.sloyardms.trackerapi.common.image;
+
+import com.sloyardms.trackerapi.common.enums.ResizeMode;
+
+/**
+ * One encoded version of an uploaded image (thumbnail, original re-encode, extra sizes).
+ *
+ * @param name       Name of the variant, used in logs
+ * @param prefix     Prefix of the variant file name, followed by the image UUID and the format extension
+ * @param width      Target width in pixels, or null to keep the source width
+ * @param height     Target height in pixels, or null to keep the source height
+ * @param resizeMode How the width and height are applied, FIT_BOTH if null. Ignored when both are null
+ * @param format     Output format (file extension), or null to keep the format of the upload
+ * @param quality    Output quality, from 0.0 to 1.0
+ */
+public record ImageVariant(
+        String name,
+        String prefix,
+        Integer width,
+        Integer height,
+        ResizeMode resizeMode,
+        String format,
+        Double quality
+) {
+
+    /**
+     * @return true if the variant keeps the source dimensions
+     */
+    public boolean keepsSourceSize() {
+        return width == null && height == null;
+    }
+
+    /**
+     * Get a copy of this variant using the given output format.
+     *
+     * @param format Output format (file extension)
+     * @return ImageVariant with the given format
+     */
+    public ImageVariant withFormat(String format) {
+        return new ImageVariant(name, prefix, width, height, resizeMode, format, quality);
+    }
+
+}
@@ -0,0 +1,390 @@
+package com.sloyardms.trackerapi.common.image;
+
+import com.sloyardms.trackerapi.common.enums.ResizeMode;
+import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.filters.ImageFilter;
+import net.coobird.thumbnailator.util.exif.ExifFilterUtils;
+import net.coobird.thumbnailator.util.exif.ExifUtils;
+import net.coobird.thumbnailator.util.exif.Orientation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Encodes image variants from as few decodes of the source image as possible. The source is decoded into a
+ * {@link BufferedImage}, EXIF orientation is applied, and the variants are resized and encoded from it.
+ * <p>
+ * Decoding is bounded in memory and time. Images are decoded with source subsampling, by the largest power of two
+ * that keeps the decoded image at least as large as the variants made from it, and always when the image has more
+ * pixels than the decode budget, so the decoded raster never exceeds it. The CPU time spent on one image is checked
+ * while it is decoded and between variants, and the work is abandoned once it goes over the CPU budget.
+ * <p>
+ * Images are decoded once, and every variant is resized from that decode. Only when no variant needs the full
+ * resolution is a JPEG image decoded once per subsampling factor, each variant from the smallest decode that covers
+ * it. A subsampled JPEG decode still reads every block, so it is not worth a second decode next to the full one the
+ * re-encoded original needs. Other formats have to be inflated in full whatever the factor.
+ */
+@Component
+public class ImageVariantEncoder {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageVariantEncoder.class);
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final long MAX_DECODED_PIXELS;
+    private final Duration CPU_BUDGET;
+
+    public ImageVariantEncoder(
+            @Value("${app.image.decode.max-pixels}") long maxDecodedPixels,
+            @Value("${app.image.decode.cpu-budget}") Duration cpuBudget
+    ) {
+        this.MAX_DECODED_PIXELS = maxDecodedPixels;
+        this.CPU_BUDGET = cpuBudget;
+    }
+
+    /**
+     * Decode the source image and write every variant to its output path. Variants are grouped by the subsampling
+     * factor they are decoded with, smallest decode first.
+     *
+     * @param source   Path of the image to decode
+     * @param variants Variants to write, with the path to write each of them to
+     * @throws ImageBudgetExceededException if the variants went over the CPU budget
+     * @throws IOException                  if the source could not be decoded or a variant could not be written
+     */
+    public void encode(Path source, Map<ImageVariant, Path> variants) throws IOException {
+        CpuBudget budget = new CpuBudget();
+        try (ImageInputStream inputStream = openImage(source)) {
+            ImageReader reader = getReader(inputStream, source);
+            try {
+                // Metadata is needed to read the EXIF orientation. The stream is kept seekable to decode it again
+                reader.setInput(inputStream, false, false);
+                Orientation orientation = readOrientation(reader);
+
+                for (Map.Entry<Integer, List<ImageVariant>> group : groupBySubsampling(reader, orientation, variants.keySet()).entrySet()) {
+                    BufferedImage image = read(reader, source, group.getKey(), orientation, budget);
+                    for (ImageVariant variant : group.getValue()) {
+                        Path outputPath = variants.get(variant);
+                        Files.createDirectories(outputPath.getParent());
+                        try (OutputStream outputStream = Files.newOutputStream(outputPath)) {
+                            writeVariant(image, variant, outputStream);
+                        }
+                        budget.check(source);
+                    }
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decode the image at the given path once, applying its EXIF orientation. The image is subsampled while it is
+     * read as far as all the given variants allow, and further if it does not fit in the decode budget.
+     *
+     * @param source   Path of the image to decode
+     * @param variants Variants that will be encoded from the decoded image
+     * @return Decoded image, oriented as it should be displayed
+     * @throws ImageBudgetExceededException if decoding went over the CPU budget
+     * @throws IOException                  if the image format is not supported or the image could not be read
+     */
+    public BufferedImage decode(Path source, Collection<ImageVariant> variants) throws IOException {
+        try (ImageInputStream inputStream = openImage(source)) {
+            ImageReader reader = getReader(inputStream, source);
+            try {
+                reader.setInput(inputStream, true, false);
+                Orientation orientation = readOrientation(reader);
+                int subsampling = getSubsampling(reader, orientation, variants);
+                return read(reader, source, subsampling, orientation, new CpuBudget());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Resize and encode the decoded image as the given variant.
+     *
+     * @param image        Decoded source image
+     * @param variant      Variant to write
+     * @param outputStream Stream to write the encoded variant to
+     * @throws IOException if the variant could not be encoded
+     */
+    public void writeVariant(BufferedImage image, ImageVariant variant, OutputStream outputStream) throws IOException {
+        Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(image)
+                .outputFormat(variant.format())
+                .outputQuality(variant.quality());
+
+        // A box missing one side is fitted to the other side only, as in getDownscaleRatio
+        ResizeMode resizeMode = variant.resizeMode();
+        if (variant.keepsSourceSize()) {
+            builder.scale(1.0);
+        } else if (resizeMode == ResizeMode.FIT_WIDTH || variant.height() == null) {
+            builder.width(variant.width());
+        } else if (resizeMode == ResizeMode.FIT_HEIGHT || variant.width() == null) {
+            builder.height(variant.height());
+        } else {
+            builder.size(variant.width(), variant.height());
+        }
+
+        builder.toOutputStream(outputStream);
+    }
+
+    private ImageInputStream openImage(Path source) throws IOException {
+        ImageInputStream inputStream = ImageIO.createImageInputStream(source.toFile());
+        if (inputStream == null) {
+            throw new IOException("Could not open image " + source);
+        }
+        return inputStream;
+    }
+
+    private ImageReader getReader(ImageInputStream inputStream, Path source) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(inputStream);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format " + source);
+        }
+        return readers.next();
+    }
+
+    /**
+     * Decode the first image of the reader with the given subsampling factor, within the CPU budget.
+     *
+     * @return Decoded image, oriented as it should be displayed
+     * @throws ImageBudgetExceededException if decoding went over the CPU budget
+     */
+    private BufferedImage read(ImageReader reader, Path source, int subsampling, Orientation orientation, CpuBudget budget) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (subsampling > 1) {
+            log.debug("Decoding {} ({}x{}) with subsampling {}", source, reader.getWidth(0), reader.getHeight(0), subsampling);
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        }
+
+        AtomicBoolean aborted = new AtomicBoolean();
+        BudgetListener listener = new BudgetListener(budget, aborted);
+        reader.addIIOReadProgressListener(listener);
+        try {
+            BufferedImage image = reader.read(0, param);
+            if (aborted.get()) {
+                throw new ImageBudgetExceededException(source, CPU_BUDGET);
+            }
+            return applyOrientation(image, orientation);
+        } finally {
+            reader.removeIIOReadProgressListener(listener);
+        }
+    }
+
+    /**
+     * Group the variants by the subsampling factor to decode them with, largest factor (smallest decode) first.
+     * Only JPEG images get more than one group, and only when none of the variants needs the image decoded at the
+     * full resolution the decode budget allows: subsampling a JPEG still decodes every block, so a second decode next
+     * to a full one costs more than resizing the small variants from the full one.
+     *
+     * @return Map from subsampling factor to the variants encoded from that decode
+     */
+    private Map<Integer, List<ImageVariant>> groupBySubsampling(ImageReader reader, Orientation orientation,
+                                                               Collection<ImageVariant> variants) throws IOException {
+        Map<Integer, List<ImageVariant>> groups = new TreeMap<>(Comparator.reverseOrder());
+        if ("jpeg".equalsIgnoreCase(reader.getFormatName())) {
+            int fullDecode = getMinSubsampling(reader);
+            for (ImageVariant variant : variants) {
+                int subsampling = getSubsampling(reader, orientation, List.of(variant));
+                if (subsampling == fullDecode) {
+                    groups.clear();
+                    break;
+                }
+                groups.computeIfAbsent(subsampling, f -> new ArrayList<>()).add(variant);
+            }
+            if (!groups.isEmpty()) {
+                return groups;
+            }
+        }
+        groups.put(getSubsampling(reader, orientation, variants), new ArrayList<>(variants));
+        return groups;
+    }
+
+    /**
+     * Get the subsampling factor to decode an image with: the largest power of two that keeps the decoded image at
+     * least as large as every variant, raised if needed so the decoded image fits in the decode budget.
+     *
+     * @param reader      ImageReader with its input set
+     * @param orientation EXIF orientation of the image, which may swap its width and height once displayed
+     * @param variants    Variants that will be encoded from the decoded image
+     * @return Subsampling factor, 1 to decode every pixel
+     */
+    private int getSubsampling(ImageReader reader, Orientation orientation, Collection<ImageVariant> variants) throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        boolean transposed = isTransposed(orientation);
+        int displayedWidth = transposed ? height : width;
+        int displayedHeight = transposed ? width : height;
+
+        double ratio = Double.MAX_VALUE;
+        for (ImageVariant variant : variants) {
+            ratio = Math.min(ratio, getDownscaleRatio(variant, displayedWidth, displayedHeight));
+        }
+        int subsampling = Integer.highestOneBit(Math.max(1, (int) Math.min(ratio, Integer.MAX_VALUE)));
+
+        return Math.max(subsampling, getMinSubsampling(reader));
+    }
+
+    /**
+     * Get the smallest subsampling factor that keeps the decoded image within the decode budget.
+     *
+     * @param reader ImageReader with its input set
+     * @return Subsampling factor, 1 if the full image fits in the budget
+     */
+    private int getMinSubsampling(ImageReader reader) throws IOException {
+        // Each factor divides the decoded pixels by its square
+        long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+        return Math.max(1, (int) Math.ceil(Math.sqrt((double) pixels / MAX_DECODED_PIXELS)));
+    }
+
+    /**
+     * Get how many times smaller than the displayed image a variant is.
+     *
+     * @return Ratio between the image and the variant, 1 or less if the variant keeps the source size or upscales
+     */
+    private double getDownscaleRatio(ImageVariant variant, int width, int height) {
+        if (variant.keepsSourceSize()) {
+            return 1;
+        }
+        ResizeMode resizeMode = variant.resizeMode();
+        if (resizeMode == ResizeMode.FIT_WIDTH || variant.height() == null) {
+            return (double) width / variant.width();
+        }
+        if (resizeMode == ResizeMode.FIT_HEIGHT || variant.width() == null) {
+            return (double) height / variant.height();
+        }
+        // Fit inside the box: the tighter side decides the scale
+        return Math.min((double) width / variant.width(), (double) height / variant.height());
+    }
+
+    private boolean isTransposed(Orientation orientation) {
+        return orientation == Orientation.LEFT_TOP || orientation == Orientation.RIGHT_TOP
+                || orientation == Orientation.RIGHT_BOTTOM || orientation == Orientation.LEFT_BOTTOM;
+    }
+
+    /**
+     * Read the EXIF orientation of the first image of the reader. Images without EXIF data are not rotated.
+     *
+     * @param reader ImageReader with its input set
+     * @return Orientation of the image, or null if it could not be read
+     */
+    private Orientation readOrientation(ImageReader reader) {
+        try {
+            return ExifUtils.getExifOrientation(reader, 0);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not read EXIF orientation, keeping the image as decoded", e);
+            return null;
+        }
+    }
+
+    /**
+     * Rotate/flip the image according to its EXIF orientation.
+     *
+     * @param image       Decoded image
+     * @param orientation EXIF orientation, may be null
+     * @return Oriented image, or the same image if no change is needed
+     */
+    private BufferedImage applyOrientation(BufferedImage image, Orientation orientation) {
+        if (orientation == null || orientation == Orientation.TOP_LEFT) {
+            return image;
+        }
+        ImageFilter filter = ExifFilterUtils.getFilterForOrientation(orientation);
+        return filter.apply(image);
+    }
+
+    /**
+     * CPU time spent on one image by the current thread. Threads that cannot report their CPU time (virtual threads)
+     * are measured by elapsed time instead.
+     */
+    private class CpuBudget {
+
+        private final boolean cpuTime = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()
+                && THREAD_MX_BEAN.getCurrentThreadCpuTime() >= 0;
+        private final long start = now();
+
+        boolean isExceeded() {
+            return now() - start > CPU_BUDGET.toNanos();
+        }
+
+        /**
+         * @throws ImageBudgetExceededException if the budget is exceeded
+         */
+        void check(Path source) throws ImageBudgetExceededException {
+            if (isExceeded()) {
+                throw new ImageBudgetExceededException(source, CPU_BUDGET);
+            }
+        }
+
+        private long now() {
+            return cpuTime ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : System.nanoTime();
+        }
+
+    }
+
+    /**
+     * Aborts the read once the budget is exceeded. Readers report progress as they decode rows, so a huge or
+     * pathological image is stopped part way rather than decoded to the end.
+     */
+    private record BudgetListener(CpuBudget budget, AtomicBoolean aborted) implements IIOReadProgressListener {
+
+        @Override
+        public void imageProgress(ImageReader source, float percentageDone) {
+            if (budget.isExceeded()) {
+                source.abort();
+            }
+        }
+
+        @Override
+        public void readAborted(ImageReader source) {
+            aborted.set(true);
+        }
+
+        @Override
+        public void sequenceStarted(ImageReader source, int minIndex) {
+        }
+
+        @Override
+        public void sequenceComplete(ImageReader source) {
+        }
+
+        @Override
+        public void imageStarted(ImageReader source, int imageIndex) {
+        }
+
+        @Override
+        public void imageComplete(ImageReader source) {
+        }
+
+        @Override
+        public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {
+        }
+
+        @Override
+        public void thumbnailProgress(ImageReader source, float percentageDone) {
+        }
+
+        @Override
+        public void thumbnailComplete(ImageReader source) {
+        }
+
+    }
+
+}
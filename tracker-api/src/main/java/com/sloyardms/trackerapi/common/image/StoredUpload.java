@@ -0,0 +1,10 @@
+package com.sloyardms.trackerapi.common.image;
+
+/**
+ * Result of writing a validated upload to disk.
+ *
+ * @param header      Format and dimensions of the image
+ * @param contentHash SHA-256 (hex) of the uploaded bytes, or null when content-addressed storage is disabled
+ */
+public record StoredUpload(ImageHeader header, String contentHash) {
+}
@@ -0,0 +1,15 @@
+package com.sloyardms.trackerapi.common.image;
+
+/**
+ * Alternate encoding of a thumbnail that was written to the blob store.
+ *
+ * @param mimeType  MIME type of the encoding
+ * @param key       Key of the encoded file
+ * @param sizeBytes Size of the encoded file in bytes
+ */
+public record ThumbnailEncoding(
+        String mimeType,
+        String key,
+        long sizeBytes
+) {
+}
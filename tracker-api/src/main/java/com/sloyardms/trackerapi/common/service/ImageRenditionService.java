@@ -0,0 +1,134 @@
+package com.sloyardms.trackerapi.common.service;
+
+import com.sloyardms.trackerapi.common.exception.RenditionCapacityExceededException;
+import com.sloyardms.trackerapi.common.exception.UnsupportedImageWidthException;
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.common.web.FileResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Resized renditions of stored images, rendered on first request at one of the configured widths and kept in the
+ * blob store next to the original. Concurrent requests for a rendition that is being rendered wait for that render
+ * instead of starting their own (single-flight).
+ * <p>
+ * Rendering decodes the whole original, so only a bounded number of renders run at once on this node. A request that
+ * would start one more is rejected rather than queued; requests waiting for a render in progress are not counted.
+ */
+@Service
+public class ImageRenditionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageRenditionService.class);
+
+    private final ImageStorageService imageStorageService;
+    private final BlobStore blobStore;
+
+    // Renders in progress on this node, by rendition key
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    // One permit per render allowed to run at the same time
+    private final Semaphore renderPermits;
+
+    // Metrics
+    private final Timer renderTimer;
+    private final Counter rejectedCounter;
+
+    public ImageRenditionService(ImageStorageService imageStorageService, BlobStore blobStore, MeterRegistry meterRegistry,
+                                 @Value("${app.image.rendition.max-concurrent-renders}") int maxConcurrentRenders) {
+        this.imageStorageService = imageStorageService;
+        this.blobStore = blobStore;
+        this.renderPermits = new Semaphore(maxConcurrentRenders);
+        this.renderTimer = Timer.builder("image.rendition.render")
+                .description("Latency of rendering an image rendition on demand")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("image.rendition.rejected")
+                .description("Rendition requests rejected because too many renders were running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get the rendition of an image at the given width, rendering it first if it does not exist yet.
+     *
+     * @param original File of the original image
+     * @param width    Width of the rendition in pixels
+     * @return FileResponse with the key, MIME type and entity tag of the rendition
+     * @throws UnsupportedImageWidthException      if the width is not one of the configured widths
+     * @throws RenditionCapacityExceededException if the rendition must be rendered and too many renders are running
+     * @throws java.nio.file.NoSuchFileException  if the original image does not exist
+     * @throws IOException                        if the rendition could not be rendered
+     */
+    public FileResponse getRendition(FileResponse original, int width) throws IOException {
+        if (!imageStorageService.isRenditionWidth(width)) {
+            throw new UnsupportedImageWidthException(width, imageStorageService.getRenditionWidths());
+        }
+
+        String key = imageStorageService.generateRenditionPath(original.key(), width);
+        if (!blobStore.exists(key)) {
+            renderOnce(original.key(), key, width);
+        }
+
+        // Renditions are derived from the original, so they change with it
+        String etag = original.etag().substring(0, original.etag().length() - 1) + "-w" + width + "\"";
+        return new FileResponse(key, imageStorageService.getThumbnailMimeTypeFromExtension(key), etag);
+    }
+
+    /**
+     * Render the rendition, or wait for the render already in progress for the same key.
+     *
+     * @param originalKey Key of the original image
+     * @param key         Key of the rendition
+     * @param width       Width of the rendition in pixels
+     * @throws RenditionCapacityExceededException if too many renders are running
+     * @throws IOException                        if the rendition could not be rendered
+     */
+    private void renderOnce(String originalKey, String key, int width) throws IOException {
+        CompletableFuture<Void> render = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(key, render);
+        if (existing != null) {
+            try {
+                existing.join();
+                return;
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException ioException) throw ioException;
+                throw e;
+            }
+        }
+
+        try {
+            // Another render may have completed between the existence check and taking the slot
+            if (!blobStore.exists(key)) {
+                if (!renderPermits.tryAcquire()) {
+                    rejectedCounter.increment();
+                    throw new RenditionCapacityExceededException();
+                }
+                log.debug("Rendering '{}' at width {}", originalKey, width);
+                Timer.Sample sample = Timer.start();
+                try {
+                    imageStorageService.storeRendition(originalKey, key, width);
+                } finally {
+                    sample.stop(renderTimer);
+                    renderPermits.release();
+                }
+            }
+            render.complete(null);
+        } catch (IOException | RuntimeException e) {
+            render.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, render);
+        }
+    }
+
+}
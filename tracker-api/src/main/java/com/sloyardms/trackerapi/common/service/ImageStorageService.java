@@ -1,23 +1,43 @@
 package com.sloyardms.trackerapi.common.service;
 
 import com.sloyardms.trackerapi.common.enums.ImageType;
+import com.sloyardms.trackerapi.common.enums.ResizeMode;
 import com.sloyardms.trackerapi.common.exception.ImageStorageException;
-import com.sloyardms.trackerapi.note_image.entity.NoteImage;
-import net.coobird.thumbnailator.Thumbnails;
+import com.sloyardms.trackerapi.common.exception.ImageTooLargeException;
+import com.sloyardms.trackerapi.common.exception.InvalidImageException;
+import com.sloyardms.trackerapi.common.image.ImageFileOwner;
+import com.sloyardms.trackerapi.common.image.ImageHeader;
+import com.sloyardms.trackerapi.common.image.ImageInspector;
+import com.sloyardms.trackerapi.common.image.ImageVariant;
+import com.sloyardms.trackerapi.common.image.ImageVariantEncoder;
+import com.sloyardms.trackerapi.common.image.StoredUpload;
+import com.sloyardms.trackerapi.common.image.ThumbnailEncoding;
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.config.ImageVariantProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
-import java.io.File;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.Map;
-import java.util.UUID;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class ImageStorageService {
@@ -28,42 +48,83 @@ public class ImageStorageService {
             "jpg", "image/jpeg",
             "jpeg", "image/jpeg",
             "png", "image/png",
-            "webp", "image/webp"
+            "webp", "image/webp",
+            "avif", "image/avif"
     );
 
+    private static final Pattern UUID_PATTERN =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final Pattern CONTENT_HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    // Root of the file system backend, only used to translate legacy absolute paths into keys
     private final String BASE_DIR;
+    // Local folder for raw uploads and freshly encoded variants, before they are handed to the blob store
+    private final Path SPOOL_DIR;
     private final String BOOKMARKS_FOLDER = "bookmarks";
     private final String NOTES_FOLDER = "notes";
+    private final String CONTENT_FOLDER = "cas";
+    private final String UPLOAD_PREFIX = "upload_";
+    private final String SPOOL_SUFFIX = ".part";
+    private final long SPOOL_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    // Upload limits
+    private final DataSize MAX_UPLOAD_SIZE;
+
+    // Store each distinct upload once, under the SHA-256 of its content
+    private final boolean CONTENT_ADDRESSED;
 
     // Thumbnail
-    private final int THUMBNAIL_WIDTH;
-    private final int THUMBNAIL_HEIGHT;
-    private final double THUMBNAIL_QUALITY;
-    private final String THUMBNAIL_RESIZE_MODE;
+    private final ImageVariant THUMBNAIL_VARIANT;
     private final String THUMBNAIL_FORMAT;
     private final String THUMBNAIL_PREFIX;
+    // Alternate thumbnail formats, served to clients that accept them. Only those with an ImageIO writer are encoded
+    private final List<String> THUMBNAIL_ALTERNATE_FORMATS;
+    private final List<String> THUMBNAIL_ENCODED_ALTERNATE_FORMATS;
 
     // Original image
     private final double ORIGINAL_QUALITY;
     private final String ORIGINAL_PREFIX;
-    private final double ORIGINAL_DEFAULT_SCALE = 1.0;
+
+    // Additional variants, written next to the original image
+    private final List<ImageVariant> EXTRA_VARIANTS;
+
+    // Widths that can be rendered on demand, in the thumbnail format, next to the original image
+    private final List<Integer> RENDITION_WIDTHS;
+    private final String RENDITION_PREFIX = "w";
+
+    private final ImageVariantEncoder imageVariantEncoder;
+    private final ImageInspector imageInspector;
+    private final BlobStore blobStore;
 
     public ImageStorageService(
-            @Value("${app.storage.user-data-path}") String userDataPath, @Value("${app.image.thumbnail.width}") int thumbnailWidth,
+            @Value("${app.storage.user-data-path}") String userDataPath, @Value("${app.storage.spool-path}") String spoolPath,
+            @Value("${app.image.thumbnail.width}") int thumbnailWidth,
             @Value("${app.image.thumbnail.height}") int thumbnailHeight, @Value("${app.image.thumbnail.quality}") double thumbnailQuality,
             @Value("${app.image.thumbnail.resize-mode}") String thumbnailResizeMode,
             @Value("${app.image.thumbnail.format}") String thumbnailFormat, @Value("${app.image.thumbnail.prefix}") String thumbnailPrefix,
-            @Value("${app.image.original.quality}") double originalQuality, @Value("${app.image.original.prefix}") String originalPrefix
+            @Value("${app.image.thumbnail.alternate-formats}") List<String> thumbnailAlternateFormats,
+            @Value("${app.image.original.quality}") double originalQuality, @Value("${app.image.original.prefix}") String originalPrefix,
+            @Value("${app.image.upload.max-size}") DataSize maxUploadSize,
+            @Value("${app.image.rendition.widths}") List<Integer> renditionWidths,
+            @Value("${app.storage.content-addressed}") boolean contentAddressed,
+            ImageVariantProperties imageVariantProperties, ImageVariantEncoder imageVariantEncoder, ImageInspector imageInspector,
+            BlobStore blobStore
     ) {
         this.BASE_DIR = userDataPath;
-        this.THUMBNAIL_WIDTH = thumbnailWidth;
-        this.THUMBNAIL_HEIGHT = thumbnailHeight;
-        this.THUMBNAIL_QUALITY = thumbnailQuality;
-        this.THUMBNAIL_RESIZE_MODE = thumbnailResizeMode;
+        this.SPOOL_DIR = Path.of(spoolPath);
         this.THUMBNAIL_FORMAT = thumbnailFormat;
         this.THUMBNAIL_PREFIX = thumbnailPrefix;
+        this.THUMBNAIL_VARIANT = new ImageVariant("thumbnail", thumbnailPrefix, thumbnailWidth, thumbnailHeight,
+                ResizeMode.fromValue(thumbnailResizeMode), thumbnailFormat, thumbnailQuality);
         this.ORIGINAL_QUALITY = originalQuality;
         this.ORIGINAL_PREFIX = originalPrefix;
+        this.EXTRA_VARIANTS = imageVariantProperties.variants();
+        this.RENDITION_WIDTHS = renditionWidths.stream().sorted().distinct().toList();
+        this.MAX_UPLOAD_SIZE = maxUploadSize;
+        this.CONTENT_ADDRESSED = contentAddressed;
+        this.imageVariantEncoder = imageVariantEncoder;
+        this.imageInspector = imageInspector;
+        this.blobStore = blobStore;
 
         // Make sure the thumbnail extension is supported
         if (!SUPPORTED_EXT_TO_MIME.containsKey(THUMBNAIL_FORMAT)) {
@@ -71,127 +132,443 @@ public class ImageStorageService {
             log.error(message);
             throw new IllegalArgumentException(message);
         }
+
+        // Make sure the alternate thumbnail extensions are supported, and find out which ones can be encoded
+        this.THUMBNAIL_ALTERNATE_FORMATS = thumbnailAlternateFormats.stream()
+                .map(String::trim)
+                .map(String::toLowerCase)
+                .filter(format -> !format.isEmpty() && !format.equals(THUMBNAIL_FORMAT))
+                .distinct()
+                .toList();
+        for (String format : THUMBNAIL_ALTERNATE_FORMATS) {
+            if (!SUPPORTED_EXT_TO_MIME.containsKey(format)) {
+                String message = "Unsupported alternate thumbnail file extension: " + format;
+                log.error(message);
+                throw new IllegalArgumentException(message);
+            }
+        }
+        this.THUMBNAIL_ENCODED_ALTERNATE_FORMATS = THUMBNAIL_ALTERNATE_FORMATS.stream()
+                .filter(format -> ImageIO.getImageWritersByFormatName(format).hasNext())
+                .toList();
+        if (THUMBNAIL_ENCODED_ALTERNATE_FORMATS.size() < THUMBNAIL_ALTERNATE_FORMATS.size()) {
+            log.info("No image writer available for alternate thumbnail formats {}, they will not be generated",
+                    THUMBNAIL_ALTERNATE_FORMATS.stream().filter(format -> !THUMBNAIL_ENCODED_ALTERNATE_FORMATS.contains(format)).toList());
+        }
+    }
+
+    /**
+     * Stores the raw uploaded image file in the local spool folder, so it can be processed later by the image workers.
+     * The request body is streamed to a temporary file through a FileChannel, never held on the heap, and only
+     * moved to the upload path once its size, signature and header dimensions have been validated.
+     * In content-addressed mode the SHA-256 of the upload is computed while it is streamed.
+     *
+     * @param imageFile  MultipartFile containing the uploaded image
+     * @param uploadPath Path to write the raw upload to, from {@link #generateUploadPath(UUID, MultipartFile)}
+     * @return StoredUpload with the image header and the content hash
+     * @throws ImageTooLargeException if the upload exceeds the size or dimension limits
+     * @throws InvalidImageException  if the upload is not a supported image
+     * @throws ImageStorageException  if the upload could not be written
+     */
+    public StoredUpload storeUpload(MultipartFile imageFile, Path uploadPath) throws ImageStorageException {
+        String originalFilename = imageFile.getOriginalFilename();
+        if (imageFile.getSize() > MAX_UPLOAD_SIZE.toBytes()) {
+            throw new ImageTooLargeException(originalFilename, "size of " + MAX_UPLOAD_SIZE);
+        }
+
+        Path outputPath = uploadPath;
+        Path spoolPath = outputPath.resolveSibling(outputPath.getFileName() + SPOOL_SUFFIX);
+        try {
+            Files.createDirectories(outputPath.getParent());
+            String contentHash = spoolUpload(imageFile, spoolPath);
+            ImageHeader header = imageInspector.validate(spoolPath, originalFilename);
+            Files.move(spoolPath, outputPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return new StoredUpload(header, contentHash);
+        } catch (IOException e) {
+            log.error("Failed to write upload file '{}'", originalFilename, e);
+            deleteSpoolFile(spoolPath);
+            throw new ImageStorageException(originalFilename, e);
+        } catch (RuntimeException e) {
+            deleteSpoolFile(spoolPath);
+            throw e;
+        }
+    }
+
+    /**
+     * Stream the upload to the given file. When the servlet container already buffered the part on disk the copy
+     * is done file to file by the kernel, unless the content has to be hashed on the way. The size limit is enforced
+     * while copying, in case the declared size was wrong.
+     *
+     * @param imageFile MultipartFile containing the uploaded image
+     * @param spoolPath Path of the temporary file to write
+     * @return SHA-256 (hex) of the upload in content-addressed mode, null otherwise
+     * @throws IOException if the upload could not be copied
+     */
+    private String spoolUpload(MultipartFile imageFile, Path spoolPath) throws IOException {
+        long maxBytes = MAX_UPLOAD_SIZE.toBytes();
+        MessageDigest digest = CONTENT_ADDRESSED ? newContentDigest() : null;
+
+        try (InputStream rawInputStream = imageFile.getInputStream();
+             InputStream inputStream = (digest != null) ? new DigestInputStream(rawInputStream, digest) : rawInputStream;
+             ReadableByteChannel source = (inputStream instanceof FileInputStream fileInputStream)
+                     ? fileInputStream.getChannel()
+                     : Channels.newChannel(inputStream);
+             FileChannel target = FileChannel.open(spoolPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+
+            long position = 0;
+            long transferred;
+            // Ask for one byte more than the limit, getting it means the upload is too large
+            while ((transferred = target.transferFrom(source, position, Math.min(SPOOL_CHUNK_SIZE, maxBytes + 1 - position))) > 0) {
+                position += transferred;
+                if (position > maxBytes) {
+                    throw new ImageTooLargeException(imageFile.getOriginalFilename(), "size of " + MAX_UPLOAD_SIZE);
+                }
+            }
+        }
+        return (digest != null) ? HexFormat.of().formatHex(digest.digest()) : null;
+    }
+
+    private MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
     /**
-     * Stores the given image file in the user's data directory as a NoteImage. Creates a thumbnail and original image file.
+     * Delete a temporary upload file after a failure. Errors are only logged.
      *
-     * @param noteUuid         UUID of the note to store the image for. Used to verify the image path is correct.
-     * @param noteImage        NoteImage object to store the image for. Used to set the image paths.
-     * @param imageFile        MultipartFile containing the image to store.
-     * @param originalFilename Name of the original image file (the one from the request)
-     * @throws Exception if either the thumbnail or the original image could not be written
+     * @param spoolPath Path of the temporary file
      */
-    public void storeNoteImages(UUID noteUuid, NoteImage noteImage, MultipartFile imageFile, String originalFilename) throws Exception {
-        // Read the image
-        byte[] imageBytes = readImageBytes(imageFile);
+    private void deleteSpoolFile(Path spoolPath) {
+        try {
+            Files.deleteIfExists(spoolPath);
+        } catch (IOException e) {
+            log.error("Failed to delete temporary upload file '{}'", spoolPath, e);
+        }
+    }
 
-        // Verify we are in the right folder (note folder)
-        Path parentFolder = Paths.get(noteImage.getOriginalImagePath()).getParent();
-        if (parentFolder == null || !parentFolder.endsWith(noteUuid.toString())) {
+    /**
+     * Stores the given raw upload in the blob store as a NoteImage. Creates a thumbnail, original image and any
+     * additional configured variant. The upload is decoded only once for all of them; the variants are encoded in the
+     * local spool folder and then handed to the blob store.
+     * <p>
+     * The thumbnail is also encoded in each alternate format that has an image writer. An alternate encoding is only
+     * kept when it is smaller than the thumbnail, since it would never be picked otherwise.
+     * <p>
+     * Content-addressed files are shared by every upload of the same content: when all of them already exist nothing
+     * is decoded or written, and they are never removed here on failure.
+     *
+     * @param noteUuid          UUID of the note to store the image for. Used to verify the image key is correct.
+     * @param thumbnailPath     Key to store the thumbnail image under
+     * @param originalImagePath Key to store the original image under. Its file name also names the additional variants.
+     * @param uploadPath        Path of the raw upload previously written by {@link #storeUpload(MultipartFile, Path)}
+     * @param originalFilename  Name of the original image file (the one from the request)
+     * @return List with the alternate thumbnail encodings that were stored, smallest first
+     * @throws ImageStorageException if any of the image variants could not be written
+     */
+    public List<ThumbnailEncoding> storeNoteImages(UUID noteUuid, String thumbnailPath, String originalImagePath, Path uploadPath,
+                                String originalFilename) throws ImageStorageException {
+        String thumbnailKey = toKey(thumbnailPath);
+        String originalKey = toKey(originalImagePath);
+
+        // Verify we are in the right folder (note folder, or the content-addressed store)
+        boolean contentAddressed = isContentPath(originalKey);
+        if (!contentAddressed && !getParentKey(originalKey).endsWith("/" + noteUuid)) {
             throw new IllegalArgumentException("The image path does not match the note UUID");
         }
 
+        // Thumbnail, original and additional variants, in that order
+        String fileExtension = getFileExtension(originalKey);
+        Map<ImageVariant, String> variants = new LinkedHashMap<>();
+        variants.put(THUMBNAIL_VARIANT, thumbnailKey);
+        variants.put(new ImageVariant("original", ORIGINAL_PREFIX, null, null, null, fileExtension, ORIGINAL_QUALITY), originalKey);
+        variants.putAll(resolveExtraVariants(originalKey));
+
+        Map<ImageVariant, String> alternates = new LinkedHashMap<>();
+        for (String format : THUMBNAIL_ENCODED_ALTERNATE_FORMATS) {
+            alternates.put(THUMBNAIL_VARIANT.withFormat(format), replaceFileExtension(thumbnailKey, format));
+        }
+
+        Path workFolder = null;
         try {
-            writeThumbnail(noteImage.getThumbnailPath(), originalFilename, imageBytes);
-            writeOriginalImage(noteImage.getOriginalImagePath(), originalFilename, imageBytes);
-        } catch (ImageStorageException e) {
+            if (contentAddressed && allExist(variants.values())) {
+                log.debug("Image files for '{}' already exist in the content store, skipping encoding", originalFilename);
+                return findThumbnailEncodings(alternates.values());
+            }
+
+            // Encode every variant locally, then hand the files over to the blob store
+            workFolder = Files.createTempDirectory(Files.createDirectories(SPOOL_DIR), "variants-");
+            Map<ImageVariant, Path> outputs = new LinkedHashMap<>();
+            for (Map.Entry<ImageVariant, String> entry : variants.entrySet()) {
+                outputs.put(entry.getKey(), workFolder.resolve(getFileName(entry.getValue())));
+            }
+            for (Map.Entry<ImageVariant, String> entry : alternates.entrySet()) {
+                outputs.put(entry.getKey(), workFolder.resolve(getFileName(entry.getValue())));
+            }
+            imageVariantEncoder.encode(uploadPath, outputs);
+
+            // Drop the alternate encodings that did not beat the thumbnail
+            long thumbnailSize = Files.size(outputs.get(THUMBNAIL_VARIANT));
+            List<ThumbnailEncoding> encodings = new ArrayList<>();
+            for (Map.Entry<ImageVariant, String> entry : alternates.entrySet()) {
+                Path output = outputs.get(entry.getKey());
+                long size = Files.size(output);
+                if (size < thumbnailSize) {
+                    encodings.add(new ThumbnailEncoding(SUPPORTED_EXT_TO_MIME.get(entry.getKey().format()), entry.getValue(), size));
+                    variants.put(entry.getKey(), entry.getValue());
+                } else {
+                    log.debug("Skipping {} thumbnail of '{}', {} bytes is not smaller than {} bytes",
+                            entry.getKey().format(), originalFilename, size, thumbnailSize);
+                    outputs.remove(entry.getKey());
+                }
+            }
+
+            for (Map.Entry<ImageVariant, Path> entry : outputs.entrySet()) {
+                blobStore.put(variants.get(entry.getKey()), entry.getValue());
+            }
+            encodings.sort(Comparator.comparingLong(ThumbnailEncoding::sizeBytes));
+            return encodings;
+        } catch (IOException e) {
             log.error("Failed to store image files for '{}'", originalFilename, e);
 
-            //Cleanup: delete the entire note folder recursively
-            try {
-                deleteFolderRecursively(parentFolder);
-                log.info("Deleted folder '{}' due to failed thumbnail/original image storage", parentFolder);
-            } catch (IOException ex) {
-                log.error("Failed to delete folder '{}' after storage failure", parentFolder, ex);
+            //Cleanup: delete only the files of this image, other images of the note are untouched
+            if (!contentAddressed) {
+                try {
+                    for (String key : variants.values()) {
+                        removeFile(key);
+                    }
+                    log.info("Deleted image files of '{}' due to failed image storage", originalFilename);
+                } catch (IOException ex) {
+                    log.error("Failed to delete image files of '{}' after storage failure", originalFilename, ex);
+                }
             }
-            throw e;
+            throw new ImageStorageException(originalFilename, e);
+        } finally {
+            deleteWorkFolder(workFolder);
         }
     }
 
     /**
-     * Write the thumbnail image to the specified path. Applies image resizing and quality settings.
+     * Find the alternate thumbnail encodings already in the blob store, for content-addressed uploads whose files
+     * were written by an earlier upload of the same content.
      *
-     * @param outputImagePath  Path to write the thumbnail image to
-     * @param originalFileName Name of the original image file (the one from the request)
-     * @param imageBytes       Image bytes to write
-     * @throws ImageStorageException if the thumbnail image could not be written
+     * @param keys Keys of the alternate encodings that may exist
+     * @return List with the existing alternate encodings, smallest first
+     * @throws IOException if the blob store could not be reached
      */
-    private void writeThumbnail(String outputImagePath, String originalFileName, byte[] imageBytes) throws ImageStorageException {
-        File outputFile = new File(outputImagePath);
+    private List<ThumbnailEncoding> findThumbnailEncodings(Collection<String> keys) throws IOException {
+        List<ThumbnailEncoding> encodings = new ArrayList<>();
+        for (String key : keys) {
+            try {
+                encodings.add(new ThumbnailEncoding(SUPPORTED_EXT_TO_MIME.get(getFileExtension(key)), key, blobStore.size(key)));
+            } catch (NoSuchFileException e) {
+                // Not smaller than the thumbnail, or not encoded when that content was stored
+            }
+        }
+        encodings.sort(Comparator.comparingLong(ThumbnailEncoding::sizeBytes));
+        return encodings;
+    }
 
-        try (InputStream inputStream = new ByteArrayInputStream(imageBytes)) {
-            Thumbnails.Builder<?> builder = Thumbnails.of(inputStream)
-                    .outputFormat(THUMBNAIL_FORMAT)
-                    .outputQuality(THUMBNAIL_QUALITY);
+    /**
+     * Check if every given blob exists.
+     *
+     * @param keys Keys of the blobs
+     * @return true if all of them exist
+     * @throws IOException if the blob store could not be reached
+     */
+    private boolean allExist(Collection<String> keys) throws IOException {
+        for (String key : keys) {
+            if (!blobStore.exists(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            // Apply resizing mode based on property
-            switch (THUMBNAIL_RESIZE_MODE.toLowerCase()) {
-                case "fit-width":
-                    builder.width(THUMBNAIL_WIDTH);
-                    break;
-                case "fit-height":
-                    builder.height(THUMBNAIL_HEIGHT);
-                    break;
-                default: // default to fitting both dimensions
-                    builder.size(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
-                    break;
+    /**
+     * Delete a local work folder and the files left in it. Errors are only logged.
+     *
+     * @param workFolder Folder to delete, may be null
+     */
+    private void deleteWorkFolder(Path workFolder) {
+        if (workFolder == null) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(workFolder)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
             }
+            Files.deleteIfExists(workFolder);
+        } catch (IOException e) {
+            log.error("Failed to delete work folder '{}'", workFolder, e);
+        }
+    }
 
-            // Create directories if needed
-            Files.createDirectories(outputFile.toPath().getParent());
+    /**
+     * Generate the keys of every file of an image: original, thumbnail, alternate thumbnail encodings, additional
+     * variants and renditions. Some of them may not exist.
+     *
+     * @param thumbnailPath     Key of the thumbnail
+     * @param originalImagePath Key of the original image
+     * @return List with the key of each file of the image
+     */
+    public List<String> generateImageFilePaths(String thumbnailPath, String originalImagePath) {
+        List<String> filePaths = new ArrayList<>();
+        filePaths.add(toKey(originalImagePath));
+        filePaths.add(toKey(thumbnailPath));
+        filePaths.addAll(generateThumbnailAlternatePaths(thumbnailPath));
+        filePaths.addAll(generateVariantPaths(originalImagePath));
+        return filePaths;
+    }
 
-            // Write the thumbnail file
-            builder.toFile(outputFile);
-        } catch (IOException e) {
-            log.error("Failed to write thumbnail file '{}'", originalFileName, e);
-            throw new ImageStorageException(originalFileName, e);
+    /**
+     * Generate the keys of the additional configured variants and on-demand renditions of an image. They live next
+     * to the original image. Renditions only exist once they have been requested.
+     *
+     * @param originalImagePath Key of the original image
+     * @return List with the key of each additional variant and rendition, empty if none are configured
+     */
+    public List<String> generateVariantPaths(String originalImagePath) {
+        List<String> variantPaths = new ArrayList<>(resolveExtraVariants(toKey(originalImagePath)).values());
+        for (int width : RENDITION_WIDTHS) {
+            variantPaths.add(generateRenditionPath(originalImagePath, width));
         }
+        return variantPaths;
+    }
+
+    /**
+     * Check if the given width is one of the configured rendition widths.
+     *
+     * @param width Width in pixels
+     * @return true if a rendition can be rendered at that width
+     */
+    public boolean isRenditionWidth(int width) {
+        return RENDITION_WIDTHS.contains(width);
     }
 
     /**
-     * Read the image file from MultipartFile and return the bytes.
+     * Get the configured rendition widths.
      *
-     * @param imageFile MultipartFile containing the image
-     * @return byte array containing the image
-     * @throws IOException if the image file could not be read
+     * @return List with the widths in pixels, smallest first
      */
-    private byte[] readImageBytes(MultipartFile imageFile) throws IOException {
+    public List<Integer> getRenditionWidths() {
+        return RENDITION_WIDTHS;
+    }
+
+    /**
+     * Generate the key of the rendition of an image at the given width. Renditions live next to the original image,
+     * named after it ({@code w<width>_<name>}) and encoded in the thumbnail format.
+     *
+     * @param originalImagePath Key of the original image
+     * @param width             Width of the rendition in pixels
+     * @return String containing the key of the rendition
+     */
+    public String generateRenditionPath(String originalImagePath, int width) {
+        String originalKey = toKey(originalImagePath);
+        return getParentKey(originalKey) + "/" + RENDITION_PREFIX + width + "_" + getImageName(originalKey) + "." + THUMBNAIL_FORMAT;
+    }
+
+    /**
+     * Render the original image at the given width and store it under the rendition key. Images narrower than the
+     * width are not upscaled. The original is read from the blob store, through a local copy when the backend does
+     * not keep files on this node.
+     *
+     * @param originalImagePath Key of the original image
+     * @param renditionPath     Key to store the rendition under, from {@link #generateRenditionPath(String, int)}
+     * @param width             Width of the rendition in pixels
+     * @throws java.nio.file.NoSuchFileException if the original image does not exist
+     * @throws IOException                       if the original could not be decoded or the rendition could not be stored
+     */
+    public void storeRendition(String originalImagePath, String renditionPath, int width) throws IOException {
+        String originalKey = toKey(originalImagePath);
+        Path workFolder = null;
         try {
-            return imageFile.getBytes();
-        } catch (IOException e) {
-            log.error("Failed to read bytes from image file '{}'", imageFile.getOriginalFilename(), e);
-            throw e;
+            workFolder = Files.createTempDirectory(Files.createDirectories(SPOOL_DIR), "rendition-");
+            Path source = blobStore.localPath(originalKey).orElse(null);
+            if (source == null) {
+                source = workFolder.resolve(getFileName(originalKey));
+                try (InputStream inputStream = blobStore.open(originalKey, 0, blobStore.size(originalKey))) {
+                    Files.copy(inputStream, source);
+                }
+            }
+
+            ImageVariant variant = new ImageVariant(RENDITION_PREFIX + width, RENDITION_PREFIX + width + "_",
+                    width, null, ResizeMode.FIT_WIDTH, THUMBNAIL_FORMAT, THUMBNAIL_VARIANT.quality());
+            BufferedImage image = imageVariantEncoder.decode(source, List.of(variant));
+            if (image.getWidth() < width) {
+                variant = new ImageVariant(variant.name(), variant.prefix(), image.getWidth(), null, ResizeMode.FIT_WIDTH,
+                        THUMBNAIL_FORMAT, THUMBNAIL_VARIANT.quality());
+            }
+
+            Path output = workFolder.resolve(getFileName(renditionPath));
+            try (OutputStream outputStream = Files.newOutputStream(output)) {
+                imageVariantEncoder.writeVariant(image, variant, outputStream);
+            }
+            blobStore.put(renditionPath, output);
+        } finally {
+            deleteWorkFolder(workFolder);
         }
     }
 
     /**
-     * Write the original image to the specified path. Applies image quality settings.
+     * Generate the keys of every configured alternate thumbnail encoding of an image. They live next to the thumbnail,
+     * with the extension of their format. Some of them may not exist.
      *
-     * @param outputImagePath  Path to write the original image to
-     * @param originalFileName Name of the original image file (the one from the request)
-     * @param imageBytes       Image bytes to write
-     * @throws ImageStorageException if the original image could not be written
+     * @param thumbnailPath Key of the thumbnail
+     * @return List with the key of each alternate encoding, empty if none are configured
      */
-    private void writeOriginalImage(String outputImagePath, String originalFileName, byte[] imageBytes) throws ImageStorageException {
-        File outputFile = new File(outputImagePath);
-        String fileExtension = getFileExtension(originalFileName);
-
-        try (InputStream inputStream = new ByteArrayInputStream(imageBytes)) {
+    public List<String> generateThumbnailAlternatePaths(String thumbnailPath) {
+        String thumbnailKey = toKey(thumbnailPath);
+        return THUMBNAIL_ALTERNATE_FORMATS.stream()
+                .map(format -> replaceFileExtension(thumbnailKey, format))
+                .toList();
+    }
 
-            // Create directories if needed
-            Files.createDirectories(outputFile.toPath().getParent());
+    /**
+     * Resolve the additional configured variants of an image, with the key of each of them. Variants are named after
+     * the original image file, without its prefix and extension (the image UUID, or the content hash).
+     *
+     * @param originalKey Key of the original image
+     * @return Map with each additional variant, its format resolved, and its key
+     */
+    private Map<ImageVariant, String> resolveExtraVariants(String originalKey) {
+        String parentKey = getParentKey(originalKey);
+        String fileExtension = getFileExtension(originalKey);
+        String name = getImageName(originalKey);
+
+        Map<ImageVariant, String> variants = new LinkedHashMap<>();
+        for (ImageVariant variant : EXTRA_VARIANTS) {
+            ImageVariant resolved = (variant.format() != null) ? variant : variant.withFormat(fileExtension);
+            variants.put(resolved, parentKey + "/" + generateVariantFileName(resolved, name));
+        }
+        return variants;
+    }
 
-            // Write the original image file
-            Thumbnails.of(inputStream)
-                    .scale(ORIGINAL_DEFAULT_SCALE)
-                    .outputFormat(fileExtension)
-                    .outputQuality(ORIGINAL_QUALITY)
-                    .toFile(outputFile);
-        } catch (IOException e) {
-            log.error("Failed to write original image file '{}'", originalFileName, e);
-            throw new ImageStorageException(originalFileName, e);
+    /**
+     * Get the name of an image from the key of its original, without the original prefix and extension.
+     *
+     * @param originalKey Key of the original image
+     * @return Name of the image (UUID or content hash)
+     */
+    private String getImageName(String originalKey) {
+        String fileExtension = getFileExtension(originalKey);
+        String name = getFileName(originalKey);
+        name = name.substring(0, name.length() - (fileExtension.isEmpty() ? 0 : fileExtension.length() + 1));
+        if (ORIGINAL_PREFIX != null && name.startsWith(ORIGINAL_PREFIX)) {
+            name = name.substring(ORIGINAL_PREFIX.length());
         }
+        return name;
+    }
+
+    /**
+     * Generate the file name of an additional variant. Applies the variant prefix if configured.
+     *
+     * @param variant Variant to generate the name for, with its format resolved
+     * @param name    Name of the image (UUID or content hash)
+     * @return String containing the file name of the variant
+     */
+    private String generateVariantFileName(ImageVariant variant, String name) {
+        return (variant.prefix() != null ? variant.prefix() : variant.name() + "_") + name + "." + variant.format();
     }
 
     /**
@@ -208,55 +585,183 @@ public class ImageStorageService {
     }
 
     /**
-     * Generate the path for an image file based on the given parameters.
+     * Replace the extension of the given key, or add it if the key has none.
+     *
+     * @param key           Key of a blob
+     * @param fileExtension New file extension
+     * @return Key with the given extension
+     */
+    private String replaceFileExtension(String key, String fileExtension) {
+        int dotIndex = key.lastIndexOf('.');
+        String name = (dotIndex > key.lastIndexOf('/')) ? key.substring(0, dotIndex) : key;
+        return name + "." + fileExtension;
+    }
+
+    /**
+     * Generate the key for an image file based on the given parameters.
      *
-     * @param imageType    {@link ImageType} to generate the path for. Used to determine the file destination
+     * @param imageType    {@link ImageType} to generate the key for. Used to determine the file destination
      * @param userUuid     UUID of the user owner of the bookmark
      * @param bookmarkUuid UUID of the bookmark to which the image belongs to
      * @param noteUuid     UUID of the note to which the image belongs to. May be null if the image is not associated with a note.
-     * @param imageUuid    UUID of the image to generate the path for
-     * @param imageFile    MultipartFile containing the image to generate the path for
-     * @return String containing the path to the image file
+     * @param imageUuid    UUID of the image to generate the key for
+     * @param imageFile    MultipartFile containing the image to generate the key for
+     * @return String containing the key of the image file
      */
     public String generateImagePath(ImageType imageType, UUID userUuid, UUID bookmarkUuid, UUID noteUuid, UUID imageUuid, MultipartFile imageFile) {
         String originalFileExtension = getFileExtension(imageFile.getOriginalFilename());
-        String fileName = (imageType == ImageType.THUMBNAIL
-                ? getThumbnailFileName(imageUuid, originalFileExtension)
-                : generateOriginalImageOutputFilename(imageUuid, originalFileExtension));
+        String fileName = switch (imageType) {
+            case THUMBNAIL -> getThumbnailFileName(imageUuid.toString(), originalFileExtension);
+            case ORIGINAL_IMAGE -> generateOriginalImageOutputFilename(imageUuid.toString(), originalFileExtension);
+        };
 
-        Path path = Path.of(BASE_DIR, userUuid.toString(), BOOKMARKS_FOLDER, bookmarkUuid.toString());
+        String folder = String.join("/", userUuid.toString(), BOOKMARKS_FOLDER, bookmarkUuid.toString());
         if (noteUuid != null) {
-            path = path.resolve(NOTES_FOLDER).resolve(noteUuid.toString());
+            folder = String.join("/", folder, NOTES_FOLDER, noteUuid.toString());
+        }
+
+        return folder + "/" + fileName;
+    }
+
+    /**
+     * Generate the local path to write a raw upload to, in the spool folder.
+     *
+     * @param imageUuid UUID of the image being uploaded
+     * @param imageFile MultipartFile containing the uploaded image
+     * @return Path of the raw upload
+     */
+    public Path generateUploadPath(UUID imageUuid, MultipartFile imageFile) {
+        return SPOOL_DIR.resolve(UPLOAD_PREFIX + imageUuid + "." + getFileExtension(imageFile.getOriginalFilename()));
+    }
+
+    /**
+     * Generate the key for an image file in the content-addressed store. Files are sharded by the first two bytes of
+     * the hash ({@code cas/ab/cd/<file>}) so no folder grows too large.
+     *
+     * @param imageType   THUMBNAIL or ORIGINAL_IMAGE
+     * @param contentHash SHA-256 (hex) of the uploaded content
+     * @param format      Format of the uploaded image, as read from its header
+     * @return String containing the key of the image file
+     */
+    public String generateContentPath(ImageType imageType, String contentHash, String format) {
+        String fileExtension = "jpeg".equals(format) ? "jpg" : format;
+        String fileName = switch (imageType) {
+            case THUMBNAIL -> getThumbnailFileName(contentHash, fileExtension);
+            case ORIGINAL_IMAGE -> generateOriginalImageOutputFilename(contentHash, fileExtension);
+        };
+
+        return String.join("/", CONTENT_FOLDER, contentHash.substring(0, 2), contentHash.substring(2, 4), fileName);
+    }
+
+    /**
+     * Check if content-addressed storage is enabled for new uploads.
+     *
+     * @return true if new uploads are stored under their content hash
+     */
+    public boolean isContentAddressed() {
+        return CONTENT_ADDRESSED;
+    }
+
+    /**
+     * Check if the given key is in the content-addressed store, so its file may be shared by several images.
+     *
+     * @param filePath Key of an image file
+     * @return true if the file is in the content-addressed store
+     */
+    public boolean isContentPath(String filePath) {
+        return filePath != null && toKey(filePath).startsWith(CONTENT_FOLDER + "/");
+    }
+
+    /**
+     * Find the row an image file belongs to from its key. Files are laid out as
+     * {@code <user>/bookmarks/<bookmark>/<file>} for bookmark images, {@code <user>/bookmarks/<bookmark>/notes/<note>/<file>}
+     * for note images and {@code cas/ab/cd/<file>} for content-addressed files, and the first UUID (or hash) in the file
+     * name is the one of the image.
+     *
+     * @param key Key of a blob
+     * @return Owner of the file, or empty if the key does not follow the layout of image files
+     */
+    public Optional<ImageFileOwner> resolveOwner(String key) {
+        String[] segments = key.split("/");
+        String fileName = segments[segments.length - 1];
+
+        if (segments.length == 4 && segments[0].equals(CONTENT_FOLDER)) {
+            Matcher matcher = CONTENT_HASH_PATTERN.matcher(fileName);
+            return matcher.find()
+                    ? Optional.of(new ImageFileOwner(ImageFileOwner.Type.CONTENT, matcher.group()))
+                    : Optional.empty();
+        }
+
+        ImageFileOwner.Type type;
+        if (segments.length == 4 && segments[1].equals(BOOKMARKS_FOLDER)) {
+            type = ImageFileOwner.Type.BOOKMARK_IMAGE;
+        } else if (segments.length == 6 && segments[1].equals(BOOKMARKS_FOLDER) && segments[3].equals(NOTES_FOLDER)) {
+            type = ImageFileOwner.Type.NOTE_IMAGE;
+        } else {
+            return Optional.empty();
         }
+        Matcher matcher = UUID_PATTERN.matcher(fileName);
+        return matcher.find() ? Optional.of(new ImageFileOwner(type, matcher.group())) : Optional.empty();
+    }
 
-        return path.resolve(fileName).toString();
+    /**
+     * Translate a stored image path into a blob key. Rows written before the blob store existed hold absolute paths
+     * under the user data folder; those are made relative to it. Keys are returned unchanged.
+     *
+     * @param storedPath Path or key stored in a NoteImage row
+     * @return Key of the blob
+     */
+    public String toKey(String storedPath) {
+        String baseDir = BASE_DIR.endsWith("/") ? BASE_DIR : BASE_DIR + "/";
+        return storedPath.startsWith(baseDir) ? storedPath.substring(baseDir.length()) : storedPath;
+    }
+
+    /**
+     * Get the folder part of a key.
+     *
+     * @param key Key of a blob
+     * @return Key without its file name, or empty string if it has no folder
+     */
+    private String getParentKey(String key) {
+        int slashIndex = key.lastIndexOf('/');
+        return (slashIndex == -1) ? "" : key.substring(0, slashIndex);
+    }
+
+    /**
+     * Get the file name part of a key.
+     *
+     * @param key Key of a blob
+     * @return File name of the key
+     */
+    private String getFileName(String key) {
+        return key.substring(key.lastIndexOf('/') + 1);
     }
 
     /**
      * Generate the output filename for the original image file based on the given parameters. Applies a prefix if configured.
      *
-     * @param imageUuid     UUID of the image
+     * @param name          Name of the image (UUID or content hash)
      * @param fileExtension File extension of the original image file.
      * @return String containing the output filename for the original image file
      */
-    private String generateOriginalImageOutputFilename(UUID imageUuid, String fileExtension) {
-        return (ORIGINAL_PREFIX != null ? ORIGINAL_PREFIX : "") + imageUuid + "." + fileExtension;
+    private String generateOriginalImageOutputFilename(String name, String fileExtension) {
+        return (ORIGINAL_PREFIX != null ? ORIGINAL_PREFIX : "") + name + "." + fileExtension;
     }
 
     /**
      * Generate the output filename for the thumbnail image file based on the given parameters. Applies a prefix if configured.
      *
-     * @param imageUuid     UUID of the image
+     * @param name          Name of the image (UUID or content hash)
      * @param fileExtension File extension of the original image file.
      * @return String containing the output filename for the thumbnail image file
      */
-    private String getThumbnailFileName(UUID imageUuid, String fileExtension) {
+    private String getThumbnailFileName(String name, String fileExtension) {
         // Check if we need to override the thumbnail format
         String outputFileExtension = (THUMBNAIL_FORMAT != null && !THUMBNAIL_FORMAT.isBlank())
                 ? THUMBNAIL_FORMAT
                 : fileExtension;
 
-        return (THUMBNAIL_PREFIX != null ? THUMBNAIL_PREFIX : "") + imageUuid + "." + outputFileExtension;
+        return (THUMBNAIL_PREFIX != null ? THUMBNAIL_PREFIX : "") + name + "." + outputFileExtension;
     }
 
     /**
@@ -271,9 +776,9 @@ public class ImageStorageService {
     }
 
     /**
-     * Delete the file at the given path. Does nothing if the file does not exist.
+     * Delete the image file with the given key. Does nothing if the file does not exist.
      *
-     * @param filePath String with the path to the file to delete
+     * @param filePath String with the key (or legacy path) of the file to delete
      * @throws IOException if the file could not be deleted
      */
     public void removeFile(String filePath) throws IOException {
@@ -281,58 +786,106 @@ public class ImageStorageService {
             log.warn("Skipping image deletion because file path is null or blank");
             return;
         }
-        Path path = Paths.get(filePath);
-
-        if (!Files.exists(path)) {
-            log.warn("Skipping image deletion because file does not exist: {}", filePath);
-            return;
-        }
-        Files.deleteIfExists(path);
+        blobStore.delete(toKey(filePath));
     }
 
     /**
-     * Recursively delete the given folder and all its contents. Does nothing if the folder does not exist.
+     * Delete a raw upload from the local spool folder. Does nothing if the file does not exist.
      *
-     * @param path Path to the folder to delete
-     * @throws IOException if the folder or a file could not be deleted
+     * @param uploadPath Path of the raw upload
+     * @throws IOException if the file could not be deleted
      */
-    private void deleteFolderRecursively(Path path) throws IOException {
-        if (!Files.exists(path)) return;
+    public void discardUpload(Path uploadPath) throws IOException {
+        Files.deleteIfExists(uploadPath);
+    }
 
-        Files.walkFileTree(path, new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                Files.delete(file);
-                return FileVisitResult.CONTINUE;
+    /**
+     * Find the raw uploads in the local spool folder, by the UUID of the image they belong to.
+     *
+     * @return Map with the path of each raw upload by image UUID, empty if the spool folder does not exist
+     * @throws IOException if the spool folder could not be read
+     */
+    public Map<UUID, Path> findUploads() throws IOException {
+        Map<UUID, Path> uploads = new HashMap<>();
+        if (!Files.isDirectory(SPOOL_DIR)) return uploads;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(SPOOL_DIR, UPLOAD_PREFIX + "*")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                int extensionStart = fileName.lastIndexOf('.');
+                if (fileName.endsWith(SPOOL_SUFFIX) || extensionStart < UPLOAD_PREFIX.length()) continue;
+                try {
+                    uploads.put(UUID.fromString(fileName.substring(UPLOAD_PREFIX.length(), extensionStart)), file);
+                } catch (IllegalArgumentException e) {
+                    log.debug("Ignoring spool file '{}', it is not named after an image", file);
+                }
             }
+        }
+        return uploads;
+    }
 
-            @Override
-            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                Files.delete(dir);
-                return FileVisitResult.CONTINUE;
+    /**
+     * Delete the entries of the local spool folder last modified before the given instant, except the given ones:
+     * raw uploads nobody will process, partial uploads and the work folders of interrupted encodes. Errors on a
+     * single entry are only logged.
+     *
+     * @param modifiedBefore Only entries older than this are deleted, so uploads in progress are left alone
+     * @param keep           Paths of the entries to keep
+     * @return Number of entries deleted
+     * @throws IOException if the spool folder could not be read
+     */
+    public int sweepSpool(Instant modifiedBefore, Collection<Path> keep) throws IOException {
+        if (!Files.isDirectory(SPOOL_DIR)) return 0;
+
+        int deleted = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(SPOOL_DIR)) {
+            for (Path entry : entries) {
+                if (keep.contains(entry)) continue;
+                try {
+                    if (!Files.getLastModifiedTime(entry).toInstant().isBefore(modifiedBefore)) continue;
+                    if (Files.isDirectory(entry)) {
+                        deleteWorkFolder(entry);
+                    } else {
+                        Files.deleteIfExists(entry);
+                    }
+                    deleted++;
+                } catch (IOException e) {
+                    log.error("Failed to delete spool entry '{}'", entry, e);
+                }
             }
-        });
+        }
+        return deleted;
     }
 
     /**
-     * Delete the base directory for all user data.
-     * @throws IOException if the directory could not be deleted
+     * Delete every stored image file.
+     * @throws IOException if a file could not be deleted
      */
     public void deleteBaseDirectory() throws IOException {
-        Path path = Paths.get(BASE_DIR);
-        deleteFolderRecursively(path);
+        blobStore.deleteAll("");
     }
 
     /**
-     * Delete the note folder for the given user, bookmark and note.
-     * @param userUuid UUID of the user to delete the note folder for
-     * @param bookmarkUuid UUID of the bookmark to delete the note folder for
-     * @param noteUuid UUID of the note to delete the note folder for
-     * @throws IOException if the folder or a file could not be deleted
+     * Generate the key of the folder holding the image files of a bookmark and its notes.
+     *
+     * @param userUuid     UUID of the user owner of the bookmark
+     * @param bookmarkUuid UUID of the bookmark
+     * @return String containing the key of the bookmark folder
+     */
+    public String generateBookmarkFolderPath(UUID userUuid, UUID bookmarkUuid) {
+        return String.join("/", userUuid.toString(), BOOKMARKS_FOLDER, bookmarkUuid.toString());
+    }
+
+    /**
+     * Generate the key of the folder holding the image files of a note.
+     *
+     * @param userUuid     UUID of the user owner of the bookmark
+     * @param bookmarkUuid UUID of the bookmark the note belongs to
+     * @param noteUuid     UUID of the note
+     * @return String containing the key of the note folder
      */
-    public void deleteNoteDirectory(UUID userUuid, UUID bookmarkUuid, UUID noteUuid) throws IOException {
-        Path path = Path.of(BASE_DIR, userUuid.toString(), BOOKMARKS_FOLDER, bookmarkUuid.toString(), NOTES_FOLDER, noteUuid.toString());
-        deleteFolderRecursively(path);
+    public String generateNoteFolderPath(UUID userUuid, UUID bookmarkUuid, UUID noteUuid) {
+        return String.join("/", generateBookmarkFolderPath(userUuid, bookmarkUuid), NOTES_FOLDER, noteUuid.toString());
     }
 
 }
@@ -0,0 +1,97 @@
+package com.sloyardms.trackerapi.common.service;
+
+import com.sloyardms.trackerapi.common.jdbc.DatabasePlatform;
+import com.sloyardms.trackerapi.common.web.CountMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a paginated listing with the total its caller asked for. A slice is fetched with one extra row instead of a
+ * count query, and for estimated totals the row count is taken from the PostgreSQL planner, which reads its table
+ * statistics instead of the rows. The plan comes from an EXPLAIN query of the repository of the listing, next to the
+ * queries it estimates. Other databases have no comparable estimate, so they get the exact page.
+ */
+@Component
+public class PageCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(PageCounter.class);
+
+    // Estimated rows of the top node of a text plan, e.g. "Seq Scan on tags  (cost=0.00..1.05 rows=5 width=4)"
+    private static final Pattern PLAN_ROWS = Pattern.compile("\\brows=(\\d+)");
+
+    private final DatabasePlatform databasePlatform;
+
+    public PageCounter(DatabasePlatform databasePlatform) {
+        this.databasePlatform = databasePlatform;
+    }
+
+    /**
+     * Fetch a page of a listing.
+     *
+     * @param mode       How the total is computed
+     * @param pageable   Page to fetch
+     * @param pageQuery  Query returning a page with an exact total
+     * @param sliceQuery Same query returning a slice, without a count
+     * @param countPlan  Lines of the PostgreSQL plan of the rows of the listing, only run on PostgreSQL
+     * @return Page for the exact and estimated modes, Slice without total otherwise
+     */
+    public <T> Slice<T> fetch(CountMode mode, Pageable pageable, Function<Pageable, Page<T>> pageQuery,
+                              Function<Pageable, Slice<T>> sliceQuery, Supplier<List<String>> countPlan) {
+        return switch (mode) {
+            case EXACT -> pageQuery.apply(pageable);
+            case NONE -> sliceQuery.apply(pageable);
+            case ESTIMATE -> estimate(pageable, pageQuery, sliceQuery, countPlan);
+        };
+    }
+
+    private <T> Slice<T> estimate(Pageable pageable, Function<Pageable, Page<T>> pageQuery,
+                                  Function<Pageable, Slice<T>> sliceQuery, Supplier<List<String>> countPlan) {
+        if (!databasePlatform.isPostgres()) {
+            return pageQuery.apply(pageable);
+        }
+
+        List<String> plan = countPlan.get();
+        Matcher rows = PLAN_ROWS.matcher(plan.isEmpty() ? "" : plan.getFirst());
+        if (!rows.find()) {
+            log.error("Failed to read the row estimate of the plan {}, counting the rows instead", plan);
+            return pageQuery.apply(pageable);
+        }
+        return withTotal(sliceQuery.apply(pageable), Long.parseLong(rows.group(1)));
+    }
+
+    /**
+     * Turn a slice into a page with an estimated total. The total is only an estimate while there are more rows: it
+     * is raised to cover the rows already seen, and replaced by the exact number on the last page.
+     *
+     * @param slice    Slice fetched
+     * @param estimate Estimated number of rows of the listing
+     * @return Page with the rows of the slice
+     */
+    private <T> Page<T> withTotal(Slice<T> slice, long estimate) {
+        long offset = slice.getPageable().isPaged() ? slice.getPageable().getOffset() : 0;
+        long seen = offset + slice.getNumberOfElements();
+
+        long total;
+        if (slice.hasNext()) {
+            total = Math.max(estimate, seen + 1);
+        } else if (slice.hasContent()) {
+            total = seen;
+        } else {
+            //Past the last page, only an upper bound is known
+            total = Math.min(estimate, offset);
+        }
+        return new PageImpl<>(slice.getContent(), slice.getPageable(), total);
+    }
+
+}
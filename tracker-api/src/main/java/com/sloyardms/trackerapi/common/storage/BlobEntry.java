@@ -0,0 +1,13 @@
+package com.sloyardms.trackerapi.common.storage;
+
+import java.time.Instant;
+
+/**
+ * Blob returned by a {@link BlobStore} listing.
+ *
+ * @param key          Key of the blob
+ * @param size         Size in bytes
+ * @param lastModified When the blob was last written
+ */
+public record BlobEntry(String key, long size, Instant lastModified) {
+}
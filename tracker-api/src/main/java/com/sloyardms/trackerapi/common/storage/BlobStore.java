@@ -0,0 +1,95 @@
+package com.sloyardms.trackerapi.common.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage backend for image files. Blobs are addressed by backend-neutral keys: relative, '/'-separated paths such as
+ * {@code <userUuid>/bookmarks/<bookmarkUuid>/notes/<noteUuid>/thumbnail_<imageUuid>.jpg}.
+ * <p>
+ * Missing blobs are reported with {@link java.nio.file.NoSuchFileException}, whatever the backend.
+ */
+public interface BlobStore {
+
+    /**
+     * Store the content of a local file under the given key, replacing any existing blob. The source file is
+     * consumed: it is moved or deleted once the blob is stored. The blob becomes visible only once it is complete.
+     *
+     * @param key    Key of the blob
+     * @param source Local file with the content
+     * @throws IOException if the blob could not be stored
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * Open a range of the blob for reading.
+     *
+     * @param key    Key of the blob
+     * @param offset Offset of the first byte to read
+     * @param length Number of bytes to read
+     * @return InputStream with the requested bytes, to be closed by the caller
+     * @throws java.nio.file.NoSuchFileException if the blob does not exist
+     * @throws IOException                       if the blob could not be read
+     */
+    InputStream open(String key, long offset, long length) throws IOException;
+
+    /**
+     * Get the size of the blob.
+     *
+     * @param key Key of the blob
+     * @return Size in bytes
+     * @throws java.nio.file.NoSuchFileException if the blob does not exist
+     * @throws IOException                       if the backend could not be reached
+     */
+    long size(String key) throws IOException;
+
+    /**
+     * Check if a blob exists.
+     *
+     * @param key Key of the blob
+     * @return true if the blob exists
+     * @throws IOException if the backend could not be reached
+     */
+    boolean exists(String key) throws IOException;
+
+    /**
+     * Delete a blob. Does nothing if the blob does not exist.
+     *
+     * @param key Key of the blob
+     * @throws IOException if the blob could not be deleted
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Delete every blob whose key starts with the given folder.
+     *
+     * @param prefix Folder key, without trailing '/'. An empty prefix deletes everything.
+     * @throws IOException if a blob could not be deleted
+     */
+    void deleteAll(String prefix) throws IOException;
+
+    /**
+     * List the blobs after the given key, one page at a time. Keys come in an order that is stable for the backend,
+     * so a listing can be resumed from the last key of the previous page, even after a restart. Blobs written while
+     * a listing is in progress may or may not be returned.
+     *
+     * @param startAfter Last key of the previous page, or null to start from the beginning
+     * @param limit      Maximum number of blobs to return
+     * @return List with up to limit blobs; fewer than limit means the listing is complete
+     * @throws IOException if the backend could not be reached
+     */
+    List<BlobEntry> list(String startAfter, int limit) throws IOException;
+
+    /**
+     * Local file of the blob, when the backend keeps blobs on this node's file system. Lets callers transfer the
+     * content with zero-copy system calls.
+     *
+     * @param key Key of the blob
+     * @return Path of the blob file, or empty if the backend is remote
+     */
+    Optional<Path> localPath(String key);
+
+}
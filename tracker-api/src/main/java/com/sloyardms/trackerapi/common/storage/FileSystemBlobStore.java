@@ -0,0 +1,195 @@
+package com.sloyardms.trackerapi.common.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * {@link BlobStore} keeping blobs as files under a root folder. Only usable by several API nodes if the root folder is
+ * a shared file system.
+ */
+public class FileSystemBlobStore implements BlobStore {
+
+    private final Path root;
+
+    public FileSystemBlobStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Source on another file system: copy next to the target first, so the rename is still atomic
+            Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".part");
+            try {
+                Files.copy(source, temp);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                Files.delete(source);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        channel.position(offset);
+        InputStream inputStream = Channels.newInputStream(channel);
+        return new FilterInputStream(inputStream) {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) return -1;
+                int b = super.read();
+                if (b >= 0) remaining--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int len) throws IOException {
+                if (remaining <= 0) return -1;
+                int read = super.read(buffer, off, (int) Math.min(len, remaining));
+                if (read > 0) remaining -= read;
+                return read;
+            }
+        };
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public void deleteAll(String prefix) throws IOException {
+        Path folder = prefix.isEmpty() ? root : resolve(prefix);
+        if (!Files.exists(folder)) return;
+
+        Files.walkFileTree(folder, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Folders are walked depth first with their entries sorted by name, skipping every folder that lies entirely
+     * before the start key, so resuming a listing does not walk the tree again from the beginning.
+     */
+    @Override
+    public List<BlobEntry> list(String startAfter, int limit) throws IOException {
+        List<BlobEntry> entries = new ArrayList<>(limit);
+        String[] after = (startAfter == null || startAfter.isEmpty()) ? new String[0] : startAfter.split("/");
+        listFolder(root, "", after, 0, after.length > 0, limit, entries);
+        return entries;
+    }
+
+    /**
+     * List the files of a folder and its sub folders into the given list, in listing order.
+     *
+     * @param folder  Folder to list
+     * @param prefix  Key of the folder, with a trailing '/', or empty for the root
+     * @param after   Segments of the start key
+     * @param depth   Depth of the folder, index of the start key segment to compare its entries with
+     * @param onPath  true if the folder is an ancestor of the start key, so entries up to it must be skipped
+     * @param limit   Maximum number of entries to collect
+     * @param entries List to add the entries to
+     * @throws IOException if a folder could not be read
+     */
+    private void listFolder(Path folder, String prefix, String[] after, int depth, boolean onPath, int limit,
+                            List<BlobEntry> entries) throws IOException {
+        List<Path> children;
+        try (Stream<Path> stream = Files.list(folder)) {
+            children = stream.sorted(Comparator.comparing(path -> path.getFileName().toString())).toList();
+        } catch (NoSuchFileException e) {
+            // Deleted while listing
+            return;
+        }
+
+        for (Path child : children) {
+            if (entries.size() >= limit) {
+                return;
+            }
+
+            String name = child.getFileName().toString();
+            boolean childOnPath = false;
+            if (onPath) {
+                int comparison = name.compareTo(after[depth]);
+                // Entries before the start key, and the start key itself, were listed already
+                if (comparison < 0 || (comparison == 0 && depth == after.length - 1)) {
+                    continue;
+                }
+                childOnPath = comparison == 0;
+            }
+
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+
+            if (attributes.isDirectory()) {
+                listFolder(child, prefix + name + "/", after, depth + 1, childOnPath, limit, entries);
+            } else if (attributes.isRegularFile() && !childOnPath) {
+                entries.add(new BlobEntry(prefix + name, attributes.size(), attributes.lastModifiedTime().toInstant()));
+            }
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.of(resolve(key));
+    }
+
+    /**
+     * Resolve the file of a key, rejecting keys that would escape the root folder.
+     *
+     * @param key Key of the blob
+     * @return Path of the blob file
+     */
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Blob key outside of the storage root: " + key);
+        }
+        return path;
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.sloyardms.trackerapi.common.storage;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link BlobStore} keeping blobs in a bucket of an S3-compatible object store (AWS S3, MinIO, ...), so several API
+ * nodes can share the same images.
+ * <p>
+ * The client is asynchronous and multipart-enabled: files above its threshold are uploaded as parts sent in parallel
+ * over the non-blocking HTTP client. Callers block on the result, so each call holds its thread until the request
+ * completes.
+ */
+public class S3BlobStore implements BlobStore, AutoCloseable {
+
+    // Maximum number of keys per DeleteObjects request, also the maximum page size of a listing
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private final S3AsyncClient client;
+    private final String bucket;
+
+    public S3BlobStore(S3AsyncClient client, String bucket) {
+        this.client = client;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build();
+        await(client.putObject(request, AsyncRequestBody.fromFile(source)), key);
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .range("bytes=" + offset + "-" + (offset + length - 1))
+                .build();
+        return await(client.getObject(request, AsyncResponseTransformer.toBlockingInputStream()), key);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        HeadObjectRequest request = HeadObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build();
+        return await(client.headObject(request), key).contentLength();
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        try {
+            size(key);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        DeleteObjectRequest request = DeleteObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build();
+        await(client.deleteObject(request), key);
+    }
+
+    @Override
+    public void deleteAll(String prefix) throws IOException {
+        String folder = prefix.isEmpty() ? "" : prefix + "/";
+        String continuationToken = null;
+        do {
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                    .bucket(bucket)
+                    .prefix(folder)
+                    .maxKeys(DELETE_BATCH_SIZE)
+                    .continuationToken(continuationToken)
+                    .build();
+            ListObjectsV2Response response = await(client.listObjectsV2(request), folder);
+
+            List<ObjectIdentifier> objects = new ArrayList<>();
+            for (S3Object object : response.contents()) {
+                objects.add(ObjectIdentifier.builder().key(object.key()).build());
+            }
+            if (!objects.isEmpty()) {
+                DeleteObjectsRequest deleteRequest = DeleteObjectsRequest.builder()
+                        .bucket(bucket)
+                        .delete(Delete.builder().objects(objects).quiet(true).build())
+                        .build();
+                DeleteObjectsResponse deleteResponse = await(client.deleteObjects(deleteRequest), folder);
+                if (deleteResponse.hasErrors() && !deleteResponse.errors().isEmpty()) {
+                    S3Error error = deleteResponse.errors().getFirst();
+                    throw new IOException("Failed to delete '" + error.key() + "': " + error.message());
+                }
+            }
+
+            continuationToken = Boolean.TRUE.equals(response.isTruncated()) ? response.nextContinuationToken() : null;
+        } while (continuationToken != null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Keys are listed in the UTF-8 binary order of the bucket listing.
+     */
+    @Override
+    public List<BlobEntry> list(String startAfter, int limit) throws IOException {
+        List<BlobEntry> entries = new ArrayList<>(limit);
+        String continuationToken = null;
+        do {
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                    .bucket(bucket)
+                    .startAfter(continuationToken == null ? startAfter : null)
+                    .continuationToken(continuationToken)
+                    .maxKeys(Math.min(limit - entries.size(), DELETE_BATCH_SIZE))
+                    .build();
+            ListObjectsV2Response response = await(client.listObjectsV2(request), bucket);
+            for (S3Object object : response.contents()) {
+                entries.add(new BlobEntry(object.key(), object.size(), object.lastModified()));
+            }
+            continuationToken = Boolean.TRUE.equals(response.isTruncated()) ? response.nextContinuationToken() : null;
+        } while (continuationToken != null && entries.size() < limit);
+        return entries;
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    /**
+     * Wait for an S3 request, translating its failure. A 404 becomes a {@link NoSuchFileException}, like on a file system.
+     *
+     * @param future Pending request
+     * @param key    Key the request is about, used in error messages
+     * @return Result of the request
+     * @throws IOException if the request failed
+     */
+    private <T> T await(CompletableFuture<T> future, String key) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof S3Exception s3Exception && s3Exception.statusCode() == 404) {
+                NoSuchFileException notFound = new NoSuchFileException(key);
+                notFound.initCause(cause);
+                throw notFound;
+            }
+            throw new IOException("S3 request failed for '" + key + "'", cause);
+        }
+    }
+
+}
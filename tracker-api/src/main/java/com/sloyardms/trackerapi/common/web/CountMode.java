@@ -0,0 +1,31 @@
+package com.sloyardms.trackerapi.common.web;
+
+/**
+ * How the total of a paginated listing is computed, chosen with the {@code count} request parameter.
+ */
+public enum CountMode {
+
+    // No total, the response is a slice that only tells whether there is a next page
+    NONE,
+    // Total from a count query
+    EXACT,
+    // Total from the row estimate of the database planner
+    ESTIMATE;
+
+    /**
+     * Get the CountMode for the given parameter value (none, exact, estimate).
+     *
+     * @param value Parameter value, case-insensitive
+     * @return Matching CountMode
+     * @throws IllegalArgumentException if the value is not recognized
+     */
+    public static CountMode fromValue(String value) {
+        return switch (value.trim().toLowerCase()) {
+            case "none" -> NONE;
+            case "exact" -> EXACT;
+            case "estimate" -> ESTIMATE;
+            default -> throw new IllegalArgumentException("Unknown count mode: " + value);
+        };
+    }
+
+}
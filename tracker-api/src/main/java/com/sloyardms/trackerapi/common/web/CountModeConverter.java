@@ -0,0 +1,17 @@
+package com.sloyardms.trackerapi.common.web;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binds the {@code count} request parameter, whose values are lower case.
+ */
+@Component
+public class CountModeConverter implements Converter<String, CountMode> {
+
+    @Override
+    public CountMode convert(String source) {
+        return CountMode.fromValue(source);
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.sloyardms.trackerapi.common.web;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page of a keyset (cursor) paginated listing. There is no total count: the next page is requested with
+ * {@code nextCursor}, which is null on the last page.
+ *
+ * @param content    Rows of the page
+ * @param size       Requested page size
+ * @param nextCursor Cursor of the next page, or null if there are no more rows
+ */
+public record CursorPage<T>(List<T> content, int size, String nextCursor) {
+
+    /**
+     * Build a page from rows fetched with one extra row, which only tells whether there is a next page.
+     *
+     * @param rows   Rows fetched, up to size + 1
+     * @param size   Requested page size
+     * @param cursor Function giving the cursor of a row
+     * @return CursorPage with at most size rows
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, KeysetCursor> cursor) {
+        if (rows.size() <= size) {
+            return new CursorPage<>(rows, size, null);
+        }
+        List<T> content = rows.subList(0, size);
+        return new CursorPage<>(content, size, cursor.apply(content.getLast()).encode());
+    }
+
+    /**
+     * Convert the rows of the page, keeping the cursor.
+     *
+     * @param mapper Function converting a row
+     * @return CursorPage with the converted rows
+     */
+    public <R> CursorPage<R> map(Function<T, R> mapper) {
+        return new CursorPage<>(content.stream().map(mapper).toList(), size, nextCursor);
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.sloyardms.trackerapi.common.web;
+
+/**
+ * File to send as the body of a response.
+ *
+ * @param key         Key of the file in the {@link com.sloyardms.trackerapi.common.storage.BlobStore}
+ * @param contentType MIME type of the file
+ * @param etag        Strong entity tag of the file content, quoted
+ */
+public record FileResponse(String key, String contentType, String etag) {
+}
@@ -0,0 +1,198 @@
+package com.sloyardms.trackerapi.common.web;
+
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Writes files from the {@link BlobStore} to the response. Files stored on this node are sent without copying them
+ * through the heap: when the connector supports it (Tomcat NIO) the file is handed over to sendfile after the handler
+ * returns, otherwise it is transferred with {@link FileChannel#transferTo}. Files of remote backends are streamed.
+ * <p>
+ * Content already held in memory (e.g. cached thumbnails) can be written with the same headers.
+ * <p>
+ * Conditional requests (If-None-Match) are answered with 304 and a single byte range is answered with 206. Requests
+ * for several ranges get the whole file.
+ */
+@Component
+public class FileResponseWriter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // The content of a file is immutable for a given entity tag
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+
+    private final BlobStore blobStore;
+
+    public FileResponseWriter(BlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * Write the file to the response, honouring If-None-Match, Range and If-Range.
+     *
+     * @param request  Current request
+     * @param response Current response
+     * @param file     File to write
+     * @throws java.nio.file.NoSuchFileException if the file does not exist
+     * @throws IOException                       if the file could not be read or written
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, FileResponse file) throws IOException {
+        if (isNotModified(request, response, file)) {
+            return;
+        }
+
+        long[] range = resolveRange(request, response, file, blobStore.size(file.key()));
+        if (range == null) {
+            return;
+        }
+        long start = range[0];
+        long contentLength = range[1] - range[0] + 1;
+
+        Optional<Path> localPath = blobStore.localPath(file.key());
+        if (localPath.isEmpty()) {
+            try (InputStream inputStream = blobStore.open(file.key(), start, contentLength);
+                 OutputStream outputStream = response.getOutputStream()) {
+                inputStream.transferTo(outputStream);
+            }
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            //Tomcat writes the file once the response is committed; the end offset is exclusive
+            request.setAttribute(SENDFILE_FILENAME, localPath.get().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + contentLength);
+            return;
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(localPath.get(), StandardOpenOption.READ);
+             WritableByteChannel outputChannel = Channels.newChannel(response.getOutputStream())) {
+            long position = start;
+            long remaining = contentLength;
+            while (remaining > 0) {
+                long transferred = fileChannel.transferTo(position, remaining, outputChannel);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    /**
+     * Write content already held in memory for the file to the response, with the same conditional and range
+     * handling as {@link #write(HttpServletRequest, HttpServletResponse, FileResponse)}.
+     *
+     * @param request  Current request
+     * @param response Current response
+     * @param file     File the content was read from, for its MIME type and entity tag
+     * @param content  Content of the file, from its position to its limit
+     * @throws IOException if the content could not be written
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, FileResponse file, ByteBuffer content) throws IOException {
+        if (isNotModified(request, response, file)) {
+            return;
+        }
+
+        long[] range = resolveRange(request, response, file, content.remaining());
+        if (range == null) {
+            return;
+        }
+
+        ByteBuffer body = content.slice((int) range[0], (int) (range[1] - range[0] + 1));
+        try (WritableByteChannel outputChannel = Channels.newChannel(response.getOutputStream())) {
+            while (body.hasRemaining()) {
+                outputChannel.write(body);
+            }
+        }
+    }
+
+    /**
+     * Set the caching headers and the entity tag, and answer 304 when If-None-Match matches.
+     *
+     * @return true if the response is complete
+     */
+    private boolean isNotModified(HttpServletRequest request, HttpServletResponse response, FileResponse file) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        //Sets the ETag header, and the 304 status when it matches
+        return new ServletWebRequest(request, response).checkNotModified(file.etag());
+    }
+
+    /**
+     * Resolve the byte range to send and set the status and entity headers accordingly.
+     *
+     * @param length Length of the file
+     * @return First and last (inclusive) offsets to send, or null if there is no body to send
+     */
+    private long[] resolveRange(HttpServletRequest request, HttpServletResponse response, FileResponse file, long length) {
+        long start = 0;
+        long end = length - 1;
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && isRangeApplicable(request, file.etag())) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+
+            if (ranges.size() == 1) {
+                start = ranges.getFirst().getRangeStart(length);
+                end = ranges.getFirst().getRangeEnd(length);
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return null;
+                }
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            }
+        }
+
+        long contentLength = end - start + 1;
+        response.setContentType(file.contentType() != null ? file.contentType() : "application/octet-stream");
+        response.setContentLengthLong(contentLength);
+
+        if ("HEAD".equals(request.getMethod()) || contentLength <= 0) {
+            return null;
+        }
+        return new long[]{start, end};
+    }
+
+    /**
+     * Check the If-Range precondition. A Range is only applied when If-Range is absent or matches the entity tag.
+     *
+     * @param request Current request
+     * @param etag    Entity tag of the file
+     * @return true if the Range header should be applied
+     */
+    private boolean isRangeApplicable(HttpServletRequest request, String etag) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        return ifRange == null || ifRange.equals(etag);
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.sloyardms.trackerapi.common.web;
+
+import com.sloyardms.trackerapi.common.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a listing ordered by creation time, then UUID to break ties. Clients get it as an opaque string and
+ * send it back to get the rows after it.
+ *
+ * @param createdAt Creation time of the last row returned
+ * @param uuid      UUID of the last row returned
+ */
+public record KeysetCursor(Instant createdAt, UUID uuid) {
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * Encode the cursor as an opaque URL-safe string.
+     *
+     * @return Encoded cursor
+     */
+    public String encode() {
+        String value = createdAt.toString() + SEPARATOR + uuid;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor previously returned by {@link #encode()}.
+     *
+     * @param cursor Encoded cursor
+     * @return Decoded cursor
+     * @throws InvalidCursorException if the cursor was not produced by {@link #encode()}
+     */
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separatorIndex = value.indexOf(SEPARATOR);
+            if (separatorIndex == -1) {
+                throw new InvalidCursorException(cursor);
+            }
+            return new KeysetCursor(Instant.parse(value.substring(0, separatorIndex)), UUID.fromString(value.substring(separatorIndex + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.sloyardms.trackerapi.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ImageVariantProperties.class)
+public class ImageConfiguration {
+
+}
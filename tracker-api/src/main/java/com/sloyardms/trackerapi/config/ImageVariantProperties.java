@@ -0,0 +1,68 @@
+package com.sloyardms.trackerapi.config;
+
+import com.sloyardms.trackerapi.common.enums.ResizeMode;
+import com.sloyardms.trackerapi.common.image.ImageVariant;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+/**
+ * Additional image variants configured under {@code app.image.variants}. They are written next to the original
+ * image and derived from the same decoded image as the thumbnail and the original.
+ * <p>
+ * Every upload is encoded with these variants, so they are checked when the application starts rather than when an
+ * image is processed: a variant needs a name and a prefix, its resize mode defaults to fit-both and its quality to
+ * {@value #DEFAULT_QUALITY}, and it must have the dimensions its resize mode fits.
+ *
+ * @param variants List of additional variants, empty if none are configured
+ */
+@ConfigurationProperties(prefix = "app.image")
+public record ImageVariantProperties(List<ImageVariant> variants) {
+
+    public static final double DEFAULT_QUALITY = 0.9;
+
+    public ImageVariantProperties {
+        variants = (variants == null) ? List.of() : variants.stream().map(ImageVariantProperties::validate).toList();
+    }
+
+    /**
+     * Check a configured variant and fill in its defaults.
+     *
+     * @param variant Variant as configured
+     * @return Variant with its resize mode and quality set
+     * @throws IllegalArgumentException if the variant is incomplete or invalid
+     */
+    private static ImageVariant validate(ImageVariant variant) {
+        String name = variant.name();
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Image variants need a name (app.image.variants[n].name)");
+        }
+        if (variant.prefix() == null || variant.prefix().isBlank()) {
+            throw new IllegalArgumentException("Image variant [" + name + "] needs a prefix");
+        }
+        if (isNotPositive(variant.width()) || isNotPositive(variant.height())) {
+            throw new IllegalArgumentException("Image variant [" + name + "] needs a positive width and height");
+        }
+
+        ResizeMode resizeMode = (variant.resizeMode() == null) ? ResizeMode.FIT_BOTH : variant.resizeMode();
+        boolean missingWidth = variant.width() == null && resizeMode != ResizeMode.FIT_HEIGHT;
+        boolean missingHeight = variant.height() == null && resizeMode != ResizeMode.FIT_WIDTH;
+        if (!variant.keepsSourceSize() && (missingWidth || missingHeight)) {
+            throw new IllegalArgumentException("Image variant [" + name + "] resized with " + resizeMode
+                    + " needs a " + (missingWidth ? "width" : "height"));
+        }
+
+        double quality = (variant.quality() == null) ? DEFAULT_QUALITY : variant.quality();
+        if (quality <= 0 || quality > 1) {
+            throw new IllegalArgumentException("Image variant [" + name + "] needs a quality above 0.0 and up to 1.0");
+        }
+
+        return new ImageVariant(name, variant.prefix(), variant.width(), variant.height(), resizeMode, variant.format(),
+                quality);
+    }
+
+    private static boolean isNotPositive(Integer dimension) {
+        return dimension != null && dimension <= 0;
+    }
+
+}
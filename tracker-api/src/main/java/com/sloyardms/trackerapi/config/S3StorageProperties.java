@@ -0,0 +1,42 @@
+package com.sloyardms.trackerapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+
+/**
+ * Settings of the S3 image storage backend, under {@code app.storage.s3}. Only used when
+ * {@code app.storage.backend=s3}.
+ *
+ * @param bucket             Bucket the images are stored in
+ * @param endpoint           Endpoint of an S3-compatible store (e.g. MinIO). Null to use AWS S3.
+ * @param region             Region of the bucket
+ * @param pathStyleAccess    Address the bucket in the path instead of the host name, needed by most S3-compatible stores
+ * @param accessKey          Access key. Null to use the default AWS credentials chain.
+ * @param secretKey          Secret key
+ * @param multipartThreshold Files larger than this are uploaded in parts
+ * @param partSize           Size of each part of a multipart upload
+ * @param maxConcurrency     Maximum number of concurrent connections, shared by the parts of every upload
+ */
+@ConfigurationProperties(prefix = "app.storage.s3")
+public record S3StorageProperties(
+        String bucket,
+        URI endpoint,
+        String region,
+        boolean pathStyleAccess,
+        String accessKey,
+        String secretKey,
+        DataSize multipartThreshold,
+        DataSize partSize,
+        Integer maxConcurrency
+) {
+
+    public S3StorageProperties {
+        region = (region == null) ? "us-east-1" : region;
+        multipartThreshold = (multipartThreshold == null) ? DataSize.ofMegabytes(8) : multipartThreshold;
+        partSize = (partSize == null) ? DataSize.ofMegabytes(8) : partSize;
+        maxConcurrency = (maxConcurrency == null) ? 32 : maxConcurrency;
+    }
+
+}
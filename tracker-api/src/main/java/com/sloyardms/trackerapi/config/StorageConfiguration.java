@@ -0,0 +1,67 @@
+package com.sloyardms.trackerapi.config;
+
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.common.storage.FileSystemBlobStore;
+import com.sloyardms.trackerapi.common.storage.S3BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
+
+import java.nio.file.Path;
+
+/**
+ * Selects the image storage backend with {@code app.storage.backend}: {@code filesystem} (default) keeps the images
+ * under {@code app.storage.user-data-path}, {@code s3} keeps them in an S3-compatible bucket.
+ */
+@Configuration
+@EnableConfigurationProperties(S3StorageProperties.class)
+public class StorageConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.backend", havingValue = "filesystem", matchIfMissing = true)
+    public BlobStore fileSystemBlobStore(@Value("${app.storage.user-data-path}") String userDataPath) {
+        return new FileSystemBlobStore(Path.of(userDataPath));
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.storage.backend", havingValue = "s3")
+    public BlobStore s3BlobStore(S3StorageProperties properties) {
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+                .region(Region.of(properties.region()))
+                .forcePathStyle(properties.pathStyleAccess())
+                // Only send checksums S3 requires, S3-compatible stores do not all support the newer ones
+                .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+                .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED)
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(properties.maxConcurrency()))
+                .multipartEnabled(true)
+                .multipartConfiguration(MultipartConfiguration.builder()
+                        .thresholdInBytes(properties.multipartThreshold().toBytes())
+                        .minimumPartSizeInBytes(properties.partSize().toBytes())
+                        .build());
+
+        if (properties.endpoint() != null) {
+            builder.endpointOverride(properties.endpoint());
+        }
+        if (properties.accessKey() != null) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(properties.accessKey(), properties.secretKey())));
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.builder().build());
+        }
+
+        return new S3BlobStore(builder.build(), properties.bucket());
+    }
+
+}
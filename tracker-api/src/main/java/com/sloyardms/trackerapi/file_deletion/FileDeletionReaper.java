@@ -0,0 +1,258 @@
+package com.sloyardms.trackerapi.file_deletion;
+
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.file_deletion.entity.FileDeletion;
+import com.sloyardms.trackerapi.image_blob.ImageBlobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Drains the file deletion outbox in the background. Each run claims batches of rows, deletes their files in
+ * parallel and removes the rows that succeeded; failed rows are retried later with an exponential backoff.
+ * <p>
+ * Rows are claimed with {@code FOR UPDATE SKIP LOCKED} and leased for a while by pushing back their
+ * {@code available_at}, so a row is handled by one instance at a time without keeping a transaction open while the
+ * files are deleted. A crash in the middle of a batch only makes it run again once the lease expires.
+ * <p>
+ * Content-addressed files may be referenced again by a new upload of the same content. Their deletion holds a
+ * placeholder blob row for the content hash while the files are removed: a concurrent upload waits on it, then finds
+ * the files gone and encodes them again, and a content that is referenced again is left alone.
+ */
+@Component
+public class FileDeletionReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(FileDeletionReaper.class);
+
+    private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(30);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+    // How long claimed rows are hidden from other runs while their files are deleted
+    private static final Duration CLAIM_LEASE = Duration.ofMinutes(5);
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private final int BATCH_SIZE;
+
+    private final FileDeletionRepository fileDeletionRepository;
+    private final ImageBlobRepository imageBlobRepository;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    // Content-addressed deletions delete the files while holding the blob row, so they get a timeout of their own
+    private final TransactionTemplate contentTransactionTemplate;
+    private final ExecutorService executor;
+
+    // Metrics
+    private final Counter deletedCounter;
+    private final Counter failedCounter;
+
+    public FileDeletionReaper(
+            FileDeletionRepository fileDeletionRepository, ImageBlobRepository imageBlobRepository, BlobStore blobStore,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${app.storage.deletion.batch-size}") int batchSize,
+            @Value("${app.storage.deletion.parallelism}") int parallelism,
+            @Value("${app.storage.deletion.content-transaction-timeout}") Duration contentTransactionTimeout
+    ) {
+        this.fileDeletionRepository = fileDeletionRepository;
+        this.imageBlobRepository = imageBlobRepository;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.contentTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.contentTransactionTemplate.setTimeout((int) contentTransactionTimeout.toSeconds());
+        this.BATCH_SIZE = batchSize;
+        this.executor = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("file-deletion-", 0).factory());
+
+        this.deletedCounter = Counter.builder("storage.deletion.completed")
+                .description("Outbox file deletions completed")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("storage.deletion.failed")
+                .description("Outbox file deletions that failed and will be retried")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Delete the files of every outbox row that is due, one batch after the other.
+     */
+    @Scheduled(initialDelayString = "${app.storage.deletion.reaper-delay}", fixedDelayString = "${app.storage.deletion.reaper-delay}")
+    public void drain() {
+        try {
+            int claimed;
+            do {
+                claimed = drainBatch();
+            } while (claimed == BATCH_SIZE);
+        } catch (RuntimeException e) {
+            log.error("Failed to drain the file deletion outbox", e);
+        }
+    }
+
+    /**
+     * Claim one batch of due rows, delete their files in parallel outside any transaction, then remove the rows that
+     * succeeded and reschedule the others.
+     *
+     * @return Number of rows claimed
+     */
+    int drainBatch() {
+        Instant now = Instant.now();
+        List<FileDeletion> deletions = transactionTemplate.execute(status -> {
+            List<FileDeletion> claimed = fileDeletionRepository.claimBatch(now, BATCH_SIZE);
+            for (FileDeletion deletion : claimed) {
+                deletion.setAvailableAt(now.plus(CLAIM_LEASE));
+            }
+            return claimed;
+        });
+        if (deletions == null || deletions.isEmpty()) {
+            return 0;
+        }
+
+        // Files of the same content are deleted together, under a single hold of its blob row
+        Map<String, List<FileDeletion>> byContentHash = new LinkedHashMap<>();
+        List<Callable<IOException>> tasks = new ArrayList<>(deletions.size());
+        List<List<FileDeletion>> taskDeletions = new ArrayList<>(deletions.size());
+        for (FileDeletion deletion : deletions) {
+            if (deletion.getContentHash() == null || deletion.isRecursive()) {
+                tasks.add(() -> delete(deletion));
+                taskDeletions.add(List.of(deletion));
+            } else {
+                byContentHash.computeIfAbsent(deletion.getContentHash(), hash -> new ArrayList<>()).add(deletion);
+            }
+        }
+        for (Map.Entry<String, List<FileDeletion>> entry : byContentHash.entrySet()) {
+            tasks.add(() -> deleteContent(entry.getKey(), entry.getValue()));
+            taskDeletions.add(entry.getValue());
+        }
+
+        List<Long> completed = new ArrayList<>();
+        List<FileDeletion> failed = new ArrayList<>();
+        List<Future<IOException>> results = invokeAll(tasks);
+        Instant finishedAt = Instant.now();
+        for (int i = 0; i < tasks.size(); i++) {
+            IOException error = getResult(results.get(i));
+            for (FileDeletion deletion : taskDeletions.get(i)) {
+                if (error == null) {
+                    completed.add(deletion.getId());
+                } else {
+                    log.error("Failed to delete '{}' (attempt {})", deletion.getBlobKey(), deletion.getAttempts() + 1, error);
+                    deletion.setAttempts(deletion.getAttempts() + 1);
+                    deletion.setLastError(truncate(String.valueOf(error.getMessage())));
+                    deletion.setAvailableAt(finishedAt.plus(backoff(deletion.getAttempts())));
+                    failed.add(deletion);
+                }
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            fileDeletionRepository.deleteAllByIdInBatch(completed);
+            fileDeletionRepository.saveAll(failed);
+        });
+        deletedCounter.increment(completed.size());
+        failedCounter.increment(failed.size());
+        return deletions.size();
+    }
+
+    /**
+     * Delete the file or folder of an outbox row that is not content-addressed.
+     *
+     * @param deletion Outbox row
+     * @return null if the deletion succeeded, the error otherwise
+     */
+    private IOException delete(FileDeletion deletion) {
+        try {
+            if (deletion.isRecursive()) {
+                blobStore.deleteAll(deletion.getBlobKey());
+            } else {
+                blobStore.delete(deletion.getBlobKey());
+            }
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Delete the files of a content, unless it is referenced again. A placeholder blob row with no reference is
+     * inserted for the hash and removed once the files are gone, in one transaction: an upload taking a reference on
+     * the same content in the meantime waits for that transaction, and if the content was referenced first, the
+     * placeholder is not inserted and the files are kept.
+     *
+     * @param contentHash SHA-256 of the content
+     * @param deletions   Outbox rows of the files of that content
+     * @return null if the deletion succeeded or was not needed, the error otherwise
+     */
+    private IOException deleteContent(String contentHash, List<FileDeletion> deletions) {
+        try {
+            contentTransactionTemplate.executeWithoutResult(status -> {
+                if (imageBlobRepository.insertPlaceholder(contentHash) == 0) {
+                    log.debug("Content '{}' is referenced again, keeping its files", contentHash);
+                    return;
+                }
+                try {
+                    for (FileDeletion deletion : deletions) {
+                        blobStore.delete(deletion.getBlobKey());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                imageBlobRepository.deleteIfUnreferenced(contentHash);
+            });
+            return null;
+        } catch (UncheckedIOException e) {
+            return e.getCause();
+        }
+    }
+
+    private List<Future<IOException>> invokeAll(List<Callable<IOException>> tasks) {
+        try {
+            return executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while deleting files", e);
+        }
+    }
+
+    private IOException getResult(Future<IOException> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while deleting files", e);
+        } catch (ExecutionException e) {
+            return new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Get the delay before retrying a row, doubling with each failed attempt.
+     *
+     * @param attempts Number of failed attempts
+     * @return Delay before the next attempt
+     */
+    private Duration backoff(int attempts) {
+        Duration backoff = INITIAL_BACKOFF.multipliedBy(1L << Math.min(attempts - 1, 16));
+        return backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff;
+    }
+
+    private String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.sloyardms.trackerapi.file_deletion;
+
+import com.sloyardms.trackerapi.file_deletion.entity.FileDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface FileDeletionRepository extends JpaRepository<FileDeletion, Long> {
+
+    // Rows locked by another reaper are skipped, so several instances can drain the outbox side by side
+    @Query(value = """
+        SELECT * FROM file_deletion_outbox
+        WHERE available_at <= :now
+        ORDER BY id
+        LIMIT :limit
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<FileDeletion> claimBatch(Instant now, int limit);
+
+}
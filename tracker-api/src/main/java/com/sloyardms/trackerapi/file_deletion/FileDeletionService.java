@@ -0,0 +1,58 @@
+package com.sloyardms.trackerapi.file_deletion;
+
+import com.sloyardms.trackerapi.file_deletion.entity.FileDeletion;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Records image files to delete in the outbox, in the transaction of the caller. Nothing is removed from the blob
+ * store until that transaction commits and the {@link FileDeletionReaper} picks the rows up; a rollback discards them
+ * together with the rest of the transaction.
+ */
+@Service
+public class FileDeletionService {
+
+    private final FileDeletionRepository fileDeletionRepository;
+
+    public FileDeletionService(FileDeletionRepository fileDeletionRepository) {
+        this.fileDeletionRepository = fileDeletionRepository;
+    }
+
+    /**
+     * Schedule the deletion of image files.
+     *
+     * @param keys        Keys of the files
+     * @param contentHash Hash of the content the files belong to if they are content-addressed, null otherwise
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleteFiles(Collection<String> keys, String contentHash) {
+        Instant now = Instant.now();
+        List<FileDeletion> deletions = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            deletions.add(new FileDeletion(null, key, false, contentHash, 0, null, now, now));
+        }
+        fileDeletionRepository.saveAll(deletions);
+    }
+
+    /**
+     * Schedule the deletion of every image file under a folder.
+     *
+     * @param folderKey Key of the folder, without trailing '/'
+     * @throws IllegalArgumentException if the key is blank, which would delete every file
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleteFolder(String folderKey) {
+        if (folderKey == null || folderKey.isBlank()) {
+            throw new IllegalArgumentException("The folder key must not be blank");
+        }
+        Instant now = Instant.now();
+        fileDeletionRepository.save(new FileDeletion(null, folderKey, true, null, 0, null, now, now));
+    }
+
+}
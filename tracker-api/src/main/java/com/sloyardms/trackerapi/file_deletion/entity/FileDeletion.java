@@ -0,0 +1,53 @@
+package com.sloyardms.trackerapi.file_deletion.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Image file, or folder of image files, to delete from the blob store once the transaction that deleted its rows has
+ * committed.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "file_deletion_outbox", indexes = {
+        @Index(name = "file_deletion_outbox_available_at_index", columnList = "available_at")
+})
+public class FileDeletion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false, updatable = false)
+    private Long id;
+
+    @Column(name = "blob_key", nullable = false, updatable = false, length = 1024)
+    private String blobKey;
+
+    // Delete every blob under the key, rather than the key itself
+    @Column(name = "recursive", nullable = false, updatable = false)
+    private boolean recursive;
+
+    // Set for content-addressed files, which are kept if the content was uploaded again in the meantime
+    @Column(name = "content_hash", updatable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    @Column(name = "available_at", nullable = false)
+    private Instant availableAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+}
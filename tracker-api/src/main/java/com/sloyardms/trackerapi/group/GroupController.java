@@ -1,12 +1,13 @@
 package com.sloyardms.trackerapi.group;
 
+import com.sloyardms.trackerapi.common.web.CountMode;
 import com.sloyardms.trackerapi.group.dto.GroupCreateDto;
 import com.sloyardms.trackerapi.group.dto.GroupDto;
 import com.sloyardms.trackerapi.group.dto.GroupUpdateDto;
 import com.sloyardms.trackerapi.security.AuthUtils;
 import jakarta.validation.Valid;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -35,10 +36,11 @@ public class GroupController {
     }
 
     @GetMapping("/user/{userUuid}")
-    public ResponseEntity<Page<GroupDto>> getAllByUserUuid(
+    public ResponseEntity<Slice<GroupDto>> getAllByUserUuid(
             @PathVariable UUID userUuid,
-            @PageableDefault(size = 10, sort = "name") Pageable pageable) {
-        Page<GroupDto> groups = groupService.getAllByUserUuid(userUuid, pageable);
+            @PageableDefault(size = 10, sort = "name") Pageable pageable,
+            @RequestParam(defaultValue = "exact") CountMode count) {
+        Slice<GroupDto> groups = groupService.getAllByUserUuid(userUuid, pageable, count);
         return ResponseEntity.ok(groups);
     }
 
@@ -3,8 +3,11 @@ package com.sloyardms.trackerapi.group;
 import com.sloyardms.trackerapi.group.entity.Group;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -12,4 +15,10 @@ public interface GroupRepository extends JpaRepository<Group, UUID> {
 
     Page<Group> findAllByUserUuid(UUID userUuid, Pageable pageable);
 
+    Slice<Group> findSliceByUserUuid(UUID userUuid, Pageable pageable);
+
+    // PostgreSQL plan of the rows of findAllByUserUuid, for its estimated total
+    @Query(value = "EXPLAIN SELECT 1 FROM groups WHERE user_uuid = :userUuid", nativeQuery = true)
+    List<String> explainAllByUserUuid(UUID userUuid);
+
 }
@@ -1,5 +1,7 @@
 package com.sloyardms.trackerapi.group;
 
+import com.sloyardms.trackerapi.common.service.PageCounter;
+import com.sloyardms.trackerapi.common.web.CountMode;
 import com.sloyardms.trackerapi.group.dto.GroupCreateDto;
 import com.sloyardms.trackerapi.group.dto.GroupDto;
 import com.sloyardms.trackerapi.group.dto.GroupUpdateDto;
@@ -9,8 +11,8 @@ import com.sloyardms.trackerapi.group.exception.GroupNotFoundException;
 import com.sloyardms.trackerapi.group.mapper.GroupMapper;
 import com.sloyardms.trackerapi.user.exception.UserNotFoundException;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,10 +23,12 @@ public class GroupService {
 
     private final GroupRepository groupRepository;
     private final GroupMapper groupMapper;
+    private final PageCounter pageCounter;
 
-    public GroupService(GroupRepository groupRepository, GroupMapper groupMapper){
+    public GroupService(GroupRepository groupRepository, GroupMapper groupMapper, PageCounter pageCounter){
         this.groupRepository = groupRepository;
         this.groupMapper = groupMapper;
+        this.pageCounter = pageCounter;
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -45,8 +49,11 @@ public class GroupService {
     }
 
     @Transactional(readOnly = true)
-    public Page<GroupDto> getAllByUserUuid(UUID userUuid, Pageable pageable) {
-        Page<Group> groups = groupRepository.findAllByUserUuid(userUuid, pageable);
+    public Slice<GroupDto> getAllByUserUuid(UUID userUuid, Pageable pageable, CountMode count) {
+        Slice<Group> groups = pageCounter.fetch(count, pageable,
+                p -> groupRepository.findAllByUserUuid(userUuid, p),
+                p -> groupRepository.findSliceByUserUuid(userUuid, p),
+                () -> groupRepository.explainAllByUserUuid(userUuid));
         return groups.map(groupMapper::toDto);
     }
 
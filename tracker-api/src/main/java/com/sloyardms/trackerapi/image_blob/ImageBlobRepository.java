@@ -0,0 +1,46 @@
+package com.sloyardms.trackerapi.image_blob;
+
+import com.sloyardms.trackerapi.image_blob.entity.ImageBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, String> {
+
+    @Query("SELECT b.contentHash FROM ImageBlob b WHERE b.contentHash IN :contentHashes")
+    List<String> findExistingContentHashes(Collection<String> contentHashes);
+
+    @Modifying
+    @Query("UPDATE ImageBlob b SET b.refCount = b.refCount + 1 WHERE b.contentHash = :contentHash")
+    int incrementRefCount(String contentHash);
+
+    // No conflict target, so the statement also runs on H2 in PostgreSQL mode
+    @Modifying
+    @Query(value = """
+        INSERT INTO image_blobs (content_hash, ref_count, created_at)
+        VALUES (:contentHash, 1, CURRENT_TIMESTAMP)
+        ON CONFLICT DO NOTHING
+    """, nativeQuery = true)
+    int insertIfAbsent(String contentHash);
+
+    // Held by the file deletion reaper while it removes the files of the content, see FileDeletionReaper
+    @Modifying
+    @Query(value = """
+        INSERT INTO image_blobs (content_hash, ref_count, created_at)
+        VALUES (:contentHash, 0, CURRENT_TIMESTAMP)
+        ON CONFLICT DO NOTHING
+    """, nativeQuery = true)
+    int insertPlaceholder(String contentHash);
+
+    @Modifying
+    @Query("UPDATE ImageBlob b SET b.refCount = b.refCount - 1 WHERE b.contentHash = :contentHash AND b.refCount > 0")
+    int decrementRefCount(String contentHash);
+
+    @Modifying
+    @Query("DELETE FROM ImageBlob b WHERE b.contentHash = :contentHash AND b.refCount = 0")
+    int deleteIfUnreferenced(String contentHash);
+
+}
@@ -0,0 +1,52 @@
+package com.sloyardms.trackerapi.image_blob;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reference counting of the content-addressed image blobs. Both operations lock the blob row until the surrounding
+ * transaction ends, so a blob cannot be removed while another upload of the same content is taking a reference.
+ */
+@Service
+public class ImageBlobService {
+
+    private final ImageBlobRepository imageBlobRepository;
+
+    public ImageBlobService(ImageBlobRepository imageBlobRepository) {
+        this.imageBlobRepository = imageBlobRepository;
+    }
+
+    /**
+     * Take a reference on the blob with the given hash, creating it if it does not exist.
+     *
+     * @param contentHash SHA-256 of the content
+     * @return true if the blob already existed, false if this is its first reference
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean acquire(String contentHash) {
+        if (imageBlobRepository.incrementRefCount(contentHash) > 0) {
+            return true;
+        }
+        if (imageBlobRepository.insertIfAbsent(contentHash) > 0) {
+            return false;
+        }
+        //Inserted by a concurrent upload of the same content after our update
+        imageBlobRepository.incrementRefCount(contentHash);
+        return true;
+    }
+
+    /**
+     * Release a reference on the blob with the given hash, removing the blob row when it was the last one.
+     *
+     * @param contentHash SHA-256 of the content
+     * @return true if no reference is left and the blob files can be deleted
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean release(String contentHash) {
+        if (imageBlobRepository.decrementRefCount(contentHash) == 0) {
+            return false;
+        }
+        return imageBlobRepository.deleteIfUnreferenced(contentHash) > 0;
+    }
+
+}
@@ -10,6 +10,7 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -52,6 +53,11 @@ public class NoteController {
                 .fromPath("/api/v1/note-images/{uuid}")
                 .buildAndExpand(savedNoteImage.getUuid())
                 .toUri();
-        return ResponseEntity.created(location).body(savedNoteImage);
+        return ResponseEntity.accepted().location(location).body(savedNoteImage);
+    }
+
+    @PostMapping("/{noteUuid}/images:batch")
+    public ResponseEntity<List<NoteImageDto>> uploadNoteImages(@PathVariable UUID noteUuid, @RequestParam("files") List<MultipartFile> files) throws Exception{
+        return ResponseEntity.accepted().body(noteService.saveNoteImages(noteUuid, files));
     }
 }
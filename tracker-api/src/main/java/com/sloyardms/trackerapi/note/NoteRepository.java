@@ -1,14 +1,66 @@
 package com.sloyardms.trackerapi.note;
 
 import com.sloyardms.trackerapi.note.entity.Note;
+import com.sloyardms.trackerapi.note.projection.BookmarkNoteProjection;
+import com.sloyardms.trackerapi.note.projection.NoteProjection;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 public interface NoteRepository extends JpaRepository<Note, UUID> {
 
     Page<Note> findAllByBookmarkUuid(UUID bookmarkUuid, Pageable pageable);
 
+    @Query(value = """
+        SELECT new com.sloyardms.trackerapi.note.projection.NoteProjection(n.uuid, n.note, n.createdAt, n.updatedAt)
+        FROM Note n
+        WHERE n.bookmark.uuid = :bookmarkUuid
+    """, countQuery = "SELECT count(n) FROM Note n WHERE n.bookmark.uuid = :bookmarkUuid")
+    Page<NoteProjection> findProjectionsByBookmarkUuid(UUID bookmarkUuid, Pageable pageable);
+
+    @Query("""
+        SELECT new com.sloyardms.trackerapi.note.projection.NoteProjection(n.uuid, n.note, n.createdAt, n.updatedAt)
+        FROM Note n
+        WHERE n.bookmark.uuid = :bookmarkUuid
+    """)
+    Slice<NoteProjection> findProjectionSliceByBookmarkUuid(UUID bookmarkUuid, Pageable pageable);
+
+    // PostgreSQL plan of the rows of findProjectionsByBookmarkUuid, for its estimated total
+    @Query(value = "EXPLAIN SELECT 1 FROM bookmark_notes WHERE bookmark_uuid = :bookmarkUuid", nativeQuery = true)
+    List<String> explainProjectionsByBookmarkUuid(UUID bookmarkUuid);
+
+    /**
+     * Newest notes of a bookmark, each with the bookmark. The result is empty if the bookmark does not exist, and a
+     * single row without note if it has no notes.
+     */
+    @Query("""
+        SELECT new com.sloyardms.trackerapi.note.projection.BookmarkNoteProjection(
+            b.uuid, n.uuid, n.note, n.createdAt, n.updatedAt)
+        FROM Bookmark b LEFT JOIN Note n ON n.bookmark = b
+        WHERE b.uuid = :bookmarkUuid
+        ORDER BY n.createdAt DESC, n.uuid DESC
+    """)
+    List<BookmarkNoteProjection> findNewestByBookmarkUuid(UUID bookmarkUuid, Limit limit);
+
+    /**
+     * Notes of a bookmark older than the given position, newest first, each with the bookmark. The result is empty if
+     * the bookmark does not exist, and a single row without note if there are no more notes.
+     */
+    @Query("""
+        SELECT new com.sloyardms.trackerapi.note.projection.BookmarkNoteProjection(
+            b.uuid, n.uuid, n.note, n.createdAt, n.updatedAt)
+        FROM Bookmark b
+        LEFT JOIN Note n ON n.bookmark = b AND (n.createdAt, n.uuid) < (:createdAt, :uuid)
+        WHERE b.uuid = :bookmarkUuid
+        ORDER BY n.createdAt DESC, n.uuid DESC
+    """)
+    List<BookmarkNoteProjection> findByBookmarkUuidBefore(UUID bookmarkUuid, Instant createdAt, UUID uuid, Limit limit);
+
 }
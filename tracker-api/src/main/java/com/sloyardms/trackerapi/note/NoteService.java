@@ -1,25 +1,34 @@
 package com.sloyardms.trackerapi.note;
 
 import com.sloyardms.trackerapi.bookmark.entity.Bookmark;
+import com.sloyardms.trackerapi.bookmark.exception.BookmarkNotFoundException;
 import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.common.service.PageCounter;
+import com.sloyardms.trackerapi.common.web.CountMode;
+import com.sloyardms.trackerapi.common.web.CursorPage;
+import com.sloyardms.trackerapi.common.web.KeysetCursor;
+import com.sloyardms.trackerapi.file_deletion.FileDeletionService;
 import com.sloyardms.trackerapi.note.dto.NoteCreateDto;
 import com.sloyardms.trackerapi.note.dto.NoteDto;
 import com.sloyardms.trackerapi.note.dto.NoteUpdateDto;
 import com.sloyardms.trackerapi.note.entity.Note;
-import com.sloyardms.trackerapi.note.exception.NoteFolderDeletionException;
 import com.sloyardms.trackerapi.note.exception.NoteNotFoundException;
 import com.sloyardms.trackerapi.note.mapper.NoteMapper;
+import com.sloyardms.trackerapi.note.projection.BookmarkNoteProjection;
+import com.sloyardms.trackerapi.note.projection.NoteProjection;
 import com.sloyardms.trackerapi.note_image.NoteImageService;
 import com.sloyardms.trackerapi.note_image.dto.NoteImageDto;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -31,12 +40,17 @@ public class NoteService {
     private final NoteMapper noteMapper;
     private final NoteImageService noteImageService;
     private final ImageStorageService imageStorageService;
+    private final FileDeletionService fileDeletionService;
+    private final PageCounter pageCounter;
 
-    public NoteService(NoteRepository noteRepository, NoteMapper noteMapper, NoteImageService noteImageService, ImageStorageService imageStorageService) {
+    public NoteService(NoteRepository noteRepository, NoteMapper noteMapper, NoteImageService noteImageService, ImageStorageService imageStorageService,
+                       FileDeletionService fileDeletionService, PageCounter pageCounter) {
         this.noteRepository = noteRepository;
         this.noteMapper = noteMapper;
         this.noteImageService = noteImageService;
         this.imageStorageService = imageStorageService;
+        this.fileDeletionService = fileDeletionService;
+        this.pageCounter = pageCounter;
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -61,9 +75,44 @@ public class NoteService {
     }
 
     @Transactional(readOnly = true)
-    public Page<NoteDto> getAllNotesByBookmarkUuid(UUID bookmarkUuid, Pageable pageable) {
-        Page<Note> notes = noteRepository.findAllByBookmarkUuid(bookmarkUuid, pageable);
-        return notes.map(noteMapper::toDto);
+    public Slice<NoteDto> getAllNotesByBookmarkUuid(UUID bookmarkUuid, Pageable pageable, CountMode count) {
+        Slice<NoteProjection> notes = pageCounter.fetch(count, pageable,
+                p -> noteRepository.findProjectionsByBookmarkUuid(bookmarkUuid, p),
+                p -> noteRepository.findProjectionSliceByBookmarkUuid(bookmarkUuid, p),
+                () -> noteRepository.explainProjectionsByBookmarkUuid(bookmarkUuid));
+        return notes.map(noteMapper::fromProjection);
+    }
+
+    /**
+     * Get a page of the notes of a bookmark, newest first, after the position of a cursor. The bookmark is checked
+     * in the same query that reads the notes.
+     *
+     * @param bookmarkUuid Bookmark UUID
+     * @param after        Position of the last note of the previous page, or null for the first page
+     * @param pageSize     Page size
+     * @return CursorPage with the notes
+     * @throws BookmarkNotFoundException if the bookmark does not exist
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<NoteDto> getNotesByBookmarkUuidAfter(UUID bookmarkUuid, KeysetCursor after, int pageSize) {
+        //One extra row tells whether there is a next page
+        Limit limit = Limit.of(pageSize + 1);
+
+        List<BookmarkNoteProjection> rows = (after == null)
+                ? noteRepository.findNewestByBookmarkUuid(bookmarkUuid, limit)
+                : noteRepository.findByBookmarkUuidBefore(bookmarkUuid, after.createdAt(), after.uuid(), limit);
+
+        //Every row carries the bookmark, so no row means no bookmark
+        if (rows.isEmpty()) {
+            throw new BookmarkNotFoundException(bookmarkUuid);
+        }
+
+        List<NoteProjection> notes = rows.stream()
+                .filter(BookmarkNoteProjection::hasNote)
+                .map(BookmarkNoteProjection::toNoteProjection)
+                .toList();
+        return CursorPage.of(notes, pageSize, n -> new KeysetCursor(n.createdAt(), n.uuid()))
+                .map(noteMapper::fromProjection);
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -93,12 +142,8 @@ public class NoteService {
         UUID bookmarkUuid = foundBookmark.getUuid();
         UUID userUuid = foundBookmark.getUserUuid();
 
-        // Delete note folder
-        try {
-            imageStorageService.deleteNoteDirectory(userUuid, bookmarkUuid, uuid);
-        } catch (Exception e){
-            throw new NoteFolderDeletionException(e);
-        }
+        // Schedule the deletion of the note folder, the files are removed once the rows are gone
+        fileDeletionService.deleteFolder(imageStorageService.generateNoteFolderPath(userUuid, bookmarkUuid, uuid));
 
         //Delete the note and note images
         noteImageService.deleteByNoteUuid(uuid);
@@ -114,4 +159,13 @@ public class NoteService {
 
         return noteImageService.create(userUuid, bookmarkUuid, noteUuid, imageFile);
     }
+
+    @Transactional(rollbackFor = Exception.class)
+    public List<NoteImageDto> saveNoteImages(UUID noteUuid, List<MultipartFile> imageFiles) throws Exception {
+        //The note, bookmark and user are resolved once for the whole batch
+        Note foundNote = noteRepository.findById(noteUuid).orElseThrow(()-> new NoteNotFoundException(noteUuid));
+        Bookmark foundBookmark = foundNote.getBookmark();
+
+        return noteImageService.createAll(foundBookmark.getUserUuid(), foundBookmark.getUuid(), noteUuid, imageFiles);
+    }
 }
@@ -19,7 +19,8 @@ import java.util.UUID;
 @AllArgsConstructor
 @Entity
 @Table(name = "bookmark_notes", indexes = {
-    @Index(name = "bookmark_notes_bookmark_uuid_index", columnList = "bookmark_uuid")
+    @Index(name = "bookmark_notes_bookmark_uuid_index", columnList = "bookmark_uuid"),
+    @Index(name = "bookmark_notes_bookmark_uuid_created_at_index", columnList = "bookmark_uuid, created_at DESC, note_uuid DESC")
 })
 public class Note extends Auditable {
 
@@ -30,16 +30,4 @@ public class NoteExceptionHandler {
         );
     }
 
-    @ExceptionHandler(NoteFolderDeletionException.class)
-    public ResponseEntity<ProblemDetail> handleNoteFolderDeletionException(NoteFolderDeletionException ex, HttpServletRequest request){
-        log.error("Error deleting folder at [{}]: {}", request.getRequestURI(), ex.getMessage(), ex);
-        return ProblemDetailUtil.buildProblemDetail(
-                HttpStatus.NOT_FOUND,
-                "/folder-deletion-error",
-                "Error deleting folder",
-                ex.getMessage(),
-                request.getRequestURI()
-        );
-    }
-
 }
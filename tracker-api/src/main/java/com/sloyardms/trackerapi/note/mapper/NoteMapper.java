@@ -4,6 +4,7 @@ import com.sloyardms.trackerapi.note.dto.NoteCreateDto;
 import com.sloyardms.trackerapi.note.dto.NoteDto;
 import com.sloyardms.trackerapi.note.dto.NoteUpdateDto;
 import com.sloyardms.trackerapi.note.entity.Note;
+import com.sloyardms.trackerapi.note.projection.NoteProjection;
 import org.mapstruct.*;
 
 @Mapper(componentModel = "spring")
@@ -11,6 +12,8 @@ public interface NoteMapper {
 
     NoteDto toDto(Note note);
 
+    NoteDto fromProjection(NoteProjection projection);
+
     @Mapping(target = "uuid", ignore = true)
     @Mapping(target = "bookmark", ignore = true)
     @Mapping(target = "images", ignore = true)
@@ -0,0 +1,21 @@
+package com.sloyardms.trackerapi.note.projection;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A bookmark with one of its notes, read with a constructor expression. The bookmark is outer joined to its notes,
+ * so a bookmark without notes is read as a single row whose note columns are null.
+ */
+public record BookmarkNoteProjection(UUID bookmarkUuid, UUID noteUuid, String note, Instant createdAt,
+                                     Instant updatedAt) {
+
+    public boolean hasNote() {
+        return noteUuid != null;
+    }
+
+    public NoteProjection toNoteProjection() {
+        return new NoteProjection(noteUuid, note, createdAt, updatedAt);
+    }
+
+}
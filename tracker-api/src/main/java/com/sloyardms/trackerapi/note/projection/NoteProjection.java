@@ -0,0 +1,10 @@
+package com.sloyardms.trackerapi.note.projection;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Columns of a note, read with a constructor expression for read-only endpoints.
+ */
+public record NoteProjection(UUID uuid, String note, Instant createdAt, Instant updatedAt) {
+}
@@ -1,9 +1,23 @@
 package com.sloyardms.trackerapi.note_image;
 
+import com.sloyardms.trackerapi.common.enums.ImageType;
+import com.sloyardms.trackerapi.common.service.ImageRenditionService;
+import com.sloyardms.trackerapi.common.web.FileResponse;
+import com.sloyardms.trackerapi.common.web.FileResponseWriter;
 import com.sloyardms.trackerapi.note_image.dto.NoteImageDto;
+import com.sloyardms.trackerapi.note_image.exception.NoteImageNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -11,9 +25,16 @@ import java.util.UUID;
 public class NoteImageController {
 
     private final NoteImageService noteImageService;
+    private final FileResponseWriter fileResponseWriter;
+    private final NoteImageThumbnailCache noteImageThumbnailCache;
+    private final ImageRenditionService imageRenditionService;
 
-    public NoteImageController(NoteImageService noteImageService) {
+    public NoteImageController(NoteImageService noteImageService, FileResponseWriter fileResponseWriter,
+                               NoteImageThumbnailCache noteImageThumbnailCache, ImageRenditionService imageRenditionService) {
         this.noteImageService = noteImageService;
+        this.fileResponseWriter = fileResponseWriter;
+        this.noteImageThumbnailCache = noteImageThumbnailCache;
+        this.imageRenditionService = imageRenditionService;
     }
 
     @GetMapping("/ping")
@@ -26,10 +47,69 @@ public class NoteImageController {
         return ResponseEntity.ok(noteImageService.getById(uuid));
     }
 
+    @GetMapping("/{uuid}/thumbnail")
+    public void getThumbnail(@PathVariable UUID uuid, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeImage(uuid, ImageType.THUMBNAIL, request, response);
+    }
+
+    @GetMapping("/{uuid}/original")
+    public void getOriginal(@PathVariable UUID uuid, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeImage(uuid, ImageType.ORIGINAL_IMAGE, request, response);
+    }
+
+    @GetMapping(value = "/{uuid}", params = "w")
+    public void getRendition(@PathVariable UUID uuid, @RequestParam("w") int width, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        FileResponse original = noteImageService.getImageFile(uuid, ImageType.ORIGINAL_IMAGE, List.of());
+        try {
+            fileResponseWriter.write(request, response, imageRenditionService.getRendition(original, width));
+        } catch (NoSuchFileException e) {
+            throw new NoteImageNotFoundException(uuid, e);
+        }
+    }
+
     @DeleteMapping("/{uuid}")
     public ResponseEntity<Void> delete(@PathVariable UUID uuid){
         noteImageService.delete(uuid);
         return ResponseEntity.noContent().build();
     }
 
+    private void writeImage(UUID uuid, ImageType imageType, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<MediaType> acceptable = List.of();
+        if (imageType == ImageType.THUMBNAIL) {
+            // The thumbnail encoding depends on the Accept header, shared caches must key on it
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            acceptable = parseAccept(request.getHeader(HttpHeaders.ACCEPT));
+        }
+
+        FileResponse file = noteImageService.getImageFile(uuid, imageType, acceptable);
+        try {
+            ByteBuffer cached = (imageType == ImageType.THUMBNAIL) ? noteImageThumbnailCache.get(uuid, file) : null;
+            if (cached != null) {
+                fileResponseWriter.write(request, response, file, cached);
+            } else {
+                fileResponseWriter.write(request, response, file);
+            }
+        } catch (NoSuchFileException e) {
+            throw new NoteImageNotFoundException(uuid, e);
+        }
+    }
+
+    /**
+     * Parse the Accept header. A missing or malformed header accepts anything.
+     *
+     * @param accept Value of the Accept header, may be null
+     * @return List with the accepted media types, empty if any type is accepted
+     */
+    private List<MediaType> parseAccept(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return List.of();
+        }
+        try {
+            return MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return List.of();
+        }
+    }
+
 }
@@ -0,0 +1,51 @@
+package com.sloyardms.trackerapi.note_image;
+
+import com.sloyardms.trackerapi.note_image.entity.NoteImage;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Plain JDBC access to note images, for writes that would otherwise issue one statement per row through JPA.
+ * Runs in the current JPA transaction.
+ */
+@Repository
+public class NoteImageJdbcRepository {
+
+    private static final String INSERT_SQL = """
+        INSERT INTO bookmark_notes_images (image_uuid, note_uuid, thumbnail_path, thumbnail_mimetype, original_image_path,
+            original_image_mimetype, processing_status, content_hash, created_at, updated_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NoteImageJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert the rows of new note images with a single JDBC batch.
+     *
+     * @param noteUuid   UUID of the note the images belong to
+     * @param noteImages Note images to insert, with their audit timestamps set
+     */
+    public void insertAll(UUID noteUuid, List<NoteImage> noteImages) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, noteImages, noteImages.size(), (ps, noteImage) -> {
+            ps.setObject(1, noteImage.getUuid());
+            ps.setObject(2, noteUuid);
+            ps.setString(3, noteImage.getThumbnailPath());
+            ps.setString(4, noteImage.getThumbnailMimeType());
+            ps.setString(5, noteImage.getOriginalImagePath());
+            ps.setString(6, noteImage.getOriginalImageMimeType());
+            ps.setString(7, noteImage.getStatus().name());
+            ps.setString(8, noteImage.getContentHash());
+            ps.setTimestamp(9, Timestamp.from(noteImage.getCreatedAt()));
+            ps.setTimestamp(10, Timestamp.from(noteImage.getUpdatedAt()));
+        });
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.sloyardms.trackerapi.note_image;
+
+import com.sloyardms.trackerapi.note_image.exception.ImageProcessingQueueFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Bounded queue of note images waiting to be processed. Tasks run on a fixed number of platform-thread workers,
+ * and a full queue rejects new uploads instead of letting them pile up.
+ */
+@Component
+public class NoteImageProcessingQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteImageProcessingQueue.class);
+
+    private final NoteImageProcessor noteImageProcessor;
+    private final ThreadPoolExecutor executor;
+
+    // One slot per worker plus one per queue position, so an accepted task can always be submitted
+    private final Semaphore slots;
+
+    // Metrics
+    private final Timer queueTimer;
+    private final Counter rejectedCounter;
+
+    public NoteImageProcessingQueue(
+            NoteImageProcessor noteImageProcessor, MeterRegistry meterRegistry,
+            @Value("${app.image.processing.workers}") int workers,
+            @Value("${app.image.processing.queue-capacity}") int queueCapacity
+    ) {
+        this.noteImageProcessor = noteImageProcessor;
+        // Platform threads: the work is CPU bound, and the decode CPU budget needs the CPU time of the thread
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("note-image-worker-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.slots = new Semaphore(workers + queueCapacity);
+
+        this.queueTimer = NoteImageProcessor.stageTimer(meterRegistry, "queue");
+        this.rejectedCounter = Counter.builder("note_image.processing.rejected")
+                .description("Note image uploads rejected because the processing queue was full")
+                .register(meterRegistry);
+        Gauge.builder("note_image.processing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Note images waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("note_image.processing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Note images being processed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserve a processing slot for an upload. The task itself is given to the reservation once it is known, and
+     * submitted when the current transaction commits, so the workers never see an image row that is not visible yet.
+     * If the transaction rolls back, or no task is given, the slot is released and the raw upload is removed.
+     *
+     * @param uploadPath Path the raw upload is written to
+     * @return Reservation to hand the task to
+     * @throws ImageProcessingQueueFullException if all the processing slots are taken
+     */
+    public Reservation reserve(Path uploadPath) throws ImageProcessingQueueFullException {
+        return reserve(List.of(uploadPath)).getFirst();
+    }
+
+    /**
+     * Reserve a processing slot for each of several uploads, all or nothing. Each reservation behaves as the one
+     * returned by {@link #reserve(Path)}.
+     *
+     * @param uploadPaths Paths the raw uploads are written to
+     * @return List with a reservation per upload, in the same order
+     * @throws ImageProcessingQueueFullException if there are not enough free processing slots for every upload
+     */
+    public List<Reservation> reserve(List<Path> uploadPaths) throws ImageProcessingQueueFullException {
+        if (!slots.tryAcquire(uploadPaths.size())) {
+            rejectedCounter.increment(uploadPaths.size());
+            throw new ImageProcessingQueueFullException();
+        }
+
+        List<Reservation> reservations = new ArrayList<>(uploadPaths.size());
+        for (Path uploadPath : uploadPaths) {
+            Reservation reservation = new Reservation(uploadPath);
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(reservation);
+            }
+            reservations.add(reservation);
+        }
+        return reservations;
+    }
+
+    /**
+     * Hand an already committed task to the workers, waiting for a free processing slot instead of rejecting it.
+     * Used to resume the images left PENDING by a previous run, so it must not be called from a request thread.
+     *
+     * @param task Task to process
+     * @throws InterruptedException if interrupted while waiting for a slot
+     */
+    public void resubmit(NoteImageProcessingTask task) throws InterruptedException {
+        slots.acquire();
+        submit(task);
+    }
+
+    /**
+     * Processing slot held for one upload until its transaction completes.
+     */
+    public class Reservation implements TransactionSynchronization {
+
+        private final Path uploadPath;
+        private NoteImageProcessingTask task;
+
+        private Reservation(Path uploadPath) {
+            this.uploadPath = uploadPath;
+        }
+
+        /**
+         * Set the task to run with this slot. Without a transaction the task is submitted right away.
+         *
+         * @param task Task to process
+         */
+        public void enqueueAfterCommit(NoteImageProcessingTask task) {
+            this.task = task;
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                submit(task);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED && task != null) {
+                submit(task);
+            } else {
+                slots.release();
+                noteImageProcessor.discardUpload(uploadPath);
+            }
+        }
+    }
+
+    /**
+     * Hand the task to the workers. The slot reserved for it is released once it finishes.
+     *
+     * @param task Task to process
+     */
+    private void submit(NoteImageProcessingTask task) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                queueTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    noteImageProcessor.process(task);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Only happens while shutting down, the image stays PENDING
+            slots.release();
+            log.error("Note image '{}' was not processed because the workers are shutting down", task.imageUuid(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Note image workers did not finish in time, {} images left unprocessed", executor.getQueue().size());
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.sloyardms.trackerapi.note_image;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Unit of work handed to the note image workers. Holds everything needed to produce the image variants
+ * without going back to the database.
+ *
+ * @param imageUuid         UUID of the NoteImage row to mark as processed
+ * @param noteUuid          UUID of the note the image belongs to
+ * @param uploadPath        Local path of the raw upload to process
+ * @param originalFilename  Name of the original image file (the one from the request)
+ * @param thumbnailPath     Key to store the thumbnail image under
+ * @param originalImagePath Key to store the original image under
+ */
+public record NoteImageProcessingTask(
+        UUID imageUuid,
+        UUID noteUuid,
+        Path uploadPath,
+        String originalFilename,
+        String thumbnailPath,
+        String originalImagePath
+) {
+}
@@ -0,0 +1,128 @@
+package com.sloyardms.trackerapi.note_image;
+
+import com.sloyardms.trackerapi.common.enums.ImageProcessingStatus;
+import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.common.image.ThumbnailEncoding;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Produces the thumbnail and original image files for a raw upload and marks the NoteImage row with the result.
+ * Runs on the note image workers, outside any request thread or database transaction.
+ */
+@Service
+public class NoteImageProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteImageProcessor.class);
+
+    private final ImageStorageService imageStorageService;
+    private final NoteImageRepository noteImageRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Metrics
+    private final Timer encodeTimer;
+    private final Timer finalizeTimer;
+
+    public NoteImageProcessor(ImageStorageService imageStorageService, NoteImageRepository noteImageRepository,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.imageStorageService = imageStorageService;
+        this.noteImageRepository = noteImageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.encodeTimer = stageTimer(meterRegistry, "encode");
+        this.finalizeTimer = stageTimer(meterRegistry, "finalize");
+    }
+
+    /**
+     * Build the latency timer for the given processing stage.
+     *
+     * @param meterRegistry Registry to register the timer in
+     * @param stage         Name of the stage
+     * @return Timer for the stage
+     */
+    static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("note_image.processing.stage")
+                .description("Latency of each note image processing stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Write the image files for the given task and mark the NoteImage as READY, or as FAILED if the files
+     * could not be written. The raw upload is always removed afterwards.
+     *
+     * @param task Task to process
+     */
+    public void process(NoteImageProcessingTask task) {
+        List<ThumbnailEncoding> thumbnailEncodings;
+        try {
+            thumbnailEncodings = encodeTimer.recordCallable(() ->
+                    imageStorageService.storeNoteImages(task.noteUuid(), task.thumbnailPath(), task.originalImagePath(),
+                            task.uploadPath(), task.originalFilename()));
+        } catch (Exception e) {
+            log.error("Failed to process note image '{}'", task.imageUuid(), e);
+            finalizeTimer.record(() -> markStatus(task, ImageProcessingStatus.FAILED, List.of()));
+            discardUpload(task.uploadPath());
+            return;
+        }
+
+        finalizeTimer.record(() -> markStatus(task, ImageProcessingStatus.READY, thumbnailEncodings));
+        discardUpload(task.uploadPath());
+    }
+
+    /**
+     * Update the status of the NoteImage row and record its alternate thumbnail encodings, in one transaction.
+     * If the row is gone (the image or its note was deleted while processing), the files that were just written are
+     * removed, unless they are content-addressed: those may already be shared by another image of the same content.
+     *
+     * @param task               Task that was processed
+     * @param status             Status to set
+     * @param thumbnailEncodings Alternate thumbnail encodings that were stored
+     */
+    private void markStatus(NoteImageProcessingTask task, ImageProcessingStatus status, List<ThumbnailEncoding> thumbnailEncodings) {
+        Integer updated = transactionTemplate.execute(transactionStatus -> {
+            int rows = noteImageRepository.updateStatus(task.imageUuid(), status, Instant.now());
+            if (rows > 0) {
+                for (ThumbnailEncoding encoding : thumbnailEncodings) {
+                    noteImageRepository.insertThumbnailEncoding(task.imageUuid(), encoding.mimeType(), encoding.key(), encoding.sizeBytes());
+                }
+            }
+            return rows;
+        });
+        if (updated == 0 && imageStorageService.isContentPath(task.originalImagePath())) {
+            log.warn("Note image '{}' was deleted while processing, keeping its shared content files", task.imageUuid());
+        } else if (updated == 0) {
+            log.warn("Note image '{}' was deleted while processing, removing its files", task.imageUuid());
+            try {
+                for (String filePath : imageStorageService.generateImageFilePaths(task.thumbnailPath(), task.originalImagePath())) {
+                    imageStorageService.removeFile(filePath);
+                }
+            } catch (IOException e) {
+                log.error("Failed to delete files of deleted note image '{}'", task.imageUuid(), e);
+            }
+        }
+    }
+
+    /**
+     * Delete a raw upload. Failures are only logged.
+     *
+     * @param uploadPath Path of the upload to remove
+     */
+    public void discardUpload(Path uploadPath) {
+        try {
+            imageStorageService.discardUpload(uploadPath);
+        } catch (IOException e) {
+            log.error("Failed to delete upload file '{}'", uploadPath, e);
+        }
+    }
+
+}
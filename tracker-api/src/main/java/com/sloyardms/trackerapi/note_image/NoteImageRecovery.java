@@ -0,0 +1,93 @@
+package com.sloyardms.trackerapi.note_image;
+
+import com.sloyardms.trackerapi.common.enums.ImageProcessingStatus;
+import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.note_image.projection.PendingNoteImageProjection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Resumes the note images left PENDING by a previous run. Their processing tasks only lived in memory, so a crash or
+ * a shutdown with a full queue leaves rows that would never become READY otherwise.
+ * <p>
+ * On startup, each PENDING row whose raw upload is still in the spool folder is handed to the workers again, the rest
+ * are marked as FAILED, and the spool entries nobody will process anymore are removed. Only rows and files older than
+ * this run are touched, so uploads accepted after startup are left alone. The spool folder is local, so this assumes
+ * a single instance processes the images.
+ */
+@Component
+public class NoteImageRecovery {
+
+    private static final Logger log = LoggerFactory.getLogger(NoteImageRecovery.class);
+
+    // Created before the web server starts, so anything older comes from a previous run
+    private final Instant startedAt = Instant.now();
+
+    private final NoteImageRepository noteImageRepository;
+    private final NoteImageProcessingQueue noteImageProcessingQueue;
+    private final ImageStorageService imageStorageService;
+
+    public NoteImageRecovery(NoteImageRepository noteImageRepository, NoteImageProcessingQueue noteImageProcessingQueue,
+                             ImageStorageService imageStorageService) {
+        this.noteImageRepository = noteImageRepository;
+        this.noteImageProcessingQueue = noteImageProcessingQueue;
+        this.imageStorageService = imageStorageService;
+    }
+
+    /**
+     * Start the recovery once the application is ready. It runs on its own thread, since resubmitted tasks wait for
+     * a free processing slot.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread.ofVirtual().name("note-image-recovery").start(this::recover);
+    }
+
+    /**
+     * Resubmit or fail the PENDING note images of previous runs, then sweep the spool folder.
+     */
+    public void recover() {
+        try {
+            Map<UUID, Path> uploads = imageStorageService.findUploads();
+            List<PendingNoteImageProjection> pendingImages =
+                    noteImageRepository.findAllByStatusUpdatedBefore(ImageProcessingStatus.PENDING, startedAt);
+
+            List<Path> resumedUploads = new ArrayList<>();
+            int failed = 0;
+            for (PendingNoteImageProjection image : pendingImages) {
+                Path uploadPath = uploads.get(image.getUuid());
+                if (uploadPath == null) {
+                    noteImageRepository.updateStatus(image.getUuid(), ImageProcessingStatus.FAILED, Instant.now());
+                    failed++;
+                    continue;
+                }
+                resumedUploads.add(uploadPath);
+                noteImageProcessingQueue.resubmit(new NoteImageProcessingTask(image.getUuid(), image.getNoteUuid(),
+                        uploadPath, uploadPath.getFileName().toString(), image.getThumbnailPath(), image.getOriginalImagePath()));
+            }
+
+            int swept = imageStorageService.sweepSpool(startedAt, resumedUploads);
+            if (!pendingImages.isEmpty() || swept > 0) {
+                log.info("Recovered pending note images: {} resubmitted, {} marked as failed, {} stale spool entries removed",
+                        resumedUploads.size(), failed, swept);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Note image recovery was interrupted");
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to recover pending note images", e);
+        }
+    }
+
+}
@@ -1,11 +1,16 @@
 package com.sloyardms.trackerapi.note_image;
 
+import com.sloyardms.trackerapi.common.enums.ImageProcessingStatus;
 import com.sloyardms.trackerapi.note_image.entity.NoteImage;
+import com.sloyardms.trackerapi.note_image.projection.NoteImageFilesProjection;
+import com.sloyardms.trackerapi.note_image.projection.PendingNoteImageProjection;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -13,9 +18,59 @@ public interface NoteImageRepository extends JpaRepository<NoteImage, UUID> {
 
     List<NoteImage> findAllByNoteUuid(UUID noteUuid);
 
+    @Query("SELECT ni.uuid FROM NoteImage ni WHERE ni.note.uuid = :noteUuid")
+    List<UUID> findUuidsByNoteUuid(UUID noteUuid);
+
+    @Query("SELECT ni.uuid FROM NoteImage ni WHERE ni.uuid IN :uuids")
+    List<UUID> findExistingUuids(Collection<UUID> uuids);
+
+    @Query("""
+        SELECT
+            ni.contentHash AS contentHash,
+            ni.thumbnailPath AS thumbnailPath,
+            ni.originalImagePath AS originalImagePath
+        FROM NoteImage ni
+        WHERE ni.note.uuid = :noteUuid AND ni.contentHash IS NOT NULL
+    """)
+    List<NoteImageFilesProjection> findContentAddressedFilesByNoteUuid(UUID noteUuid);
+
+    @Query("""
+        SELECT
+            ni.contentHash AS contentHash,
+            ni.thumbnailPath AS thumbnailPath,
+            ni.originalImagePath AS originalImagePath
+        FROM NoteImage ni
+        WHERE ni.note.bookmark.uuid = :bookmarkUuid AND ni.contentHash IS NOT NULL
+    """)
+    List<NoteImageFilesProjection> findContentAddressedFilesByBookmarkUuid(UUID bookmarkUuid);
+
+    @Query("""
+        SELECT
+            ni.uuid AS uuid,
+            ni.note.uuid AS noteUuid,
+            ni.thumbnailPath AS thumbnailPath,
+            ni.originalImagePath AS originalImagePath
+        FROM NoteImage ni
+        WHERE ni.status = :status AND ni.updatedAt < :updatedBefore
+    """)
+    List<PendingNoteImageProjection> findAllByStatusUpdatedBefore(ImageProcessingStatus status, Instant updatedBefore);
+
     @Modifying
     @Transactional
     @Query("DELETE FROM NoteImage ni WHERE ni.note.uuid = :noteUuid")
     void deleteAllByNoteUuid(UUID noteUuid);
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE NoteImage ni SET ni.status = :status, ni.updatedAt = :updatedAt WHERE ni.uuid = :uuid")
+    int updateStatus(UUID uuid, ImageProcessingStatus status, Instant updatedAt);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+        INSERT INTO bookmark_notes_images_thumbnail_encodings (image_uuid, mime_type, path, size_bytes)
+        VALUES (:uuid, :mimeType, :path, :sizeBytes)
+    """, nativeQuery = true)
+    void insertThumbnailEncoding(UUID uuid, String mimeType, String path, long sizeBytes);
+
 }
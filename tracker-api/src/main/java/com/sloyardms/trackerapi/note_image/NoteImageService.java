@@ -1,20 +1,35 @@
 package com.sloyardms.trackerapi.note_image;
 
+import com.sloyardms.trackerapi.common.enums.ImageProcessingStatus;
 import com.sloyardms.trackerapi.common.enums.ImageType;
-import com.sloyardms.trackerapi.common.exception.ImageDeletionException;
+import com.sloyardms.trackerapi.common.image.StoredUpload;
 import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.common.web.FileResponse;
+import com.sloyardms.trackerapi.file_deletion.FileDeletionService;
+import com.sloyardms.trackerapi.image_blob.ImageBlobService;
 import com.sloyardms.trackerapi.note.NoteRepository;
 import com.sloyardms.trackerapi.note_image.dto.NoteImageDto;
 import com.sloyardms.trackerapi.note_image.entity.NoteImage;
+import com.sloyardms.trackerapi.note_image.entity.NoteImageThumbnailEncoding;
+import com.sloyardms.trackerapi.note_image.exception.ImageBatchTooLargeException;
+import com.sloyardms.trackerapi.note_image.exception.ImageProcessingQueueFullException;
 import com.sloyardms.trackerapi.note_image.exception.NoteImageNotFoundException;
+import com.sloyardms.trackerapi.note_image.exception.NoteImageNotReadyException;
 import com.sloyardms.trackerapi.note_image.mapper.NoteImageMapper;
+import com.sloyardms.trackerapi.note_image.projection.NoteImageFilesProjection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -27,35 +42,140 @@ public class NoteImageService {
     private final NoteImageRepository noteImageRepository;
     private final NoteImageMapper noteImageMapper;
     private final NoteRepository noteRepository;
+    private final NoteImageProcessingQueue noteImageProcessingQueue;
+    private final NoteImageThumbnailCache noteImageThumbnailCache;
+    private final ImageBlobService imageBlobService;
+    private final NoteImageJdbcRepository noteImageJdbcRepository;
+    private final FileDeletionService fileDeletionService;
 
-    public NoteImageService(NoteImageRepository noteImageRepository, ImageStorageService imageStorageService, NoteImageMapper noteImageMapper, NoteRepository noteRepository) {
+    // Maximum number of files in a batch upload
+    private final int MAX_BATCH_SIZE;
+
+    public NoteImageService(NoteImageRepository noteImageRepository, ImageStorageService imageStorageService, NoteImageMapper noteImageMapper,
+                            NoteRepository noteRepository, NoteImageProcessingQueue noteImageProcessingQueue,
+                            NoteImageThumbnailCache noteImageThumbnailCache, ImageBlobService imageBlobService,
+                            NoteImageJdbcRepository noteImageJdbcRepository, FileDeletionService fileDeletionService,
+                            @Value("${app.image.upload.max-batch-size}") int maxBatchSize) {
         this.noteImageRepository = noteImageRepository;
+        this.noteImageJdbcRepository = noteImageJdbcRepository;
+        this.fileDeletionService = fileDeletionService;
+        this.MAX_BATCH_SIZE = maxBatchSize;
         this.imageStorageService = imageStorageService;
         this.noteImageMapper = noteImageMapper;
         this.noteRepository = noteRepository;
+        this.noteImageProcessingQueue = noteImageProcessingQueue;
+        this.noteImageThumbnailCache = noteImageThumbnailCache;
+        this.imageBlobService = imageBlobService;
     }
 
     @Transactional(rollbackFor = Exception.class)
     public NoteImageDto create(UUID userUuid, UUID bookmarkUuid, UUID noteUuid, MultipartFile imageFile) throws Exception{
-        NoteImage noteImage = new NoteImage();
-        noteImage.setUuid(UUID.randomUUID());
+        UUID imageUuid = UUID.randomUUID();
+        Path uploadPath = imageStorageService.generateUploadPath(imageUuid, imageFile);
+
+        // Reserve a worker first, so a full queue rejects the upload before anything is written
+        NoteImageProcessingQueue.Reservation reservation = noteImageProcessingQueue.reserve(uploadPath);
+
+        NoteImage noteImage = prepareNoteImage(userUuid, bookmarkUuid, noteUuid, imageUuid, imageFile, uploadPath, reservation);
         noteImage.setNote(noteRepository.getReferenceById(noteUuid));
 
+        // Save the note image
+        NoteImage savedNote = noteImageRepository.save(noteImage);
+
+        return noteImageMapper.toDto(savedNote);
+    }
+
+    /**
+     * Create several note images in one transaction. Processing slots are reserved for all of them up front, so a
+     * batch is either accepted as a whole or rejected before anything is written, and the rows are inserted with a
+     * single JDBC batch. The images are then encoded in parallel by the note image workers.
+     *
+     * @param userUuid     UUID of the user owner of the bookmark
+     * @param bookmarkUuid UUID of the bookmark the note belongs to
+     * @param noteUuid     UUID of the note to add the images to
+     * @param imageFiles   Uploaded image files
+     * @return List with the created note images, in the order of the files
+     * @throws ImageBatchTooLargeException       if there are no files, or more than the configured maximum
+     * @throws ImageProcessingQueueFullException if there are not enough processing slots for the whole batch
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<NoteImageDto> createAll(UUID userUuid, UUID bookmarkUuid, UUID noteUuid, List<MultipartFile> imageFiles) throws Exception{
+        if (imageFiles.isEmpty() || imageFiles.size() > MAX_BATCH_SIZE) {
+            throw new ImageBatchTooLargeException(imageFiles.size(), MAX_BATCH_SIZE);
+        }
+
+        List<UUID> imageUuids = new ArrayList<>(imageFiles.size());
+        List<Path> uploadPaths = new ArrayList<>(imageFiles.size());
+        for (MultipartFile imageFile : imageFiles) {
+            UUID imageUuid = UUID.randomUUID();
+            imageUuids.add(imageUuid);
+            uploadPaths.add(imageStorageService.generateUploadPath(imageUuid, imageFile));
+        }
+
+        // Reserve a worker for every file first, so a full queue rejects the batch before anything is written
+        List<NoteImageProcessingQueue.Reservation> reservations = noteImageProcessingQueue.reserve(uploadPaths);
+
+        Instant now = Instant.now();
+        List<NoteImage> noteImages = new ArrayList<>(imageFiles.size());
+        for (int i = 0; i < imageFiles.size(); i++) {
+            NoteImage noteImage = prepareNoteImage(userUuid, bookmarkUuid, noteUuid, imageUuids.get(i), imageFiles.get(i),
+                    uploadPaths.get(i), reservations.get(i));
+            noteImage.setCreatedAt(now);
+            noteImage.setUpdatedAt(now);
+            noteImages.add(noteImage);
+        }
+
+        noteImageJdbcRepository.insertAll(noteUuid, noteImages);
+
+        return noteImages.stream().map(noteImageMapper::toDto).toList();
+    }
+
+    /**
+     * Write the raw upload of a new note image and fill in its files, then hand its processing task to the
+     * reservation. The row is not saved.
+     *
+     * @param userUuid     UUID of the user owner of the bookmark
+     * @param bookmarkUuid UUID of the bookmark the note belongs to
+     * @param noteUuid     UUID of the note the image belongs to
+     * @param imageUuid    UUID of the new note image
+     * @param imageFile    Uploaded image file
+     * @param uploadPath   Path to write the raw upload to
+     * @param reservation  Processing slot reserved for the image
+     * @return NoteImage ready to be saved, PENDING until the workers produce its files
+     */
+    private NoteImage prepareNoteImage(UUID userUuid, UUID bookmarkUuid, UUID noteUuid, UUID imageUuid, MultipartFile imageFile,
+                                       Path uploadPath, NoteImageProcessingQueue.Reservation reservation) {
+        NoteImage noteImage = new NoteImage();
+        noteImage.setUuid(imageUuid);
+
         // Generate thumbnail data
         String originalFilename = Optional.ofNullable(imageFile.getOriginalFilename())
                 .orElseThrow(() -> new IllegalArgumentException("File name is missing"));
 
-        noteImage.setOriginalImagePath(imageStorageService.generateImagePath(ImageType.ORIGINAL_IMAGE, userUuid, bookmarkUuid, noteUuid, noteImage.getUuid(), imageFile));
-        noteImage.setThumbnailPath(imageStorageService.generateImagePath(ImageType.THUMBNAIL, userUuid, bookmarkUuid, noteUuid, noteImage.getUuid(), imageFile));
         noteImage.setOriginalImageMimeType(imageFile.getContentType());
-        noteImage.setThumbnailMimeType(imageStorageService.getThumbnailMimeTypeFromExtension(originalFilename));
+        noteImage.setStatus(ImageProcessingStatus.PENDING);
 
-        imageStorageService.storeNoteImages(noteUuid, noteImage, imageFile, originalFilename);
+        // Only the raw upload is written here, the workers produce the thumbnail and original image after commit
+        StoredUpload storedUpload = imageStorageService.storeUpload(imageFile, uploadPath);
 
-        // Save the note image
-        NoteImage savedNote = noteImageRepository.save(noteImage);
+        if (storedUpload.contentHash() != null) {
+            // Content-addressed: every upload of the same content shares the same files
+            String contentHash = storedUpload.contentHash();
+            String format = storedUpload.header().format();
+            imageBlobService.acquire(contentHash);
+            noteImage.setContentHash(contentHash);
+            noteImage.setOriginalImagePath(imageStorageService.generateContentPath(ImageType.ORIGINAL_IMAGE, contentHash, format));
+            noteImage.setThumbnailPath(imageStorageService.generateContentPath(ImageType.THUMBNAIL, contentHash, format));
+        } else {
+            noteImage.setOriginalImagePath(imageStorageService.generateImagePath(ImageType.ORIGINAL_IMAGE, userUuid, bookmarkUuid, noteUuid, imageUuid, imageFile));
+            noteImage.setThumbnailPath(imageStorageService.generateImagePath(ImageType.THUMBNAIL, userUuid, bookmarkUuid, noteUuid, imageUuid, imageFile));
+        }
+        // The thumbnail is always encoded in the thumbnail format, whatever the format of the upload
+        noteImage.setThumbnailMimeType(imageStorageService.getThumbnailMimeTypeFromExtension(noteImage.getThumbnailPath()));
 
-        return noteImageMapper.toDto(savedNote);
+        reservation.enqueueAfterCommit(new NoteImageProcessingTask(imageUuid, noteUuid, uploadPath,
+                originalFilename, noteImage.getThumbnailPath(), noteImage.getOriginalImagePath()));
+        return noteImage;
     }
 
     @Transactional(readOnly = true)
@@ -64,31 +184,116 @@ public class NoteImageService {
         return noteImageMapper.toDto(noteImage);
     }
 
+    /**
+     * Resolve the file of a processed note image, to be written to a response. For thumbnails, the smallest alternate
+     * encoding whose MIME type is explicitly listed in the accepted media types is picked. Wildcards do not count, as
+     * clients that send only wildcards cannot be assumed to decode newer formats; they get the thumbnail.
+     *
+     * @param uuid       UUID of the note image
+     * @param imageType  THUMBNAIL or ORIGINAL_IMAGE
+     * @param acceptable Media types of the Accept header, may be empty
+     * @return FileResponse with the blob key, MIME type and entity tag of the file
+     * @throws NoteImageNotFoundException if the note image does not exist
+     * @throws NoteImageNotReadyException if the image files have not been produced yet
+     */
+    @Transactional(readOnly = true)
+    public FileResponse getImageFile(UUID uuid, ImageType imageType, List<MediaType> acceptable) {
+        NoteImage noteImage = noteImageRepository.findById(uuid).orElseThrow(()-> new NoteImageNotFoundException(uuid));
+        if (noteImage.getStatus() != ImageProcessingStatus.READY) {
+            throw new NoteImageNotReadyException(uuid, noteImage.getStatus());
+        }
+
+        // Files are never rewritten in place, so the uuid and last update identify the content
+        String version = noteImage.getUpdatedAt().toEpochMilli() + "\"";
+        if (imageType == ImageType.ORIGINAL_IMAGE) {
+            String etag = "\"" + uuid + "-original_image-" + version;
+            return new FileResponse(imageStorageService.toKey(noteImage.getOriginalImagePath()), noteImage.getOriginalImageMimeType(), etag);
+        }
+
+        if (!acceptable.isEmpty()) {
+            // Encodings are only stored when smaller than the thumbnail, the smallest acceptable one wins
+            Optional<NoteImageThumbnailEncoding> encoding = noteImage.getThumbnailEncodings().stream()
+                    .filter(e -> isExplicitlyAccepted(MediaType.parseMediaType(e.getMimeType()), acceptable))
+                    .min(Comparator.comparingLong(NoteImageThumbnailEncoding::getSizeBytes));
+            if (encoding.isPresent()) {
+                String etag = "\"" + uuid + "-thumbnail-" + encoding.get().getMimeType().substring("image/".length()) + "-" + version;
+                return new FileResponse(imageStorageService.toKey(encoding.get().getPath()), encoding.get().getMimeType(), etag);
+            }
+        }
+
+        String etag = "\"" + uuid + "-thumbnail-" + version;
+        return new FileResponse(imageStorageService.toKey(noteImage.getThumbnailPath()), noteImage.getThumbnailMimeType(), etag);
+    }
+
+    /**
+     * Check that a media type is listed, without wildcards, in the accepted media types and not refused with q=0.
+     *
+     * @param mediaType  Media type to check
+     * @param acceptable Media types of the Accept header
+     * @return true if the media type is explicitly accepted
+     */
+    private boolean isExplicitlyAccepted(MediaType mediaType, List<MediaType> acceptable) {
+        return acceptable.stream()
+                .anyMatch(accepted -> !accepted.isWildcardType() && !accepted.isWildcardSubtype()
+                        && accepted.equalsTypeAndSubtype(mediaType) && accepted.getQualityValue() > 0);
+    }
+
     @Transactional(rollbackFor = Exception.class)
     public void delete(UUID uuid){
         NoteImage noteImage = noteImageRepository.findById(uuid).orElseThrow(() -> new NoteImageNotFoundException(uuid));
-        String originalImagePath = noteImage.getOriginalImagePath();
-        String thumbnailPath = noteImage.getThumbnailPath();
-
-        //First delete the image files
-        String currentImage = originalImagePath;
-        try {
-            imageStorageService.removeFile(originalImagePath);
-            currentImage = thumbnailPath;
-            imageStorageService.removeFile(thumbnailPath);
-        } catch (IOException e) {
-            log.error("Failed to delete image file '{}'", currentImage, e);
-            throw new ImageDeletionException(e);
+
+        //Schedule the deletion of the image files, shared content only once its last reference is gone
+        if (noteImage.getContentHash() == null || imageBlobService.release(noteImage.getContentHash())) {
+            scheduleImageFileDeletion(noteImage.getThumbnailPath(), noteImage.getOriginalImagePath(), noteImage.getContentHash());
         }
 
         //Delete the db record
         noteImageRepository.deleteById(uuid);
+        noteImageThumbnailCache.invalidate(uuid);
     }
 
     @Transactional(rollbackFor = Exception.class)
     public void deleteByNoteUuid(UUID noteUuid){
+        noteImageThumbnailCache.invalidateAll(noteImageRepository.findUuidsByNoteUuid(noteUuid));
+        releaseContent(noteImageRepository.findContentAddressedFilesByNoteUuid(noteUuid));
         noteImageRepository.deleteAllByNoteUuid(noteUuid);
     }
 
+    /**
+     * Release the shared content of the images of a bookmark, before the bookmark and its notes are deleted.
+     * Files outside the content-addressed store go with the bookmark folder.
+     *
+     * @param bookmarkUuid UUID of the bookmark
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void releaseContentByBookmarkUuid(UUID bookmarkUuid){
+        releaseContent(noteImageRepository.findContentAddressedFilesByBookmarkUuid(bookmarkUuid));
+    }
+
+    /**
+     * Release a reference on the content of each image, scheduling the deletion of the files of the content that is
+     * no longer referenced.
+     *
+     * @param noteImages Files of the content-addressed images about to be deleted
+     */
+    private void releaseContent(List<NoteImageFilesProjection> noteImages){
+        for (NoteImageFilesProjection noteImage : noteImages) {
+            if (imageBlobService.release(noteImage.getContentHash())) {
+                scheduleImageFileDeletion(noteImage.getThumbnailPath(), noteImage.getOriginalImagePath(), noteImage.getContentHash());
+            }
+        }
+    }
+
+    /**
+     * Schedule the deletion of every file of an image. The files are removed by the file deletion reaper once the
+     * current transaction commits.
+     *
+     * @param thumbnailPath     Path of the thumbnail
+     * @param originalImagePath Path of the original image, next to which the additional variants live
+     * @param contentHash       Hash of the content if the files are content-addressed, null otherwise
+     */
+    private void scheduleImageFileDeletion(String thumbnailPath, String originalImagePath, String contentHash){
+        fileDeletionService.deleteFiles(imageStorageService.generateImageFilePaths(thumbnailPath, originalImagePath), contentHash);
+    }
 
 }
@@ -0,0 +1,133 @@
+package com.sloyardms.trackerapi.note_image;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.common.web.FileResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Size-bounded cache of thumbnail contents, keyed by note image UUID and encoding (MIME type). Entries are weighted by their size in bytes and
+ * evicted with Caffeine's W-TinyLFU policy once the configured budget is reached.
+ * <p>
+ * Each entry keeps the entity tag of the file it was read from, and is reloaded when the tag of the current file
+ * differs. When off-heap storage is enabled the contents live in direct buffers, which count towards
+ * {@code -XX:MaxDirectMemorySize} rather than the heap.
+ */
+@Component
+public class NoteImageThumbnailCache {
+
+    private final boolean ENABLED;
+    private final boolean OFF_HEAP;
+
+    private final Cache<ThumbnailKey, CachedThumbnail> cache;
+    private final BlobStore blobStore;
+
+    public NoteImageThumbnailCache(
+            MeterRegistry meterRegistry, BlobStore blobStore,
+            @Value("${app.image.thumbnail-cache.enabled}") boolean enabled,
+            @Value("${app.image.thumbnail-cache.max-size}") DataSize maxSize,
+            @Value("${app.image.thumbnail-cache.off-heap}") boolean offHeap
+    ) {
+        this.ENABLED = enabled;
+        this.OFF_HEAP = offHeap;
+        this.blobStore = blobStore;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((ThumbnailKey key, CachedThumbnail thumbnail) -> thumbnail.content().capacity())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "note_image.thumbnails");
+        Gauge.builder("note_image.thumbnails.resident.bytes", cache,
+                        c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .description("Bytes held by the thumbnail cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get the content of the thumbnail, reading the file on a miss or when the cached entry is stale.
+     *
+     * @param uuid UUID of the note image
+     * @param file Thumbnail file (any of its encodings), with its current entity tag
+     * @return Read-only buffer with the thumbnail content, or null if the cache is disabled
+     * @throws java.nio.file.NoSuchFileException if the thumbnail file does not exist
+     * @throws IOException                       if the thumbnail file could not be read
+     */
+    public ByteBuffer get(UUID uuid, FileResponse file) throws IOException {
+        if (!ENABLED) {
+            return null;
+        }
+
+        try {
+            ThumbnailKey key = new ThumbnailKey(uuid, file.contentType());
+            CachedThumbnail thumbnail = cache.get(key, k -> load(file));
+            if (!thumbnail.etag().equals(file.etag())) {
+                thumbnail = load(file);
+                cache.put(key, thumbnail);
+            }
+            //Each caller gets its own position and limit
+            return thumbnail.content().duplicate();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Remove every encoding of the thumbnail of a note image from the cache.
+     *
+     * @param uuid UUID of the note image
+     */
+    public void invalidate(UUID uuid) {
+        cache.asMap().keySet().removeIf(key -> key.uuid().equals(uuid));
+    }
+
+    /**
+     * Remove every encoding of the thumbnails of several note images from the cache.
+     *
+     * @param uuids UUIDs of the note images
+     */
+    public void invalidateAll(Collection<UUID> uuids) {
+        Set<UUID> removed = new HashSet<>(uuids);
+        cache.asMap().keySet().removeIf(key -> removed.contains(key.uuid()));
+    }
+
+    private CachedThumbnail load(FileResponse file) {
+        try {
+            int size = Math.toIntExact(blobStore.size(file.key()));
+            ByteBuffer content = OFF_HEAP ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+            try (ReadableByteChannel channel = Channels.newChannel(blobStore.open(file.key(), 0, size))) {
+                while (content.hasRemaining() && channel.read(content) >= 0) {
+                    // Read until the buffer is full
+                }
+            }
+            content.flip();
+            return new CachedThumbnail(file.etag(), content.asReadOnlyBuffer());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record ThumbnailKey(UUID uuid, String contentType) {
+    }
+
+    private record CachedThumbnail(String etag, ByteBuffer content) {
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.sloyardms.trackerapi.note_image.dto;
 
+import com.sloyardms.trackerapi.common.enums.ImageProcessingStatus;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -18,5 +19,6 @@ public class NoteImageDto {
     private String thumbnailMimeType;
     private String originalImagePath;
     private String originalImageMimeType;
+    private ImageProcessingStatus status;
 
 }
@@ -1,6 +1,7 @@
 package com.sloyardms.trackerapi.note_image.entity;
 
 import com.sloyardms.trackerapi.common.entity.Auditable;
+import com.sloyardms.trackerapi.common.enums.ImageProcessingStatus;
 import com.sloyardms.trackerapi.note.entity.Note;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -8,6 +9,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 @Getter
@@ -16,7 +19,8 @@ import java.util.UUID;
 @AllArgsConstructor
 @Entity
 @Table(name = "bookmark_notes_images", indexes = {
-        @Index(name = "bookmark_notes_images_note_uuid_index", columnList = "note_uuid")
+        @Index(name = "bookmark_notes_images_note_uuid_index", columnList = "note_uuid"),
+        @Index(name = "bookmark_notes_images_content_hash_index", columnList = "content_hash")
 })
 public class NoteImage extends Auditable {
 
@@ -40,4 +44,15 @@ public class NoteImage extends Auditable {
     @Column(name = "original_image_mimetype")
     private String originalImageMimeType;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "processing_status", nullable = false)
+    private ImageProcessingStatus status;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @ElementCollection
+    @CollectionTable(name = "bookmark_notes_images_thumbnail_encodings", joinColumns = @JoinColumn(name = "image_uuid"))
+    private List<NoteImageThumbnailEncoding> thumbnailEncodings = new ArrayList<>();
+
 }
@@ -0,0 +1,9 @@
+package com.sloyardms.trackerapi.note_image.exception;
+
+public class ImageBatchTooLargeException extends RuntimeException {
+
+    public ImageBatchTooLargeException(final int size, final int maxSize) {
+        super("A batch must contain between 1 and " + maxSize + " images, got " + size);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.sloyardms.trackerapi.note_image.exception;
+
+public class ImageProcessingQueueFullException extends RuntimeException {
+
+    public ImageProcessingQueueFullException() {
+        super("Too many images are being processed. Please try again later");
+    }
+
+}
@@ -30,4 +30,40 @@ public class NoteImageExceptionHandler {
         );
     }
 
+    @ExceptionHandler(NoteImageNotReadyException.class)
+    public ResponseEntity<ProblemDetail> handleNoteImageNotReady(NoteImageNotReadyException ex, HttpServletRequest request){
+        log.warn("NoteImage not ready at [{}]: {}", request.getRequestURI(), ex.getMessage());
+        return ProblemDetailUtil.buildProblemDetail(
+                HttpStatus.CONFLICT,
+                "/image-not-ready",
+                "NoteImage not ready",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+    }
+
+    @ExceptionHandler(ImageProcessingQueueFullException.class)
+    public ResponseEntity<ProblemDetail> handleImageProcessingQueueFull(ImageProcessingQueueFullException ex, HttpServletRequest request){
+        log.warn("Image processing queue full at [{}]: {}", request.getRequestURI(), ex.getMessage());
+        return ProblemDetailUtil.buildProblemDetail(
+                HttpStatus.TOO_MANY_REQUESTS,
+                "/image-processing-queue-full",
+                "Image processing queue full",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+    }
+
+    @ExceptionHandler(ImageBatchTooLargeException.class)
+    public ResponseEntity<ProblemDetail> handleImageBatchTooLarge(ImageBatchTooLargeException ex, HttpServletRequest request){
+        log.warn("Image batch too large at [{}]: {}", request.getRequestURI(), ex.getMessage());
+        return ProblemDetailUtil.buildProblemDetail(
+                HttpStatus.BAD_REQUEST,
+                "/image-batch-too-large",
+                "Image batch too large",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+    }
+
 }
@@ -0,0 +1,13 @@
+package com.sloyardms.trackerapi.note_image.exception;
+
+import com.sloyardms.trackerapi.common.enums.ImageProcessingStatus;
+
+import java.util.UUID;
+
+public class NoteImageNotReadyException extends RuntimeException {
+
+    public NoteImageNotReadyException(final UUID uuid, final ImageProcessingStatus status) {
+        super(String.format("Note image with UUID %s is not ready (status %s)", uuid, status));
+    }
+
+}
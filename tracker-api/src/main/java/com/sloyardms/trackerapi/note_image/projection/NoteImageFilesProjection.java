@@ -0,0 +1,11 @@
+package com.sloyardms.trackerapi.note_image.projection;
+
+public interface NoteImageFilesProjection {
+
+    String getContentHash();
+
+    String getThumbnailPath();
+
+    String getOriginalImagePath();
+
+}
@@ -0,0 +1,15 @@
+package com.sloyardms.trackerapi.note_image.projection;
+
+import java.util.UUID;
+
+public interface PendingNoteImageProjection {
+
+    UUID getUuid();
+
+    UUID getNoteUuid();
+
+    String getThumbnailPath();
+
+    String getOriginalImagePath();
+
+}
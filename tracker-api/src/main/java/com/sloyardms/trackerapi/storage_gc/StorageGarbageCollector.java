@@ -0,0 +1,305 @@
+package com.sloyardms.trackerapi.storage_gc;
+
+import com.sloyardms.trackerapi.bookmark_image.BookmarkImageRepository;
+import com.sloyardms.trackerapi.common.image.ImageFileOwner;
+import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.common.storage.BlobEntry;
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.file_deletion.FileDeletionService;
+import com.sloyardms.trackerapi.image_blob.ImageBlobRepository;
+import com.sloyardms.trackerapi.note_image.NoteImageRepository;
+import com.sloyardms.trackerapi.storage_gc.entity.StorageGcCheckpoint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Removes blobs that no image row refers to any more, e.g. files written for an upload whose row was never saved.
+ * <p>
+ * The blob store is scanned one page per run, in listing order, and the last key scanned is checkpointed in the
+ * database, so a pass is spread over many short runs and resumes where it stopped after a restart. Each page is listed
+ * before the transaction that checks it and moves the checkpoint. The owners of the
+ * files of a page are checked with one query per table. Orphans older than the minimum age are handed to the file
+ * deletion outbox, or only reported in dry-run mode; the totals of each pass are logged when it completes.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.gc.enabled", havingValue = "true")
+public class StorageGarbageCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageGarbageCollector.class);
+
+    private static final String CHECKPOINT_NAME = "blobs";
+
+    private final boolean DRY_RUN;
+    private final int BATCH_SIZE;
+    // Files younger than this may belong to an upload whose row is not committed yet
+    private final Duration MIN_AGE;
+    // Time between the end of a pass and the start of the next one
+    private final Duration PASS_INTERVAL;
+
+    private final StorageGcCheckpointRepository checkpointRepository;
+    private final NoteImageRepository noteImageRepository;
+    private final BookmarkImageRepository bookmarkImageRepository;
+    private final ImageBlobRepository imageBlobRepository;
+    private final FileDeletionService fileDeletionService;
+    private final ImageStorageService imageStorageService;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+
+    // Metrics
+    private final Counter scannedCounter;
+    private final Counter orphansCounter;
+    private final Counter deletedCounter;
+
+    public StorageGarbageCollector(
+            StorageGcCheckpointRepository checkpointRepository, NoteImageRepository noteImageRepository,
+            BookmarkImageRepository bookmarkImageRepository, ImageBlobRepository imageBlobRepository,
+            FileDeletionService fileDeletionService, ImageStorageService imageStorageService, BlobStore blobStore,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${app.storage.gc.dry-run}") boolean dryRun,
+            @Value("${app.storage.gc.batch-size}") int batchSize,
+            @Value("${app.storage.gc.min-age}") Duration minAge,
+            @Value("${app.storage.gc.pass-interval}") Duration passInterval
+    ) {
+        this.checkpointRepository = checkpointRepository;
+        this.noteImageRepository = noteImageRepository;
+        this.bookmarkImageRepository = bookmarkImageRepository;
+        this.imageBlobRepository = imageBlobRepository;
+        this.fileDeletionService = fileDeletionService;
+        this.imageStorageService = imageStorageService;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.DRY_RUN = dryRun;
+        this.BATCH_SIZE = batchSize;
+        this.MIN_AGE = minAge;
+        this.PASS_INTERVAL = passInterval;
+
+        this.scannedCounter = Counter.builder("storage.gc.scanned")
+                .description("Blobs scanned by the storage garbage collector")
+                .register(meterRegistry);
+        this.orphansCounter = Counter.builder("storage.gc.orphans")
+                .description("Orphaned blobs found by the storage garbage collector")
+                .register(meterRegistry);
+        this.deletedCounter = Counter.builder("storage.gc.deleted")
+                .description("Orphaned blobs scheduled for deletion by the storage garbage collector")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Scan the next page of blobs. The delay between runs bounds the rate at which the blob store is listed.
+     */
+    @Scheduled(initialDelayString = "${app.storage.gc.delay}", fixedDelayString = "${app.storage.gc.delay}")
+    public void collect() {
+        try {
+            // The page is listed before the transaction, so a slow listing never holds a connection or the checkpoint
+            Page page = listNextPage();
+            if (page != null) {
+                transactionTemplate.executeWithoutResult(status -> collectPage(page));
+            }
+        } catch (IOException e) {
+            log.error("Failed to list blobs", e);
+        } catch (RuntimeException e) {
+            log.error("Failed to collect orphaned blobs", e);
+        }
+    }
+
+    /**
+     * List the page of blobs after the checkpoint, or the first page if a pass is due.
+     *
+     * @return Page of blobs, or null between passes
+     * @throws IOException if the blobs could not be listed
+     */
+    private Page listNextPage() throws IOException {
+        StorageGcCheckpoint checkpoint = checkpointRepository.findById(CHECKPOINT_NAME).orElse(null);
+        if (checkpoint == null) {
+            return null;
+        }
+        String startAfter = null;
+        if (checkpoint.getPassStartedAt() != null) {
+            startAfter = checkpoint.getCursorKey();
+        } else if (!isPassDue(checkpoint, Instant.now())) {
+            return null;
+        }
+        return new Page(startAfter, blobStore.list(startAfter, BATCH_SIZE));
+    }
+
+    /**
+     * Schedule the deletion of the orphans of a listed page and move the checkpoint past it. Nothing is done while
+     * another instance holds the checkpoint, or if the checkpoint moved since the page was listed.
+     *
+     * @param page Page listed after the checkpoint
+     */
+    private void collectPage(Page page) {
+        StorageGcCheckpoint checkpoint = checkpointRepository.lock(CHECKPOINT_NAME).orElse(null);
+        if (checkpoint == null) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        if (checkpoint.getPassStartedAt() == null) {
+            if (page.startAfter() != null || !isPassDue(checkpoint, now)) {
+                return;
+            }
+            startPass(checkpoint, now);
+        } else if (!Objects.equals(checkpoint.getCursorKey(), page.startAfter())) {
+            // Another instance scanned the page meanwhile
+            return;
+        }
+
+        List<BlobEntry> entries = page.entries();
+        Map<ImageFileOwner, List<BlobEntry>> entriesByOwner = new LinkedHashMap<>();
+        long unrecognized = 0;
+        for (BlobEntry entry : entries) {
+            if (isHidden(entry.key())) {
+                continue;
+            }
+            Optional<ImageFileOwner> owner = imageStorageService.resolveOwner(entry.key());
+            if (owner.isEmpty()) {
+                unrecognized++;
+                continue;
+            }
+            entriesByOwner.computeIfAbsent(owner.get(), o -> new ArrayList<>()).add(entry);
+        }
+
+        Set<ImageFileOwner> existingOwners = findExistingOwners(entriesByOwner.keySet());
+        Instant cutoff = now.minus(MIN_AGE);
+        long orphans = 0;
+        long orphanBytes = 0;
+        long deleted = 0;
+        for (Map.Entry<ImageFileOwner, List<BlobEntry>> ownerEntries : entriesByOwner.entrySet()) {
+            ImageFileOwner owner = ownerEntries.getKey();
+            if (existingOwners.contains(owner)) {
+                continue;
+            }
+
+            List<String> orphanKeys = new ArrayList<>();
+            for (BlobEntry entry : ownerEntries.getValue()) {
+                if (entry.lastModified().isAfter(cutoff)) {
+                    continue;
+                }
+                orphans++;
+                orphanBytes += entry.size();
+                if (DRY_RUN) {
+                    log.info("Orphaned blob '{}' ({} bytes)", entry.key(), entry.size());
+                } else {
+                    orphanKeys.add(entry.key());
+                }
+            }
+
+            if (!orphanKeys.isEmpty()) {
+                String contentHash = (owner.type() == ImageFileOwner.Type.CONTENT) ? owner.id() : null;
+                fileDeletionService.deleteFiles(orphanKeys, contentHash);
+                deleted += orphanKeys.size();
+            }
+        }
+
+        checkpoint.setScanned(checkpoint.getScanned() + entries.size());
+        checkpoint.setOrphans(checkpoint.getOrphans() + orphans);
+        checkpoint.setOrphanBytes(checkpoint.getOrphanBytes() + orphanBytes);
+        checkpoint.setDeleted(checkpoint.getDeleted() + deleted);
+        checkpoint.setUnrecognized(checkpoint.getUnrecognized() + unrecognized);
+        checkpoint.setUpdatedAt(now);
+        if (!entries.isEmpty()) {
+            checkpoint.setCursorKey(entries.getLast().key());
+        }
+        if (entries.size() < BATCH_SIZE) {
+            completePass(checkpoint, now);
+        }
+
+        scannedCounter.increment(entries.size());
+        orphansCounter.increment(orphans);
+        deletedCounter.increment(deleted);
+    }
+
+    /**
+     * Find which of the owners still have their row, with one query per table.
+     *
+     * @param owners Owners of the files of a page
+     * @return Set with the owners that exist
+     */
+    private Set<ImageFileOwner> findExistingOwners(Collection<ImageFileOwner> owners) {
+        List<UUID> noteImageUuids = new ArrayList<>();
+        List<UUID> bookmarkImageUuids = new ArrayList<>();
+        List<String> contentHashes = new ArrayList<>();
+        for (ImageFileOwner owner : owners) {
+            switch (owner.type()) {
+                case NOTE_IMAGE -> noteImageUuids.add(UUID.fromString(owner.id()));
+                case BOOKMARK_IMAGE -> bookmarkImageUuids.add(UUID.fromString(owner.id()));
+                case CONTENT -> contentHashes.add(owner.id());
+            }
+        }
+
+        Set<ImageFileOwner> existing = new HashSet<>();
+        if (!noteImageUuids.isEmpty()) {
+            noteImageRepository.findExistingUuids(noteImageUuids).forEach(uuid ->
+                    existing.add(new ImageFileOwner(ImageFileOwner.Type.NOTE_IMAGE, uuid.toString())));
+        }
+        if (!bookmarkImageUuids.isEmpty()) {
+            bookmarkImageRepository.findExistingUuids(bookmarkImageUuids).forEach(uuid ->
+                    existing.add(new ImageFileOwner(ImageFileOwner.Type.BOOKMARK_IMAGE, uuid.toString())));
+        }
+        if (!contentHashes.isEmpty()) {
+            imageBlobRepository.findExistingContentHashes(contentHashes).forEach(hash ->
+                    existing.add(new ImageFileOwner(ImageFileOwner.Type.CONTENT, hash)));
+        }
+        return existing;
+    }
+
+    private boolean isPassDue(StorageGcCheckpoint checkpoint, Instant now) {
+        return checkpoint.getLastCompletedAt() == null || !checkpoint.getLastCompletedAt().plus(PASS_INTERVAL).isAfter(now);
+    }
+
+    private void startPass(StorageGcCheckpoint checkpoint, Instant now) {
+        checkpoint.setCursorKey(null);
+        checkpoint.setPassStartedAt(now);
+        checkpoint.setScanned(0);
+        checkpoint.setOrphans(0);
+        checkpoint.setOrphanBytes(0);
+        checkpoint.setDeleted(0);
+        checkpoint.setUnrecognized(0);
+        log.info("Storage garbage collection pass started{}", DRY_RUN ? " (dry run)" : "");
+    }
+
+    private void completePass(StorageGcCheckpoint checkpoint, Instant now) {
+        log.info("Storage garbage collection pass completed{} in {}: scanned {} blobs, found {} orphans ({} bytes), "
+                        + "scheduled {} for deletion, skipped {} unrecognized",
+                DRY_RUN ? " (dry run)" : "", Duration.between(checkpoint.getPassStartedAt(), now),
+                checkpoint.getScanned(), checkpoint.getOrphans(), checkpoint.getOrphanBytes(),
+                checkpoint.getDeleted(), checkpoint.getUnrecognized());
+        checkpoint.setCursorKey(null);
+        checkpoint.setPassStartedAt(null);
+        checkpoint.setLastCompletedAt(now);
+    }
+
+    /**
+     * Check if the key is under a hidden folder, like the upload spool, whose files are not image files.
+     *
+     * @param key Key of a blob
+     * @return true if a folder of the key starts with '.'
+     */
+    private boolean isHidden(String key) {
+        return key.startsWith(".") || key.contains("/.");
+    }
+
+    /**
+     * Blobs listed after a key.
+     *
+     * @param startAfter Key the listing started after, or null for the first page of a pass
+     * @param entries    Blobs listed
+     */
+    private record Page(String startAfter, List<BlobEntry> entries) {
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.sloyardms.trackerapi.storage_gc;
+
+import com.sloyardms.trackerapi.storage_gc.entity.StorageGcCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface StorageGcCheckpointRepository extends JpaRepository<StorageGcCheckpoint, String> {
+
+    // Empty while another instance holds the checkpoint, so only one instance collects at a time
+    @Query(value = """
+        SELECT * FROM storage_gc_checkpoints
+        WHERE name = :name
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    Optional<StorageGcCheckpoint> lock(String name);
+
+}
@@ -0,0 +1,56 @@
+package com.sloyardms.trackerapi.storage_gc.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Progress of a garbage collection pass over the blob store: the last key scanned and the totals of the pass so far.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "storage_gc_checkpoints")
+public class StorageGcCheckpoint {
+
+    @Id
+    @Column(name = "name", nullable = false, updatable = false, length = 64)
+    private String name;
+
+    // Last key scanned by the current pass, null before its first page
+    @Column(name = "cursor_key", length = 1024)
+    private String cursorKey;
+
+    // Null when no pass is in progress
+    @Column(name = "pass_started_at")
+    private Instant passStartedAt;
+
+    @Column(name = "scanned", nullable = false)
+    private long scanned;
+
+    @Column(name = "orphans", nullable = false)
+    private long orphans;
+
+    @Column(name = "orphan_bytes", nullable = false)
+    private long orphanBytes;
+
+    @Column(name = "deleted", nullable = false)
+    private long deleted;
+
+    // Blobs whose key does not follow the layout of image files, left alone
+    @Column(name = "unrecognized", nullable = false)
+    private long unrecognized;
+
+    @Column(name = "last_completed_at")
+    private Instant lastCompletedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+}
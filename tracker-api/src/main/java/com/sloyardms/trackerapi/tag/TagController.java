@@ -1,12 +1,13 @@
 package com.sloyardms.trackerapi.tag;
 
+import com.sloyardms.trackerapi.common.web.CountMode;
 import com.sloyardms.trackerapi.tag.dto.TagCreateDto;
 import com.sloyardms.trackerapi.tag.dto.TagDto;
 import com.sloyardms.trackerapi.tag.dto.TagUpdateDto;
 import com.sloyardms.trackerapi.security.AuthUtils;
 import jakarta.validation.Valid;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -35,10 +36,11 @@ public class TagController {
     }
 
     @GetMapping("/user/{userUuid}")
-    public ResponseEntity<Page<TagDto>> getAllByUserUuid(
+    public ResponseEntity<Slice<TagDto>> getAllByUserUuid(
             @PathVariable UUID userUuid,
-            @PageableDefault(size = 10, sort = "name") Pageable pageable){
-        Page<TagDto> tags = tagService.getAllByUserUuid(userUuid, pageable);
+            @PageableDefault(size = 10, sort = "name") Pageable pageable,
+            @RequestParam(defaultValue = "exact") CountMode count){
+        Slice<TagDto> tags = tagService.getAllByUserUuid(userUuid, pageable, count);
         return ResponseEntity.ok(tags);
     }
 
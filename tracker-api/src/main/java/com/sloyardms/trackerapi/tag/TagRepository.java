@@ -1,10 +1,14 @@
 package com.sloyardms.trackerapi.tag;
 
 import com.sloyardms.trackerapi.tag.entity.Tag;
+import com.sloyardms.trackerapi.tag.projection.TagProjection;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -12,4 +16,31 @@ public interface TagRepository extends JpaRepository<Tag, UUID>{
 
     Page<Tag> findAllByUserUuid(UUID userUuid, Pageable pageable);
 
+    @Query(value = """
+        SELECT new com.sloyardms.trackerapi.tag.projection.TagProjection(t.uuid, t.name)
+        FROM Tag t
+        WHERE t.userUuid = :userUuid
+    """, countQuery = "SELECT count(t) FROM Tag t WHERE t.userUuid = :userUuid")
+    Page<TagProjection> findProjectionsByUserUuid(UUID userUuid, Pageable pageable);
+
+    @Query("""
+        SELECT new com.sloyardms.trackerapi.tag.projection.TagProjection(t.uuid, t.name)
+        FROM Tag t
+        WHERE t.userUuid = :userUuid
+    """)
+    Slice<TagProjection> findProjectionSliceByUserUuid(UUID userUuid, Pageable pageable);
+
+    // PostgreSQL plan of the rows of findProjectionsByUserUuid, for its estimated total
+    @Query(value = "EXPLAIN SELECT 1 FROM tags WHERE user_uuid = :userUuid", nativeQuery = true)
+    List<String> explainProjectionsByUserUuid(UUID userUuid);
+
+    @Query("""
+        SELECT new com.sloyardms.trackerapi.tag.projection.TagProjection(t.uuid, t.name)
+        FROM Bookmark b
+        JOIN b.tags t
+        WHERE b.uuid = :bookmarkUuid
+        ORDER BY t.name
+    """)
+    List<TagProjection> findProjectionsByBookmarkUuid(UUID bookmarkUuid);
+
 }
@@ -1,5 +1,7 @@
 package com.sloyardms.trackerapi.tag;
 
+import com.sloyardms.trackerapi.common.service.PageCounter;
+import com.sloyardms.trackerapi.common.web.CountMode;
 import com.sloyardms.trackerapi.tag.dto.TagCreateDto;
 import com.sloyardms.trackerapi.tag.dto.TagDto;
 import com.sloyardms.trackerapi.tag.dto.TagUpdateDto;
@@ -7,10 +9,11 @@ import com.sloyardms.trackerapi.tag.entity.Tag;
 import com.sloyardms.trackerapi.tag.exception.TagNameAlreadyExistsException;
 import com.sloyardms.trackerapi.tag.exception.TagNotFoundException;
 import com.sloyardms.trackerapi.tag.mapper.TagMapper;
+import com.sloyardms.trackerapi.tag.projection.TagProjection;
 import com.sloyardms.trackerapi.user.exception.UserNotFoundException;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,10 +24,12 @@ public class TagService {
 
     private final TagRepository tagRepository;
     private final TagMapper tagMapper;
+    private final PageCounter pageCounter;
 
-    public TagService(TagRepository tagRepository, TagMapper tagMapper) {
+    public TagService(TagRepository tagRepository, TagMapper tagMapper, PageCounter pageCounter) {
         this.tagRepository = tagRepository;
         this.tagMapper = tagMapper;
+        this.pageCounter = pageCounter;
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -44,9 +49,12 @@ public class TagService {
     }
 
     @Transactional(readOnly = true)
-    public Page<TagDto> getAllByUserUuid(UUID userUuid, Pageable pageable) {
-        Page<Tag> tags = tagRepository.findAllByUserUuid(userUuid, pageable);
-        return tags.map(tagMapper::toDto);
+    public Slice<TagDto> getAllByUserUuid(UUID userUuid, Pageable pageable, CountMode count) {
+        Slice<TagProjection> tags = pageCounter.fetch(count, pageable,
+                p -> tagRepository.findProjectionsByUserUuid(userUuid, p),
+                p -> tagRepository.findProjectionSliceByUserUuid(userUuid, p),
+                () -> tagRepository.explainProjectionsByUserUuid(userUuid));
+        return tags.map(tagMapper::fromProjection);
     }
 
     @Transactional(rollbackFor = Exception.class)
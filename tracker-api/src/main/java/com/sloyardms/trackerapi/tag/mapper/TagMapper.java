@@ -4,6 +4,7 @@ import com.sloyardms.trackerapi.tag.dto.TagCreateDto;
 import com.sloyardms.trackerapi.tag.dto.TagDto;
 import com.sloyardms.trackerapi.tag.dto.TagUpdateDto;
 import com.sloyardms.trackerapi.tag.entity.Tag;
+import com.sloyardms.trackerapi.tag.projection.TagProjection;
 import org.mapstruct.*;
 
 @Mapper(componentModel = "spring")
@@ -11,6 +12,8 @@ public interface TagMapper {
 
     TagDto toDto(Tag tag);
 
+    TagDto fromProjection(TagProjection projection);
+
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
     @Mapping(target = "userUuid", ignore = true)
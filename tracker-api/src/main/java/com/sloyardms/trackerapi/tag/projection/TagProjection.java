@@ -0,0 +1,9 @@
+package com.sloyardms.trackerapi.tag.projection;
+
+import java.util.UUID;
+
+/**
+ * Columns of a tag, read with a constructor expression for read-only endpoints.
+ */
+public record TagProjection(UUID uuid, String name) {
+}
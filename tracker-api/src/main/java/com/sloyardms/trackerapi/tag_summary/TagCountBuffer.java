@@ -0,0 +1,326 @@
+package com.sloyardms.trackerapi.tag_summary;
+
+import com.sloyardms.trackerapi.tag_summary.TagCountJournalRepository.JournalEntry;
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDelta;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind buffer in front of {@link TagSummaryService} for tag usage counter changes. Retagging many bookmarks
+ * changes the same few counters over and over, so the changes are added up in memory, one {@link LongAdder} per
+ * counter, and written with one batched upsert every flush interval, or as soon as enough changes are pending.
+ * <p>
+ * Changes made in a transaction are buffered when it commits, and what is buffered is flushed on shutdown, but lost
+ * if the instance dies. In journal mode each change is instead inserted into {@code tag_count_journal} in the
+ * transaction that makes it, and the flush adds up and writes the journal rows, so a crash only delays them.
+ * <p>
+ * A counter that can't be written any more, because its tag or group was deleted, is logged and dropped.
+ */
+@Component
+public class TagCountBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(TagCountBuffer.class);
+
+    private final int MAX_PENDING;
+    private final boolean JOURNAL;
+
+    private final TagSummaryService tagSummaryService;
+    private final TagCountJournalRepository journalRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService flushExecutor;
+
+    // Writers add under the read lock, the flush swaps the map under the write lock, so no change is added to a
+    // map that is already being written
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private ConcurrentHashMap<Key, LongAdder> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Lock flushLock = new ReentrantLock();
+
+    // Metrics
+    private final Counter bufferedCounter;
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+
+    public TagCountBuffer(
+            TagSummaryService tagSummaryService, TagCountJournalRepository journalRepository,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${app.tag-summary.buffer.max-pending}") int maxPending,
+            @Value("${app.tag-summary.buffer.journal}") boolean journal
+    ) {
+        this.tagSummaryService = tagSummaryService;
+        this.journalRepository = journalRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.MAX_PENDING = maxPending;
+        this.JOURNAL = journal;
+        this.flushExecutor = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("tag-count-flush").daemon().factory());
+
+        this.bufferedCounter = Counter.builder("tag.summary.buffer.changes")
+                .description("Tag usage counter changes buffered or journaled")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("tag.summary.buffer.written")
+                .description("Tag usage counters written by a flush")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("tag.summary.buffer.dropped")
+                .description("Tag usage counter changes dropped because the counter can't be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Add counter changes to the buffer. Within a transaction they are buffered once it commits, or journaled in it
+     * in journal mode.
+     *
+     * @param deltas Changes to add
+     */
+    public void add(Collection<TagCountDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        bufferedCounter.increment(deltas.size());
+
+        if (JOURNAL) {
+            journalRepository.insertAll(deltas);
+            if (deltas.size() >= MAX_PENDING) {
+                requestFlush();
+            }
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<TagCountDelta> committed = List.copyOf(deltas);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    buffer(committed, true);
+                }
+            });
+        } else {
+            buffer(deltas, true);
+        }
+    }
+
+    /**
+     * Write the pending changes, unless a flush is already running.
+     */
+    @Scheduled(initialDelayString = "${app.tag-summary.buffer.flush-interval}", fixedDelayString = "${app.tag-summary.buffer.flush-interval}")
+    public void flushIfIdle() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Write the pending changes, waiting for a running flush to end first, so every change added before the call is
+     * written when it returns, unless it failed and was kept for the next flush.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the changes are journaled in the transactions that make them, false if they are buffered in
+     * memory once they commit
+     */
+    public boolean isJournaled() {
+        return JOURNAL;
+    }
+
+    private void flushPending() {
+        flushRequested.set(false);
+        try {
+            if (JOURNAL) {
+                int claimed;
+                do {
+                    claimed = drainJournalBatch();
+                } while (claimed == MAX_PENDING);
+            } else {
+                write(drain());
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to flush tag usage counter changes", e);
+        }
+    }
+
+    private void buffer(Collection<TagCountDelta> deltas, boolean flushWhenFull) {
+        swapLock.readLock().lock();
+        try {
+            for (TagCountDelta delta : deltas) {
+                pending.computeIfAbsent(new Key(delta.userUuid(), delta.groupUuid(), delta.tagUuid()), key -> new LongAdder())
+                        .add(delta.delta());
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+
+        if (pendingCount.addAndGet(deltas.size()) >= MAX_PENDING && flushWhenFull) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Flush on the flush thread, so a writer never runs the flush itself, e.g. after the commit of its transaction.
+     */
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Take the buffered changes, leaving an empty buffer to the writers.
+     *
+     * @return One change per counter, with the sum of its buffered changes
+     */
+    private List<TagCountDelta> drain() {
+        ConcurrentHashMap<Key, LongAdder> drained;
+        swapLock.writeLock().lock();
+        try {
+            drained = pending;
+            pending = new ConcurrentHashMap<>();
+            pendingCount.set(0);
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        List<TagCountDelta> deltas = new ArrayList<>(drained.size());
+        drained.forEach((key, adder) -> {
+            long sum = adder.sum();
+            if (sum != 0) {
+                deltas.add(new TagCountDelta(key.userUuid(), key.groupUuid(), key.tagUuid(),
+                        Math.clamp(sum, Integer.MIN_VALUE, Integer.MAX_VALUE)));
+            }
+        });
+        return deltas;
+    }
+
+    /**
+     * Write drained changes with one batch. If a counter is rejected, the changes are written one at a time to drop
+     * only that one; changes that fail otherwise go back to the buffer for the next flush.
+     *
+     * @param deltas Changes to write
+     */
+    private void write(List<TagCountDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            tagSummaryService.applyTagCountDeltas(deltas);
+            writtenCounter.increment(deltas.size());
+        } catch (DataIntegrityViolationException e) {
+            for (TagCountDelta delta : deltas) {
+                writeOne(delta);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} tag usage counters, keeping them for the next flush", deltas.size(), e);
+            buffer(deltas, false);
+        }
+    }
+
+    private void writeOne(TagCountDelta delta) {
+        try {
+            tagSummaryService.applyTagCountDeltas(List.of(delta));
+            writtenCounter.increment();
+        } catch (DataIntegrityViolationException e) {
+            log.error("Dropped change of {} to the tag usage counter of tag {} in group {}",
+                    delta.delta(), delta.tagUuid(), delta.groupUuid(), e);
+            droppedCounter.increment();
+        } catch (RuntimeException e) {
+            log.error("Failed to write the tag usage counter of tag {}, keeping it for the next flush", delta.tagUuid(), e);
+            buffer(List.of(delta), false);
+        }
+    }
+
+    /**
+     * Claim a batch of journal rows, write their changes added up per counter and delete them, in one transaction.
+     * If a counter is rejected the batch is rolled back and the rows are written one at a time instead.
+     *
+     * @return Number of rows handled
+     */
+    private int drainJournalBatch() {
+        try {
+            Integer claimed = transactionTemplate.execute(status -> {
+                List<JournalEntry> entries = journalRepository.claimBatch(MAX_PENDING);
+                if (entries.isEmpty()) {
+                    return 0;
+                }
+                tagSummaryService.applyTagCountDeltas(entries.stream().map(JournalEntry::delta).toList());
+                journalRepository.deleteAll(entries.stream().map(JournalEntry::id).toList());
+                return entries.size();
+            });
+            int handled = (claimed != null) ? claimed : 0;
+            writtenCounter.increment(handled);
+            return handled;
+        } catch (DataIntegrityViolationException e) {
+            List<Long> ids = journalRepository.findIds(MAX_PENDING);
+            for (long id : ids) {
+                drainJournalEntry(id);
+            }
+            return ids.size();
+        }
+    }
+
+    private void drainJournalEntry(long id) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> journalRepository.claim(id).ifPresent(entry -> {
+                tagSummaryService.applyTagCountDeltas(List.of(entry.delta()));
+                journalRepository.deleteAll(List.of(id));
+                writtenCounter.increment();
+            }));
+        } catch (DataIntegrityViolationException e) {
+            log.error("Dropped journaled change {} to a tag usage counter", id, e);
+            transactionTemplate.executeWithoutResult(status -> journalRepository.deleteAll(List.of(id)));
+            droppedCounter.increment();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        flush();
+    }
+
+    private record Key(UUID userUuid, UUID groupUuid, UUID tagUuid) {
+    }
+
+}
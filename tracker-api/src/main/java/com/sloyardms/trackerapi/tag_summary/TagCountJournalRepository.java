@@ -0,0 +1,115 @@
+package com.sloyardms.trackerapi.tag_summary;
+
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDelta;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Plain JDBC access to the journal of tag usage counter changes. Runs in the current JPA transaction.
+ */
+@Repository
+public class TagCountJournalRepository {
+
+    private static final String INSERT_SQL = """
+        INSERT INTO tag_count_journal (user_uuid, group_uuid, tag_uuid, delta, created_at)
+        VALUES (?, ?, ?, ?, ?)
+    """;
+
+    // Rows locked by another instance are skipped, so several instances can drain the journal side by side
+    private static final String CLAIM_BATCH_SQL = """
+        SELECT id, user_uuid, group_uuid, tag_uuid, delta FROM tag_count_journal
+        ORDER BY id
+        LIMIT ?
+        FOR UPDATE SKIP LOCKED
+    """;
+
+    private static final String CLAIM_SQL = """
+        SELECT id, user_uuid, group_uuid, tag_uuid, delta FROM tag_count_journal
+        WHERE id = ?
+        FOR UPDATE SKIP LOCKED
+    """;
+
+    private static final String FIND_IDS_SQL = "SELECT id FROM tag_count_journal ORDER BY id LIMIT ?";
+
+    private static final String DELETE_SQL = "DELETE FROM tag_count_journal WHERE id = ?";
+
+    private static final RowMapper<JournalEntry> ENTRY_MAPPER = (rs, rowNum) -> new JournalEntry(
+            rs.getLong("id"),
+            new TagCountDelta(rs.getObject("user_uuid", UUID.class), rs.getObject("group_uuid", UUID.class),
+                    rs.getObject("tag_uuid", UUID.class), rs.getInt("delta"))
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TagCountJournalRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Journal counter changes with a single JDBC batch.
+     *
+     * @param deltas Changes to journal
+     */
+    public void insertAll(Collection<TagCountDelta> deltas) {
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, deltas, deltas.size(), (ps, delta) -> {
+            ps.setObject(1, delta.userUuid());
+            ps.setObject(2, delta.groupUuid());
+            ps.setObject(3, delta.tagUuid());
+            ps.setInt(4, delta.delta());
+            ps.setTimestamp(5, now);
+        });
+    }
+
+    /**
+     * Lock the oldest journal rows that no other transaction holds.
+     *
+     * @param limit Maximum number of rows
+     * @return Rows locked until the end of the transaction
+     */
+    public List<JournalEntry> claimBatch(int limit) {
+        return jdbcTemplate.query(CLAIM_BATCH_SQL, ENTRY_MAPPER, limit);
+    }
+
+    /**
+     * Lock one journal row, if no other transaction holds it.
+     *
+     * @param id Row id
+     * @return Row locked until the end of the transaction, or empty if it is gone or held elsewhere
+     */
+    public Optional<JournalEntry> claim(long id) {
+        return jdbcTemplate.query(CLAIM_SQL, ENTRY_MAPPER, id).stream().findFirst();
+    }
+
+    /**
+     * Get the ids of the oldest journal rows, without locking them.
+     *
+     * @param limit Maximum number of rows
+     * @return Row ids
+     */
+    public List<Long> findIds(int limit) {
+        return jdbcTemplate.queryForList(FIND_IDS_SQL, Long.class, limit);
+    }
+
+    public void deleteAll(Collection<Long> ids) {
+        jdbcTemplate.batchUpdate(DELETE_SQL, ids, ids.size(), (ps, id) -> ps.setLong(1, id));
+    }
+
+    /**
+     * Journal row.
+     *
+     * @param id    Row id
+     * @param delta Counter change
+     */
+    public record JournalEntry(long id, TagCountDelta delta) {
+    }
+
+}
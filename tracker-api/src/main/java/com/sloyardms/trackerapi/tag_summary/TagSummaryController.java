@@ -1,26 +1,32 @@
 package com.sloyardms.trackerapi.tag_summary;
 
+import com.sloyardms.trackerapi.common.web.CountMode;
 import com.sloyardms.trackerapi.security.AuthUtils;
 import com.sloyardms.trackerapi.tag_summary.dto.TagSummaryDto;
-import org.springframework.data.domain.Page;
+import com.sloyardms.trackerapi.tag_summary.dto.TagSummaryRebuildReport;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
 
 import java.util.UUID;
 
-@RestControllerAdvice
+@RestController
 @RequestMapping("/api/v1/tag-summaries")
 public class TagSummaryController {
 
     private final TagSummaryService tagSummaryService;
+    private final TagSummaryRebuilder tagSummaryRebuilder;
 
-    public TagSummaryController(TagSummaryService tagSummaryService) {
+    public TagSummaryController(TagSummaryService tagSummaryService, TagSummaryRebuilder tagSummaryRebuilder) {
         this.tagSummaryService = tagSummaryService;
+        this.tagSummaryRebuilder = tagSummaryRebuilder;
     }
 
     @GetMapping("/ping")
@@ -29,12 +35,27 @@ public class TagSummaryController {
     }
 
     @GetMapping("/group/{groupUuid}")
-    public ResponseEntity<Page<TagSummaryDto>> getAllByGroupUuid(
+    public ResponseEntity<Slice<TagSummaryDto>> getAllByGroupUuid(
             @PathVariable UUID groupUuid,
-            @PageableDefault(size = 10, sort = "tagName") Pageable pageable){
+            @PageableDefault(size = 10, sort = "tagName") Pageable pageable,
+            @RequestParam(defaultValue = "exact") CountMode count){
         UUID userUuid = AuthUtils.getCurrentUserId();
-        Page<TagSummaryDto> result = tagSummaryService.findAllByUserAndGroup(userUuid, groupUuid, pageable);
+        Slice<TagSummaryDto> result = tagSummaryService.findAllByUserAndGroup(userUuid, groupUuid, pageable, count);
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Check the tag usage counters of the current user against their bookmarks.
+     *
+     * Repairing needs the counter changes to be journaled.
+     *
+     * @param repair true to correct the counters that drifted, false to only report them
+     * @return TagSummaryRebuildReport with the drifted counters
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<TagSummaryRebuildReport> rebuild(@RequestParam(defaultValue = "false") boolean repair){
+        UUID userUuid = AuthUtils.getCurrentUserId();
+        return ResponseEntity.ok(tagSummaryRebuilder.rebuildUser(userUuid, repair));
+    }
+
 }
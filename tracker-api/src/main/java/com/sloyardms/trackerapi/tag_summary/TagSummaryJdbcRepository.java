@@ -0,0 +1,109 @@
+package com.sloyardms.trackerapi.tag_summary;
+
+import com.sloyardms.trackerapi.common.jdbc.DatabasePlatform;
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDelta;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tag usage counters changed with single atomic statements, so concurrent changes to the same counter are never lost.
+ * Runs in the current JPA transaction.
+ * <p>
+ * Increments are upserts, with ON CONFLICT on PostgreSQL and MERGE on H2, which has no ON CONFLICT DO UPDATE.
+ * Decrements only update existing counters and never take them below zero.
+ */
+@Repository
+public class TagSummaryJdbcRepository {
+
+    private static final String UPSERT_SQL = """
+        INSERT INTO tag_usage_summary (user_uuid, group_uuid, tag_uuid, bookmark_count)
+        VALUES (?, ?, ?, ?)
+        ON CONFLICT (user_uuid, group_uuid, tag_uuid)
+        DO UPDATE SET bookmark_count = tag_usage_summary.bookmark_count + EXCLUDED.bookmark_count
+    """;
+
+    private static final String MERGE_SQL = """
+        MERGE INTO tag_usage_summary s
+        USING (VALUES (CAST(? AS UUID), CAST(? AS UUID), CAST(? AS UUID), CAST(? AS INTEGER)))
+            AS v (user_uuid, group_uuid, tag_uuid, delta)
+        ON s.user_uuid = v.user_uuid AND s.group_uuid = v.group_uuid AND s.tag_uuid = v.tag_uuid
+        WHEN MATCHED THEN UPDATE SET bookmark_count = s.bookmark_count + v.delta
+        WHEN NOT MATCHED THEN INSERT (user_uuid, group_uuid, tag_uuid, bookmark_count)
+            VALUES (v.user_uuid, v.group_uuid, v.tag_uuid, v.delta)
+    """;
+
+    private static final String DECREMENT_SQL = """
+        UPDATE tag_usage_summary
+        SET bookmark_count = GREATEST(bookmark_count + ?, 0)
+        WHERE user_uuid = ? AND group_uuid = ? AND tag_uuid = ?
+    """;
+
+    // Rows are changed in key order, so concurrent batches lock them in the same order and can't deadlock
+    private static final Comparator<TagCountDelta> KEY_ORDER = Comparator.comparing(TagCountDelta::userUuid)
+            .thenComparing(TagCountDelta::groupUuid)
+            .thenComparing(TagCountDelta::tagUuid);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabasePlatform databasePlatform;
+
+    public TagSummaryJdbcRepository(JdbcTemplate jdbcTemplate, DatabasePlatform databasePlatform) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databasePlatform = databasePlatform;
+    }
+
+    /**
+     * Apply changes to tag usage counters with one JDBC batch for the increments and one for the decrements. Changes
+     * to the same counter are added up first.
+     *
+     * @param deltas Changes to apply
+     */
+    public void applyAll(Collection<TagCountDelta> deltas) {
+        List<TagCountDelta> increments = new ArrayList<>();
+        List<TagCountDelta> decrements = new ArrayList<>();
+        for (TagCountDelta delta : sum(deltas)) {
+            if (delta.delta() > 0) {
+                increments.add(delta);
+            } else if (delta.delta() < 0) {
+                decrements.add(delta);
+            }
+        }
+        increments.sort(KEY_ORDER);
+        decrements.sort(KEY_ORDER);
+
+        if (!increments.isEmpty()) {
+            String sql = databasePlatform.isPostgres() ? UPSERT_SQL : MERGE_SQL;
+            jdbcTemplate.batchUpdate(sql, increments, increments.size(), (ps, delta) -> {
+                ps.setObject(1, delta.userUuid());
+                ps.setObject(2, delta.groupUuid());
+                ps.setObject(3, delta.tagUuid());
+                ps.setInt(4, delta.delta());
+            });
+        }
+        if (!decrements.isEmpty()) {
+            jdbcTemplate.batchUpdate(DECREMENT_SQL, decrements, decrements.size(), (ps, delta) -> {
+                ps.setInt(1, delta.delta());
+                ps.setObject(2, delta.userUuid());
+                ps.setObject(3, delta.groupUuid());
+                ps.setObject(4, delta.tagUuid());
+            });
+        }
+    }
+
+    private Collection<TagCountDelta> sum(Collection<TagCountDelta> deltas) {
+        Map<List<UUID>, TagCountDelta> byKey = new LinkedHashMap<>();
+        for (TagCountDelta delta : deltas) {
+            byKey.merge(List.of(delta.userUuid(), delta.groupUuid(), delta.tagUuid()), delta, (a, b) ->
+                    new TagCountDelta(a.userUuid(), a.groupUuid(), a.tagUuid(), a.delta() + b.delta()));
+        }
+        return byKey.values();
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.sloyardms.trackerapi.tag_summary;
+
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDrift;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Set-based checks of the tag usage counters against {@code bookmark_tags}, for the users claimed by the current
+ * transaction. Runs in the current transaction.
+ */
+@Repository
+public class TagSummaryRebuildRepository {
+
+    private static final String FIRST_USERS_SQL = "SELECT user_uuid FROM users ORDER BY user_uuid LIMIT ?";
+
+    private static final String USERS_AFTER_SQL =
+            "SELECT user_uuid FROM users WHERE user_uuid > ? ORDER BY user_uuid LIMIT ?";
+
+    private static final String CLAIM_SQL = "INSERT INTO tag_summary_rebuild_claims (user_uuid) VALUES (?)";
+
+    private static final String RELEASE_SQL = "DELETE FROM tag_summary_rebuild_claims WHERE user_uuid = ?";
+
+    // Claims of other transactions are never committed, so the claims visible here are the users of this transaction.
+    // Expected and actual counts are read by one statement, from the same snapshot; journaled changes are part of the
+    // actual count, since they are committed with the bookmark changes that cause them
+    private static final String FIND_DRIFT_SQL = """
+        WITH expected AS (
+            SELECT b.user_uuid, b.group_uuid, bt.tag_uuid, COUNT(*) AS bookmark_count
+            FROM bookmarks b
+            JOIN bookmark_tags bt ON bt.bookmark_uuid = b.bookmark_uuid
+            WHERE b.user_uuid IN (SELECT user_uuid FROM tag_summary_rebuild_claims)
+            AND b.group_uuid IS NOT NULL
+            GROUP BY b.user_uuid, b.group_uuid, bt.tag_uuid
+        ), actual AS (
+            SELECT c.user_uuid, c.group_uuid, c.tag_uuid, SUM(c.bookmark_count) AS bookmark_count
+            FROM (
+                SELECT s.user_uuid, s.group_uuid, s.tag_uuid, s.bookmark_count
+                FROM tag_usage_summary s
+                WHERE s.user_uuid IN (SELECT user_uuid FROM tag_summary_rebuild_claims)
+                UNION ALL
+                SELECT j.user_uuid, j.group_uuid, j.tag_uuid, j.delta
+                FROM tag_count_journal j
+                WHERE j.user_uuid IN (SELECT user_uuid FROM tag_summary_rebuild_claims)
+            ) c
+            GROUP BY c.user_uuid, c.group_uuid, c.tag_uuid
+        )
+        SELECT e.user_uuid, e.group_uuid, e.tag_uuid, e.bookmark_count AS expected,
+               COALESCE(a.bookmark_count, 0) AS actual
+        FROM expected e
+        LEFT JOIN actual a
+            ON a.user_uuid = e.user_uuid AND a.group_uuid = e.group_uuid AND a.tag_uuid = e.tag_uuid
+        WHERE a.bookmark_count IS NULL OR a.bookmark_count <> e.bookmark_count
+        UNION ALL
+        SELECT a.user_uuid, a.group_uuid, a.tag_uuid, 0 AS expected, a.bookmark_count AS actual
+        FROM actual a
+        WHERE a.bookmark_count > 0
+        AND NOT EXISTS (
+            SELECT 1 FROM expected e
+            WHERE e.user_uuid = a.user_uuid AND e.group_uuid = a.group_uuid AND e.tag_uuid = a.tag_uuid
+        )
+    """;
+
+    private static final RowMapper<TagCountDrift> DRIFT_MAPPER = (rs, rowNum) -> new TagCountDrift(
+            rs.getObject("user_uuid", UUID.class),
+            rs.getObject("group_uuid", UUID.class),
+            rs.getObject("tag_uuid", UUID.class),
+            rs.getInt("expected"),
+            rs.getInt("actual")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TagSummaryRebuildRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Get the next page of users, in UUID order.
+     *
+     * @param after Last user of the previous page, or null for the first page
+     * @param limit Maximum number of users
+     * @return List with the UUIDs of the users
+     */
+    public List<UUID> findUserUuidsAfter(UUID after, int limit) {
+        if (after == null) {
+            return jdbcTemplate.queryForList(FIRST_USERS_SQL, UUID.class, limit);
+        }
+        return jdbcTemplate.queryForList(USERS_AFTER_SQL, UUID.class, after, limit);
+    }
+
+    /**
+     * Claim users for the current transaction, waiting for the transactions that claimed any of them to end. Users
+     * must be claimed in UUID order, so two transactions never wait for each other.
+     *
+     * @param userUuids UUIDs of the users, sorted
+     */
+    public void claim(List<UUID> userUuids) {
+        jdbcTemplate.batchUpdate(CLAIM_SQL, userUuids, userUuids.size(), (ps, userUuid) -> ps.setObject(1, userUuid));
+    }
+
+    public void release(Collection<UUID> userUuids) {
+        jdbcTemplate.batchUpdate(RELEASE_SQL, userUuids, userUuids.size(), (ps, userUuid) -> ps.setObject(1, userUuid));
+    }
+
+    /**
+     * Find the counters of the claimed users that don't match the number of their bookmarks with the tag, including
+     * the counters missing for a tag in use and the counters left above zero for a tag no longer in use.
+     *
+     * @return List with the drifted counters
+     */
+    public List<TagCountDrift> findDrift() {
+        return jdbcTemplate.query(FIND_DRIFT_SQL, DRIFT_MAPPER);
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.sloyardms.trackerapi.tag_summary;
+
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDrift;
+import com.sloyardms.trackerapi.tag_summary.dto.TagSummaryRebuildReport;
+import com.sloyardms.trackerapi.tag_summary.exception.TagSummaryRepairUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the tag usage counters against the bookmarks they count, and corrects the ones that drifted.
+ * <p>
+ * Users are checked in chunks, in parallel, each chunk in its own short transaction: one set-based statement groups
+ * the tags of the bookmarks of the chunk and compares them with the counters, and the drifted counters are corrected
+ * with atomic relative changes, so nothing is locked but the corrected rows, and the changes made meanwhile are kept.
+ * A full rebuild runs on the configured cron; a drift report is logged when it completes.
+ * <p>
+ * Counters are only repaired in journal mode, where the pending changes are committed with the bookmark changes that
+ * cause them and are part of the check. Changes buffered in memory are not visible to the check, so correcting them
+ * would count them twice once flushed; without the journal a rebuild only reports the drift.
+ */
+@Component
+public class TagSummaryRebuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(TagSummaryRebuilder.class);
+
+    private static final int MAX_SAMPLES = 100;
+
+    private final boolean REPAIR;
+    private final int BATCH_SIZE;
+    private final int PARALLELISM;
+
+    private final TagSummaryRebuildRepository rebuildRepository;
+    private final TagSummaryService tagSummaryService;
+    private final TagCountBuffer tagCountBuffer;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+
+    // Metrics
+    private final Counter checkedCounter;
+    private final Counter driftedCounter;
+    private final Counter repairedCounter;
+
+    public TagSummaryRebuilder(
+            TagSummaryRebuildRepository rebuildRepository, TagSummaryService tagSummaryService,
+            TagCountBuffer tagCountBuffer, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${app.tag-summary.rebuild.repair}") boolean repair,
+            @Value("${app.tag-summary.rebuild.batch-size}") int batchSize,
+            @Value("${app.tag-summary.rebuild.parallelism}") int parallelism
+    ) {
+        this.rebuildRepository = rebuildRepository;
+        this.tagSummaryService = tagSummaryService;
+        this.tagCountBuffer = tagCountBuffer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        if (repair && !tagCountBuffer.isJournaled()) {
+            log.warn("Scheduled tag usage counter rebuilds only report drift, repairing needs app.tag-summary.buffer.journal=true");
+        }
+        this.REPAIR = repair && tagCountBuffer.isJournaled();
+        this.BATCH_SIZE = batchSize;
+        this.PARALLELISM = parallelism;
+        this.executor = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("tag-summary-rebuild-", 0).factory());
+
+        this.checkedCounter = Counter.builder("tag.summary.rebuild.users")
+                .description("Users whose tag usage counters were checked")
+                .register(meterRegistry);
+        this.driftedCounter = Counter.builder("tag.summary.rebuild.drifted")
+                .description("Tag usage counters found not matching their bookmarks")
+                .register(meterRegistry);
+        this.repairedCounter = Counter.builder("tag.summary.rebuild.repaired")
+                .description("Tag usage counters corrected by a rebuild")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.tag-summary.rebuild.cron}")
+    public void rebuildScheduled() {
+        try {
+            rebuildAll(REPAIR);
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild the tag usage counters", e);
+        }
+    }
+
+    /**
+     * Check the counters of every user, {@code parallelism} chunks at a time.
+     *
+     * @param repair true to correct the drifted counters, false to only report them
+     * @return TagSummaryRebuildReport with the drift found
+     * @throws TagSummaryRepairUnavailableException if repairing while the counter changes are not journaled
+     */
+    public TagSummaryRebuildReport rebuildAll(boolean repair) {
+        checkRepairable(repair);
+        Report report = new Report(repair);
+        tagCountBuffer.flush();
+        log.info("Tag usage counter rebuild started{}", repair ? "" : " (report only)");
+
+        UUID after = null;
+        boolean more = true;
+        while (more) {
+            List<Callable<Void>> tasks = new ArrayList<>(PARALLELISM);
+            while (tasks.size() < PARALLELISM) {
+                List<UUID> userUuids = rebuildRepository.findUserUuidsAfter(after, BATCH_SIZE);
+                if (!userUuids.isEmpty()) {
+                    after = userUuids.getLast();
+                    tasks.add(() -> {
+                        rebuildChunk(userUuids, repair, report);
+                        return null;
+                    });
+                }
+                if (userUuids.size() < BATCH_SIZE) {
+                    more = false;
+                    break;
+                }
+            }
+            awaitAll(invokeAll(tasks));
+        }
+
+        TagSummaryRebuildReport result = report.complete();
+        log.info("Tag usage counter rebuild completed{} in {} ms: checked {} users, {} failed, found {} drifted "
+                        + "counters off by {} in total",
+                repair ? "" : " (report only)", result.completedAt().toEpochMilli() - result.startedAt().toEpochMilli(),
+                result.users(), result.failedUsers(), result.driftedCounters(), result.totalDrift());
+        return result;
+    }
+
+    /**
+     * Check the counters of one user.
+     *
+     * @param userUuid UUID of the user
+     * @param repair   true to correct the drifted counters, false to only report them
+     * @return TagSummaryRebuildReport with the drift found
+     * @throws TagSummaryRepairUnavailableException if repairing while the counter changes are not journaled
+     */
+    public TagSummaryRebuildReport rebuildUser(UUID userUuid, boolean repair) {
+        checkRepairable(repair);
+        Report report = new Report(repair);
+        tagCountBuffer.flush();
+        rebuildChunk(List.of(userUuid), repair, report);
+        return report.complete();
+    }
+
+    private void checkRepairable(boolean repair) {
+        if (repair && !tagCountBuffer.isJournaled()) {
+            throw new TagSummaryRepairUnavailableException();
+        }
+    }
+
+    /**
+     * Check and correct the counters of a chunk of users in one transaction. A failed chunk is logged and counted in
+     * the report, the other chunks go on.
+     */
+    private void rebuildChunk(List<UUID> userUuids, boolean repair, Report report) {
+        try {
+            List<TagCountDrift> drift = transactionTemplate.execute(status -> {
+                rebuildRepository.claim(userUuids);
+                List<TagCountDrift> found = rebuildRepository.findDrift();
+                if (repair && !found.isEmpty()) {
+                    tagSummaryService.applyTagCountDeltas(found.stream().map(TagCountDrift::toDelta).toList());
+                }
+                rebuildRepository.release(userUuids);
+                return found;
+            });
+            report.add(userUuids.size(), drift);
+            checkedCounter.increment(userUuids.size());
+            driftedCounter.increment(drift.size());
+            if (repair) {
+                repairedCounter.increment(drift.size());
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild the tag usage counters of users {} to {}", userUuids.getFirst(), userUuids.getLast(), e);
+            report.fail(userUuids.size());
+        }
+    }
+
+    private List<Future<Void>> invokeAll(List<Callable<Void>> tasks) {
+        try {
+            return executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding tag usage counters", e);
+        }
+    }
+
+    private void awaitAll(List<Future<Void>> results) {
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while rebuilding tag usage counters", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to rebuild tag usage counters", e.getCause());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Totals of a rebuild, added to by the chunks as they complete.
+     */
+    private static class Report {
+
+        private final boolean repaired;
+        private final Instant startedAt = Instant.now();
+        private final List<TagCountDrift> samples = new ArrayList<>();
+        private long users;
+        private long failedUsers;
+        private long driftedCounters;
+        private long totalDrift;
+
+        private Report(boolean repaired) {
+            this.repaired = repaired;
+        }
+
+        private synchronized void add(int chunkUsers, List<TagCountDrift> drift) {
+            users += chunkUsers;
+            driftedCounters += drift.size();
+            for (TagCountDrift counter : drift) {
+                totalDrift += Math.abs((long) counter.expected() - counter.actual());
+                if (samples.size() < MAX_SAMPLES) {
+                    samples.add(counter);
+                }
+            }
+        }
+
+        private synchronized void fail(int chunkUsers) {
+            users += chunkUsers;
+            failedUsers += chunkUsers;
+        }
+
+        private synchronized TagSummaryRebuildReport complete() {
+            return new TagSummaryRebuildReport(repaired, users, failedUsers, driftedCounters, totalDrift,
+                    List.copyOf(samples), startedAt, Instant.now());
+        }
+
+    }
+
+}
@@ -5,9 +5,11 @@ import com.sloyardms.trackerapi.tag_summary.entity.TagSummaryId;
 import com.sloyardms.trackerapi.tag_summary.projection.TagUsageProjection;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface TagSummaryRepository extends JpaRepository<TagSummary, TagSummaryId> {
@@ -23,4 +25,21 @@ public interface TagSummaryRepository extends JpaRepository<TagSummary, TagSumma
     """)
     Page<TagUsageProjection> findTagUsageByUserAndGroup(UUID userUuid, UUID groupUuid, Pageable pageable);
 
+    @Query("""
+        SELECT
+            t.uuid AS tagUuid,
+            t.name AS tagName,
+            tus.bookmarkCount AS bookmarkCount
+        FROM TagUsageSummary tus
+        JOIN Tag t ON tus.tagUuid = t.uuid
+        WHERE tus.userUuid = :userUuid AND tus.groupUuid = :groupUuid
+    """)
+    Slice<TagUsageProjection> findTagUsageSliceByUserAndGroup(UUID userUuid, UUID groupUuid, Pageable pageable);
+
+    // PostgreSQL plan of the rows of findTagUsageByUserAndGroup, for its estimated total. Every counter has its tag,
+    // so the join is left out
+    @Query(value = "EXPLAIN SELECT 1 FROM tag_usage_summary WHERE user_uuid = :userUuid AND group_uuid = :groupUuid",
+            nativeQuery = true)
+    List<String> explainTagUsageByUserAndGroup(UUID userUuid, UUID groupUuid);
+
 }
@@ -1,54 +1,63 @@
 package com.sloyardms.trackerapi.tag_summary;
 
+import com.sloyardms.trackerapi.common.service.PageCounter;
+import com.sloyardms.trackerapi.common.web.CountMode;
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDelta;
 import com.sloyardms.trackerapi.tag_summary.dto.TagSummaryDto;
-import com.sloyardms.trackerapi.tag_summary.entity.TagSummary;
 import com.sloyardms.trackerapi.tag_summary.entity.TagSummaryId;
 import com.sloyardms.trackerapi.tag_summary.mapper.TagSummaryMapper;
 import com.sloyardms.trackerapi.tag_summary.projection.TagUsageProjection;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Service
 public class TagSummaryService {
 
     private final TagSummaryRepository tagSummaryRepository;
+    private final TagSummaryJdbcRepository tagSummaryJdbcRepository;
     private final TagSummaryMapper tagSummaryMapper;
+    private final PageCounter pageCounter;
 
-    public TagSummaryService(TagSummaryRepository tagSummaryRepository, TagSummaryMapper tagSummaryMapper) {
+    public TagSummaryService(TagSummaryRepository tagSummaryRepository, TagSummaryJdbcRepository tagSummaryJdbcRepository,
+                             TagSummaryMapper tagSummaryMapper, PageCounter pageCounter) {
         this.tagSummaryRepository = tagSummaryRepository;
+        this.tagSummaryJdbcRepository = tagSummaryJdbcRepository;
         this.tagSummaryMapper = tagSummaryMapper;
+        this.pageCounter = pageCounter;
     }
 
     @Transactional(rollbackFor = Exception.class)
     public void incrementTagCount(UUID userUuid, UUID groupUuid, UUID tagUuid){
-        TagSummaryId id = new TagSummaryId(userUuid, groupUuid, tagUuid);
-
-        //Find or create new object
-        TagSummary tagSummary = tagSummaryRepository.findById(id)
-                .orElse(new TagSummary(userUuid, groupUuid, tagUuid, 0));
-
-        tagSummary.setBookmarkCount(tagSummary.getBookmarkCount() + 1);
-        tagSummaryRepository.save(tagSummary);
+        tagSummaryJdbcRepository.applyAll(List.of(new TagCountDelta(userUuid, groupUuid, tagUuid, 1)));
     }
 
     @Transactional(rollbackFor = Exception.class)
     public void decrementTagCount(UUID userUuid, UUID groupUuid, UUID tagUuid){
-        TagSummaryId id = new TagSummaryId(userUuid, groupUuid, tagUuid);
+        tagSummaryJdbcRepository.applyAll(List.of(new TagCountDelta(userUuid, groupUuid, tagUuid, -1)));
+    }
 
-        tagSummaryRepository.findById(id).ifPresent(tagSummary -> {
-            int newCount = Math.max(0, tagSummary.getBookmarkCount() - 1);
-            tagSummary.setBookmarkCount(newCount);
-            tagSummaryRepository.save(tagSummary);
-        });
+    /**
+     * Apply many changes to tag usage counters at once, e.g. for all the tags of a bookmark.
+     *
+     * @param deltas Changes to apply
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void applyTagCountDeltas(Collection<TagCountDelta> deltas){
+        tagSummaryJdbcRepository.applyAll(deltas);
     }
 
     @Transactional(readOnly = true)
-    public Page<TagSummaryDto> findAllByUserAndGroup(UUID userUuid, UUID groupUuid, Pageable pageable) {
-        Page<TagUsageProjection> tagUsageProjections = tagSummaryRepository.findTagUsageByUserAndGroup(userUuid, groupUuid, pageable);
+    public Slice<TagSummaryDto> findAllByUserAndGroup(UUID userUuid, UUID groupUuid, Pageable pageable, CountMode count) {
+        Slice<TagUsageProjection> tagUsageProjections = pageCounter.fetch(count, pageable,
+                p -> tagSummaryRepository.findTagUsageByUserAndGroup(userUuid, groupUuid, p),
+                p -> tagSummaryRepository.findTagUsageSliceByUserAndGroup(userUuid, groupUuid, p),
+                () -> tagSummaryRepository.explainTagUsageByUserAndGroup(userUuid, groupUuid));
         return tagUsageProjections.map(tagSummaryMapper::fromProjection);
     }
 
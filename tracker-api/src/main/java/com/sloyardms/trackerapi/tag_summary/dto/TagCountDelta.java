@@ -0,0 +1,14 @@
+package com.sloyardms.trackerapi.tag_summary.dto;
+
+import java.util.UUID;
+
+/**
+ * Change to the number of bookmarks of a group that use a tag.
+ *
+ * @param userUuid  User UUID
+ * @param groupUuid Group UUID
+ * @param tagUuid   Tag UUID
+ * @param delta     Number of bookmarks to add, negative to remove
+ */
+public record TagCountDelta(UUID userUuid, UUID groupUuid, UUID tagUuid, int delta) {
+}
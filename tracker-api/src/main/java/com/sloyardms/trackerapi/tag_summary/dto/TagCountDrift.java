@@ -0,0 +1,23 @@
+package com.sloyardms.trackerapi.tag_summary.dto;
+
+import java.util.UUID;
+
+/**
+ * Tag usage counter that doesn't match the bookmarks it counts.
+ *
+ * @param userUuid  User UUID
+ * @param groupUuid Group UUID
+ * @param tagUuid   Tag UUID
+ * @param expected  Number of bookmarks of the group tagged with the tag
+ * @param actual    Value of the counter, including the changes not written to it yet
+ */
+public record TagCountDrift(UUID userUuid, UUID groupUuid, UUID tagUuid, int expected, int actual) {
+
+    /**
+     * @return Change that brings the counter to the expected value
+     */
+    public TagCountDelta toDelta() {
+        return new TagCountDelta(userUuid, groupUuid, tagUuid, expected - actual);
+    }
+
+}
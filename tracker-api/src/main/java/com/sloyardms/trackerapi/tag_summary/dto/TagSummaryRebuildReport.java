@@ -0,0 +1,28 @@
+package com.sloyardms.trackerapi.tag_summary.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Outcome of a tag usage counter rebuild.
+ *
+ * @param repaired        Whether the drifted counters were corrected, or only reported
+ * @param users           Number of users checked
+ * @param failedUsers     Number of users whose check failed, see the log
+ * @param driftedCounters Number of counters that didn't match their bookmarks
+ * @param totalDrift      Sum of the differences between the counters and their bookmarks
+ * @param samples         First drifted counters found
+ * @param startedAt       Start of the rebuild
+ * @param completedAt     End of the rebuild
+ */
+public record TagSummaryRebuildReport(
+        boolean repaired,
+        long users,
+        long failedUsers,
+        long driftedCounters,
+        long totalDrift,
+        List<TagCountDrift> samples,
+        Instant startedAt,
+        Instant completedAt
+) {
+}
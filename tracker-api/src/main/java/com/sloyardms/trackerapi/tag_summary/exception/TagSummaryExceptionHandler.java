@@ -0,0 +1,33 @@
+package com.sloyardms.trackerapi.tag_summary.exception;
+
+import com.sloyardms.trackerapi.common.exception.ProblemDetailUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RestControllerAdvice
+public class TagSummaryExceptionHandler {
+
+    private final static Logger log = LoggerFactory.getLogger(TagSummaryExceptionHandler.class);
+
+    @ExceptionHandler(TagSummaryRepairUnavailableException.class)
+    public ResponseEntity<ProblemDetail> handleRepairUnavailable(TagSummaryRepairUnavailableException ex, HttpServletRequest request){
+        log.error("Tag summary repair unavailable at [{}]: {}", request.getRequestURI(), ex.getMessage(), ex);
+        return ProblemDetailUtil.buildProblemDetail(
+                HttpStatus.CONFLICT,
+                "/repair-unavailable",
+                "Tag summary repair unavailable",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.sloyardms.trackerapi.tag_summary.exception;
+
+public class TagSummaryRepairUnavailableException extends RuntimeException {
+
+    public TagSummaryRepairUnavailableException() {
+        super("Tag usage counters can only be repaired when counter changes are journaled");
+    }
+
+}
@@ -0,0 +1,12 @@
+-- ========================================
+-- V10__tag_summary_rebuild_claims.sql
+-- Flyway Migration Script
+-- Description: Users whose tag usage counters are being rebuilt. Rows are inserted and deleted by the transaction
+--              that rebuilds the users, so they are never committed, and two rebuilds of the same user wait for
+--              each other on the primary key instead of both correcting the same drift
+-- ========================================
+
+-- Create tag_summary_rebuild_claims table
+CREATE TABLE tag_summary_rebuild_claims (
+    user_uuid UUID NOT NULL PRIMARY KEY
+);
@@ -0,0 +1,9 @@
+-- ========================================
+-- V2__note_image_processing_status.sql
+-- Flyway Migration Script
+-- Description: Track the asynchronous processing state of note images
+-- ========================================
+
+-- Existing images were processed synchronously, so they are already READY
+ALTER TABLE bookmark_notes_images
+    ADD COLUMN processing_status VARCHAR(20) NOT NULL DEFAULT 'READY';
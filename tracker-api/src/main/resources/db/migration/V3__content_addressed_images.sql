@@ -0,0 +1,21 @@
+-- ========================================
+-- V3__content_addressed_images.sql
+-- Flyway Migration Script
+-- Description: Content hash of note images and reference counts of the content-addressed image blobs
+-- ========================================
+
+-- SHA-256 (hex) of the uploaded content, only set in content-addressed storage mode
+ALTER TABLE bookmark_notes_images
+    ADD COLUMN content_hash VARCHAR(64) NULL;
+
+CREATE INDEX bookmark_notes_images_content_hash_index ON bookmark_notes_images(content_hash);
+
+-- Create image_blobs table
+CREATE TABLE image_blobs (
+    content_hash VARCHAR(64) NOT NULL PRIMARY KEY,
+    ref_count INTEGER NOT NULL,
+    created_at TIMESTAMP(0) WITH TIME ZONE NOT NULL
+);
+
+ALTER TABLE image_blobs
+    ADD CONSTRAINT image_blobs_ref_count_non_negative CHECK (ref_count >= 0);
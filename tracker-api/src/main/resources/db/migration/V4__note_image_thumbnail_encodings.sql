@@ -0,0 +1,17 @@
+-- ========================================
+-- V4__note_image_thumbnail_encodings.sql
+-- Flyway Migration Script
+-- Description: Alternate encodings (e.g. WebP, AVIF) of note image thumbnails, for content negotiation
+-- ========================================
+
+-- Create bookmark_notes_images_thumbnail_encodings table
+CREATE TABLE bookmark_notes_images_thumbnail_encodings (
+    image_uuid UUID NOT NULL,
+    mime_type VARCHAR(255) NOT NULL,
+    path VARCHAR(255) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    PRIMARY KEY (image_uuid, mime_type)
+);
+
+ALTER TABLE bookmark_notes_images_thumbnail_encodings
+    ADD CONSTRAINT bookmark_notes_images_thumbnail_encodings_image_uuid_foreign FOREIGN KEY (image_uuid) REFERENCES bookmark_notes_images(image_uuid) ON DELETE CASCADE;
@@ -0,0 +1,19 @@
+-- ========================================
+-- V5__file_deletion_outbox.sql
+-- Flyway Migration Script
+-- Description: Outbox of image files to delete, recorded with the rows they belong to and drained in the background
+-- ========================================
+
+-- Create file_deletion_outbox table
+CREATE TABLE file_deletion_outbox (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    blob_key VARCHAR(1024) NOT NULL,
+    recursive BOOLEAN NOT NULL,
+    content_hash VARCHAR(64) NULL,
+    attempts INTEGER NOT NULL,
+    last_error VARCHAR(1024) NULL,
+    available_at TIMESTAMP(0) WITH TIME ZONE NOT NULL,
+    created_at TIMESTAMP(0) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX file_deletion_outbox_available_at_index ON file_deletion_outbox(available_at);
@@ -0,0 +1,22 @@
+-- ========================================
+-- V6__storage_gc_checkpoints.sql
+-- Flyway Migration Script
+-- Description: Progress of the orphaned blob garbage collector, so a pass over the blob store survives restarts
+-- ========================================
+
+-- Create storage_gc_checkpoints table
+CREATE TABLE storage_gc_checkpoints (
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    cursor_key VARCHAR(1024) NULL,
+    pass_started_at TIMESTAMP(0) WITH TIME ZONE NULL,
+    scanned BIGINT NOT NULL,
+    orphans BIGINT NOT NULL,
+    orphan_bytes BIGINT NOT NULL,
+    deleted BIGINT NOT NULL,
+    unrecognized BIGINT NOT NULL,
+    last_completed_at TIMESTAMP(0) WITH TIME ZONE NULL,
+    updated_at TIMESTAMP(0) WITH TIME ZONE NOT NULL
+);
+
+INSERT INTO storage_gc_checkpoints (name, scanned, orphans, orphan_bytes, deleted, unrecognized, updated_at)
+VALUES ('blobs', 0, 0, 0, 0, 0, CURRENT_TIMESTAMP);
@@ -0,0 +1,8 @@
+-- ========================================
+-- V7__bookmarks_keyset_index.sql
+-- Flyway Migration Script
+-- Description: Index for listing the bookmarks of a user by creation time, one keyset page at a time
+-- ========================================
+
+CREATE INDEX bookmarks_user_uuid_created_at_index ON bookmarks(user_uuid, created_at, bookmark_uuid);
+
@@ -0,0 +1,7 @@
+-- ========================================
+-- V8__bookmark_notes_keyset_index.sql
+-- Flyway Migration Script
+-- Description: Index for listing the notes of a bookmark newest first, one keyset page at a time
+-- ========================================
+
+CREATE INDEX bookmark_notes_bookmark_uuid_created_at_index ON bookmark_notes(bookmark_uuid, created_at DESC, note_uuid DESC);
@@ -0,0 +1,16 @@
+-- ========================================
+-- V9__tag_count_journal.sql
+-- Flyway Migration Script
+-- Description: Journal of tag usage counter changes, written with the changes that cause them and added to
+--              tag_usage_summary in the background
+-- ========================================
+
+-- Create tag_count_journal table
+CREATE TABLE tag_count_journal (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_uuid UUID NOT NULL,
+    group_uuid UUID NOT NULL,
+    tag_uuid UUID NOT NULL,
+    delta INTEGER NOT NULL,
+    created_at TIMESTAMP(0) WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,46 @@
+package com.sloyardms.trackerapi.benchmark;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Source images for the benchmarks, generated rather than checked in so any size can be benchmarked.
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * Write a photo-like image: gradients with noise, so it has the detail (and the decode cost) of a photo rather
+     * than flat colour.
+     *
+     * @param target Path to write the image to
+     * @param size   Dimensions of the image, as WIDTHxHEIGHT
+     * @param format Format to write (jpg, png...)
+     * @throws IOException if the image could not be written
+     */
+    static void writePhoto(Path target, String size, String format) throws IOException {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = x * 255 / width;
+                int green = y * 255 / height;
+                int blue = (x ^ y) & 0xFF;
+                image.setRGB(x, y, ((red << 16) | (green << 8) | blue) ^ random.nextInt(32));
+            }
+        }
+        if (!ImageIO.write(image, format, target.toFile())) {
+            throw new IOException("No image writer for " + format);
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.sloyardms.trackerapi.benchmark;
+
+import com.sloyardms.trackerapi.TrackerApiApplication;
+import com.sloyardms.trackerapi.bookmark.BookmarkRepository;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkDto;
+import com.sloyardms.trackerapi.bookmark.entity.Bookmark;
+import com.sloyardms.trackerapi.bookmark.mapper.BookmarkMapper;
+import com.sloyardms.trackerapi.group.GroupRepository;
+import com.sloyardms.trackerapi.group.entity.Group;
+import com.sloyardms.trackerapi.note.NoteRepository;
+import com.sloyardms.trackerapi.note.dto.NoteDto;
+import com.sloyardms.trackerapi.note.entity.Note;
+import com.sloyardms.trackerapi.note.mapper.NoteMapper;
+import com.sloyardms.trackerapi.tag.TagRepository;
+import com.sloyardms.trackerapi.tag.dto.TagDto;
+import com.sloyardms.trackerapi.tag.entity.Tag;
+import com.sloyardms.trackerapi.tag.mapper.TagMapper;
+import com.sloyardms.trackerapi.user.UserRepository;
+import com.sloyardms.trackerapi.user.entity.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The read endpoints served from managed entities mapped to DTOs, against record projections read with constructor
+ * expressions. Both run in a transaction against the dev H2 database, so the time includes the queries; run with
+ * {@code -prof gc} to compare the allocations per operation.
+ * <p>
+ * {@code ./mvnw -P benchmark test-compile exec:exec -Djmh.args="ReadProjectionBenchmark -prof gc"}
+ * <p>
+ * {@code readOnly=false} shows what the entity path costs without the read-only session of a read-only transaction,
+ * which skips the snapshots for dirty checking and the flush.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class ReadProjectionBenchmark {
+
+    private static final int ROWS = 50;
+
+    @Param({"true", "false"})
+    public boolean readOnly;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate transactionTemplate;
+    private BookmarkRepository bookmarkRepository;
+    private NoteRepository noteRepository;
+    private TagRepository tagRepository;
+    private BookmarkMapper bookmarkMapper;
+    private NoteMapper noteMapper;
+    private TagMapper tagMapper;
+
+    private UUID userUuid;
+    private UUID bookmarkUuid;
+    private Pageable notesPage;
+    private Pageable tagsPage;
+
+    @Setup
+    public void setUp() {
+        //Arguments, as they override the dev profile where default properties would not
+        context = new SpringApplicationBuilder(TrackerApiApplication.class)
+                .profiles("dev")
+                .run(
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:read-benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;"
+                                + "MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE",
+                        "--spring.jpa.properties.hibernate.show_sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.hibernate.orm.jdbc.bind=INFO",
+                        "--app.storage.gc.enabled=false");
+        bookmarkRepository = context.getBean(BookmarkRepository.class);
+        noteRepository = context.getBean(NoteRepository.class);
+        tagRepository = context.getBean(TagRepository.class);
+        bookmarkMapper = context.getBean(BookmarkMapper.class);
+        noteMapper = context.getBean(NoteMapper.class);
+        tagMapper = context.getBean(TagMapper.class);
+
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.executeWithoutResult(status -> insertRows());
+        transactionTemplate.setReadOnly(readOnly);
+
+        notesPage = PageRequest.of(0, ROWS, Sort.by(Sort.Direction.DESC, "createdAt"));
+        tagsPage = PageRequest.of(0, ROWS, Sort.by("name"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private void insertRows() {
+        userUuid = UUID.randomUUID();
+        User user = new User();
+        user.setUuid(userUuid);
+        user.setUsername("benchmark");
+        context.getBean(UserRepository.class).save(user);
+
+        Group group = new Group();
+        group.setUuid(UUID.randomUUID());
+        group.setUserUuid(userUuid);
+        group.setName("group");
+        group.setDescription("description");
+        group = context.getBean(GroupRepository.class).save(group);
+
+        Bookmark bookmark = new Bookmark();
+        bookmark.setUuid(UUID.randomUUID());
+        bookmark.setUserUuid(userUuid);
+        bookmark.setGroup(group);
+        bookmark.setTitle("title");
+        bookmark.setUrl("https://example.com");
+        bookmark.setDescription("description");
+        bookmark = bookmarkRepository.save(bookmark);
+        bookmarkUuid = bookmark.getUuid();
+
+        List<Note> notes = new ArrayList<>();
+        List<Tag> tags = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Note note = new Note(UUID.randomUUID());
+            note.setBookmark(bookmark);
+            note.setNote("note " + i);
+            notes.add(note);
+
+            Tag tag = new Tag();
+            tag.setUuid(UUID.randomUUID());
+            tag.setUserUuid(userUuid);
+            tag.setName("tag" + i);
+            tags.add(tag);
+        }
+        noteRepository.saveAll(notes);
+        tagRepository.saveAll(tags);
+    }
+
+    @Benchmark
+    public BookmarkDto bookmarkEntity() {
+        return transactionTemplate.execute(status ->
+                bookmarkMapper.toDto(bookmarkRepository.findById(bookmarkUuid).orElseThrow()));
+    }
+
+    @Benchmark
+    public BookmarkDto bookmarkProjection() {
+        return transactionTemplate.execute(status ->
+                bookmarkMapper.fromProjection(bookmarkRepository.findProjectionByUuid(bookmarkUuid).orElseThrow()));
+    }
+
+    @Benchmark
+    public Page<NoteDto> notesEntities() {
+        return transactionTemplate.execute(status ->
+                noteRepository.findAllByBookmarkUuid(bookmarkUuid, notesPage).map(noteMapper::toDto));
+    }
+
+    @Benchmark
+    public Page<NoteDto> notesProjections() {
+        return transactionTemplate.execute(status ->
+                noteRepository.findProjectionsByBookmarkUuid(bookmarkUuid, notesPage).map(noteMapper::fromProjection));
+    }
+
+    @Benchmark
+    public Page<TagDto> tagsEntities() {
+        return transactionTemplate.execute(status ->
+                tagRepository.findAllByUserUuid(userUuid, tagsPage).map(tagMapper::toDto));
+    }
+
+    @Benchmark
+    public Page<TagDto> tagsProjections() {
+        return transactionTemplate.execute(status ->
+                tagRepository.findProjectionsByUserUuid(userUuid, tagsPage).map(tagMapper::fromProjection));
+    }
+
+}
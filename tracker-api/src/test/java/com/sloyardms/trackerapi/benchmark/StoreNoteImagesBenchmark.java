@@ -0,0 +1,130 @@
+package com.sloyardms.trackerapi.benchmark;
+
+import com.sloyardms.trackerapi.common.enums.ResizeMode;
+import com.sloyardms.trackerapi.common.image.ImageInspector;
+import com.sloyardms.trackerapi.common.image.ImageVariant;
+import com.sloyardms.trackerapi.common.image.ImageVariantEncoder;
+import com.sloyardms.trackerapi.common.image.ThumbnailEncoding;
+import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.common.storage.FileSystemBlobStore;
+import com.sloyardms.trackerapi.config.ImageVariantProperties;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The image worker path: {@link ImageStorageService#storeNoteImages} on a spooled upload, writing the thumbnail and
+ * the original to a file system blob store, plus the thumbnail and the original encoded on their own to tell which
+ * one a regression is in.
+ * <p>
+ * {@code ./mvnw -P benchmark test-compile exec:exec -Djmh.args="StoreNoteImagesBenchmark -prof gc -rf json -rff target/jmh-result.json"}
+ * <p>
+ * Each thread writes under its own note folder, so the suite can be run with {@code -t} or through
+ * {@link ThreadScalingRunner} to see how the path scales with the number of workers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class StoreNoteImagesBenchmark {
+
+    private static final int THUMBNAIL_WIDTH = 800;
+    private static final int THUMBNAIL_HEIGHT = 500;
+    private static final double THUMBNAIL_QUALITY = 0.9;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    @Param({"1600x1200", "4000x3000"})
+    public String size;
+
+    @Param({"fit-width", "fit-both"})
+    public String resizeMode;
+
+    private Path root;
+    private Path upload;
+    private ImageStorageService imageStorageService;
+    private ImageVariantEncoder imageVariantEncoder;
+    private ImageVariant thumbnail;
+    private ImageVariant original;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("store-note-images-benchmark-");
+        Path spool = Files.createDirectories(root.resolve(".spool"));
+        upload = spool.resolve("upload." + format);
+        BenchmarkImages.writePhoto(upload, size, format);
+
+        imageVariantEncoder = new ImageVariantEncoder(40_000_000, Duration.ofHours(1));
+        imageStorageService = new ImageStorageService(
+                root.toString(), spool.toString(),
+                THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT, THUMBNAIL_QUALITY, resizeMode, "jpg", "thumbnail_",
+                List.of(), 1.0, "original_", DataSize.ofMegabytes(50), List.of(320), false,
+                new ImageVariantProperties(List.of()), imageVariantEncoder, new ImageInspector(12_000, 40_000_000, 40_000_000),
+                new FileSystemBlobStore(root)
+        );
+        thumbnail = new ImageVariant("thumbnail", "thumbnail_", THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT,
+                ResizeMode.fromValue(resizeMode), "jpg", THUMBNAIL_QUALITY);
+        original = new ImageVariant("original", "original_", null, null, null, format, 1.0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    /**
+     * Keys and output paths of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class ThreadFiles {
+
+        private final UUID noteUuid = UUID.randomUUID();
+        private String thumbnailPath;
+        private String originalImagePath;
+        private Path thumbnailOutput;
+        private Path originalOutput;
+
+        @Setup
+        public void setUp(StoreNoteImagesBenchmark benchmark) throws IOException {
+            UUID imageUuid = UUID.randomUUID();
+            String folder = String.join("/", UUID.randomUUID().toString(), "bookmarks", UUID.randomUUID().toString(),
+                    "notes", noteUuid.toString());
+            thumbnailPath = folder + "/thumbnail_" + imageUuid + ".jpg";
+            originalImagePath = folder + "/original_" + imageUuid + "." + benchmark.format;
+
+            Path work = Files.createTempDirectory(benchmark.root, "work-");
+            thumbnailOutput = work.resolve("thumbnail.jpg");
+            originalOutput = work.resolve("original." + benchmark.format);
+        }
+
+    }
+
+    @Benchmark
+    public List<ThumbnailEncoding> storeNoteImages(ThreadFiles files) {
+        return imageStorageService.storeNoteImages(files.noteUuid, files.thumbnailPath, files.originalImagePath, upload,
+                "upload." + format);
+    }
+
+    @Benchmark
+    public void encodeThumbnail(ThreadFiles files) throws IOException {
+        imageVariantEncoder.encode(upload, Map.of(thumbnail, files.thumbnailOutput));
+    }
+
+    @Benchmark
+    public void encodeOriginal(ThreadFiles files) throws IOException {
+        imageVariantEncoder.encode(upload, Map.of(original, files.originalOutput));
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.sloyardms.trackerapi.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs a benchmark once per thread count, with the GC profiler, and writes the results of each run as JSON under
+ * {@code target/jmh}, so throughput and allocation per operation can be compared across thread counts and builds.
+ * <p>
+ * {@code ./mvnw -P benchmark test-compile exec:exec -Djmh.main=com.sloyardms.trackerapi.benchmark.ThreadScalingRunner -Djmh.args="StoreNoteImagesBenchmark.storeNoteImages 1,2,4,8"}
+ * <p>
+ * Arguments: the benchmark to run (regular expression, defaults to {@code StoreNoteImagesBenchmark.storeNoteImages})
+ * and the thread counts (defaults to 1, 2, 4 and the number of processors).
+ */
+public class ThreadScalingRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = (args.length > 0) ? args[0] : StoreNoteImagesBenchmark.class.getSimpleName() + ".storeNoteImages";
+        List<Integer> threadCounts = (args.length > 1)
+                ? Arrays.stream(args[1].split(",")).map(String::trim).map(Integer::parseInt).toList()
+                : List.of(1, 2, 4, Runtime.getRuntime().availableProcessors());
+
+        File resultFolder = new File("target/jmh");
+        resultFolder.mkdirs();
+
+        for (int threads : threadCounts.stream().distinct().sorted().toList()) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(resultFolder, "threads-" + threads + ".json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
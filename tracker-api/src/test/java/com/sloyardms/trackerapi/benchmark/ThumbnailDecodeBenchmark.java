@@ -0,0 +1,72 @@
+package com.sloyardms.trackerapi.benchmark;
+
+import com.sloyardms.trackerapi.common.enums.ResizeMode;
+import com.sloyardms.trackerapi.common.image.ImageVariant;
+import com.sloyardms.trackerapi.common.image.ImageVariantEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thumbnail generation for camera-sized JPEGs: full resolution decode then resize, against the subsampled decode
+ * the encoder uses. Run with {@code -prof gc} to compare the allocations too.
+ * <p>
+ * {@code ./mvnw -P benchmark test-compile exec:exec -Djmh.args="ThumbnailDecodeBenchmark -prof gc"}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ThumbnailDecodeBenchmark {
+
+    private static final ImageVariant THUMBNAIL =
+            new ImageVariant("thumbnail", "thumbnail_", 800, 500, ResizeMode.FIT_WIDTH, "jpg", 0.9);
+
+    @Param({"4000x3000", "6000x4000"})
+    public String size;
+
+    private ImageVariantEncoder encoder;
+    private Path workFolder;
+    private Path source;
+    private Path output;
+
+    @Setup
+    public void setUp() throws IOException {
+        encoder = new ImageVariantEncoder(Long.MAX_VALUE, Duration.ofHours(1));
+        workFolder = Files.createTempDirectory("thumbnail-benchmark-");
+        source = workFolder.resolve("source.jpg");
+        output = workFolder.resolve("thumbnail.jpg");
+        BenchmarkImages.writePhoto(source, size, "jpg");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(output);
+        Files.deleteIfExists(workFolder);
+    }
+
+    @Benchmark
+    public void fullResolutionDecode() throws IOException {
+        BufferedImage image = ImageIO.read(source.toFile());
+        try (OutputStream outputStream = Files.newOutputStream(output)) {
+            encoder.writeVariant(image, THUMBNAIL, outputStream);
+        }
+    }
+
+    @Benchmark
+    public void subsampledDecode() throws IOException {
+        encoder.encode(source, Map.of(THUMBNAIL, output));
+    }
+
+}
@@ -3,11 +3,21 @@ package com.sloyardms.trackerapi.controller;
 import com.sloyardms.trackerapi.bookmark.BookmarkRepository;
 import com.sloyardms.trackerapi.bookmark.dto.BookmarkCreateDto;
 import com.sloyardms.trackerapi.bookmark.dto.BookmarkDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsApplyDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsReplaceDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsResultDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkTagsUpdateDto;
 import com.sloyardms.trackerapi.bookmark.dto.BookmarkUpdateDto;
 import com.sloyardms.trackerapi.group.dto.GroupCreateDto;
 import com.sloyardms.trackerapi.group.dto.GroupDto;
 import com.sloyardms.trackerapi.security.DevSecurityConfig;
 import com.sloyardms.trackerapi.security.FakeAuthFilter;
+import com.sloyardms.trackerapi.tag.dto.TagCreateDto;
+import com.sloyardms.trackerapi.tag.dto.TagDto;
+import com.sloyardms.trackerapi.tag_summary.TagCountBuffer;
+import com.sloyardms.trackerapi.tag_summary.TagSummaryRepository;
+import com.sloyardms.trackerapi.tag_summary.entity.TagSummary;
+import com.sloyardms.trackerapi.tag_summary.entity.TagSummaryId;
 import com.sloyardms.trackerapi.user.dto.UserCreateDto;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
@@ -25,11 +35,11 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import java.util.List;
 import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
-import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -40,6 +50,12 @@ public class BookmarkControllerIntegrationTests {
     @Autowired
     private BookmarkRepository bookmarkRepository;
 
+    @Autowired
+    private TagCountBuffer tagCountBuffer;
+
+    @Autowired
+    private TagSummaryRepository tagSummaryRepository;
+
     //Needed for the tests
     private static GroupDto dbValidGroup;
     private static GroupDto dbValidGroup1;
@@ -365,6 +381,179 @@ public class BookmarkControllerIntegrationTests {
                 .body("number", equalTo(0));
     }
 
+    @Test
+    @DisplayName("Find Bookmarks of User - Without Count")
+    void testFindBookmarksOfUser_whenCountNone_returnsSliceWithoutTotals(){
+        //Arrange user
+        UUID userId = FakeAuthFilter.DEV_USER_UUID;
+
+        //Arrange bookmarks
+        for (int i = 0; i < 2; i++) {
+            BookmarkCreateDto bookmarkCreateDto = new BookmarkCreateDto();
+            bookmarkCreateDto.setTitle("title" + i);
+            bookmarkCreateDto.setUrl("url" + i);
+
+            given()
+                    .contentType(ContentType.JSON)
+                    .accept(ContentType.JSON)
+                    .body(bookmarkCreateDto)
+                    .when()
+                    .post("/api/v1/bookmarks")
+                    .then()
+                    .statusCode(HttpStatus.CREATED.value());
+        }
+
+        // Act
+        Response response = given()
+                .accept(ContentType.JSON)
+                .queryParam("size", 1)
+                .queryParam("count", "none")
+                .when()
+                .get("/api/v1/bookmarks/user/{uuid}", userId);
+
+        // Assert
+        response.then()
+                .statusCode(HttpStatus.OK.value())
+                .body("content.size()", equalTo(1))
+                .body("last", equalTo(false))
+                .body("$", not(hasKey("totalElements")))
+                .body("$", not(hasKey("totalPages")));
+    }
+
+    @Test
+    @DisplayName("Find Bookmarks of User - Estimated Count")
+    void testFindBookmarksOfUser_whenCountEstimate_returnsEstimatedThenExactTotal(){
+        //Arrange user
+        UUID userId = FakeAuthFilter.DEV_USER_UUID;
+
+        //Arrange bookmarks
+        for (int i = 0; i < 3; i++) {
+            BookmarkCreateDto bookmarkCreateDto = new BookmarkCreateDto();
+            bookmarkCreateDto.setTitle("estimated" + i);
+            bookmarkCreateDto.setUrl("estimated-url" + i);
+
+            given()
+                    .contentType(ContentType.JSON)
+                    .accept(ContentType.JSON)
+                    .body(bookmarkCreateDto)
+                    .when()
+                    .post("/api/v1/bookmarks")
+                    .then()
+                    .statusCode(HttpStatus.CREATED.value());
+        }
+        int total = given()
+                .accept(ContentType.JSON)
+                .queryParam("size", 1)
+                .queryParam("count", "exact")
+                .when()
+                .get("/api/v1/bookmarks/user/{uuid}", userId)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract()
+                .path("totalElements");
+
+        // Act - first page, read with the estimate of the planner
+        Response firstPage = given()
+                .accept(ContentType.JSON)
+                .queryParam("size", 2)
+                .queryParam("count", "estimate")
+                .when()
+                .get("/api/v1/bookmarks/user/{uuid}", userId);
+
+        // Assert - the estimate covers at least the rows seen and the next one
+        firstPage.then()
+                .statusCode(HttpStatus.OK.value())
+                .body("content.size()", equalTo(2))
+                .body("last", equalTo(false))
+                .body("totalElements", greaterThanOrEqualTo(3));
+
+        // Act - last page
+        Response lastPage = given()
+                .accept(ContentType.JSON)
+                .queryParam("size", 2)
+                .queryParam("page", (total - 1) / 2)
+                .queryParam("count", "estimate")
+                .when()
+                .get("/api/v1/bookmarks/user/{uuid}", userId);
+
+        // Assert - the total is exact once the last row is seen
+        lastPage.then()
+                .statusCode(HttpStatus.OK.value())
+                .body("last", equalTo(true))
+                .body("totalElements", equalTo(total));
+    }
+
+    @Test
+    @DisplayName("Find Bookmarks of User by Cursor - Pages through all Bookmarks")
+    void testFindBookmarksOfUserByCursor_whenNextCursorFollowed_returnsEveryBookmarkOnce(){
+        //Arrange user
+        UUID userId = FakeAuthFilter.DEV_USER_UUID;
+
+        //Arrange bookmarks
+        for (int i = 0; i < 3; i++) {
+            BookmarkCreateDto bookmarkCreateDto = new BookmarkCreateDto();
+            bookmarkCreateDto.setTitle("title" + i);
+            bookmarkCreateDto.setUrl("url" + i);
+
+            given()
+                    .contentType(ContentType.JSON)
+                    .accept(ContentType.JSON)
+                    .body(bookmarkCreateDto)
+                    .when()
+                    .post("/api/v1/bookmarks")
+                    .then()
+                    .statusCode(HttpStatus.CREATED.value());
+        }
+
+        // Act - first page
+        Response firstPage = given()
+                .accept(ContentType.JSON)
+                .queryParam("size", 2)
+                .when()
+                .get("/api/v1/bookmarks/user/{uuid}/cursor", userId);
+
+        // Assert
+        firstPage.then()
+                .statusCode(HttpStatus.OK.value())
+                .body("content.size()", equalTo(2))
+                .body("size", equalTo(2))
+                .body("nextCursor", notNullValue());
+
+        // Act - second page
+        Response secondPage = given()
+                .accept(ContentType.JSON)
+                .queryParam("size", 2)
+                .queryParam("cursor", firstPage.path("nextCursor").toString())
+                .when()
+                .get("/api/v1/bookmarks/user/{uuid}/cursor", userId);
+
+        // Assert
+        secondPage.then()
+                .statusCode(HttpStatus.OK.value())
+                .body("content.size()", equalTo(1))
+                .body("content[0].uuid", not(oneOf(firstPage.path("content[0].uuid"), firstPage.path("content[1].uuid"))))
+                .body("nextCursor", nullValue());
+    }
+
+    @Test
+    @DisplayName("Find Bookmarks of User by Cursor - Invalid Cursor")
+    void testFindBookmarksOfUserByCursor_whenInvalidCursorProvided_returnsInvalidCursorException(){
+        //Arrange user
+        UUID userId = FakeAuthFilter.DEV_USER_UUID;
+
+        // Act
+        Response response = given()
+                .accept(ContentType.JSON)
+                .queryParam("cursor", "not-a-cursor")
+                .when()
+                .get("/api/v1/bookmarks/user/{uuid}/cursor", userId);
+
+        // Assert
+        response.then()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body("type", equalTo("/invalid-cursor"));
+    }
+
     @Test
     @DisplayName("Update Bookmark - Valid Body")
     void testUpdateBookmark_whenValidBodyProvided_returnsUpdatedBookmark(){
@@ -688,4 +877,214 @@ public class BookmarkControllerIntegrationTests {
                 .statusCode(HttpStatus.NOT_FOUND.value());
     }
 
+    @Test
+    @DisplayName("Replace Tags - Valid Tags")
+    void testReplaceTags_whenValidTagsProvided_returnsOnlyTheGivenTags(){
+        BookmarkDto bookmark = createBookmark("tagged");
+        TagDto tagA = createTag("a-" + UUID.randomUUID());
+        TagDto tagB = createTag("b-" + UUID.randomUUID());
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(new BookmarkTagsReplaceDto(List.of(tagA.getUuid(), tagB.getUuid())))
+                .when()
+                .put("/api/v1/bookmarks/{uuid}/tags", bookmark.getUuid())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("uuid", contains(tagA.getUuid().toString(), tagB.getUuid().toString()));
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(new BookmarkTagsReplaceDto(List.of(tagB.getUuid())))
+                .when()
+                .put("/api/v1/bookmarks/{uuid}/tags", bookmark.getUuid())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("uuid", contains(tagB.getUuid().toString()));
+    }
+
+    @Test
+    @DisplayName("Update Tags - Add and Remove")
+    void testUpdateTags_whenTagsAddedAndRemoved_keepsOtherTags(){
+        BookmarkDto bookmark = createBookmark("tagged");
+        TagDto tagA = createTag("a-" + UUID.randomUUID());
+        TagDto tagB = createTag("b-" + UUID.randomUUID());
+        TagDto tagC = createTag("c-" + UUID.randomUUID());
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(new BookmarkTagsUpdateDto(List.of(tagA.getUuid(), tagB.getUuid()), List.of()))
+                .when()
+                .patch("/api/v1/bookmarks/{uuid}/tags", bookmark.getUuid())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(new BookmarkTagsUpdateDto(List.of(tagC.getUuid()), List.of(tagA.getUuid())))
+                .when()
+                .patch("/api/v1/bookmarks/{uuid}/tags", bookmark.getUuid())
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("uuid", contains(tagB.getUuid().toString(), tagC.getUuid().toString()));
+    }
+
+    @Test
+    @DisplayName("Apply Tags - Many Bookmarks")
+    void testApplyTags_whenAppliedTwice_writesOnlyTheMissingTags(){
+        BookmarkDto bookmark1 = createBookmark("first");
+        BookmarkDto bookmark2 = createBookmark("second");
+        TagDto tagA = createTag("a-" + UUID.randomUUID());
+        TagDto tagB = createTag("b-" + UUID.randomUUID());
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(new BookmarkTagsReplaceDto(List.of(tagA.getUuid())))
+                .when()
+                .put("/api/v1/bookmarks/{uuid}/tags", bookmark1.getUuid())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+
+        BookmarkTagsApplyDto applyDto = new BookmarkTagsApplyDto(
+                List.of(bookmark1.getUuid(), bookmark2.getUuid()), List.of(tagA.getUuid(), tagB.getUuid()), List.of());
+
+        BookmarkTagsResultDto result = given()
+                .contentType(ContentType.JSON)
+                .body(applyDto)
+                .when()
+                .post("/api/v1/bookmarks/tags:apply")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract()
+                .as(BookmarkTagsResultDto.class);
+
+        Assertions.assertEquals(2, result.getBookmarks());
+        Assertions.assertEquals(3, result.getAdded());
+        Assertions.assertEquals(0, result.getRemoved());
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(applyDto)
+                .when()
+                .post("/api/v1/bookmarks/tags:apply")
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("added", equalTo(0));
+    }
+
+    @Test
+    @DisplayName("Apply Tags - Invalid Tag UUID")
+    void testApplyTags_whenInvalidTagUuidProvided_returnsTagNotFoundException(){
+        BookmarkDto bookmark = createBookmark("tagged");
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(new BookmarkTagsApplyDto(List.of(bookmark.getUuid()), List.of(UUID.randomUUID()), List.of()))
+                .when()
+                .post("/api/v1/bookmarks/tags:apply")
+                .then()
+                .statusCode(HttpStatus.NOT_FOUND.value());
+    }
+
+    @Test
+    @DisplayName("Apply Tags - Invalid Bookmark UUID")
+    void testApplyTags_whenInvalidBookmarkUuidProvided_returnsBookmarkNotFoundException(){
+        TagDto tag = createTag("a-" + UUID.randomUUID());
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(new BookmarkTagsApplyDto(List.of(UUID.randomUUID()), List.of(tag.getUuid()), List.of()))
+                .when()
+                .post("/api/v1/bookmarks/tags:apply")
+                .then()
+                .statusCode(HttpStatus.NOT_FOUND.value());
+    }
+
+    @Test
+    @DisplayName("Update and Delete Bookmark - Tag counters follow the attached tags")
+    void testUpdateAndDeleteBookmark_whenTagsAttachedThroughTagEndpoints_movesAndReleasesTheirCounters(){
+        BookmarkDto bookmark = createBookmark("counted");
+        TagDto tagA = createTag("a-" + UUID.randomUUID());
+        TagDto tagB = createTag("b-" + UUID.randomUUID());
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(new BookmarkTagsReplaceDto(List.of(tagA.getUuid(), tagB.getUuid())))
+                .when()
+                .put("/api/v1/bookmarks/{uuid}/tags", bookmark.getUuid())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+        tagCountBuffer.flush();
+        Assertions.assertEquals(1, bookmarkCount(dbValidGroup.getUuid(), tagA.getUuid()));
+
+        //Act - move the bookmark to another group
+        BookmarkUpdateDto bookmarkUpdateDto = new BookmarkUpdateDto();
+        bookmarkUpdateDto.setGroupUuid(dbValidGroup1.getUuid());
+        given()
+                .contentType(ContentType.JSON)
+                .body(bookmarkUpdateDto)
+                .when()
+                .patch("/api/v1/bookmarks/{uuid}", bookmark.getUuid())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+        tagCountBuffer.flush();
+
+        //Assert - both tags are counted in the new group only
+        for (UUID tagUuid : List.of(tagA.getUuid(), tagB.getUuid())) {
+            Assertions.assertEquals(0, bookmarkCount(dbValidGroup.getUuid(), tagUuid));
+            Assertions.assertEquals(1, bookmarkCount(dbValidGroup1.getUuid(), tagUuid));
+        }
+
+        //Act - delete the bookmark
+        given()
+                .when()
+                .delete("/api/v1/bookmarks/{uuid}", bookmark.getUuid())
+                .then()
+                .statusCode(HttpStatus.NO_CONTENT.value());
+        tagCountBuffer.flush();
+
+        //Assert - the tags are no longer counted
+        for (UUID tagUuid : List.of(tagA.getUuid(), tagB.getUuid())) {
+            Assertions.assertEquals(0, bookmarkCount(dbValidGroup1.getUuid(), tagUuid));
+        }
+    }
+
+    private int bookmarkCount(UUID groupUuid, UUID tagUuid){
+        return tagSummaryRepository.findById(new TagSummaryId(FakeAuthFilter.DEV_USER_UUID, groupUuid, tagUuid))
+                .map(TagSummary::getBookmarkCount)
+                .orElse(0);
+    }
+
+    private BookmarkDto createBookmark(String title){
+        BookmarkCreateDto bookmarkCreateDto = new BookmarkCreateDto();
+        bookmarkCreateDto.setTitle(title);
+        bookmarkCreateDto.setUrl("url-" + title);
+        bookmarkCreateDto.setGroupUuid(dbValidGroup.getUuid());
+
+        return given()
+                .contentType(ContentType.JSON)
+                .body(bookmarkCreateDto)
+                .when()
+                .post("/api/v1/bookmarks")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .as(BookmarkDto.class);
+    }
+
+    private TagDto createTag(String name){
+        TagCreateDto tagCreateDto = new TagCreateDto();
+        tagCreateDto.setName(name);
+
+        return given()
+                .contentType(ContentType.JSON)
+                .body(tagCreateDto)
+                .when()
+                .post("/api/v1/tags")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .as(TagDto.class);
+    }
+
 }
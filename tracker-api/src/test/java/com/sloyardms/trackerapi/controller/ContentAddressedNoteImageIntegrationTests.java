@@ -0,0 +1,328 @@
+package com.sloyardms.trackerapi.controller;
+
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkCreateDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkDto;
+import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.file_deletion.FileDeletionReaper;
+import com.sloyardms.trackerapi.image_blob.ImageBlobRepository;
+import com.sloyardms.trackerapi.image_blob.entity.ImageBlob;
+import com.sloyardms.trackerapi.note.dto.NoteCreateDto;
+import com.sloyardms.trackerapi.note.dto.NoteDto;
+import com.sloyardms.trackerapi.note_image.NoteImageRepository;
+import com.sloyardms.trackerapi.note_image.dto.NoteImageDto;
+import com.sloyardms.trackerapi.security.DevSecurityConfig;
+import com.sloyardms.trackerapi.security.FakeAuthFilter;
+import com.sloyardms.trackerapi.user.dto.UserCreateDto;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.startsWith;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.storage.content-addressed=true",
+        // The outbox is drained by the tests, so they can check the files in between
+        "app.storage.deletion.reaper-delay=1h"
+})
+@ActiveProfiles("test")
+@Testcontainers
+@Import(DevSecurityConfig.class)
+public class ContentAddressedNoteImageIntegrationTests {
+
+    @Autowired
+    private NoteImageRepository noteImageRepository;
+
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private FileDeletionReaper fileDeletionReaper;
+
+    //Need for the tests
+    private static UUID validBookmarkUuid;
+
+    @Container
+    @ServiceConnection
+    @SuppressWarnings("resource")
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                    .withDatabaseName("tracker_db")
+                    .withUsername("user")
+                    .withPassword("password");
+
+    @BeforeAll
+    static void setupAll(@LocalServerPort int port) {
+        RestAssured.port = port;
+
+        // Create valid User
+
+        UserCreateDto user = new UserCreateDto();
+        user.setUuid(FakeAuthFilter.DEV_USER_UUID);
+        user.setUsername("username");
+
+        given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(user)
+                .when()
+                .post("/api/v1/users")
+                .then()
+                .statusCode(HttpStatus.CREATED.value());
+
+        // Create valid Bookmark (without Group)
+
+        BookmarkCreateDto bookmarkCreateDto = new BookmarkCreateDto();
+        bookmarkCreateDto.setTitle("title");
+        bookmarkCreateDto.setUrl("url");
+
+        validBookmarkUuid = given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(bookmarkCreateDto)
+                .when()
+                .post("/api/v1/bookmarks")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .as(BookmarkDto.class)
+                .getUuid();
+    }
+
+    @BeforeEach
+    void beforeEach() throws InterruptedException {
+        // Leave no pending deletion behind from a previous test
+        drainOutbox();
+    }
+
+    @Test
+    @DisplayName("Test Postgres container is created and running")
+    void testPostgresContainer_whenCreatedAndRunning_returnsTrue() {
+        Assertions.assertTrue(postgresContainer.isCreated(), "Postgres container should be created");
+        Assertions.assertTrue(postgresContainer.isRunning(), "Postgres container should be running");
+    }
+
+    @Test
+    @DisplayName("Create NoteImage - Identical uploads share one blob")
+    void testCreateNoteImage_whenSameContentUploadedTwice_sharesFilesAndCountsReferences() throws Exception {
+        UUID noteUuid = createNote();
+
+        //Act - upload the same content twice
+        NoteImageDto first = uploadImage(noteUuid);
+        NoteImageDto second = uploadImage(noteUuid);
+
+        //Assert - both images point to the same content-addressed files, referenced twice
+        Assertions.assertEquals(first.getOriginalImagePath(), second.getOriginalImagePath());
+        Assertions.assertEquals(first.getThumbnailPath(), second.getThumbnailPath());
+        String contentHash = contentHashOf(first);
+        Assertions.assertEquals(2, refCount(contentHash));
+
+        Assertions.assertEquals("READY", awaitImageStatus(first.getUuid()));
+        Assertions.assertEquals("READY", awaitImageStatus(second.getUuid()));
+        assertFilesExist(first, true);
+
+        //Cleanup
+        deleteNote(noteUuid);
+        drainOutbox();
+    }
+
+    @Test
+    @DisplayName("Delete NoteImage - Files are removed with the last reference only")
+    void testDeleteNoteImage_whenContentStillReferenced_keepsFilesUntilLastRelease() throws Exception {
+        UUID noteUuid = createNote();
+        NoteImageDto first = uploadImage(noteUuid);
+        NoteImageDto second = uploadImage(noteUuid);
+        String contentHash = contentHashOf(first);
+        Assertions.assertEquals("READY", awaitImageStatus(first.getUuid()));
+        Assertions.assertEquals("READY", awaitImageStatus(second.getUuid()));
+
+        //Act - release the first reference
+        deleteImage(first.getUuid());
+        drainOutbox();
+
+        //Assert - the files are still there for the second image
+        Assertions.assertEquals(1, refCount(contentHash));
+        assertFilesExist(second, true);
+        given()
+                .when()
+                .get("/api/v1/note-images/{uuid}/original", second.getUuid())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+
+        //Act - release the last reference
+        deleteImage(second.getUuid());
+        drainOutbox();
+
+        //Assert - the blob and its files are gone
+        Assertions.assertTrue(imageBlobRepository.findById(contentHash).isEmpty());
+        assertFilesExist(second, false);
+
+        //Cleanup
+        deleteNote(noteUuid);
+    }
+
+    @Test
+    @DisplayName("Delete Note - Shared content outlives the note")
+    void testDeleteNote_whenContentSharedWithAnotherNote_keepsFilesUntilLastNoteDeleted() throws Exception {
+        UUID firstNoteUuid = createNote();
+        UUID secondNoteUuid = createNote();
+        NoteImageDto first = uploadImage(firstNoteUuid);
+        NoteImageDto second = uploadImage(secondNoteUuid);
+        String contentHash = contentHashOf(first);
+        Assertions.assertEquals("READY", awaitImageStatus(first.getUuid()));
+        Assertions.assertEquals("READY", awaitImageStatus(second.getUuid()));
+
+        //Act - delete the first note, which releases its image
+        deleteNote(firstNoteUuid);
+        drainOutbox();
+
+        //Assert - the content is still referenced by the second note
+        Assertions.assertEquals(1, refCount(contentHash));
+        assertFilesExist(second, true);
+
+        //Act - delete the second note
+        deleteNote(secondNoteUuid);
+        drainOutbox();
+
+        //Assert - nothing references the content anymore
+        Assertions.assertTrue(imageBlobRepository.findById(contentHash).isEmpty());
+        assertFilesExist(second, false);
+    }
+
+    @Test
+    @DisplayName("Delete NoteImage - Content uploaded again before its files are reaped")
+    void testDeleteNoteImage_whenContentUploadedAgainBeforeReaping_keepsFiles() throws Exception {
+        UUID noteUuid = createNote();
+        NoteImageDto first = uploadImage(noteUuid);
+        String contentHash = contentHashOf(first);
+        Assertions.assertEquals("READY", awaitImageStatus(first.getUuid()));
+
+        //Act - release the only reference, then upload the same content before the outbox is drained
+        deleteImage(first.getUuid());
+        Assertions.assertTrue(imageBlobRepository.findById(contentHash).isEmpty());
+        NoteImageDto second = uploadImage(noteUuid);
+        Assertions.assertEquals("READY", awaitImageStatus(second.getUuid()));
+        drainOutbox();
+
+        //Assert - the pending deletion left the files of the new reference alone
+        Assertions.assertEquals(1, refCount(contentHash));
+        assertFilesExist(second, true);
+        given()
+                .when()
+                .get("/api/v1/note-images/{uuid}/original", second.getUuid())
+                .then()
+                .statusCode(HttpStatus.OK.value());
+
+        //Cleanup
+        deleteNote(noteUuid);
+        drainOutbox();
+    }
+
+    private UUID createNote() {
+        NoteCreateDto createNoteDto = new NoteCreateDto();
+        createNoteDto.setNote("my note");
+
+        return given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(createNoteDto)
+                .when()
+                .post("/api/v1/bookmarks/" + validBookmarkUuid + "/notes")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .as(NoteDto.class)
+                .getUuid();
+    }
+
+    private NoteImageDto uploadImage(UUID noteUuid) {
+        File imageFile = new File(Objects.requireNonNull(getClass().getClassLoader().getResource("test-image.jpg")).getFile());
+
+        return given()
+                .multiPart("file", imageFile)
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images", noteUuid)
+                .then()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .body("originalImagePath", startsWith("cas/"))
+                .extract()
+                .as(NoteImageDto.class);
+    }
+
+    private void deleteImage(UUID imageUuid) {
+        given()
+                .when()
+                .delete("/api/v1/note-images/{uuid}", imageUuid)
+                .then()
+                .statusCode(HttpStatus.NO_CONTENT.value());
+    }
+
+    private void deleteNote(UUID noteUuid) {
+        given()
+                .when()
+                .delete("/api/v1/notes/{uuid}", noteUuid)
+                .then()
+                .statusCode(HttpStatus.NO_CONTENT.value());
+    }
+
+    private String awaitImageStatus(UUID imageUuid) throws InterruptedException {
+        String status = "PENDING";
+        for (int attempt = 0; attempt < 50 && status.equals("PENDING"); attempt++) {
+            Thread.sleep(100);
+            status = given()
+                    .accept(ContentType.JSON)
+                    .when()
+                    .get("/api/v1/note-images/{uuid}", imageUuid)
+                    .then()
+                    .extract()
+                    .path("status");
+        }
+        return status;
+    }
+
+    private void drainOutbox() throws InterruptedException {
+        // available_at is stored to the second, so a row recorded just now may only be due within the next second
+        Thread.sleep(1000);
+        fileDeletionReaper.drain();
+    }
+
+    private String contentHashOf(NoteImageDto noteImage) {
+        return noteImageRepository.findById(noteImage.getUuid()).orElseThrow().getContentHash();
+    }
+
+    private int refCount(String contentHash) {
+        return imageBlobRepository.findById(contentHash).map(ImageBlob::getRefCount).orElse(0);
+    }
+
+    private void assertFilesExist(NoteImageDto noteImage, boolean expected) throws IOException {
+        for (String key : List.of(noteImage.getOriginalImagePath(), noteImage.getThumbnailPath())) {
+            Assertions.assertEquals(expected, blobStore.exists(imageStorageService.toKey(key)), key);
+        }
+    }
+
+}
@@ -2,19 +2,25 @@ package com.sloyardms.trackerapi.controller;
 
 import com.sloyardms.trackerapi.bookmark.dto.BookmarkCreateDto;
 import com.sloyardms.trackerapi.bookmark.dto.BookmarkDto;
+import com.sloyardms.trackerapi.common.enums.ImageProcessingStatus;
 import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.common.storage.BlobStore;
 import com.sloyardms.trackerapi.note.NoteRepository;
 import com.sloyardms.trackerapi.note.dto.NoteCreateDto;
 import com.sloyardms.trackerapi.note.dto.NoteDto;
 import com.sloyardms.trackerapi.note.dto.NoteUpdateDto;
+import com.sloyardms.trackerapi.note_image.NoteImageRecovery;
+import com.sloyardms.trackerapi.note_image.NoteImageRepository;
 import com.sloyardms.trackerapi.security.DevSecurityConfig;
 import com.sloyardms.trackerapi.security.FakeAuthFilter;
 import com.sloyardms.trackerapi.user.dto.UserCreateDto;
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.restassured.response.Response;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
@@ -26,13 +32,30 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.zip.CRC32;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.oneOf;
+import static org.hamcrest.Matchers.startsWith;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -46,6 +69,21 @@ public class NoteControllerIntegrationTests {
     @Autowired
     private ImageStorageService imageStorageService;
 
+    @Autowired
+    private NoteImageRepository noteImageRepository;
+
+    @Autowired
+    private NoteImageRecovery noteImageRecovery;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.storage.spool-path}")
+    private Path spoolPath;
+
     //Need for the tests
     private static UUID validBookmarkUuid;
 
@@ -296,6 +334,104 @@ public class NoteControllerIntegrationTests {
                 .statusCode(HttpStatus.NOT_FOUND.value());
     }
 
+    @Test
+    @DisplayName("Find Notes of Bookmark by Cursor - Pages through all Notes")
+    void testFindNotesByBookmarkByCursor_whenNextCursorFollowed_returnsEveryNoteOnce(){
+        //Arrange notes
+        for (int i = 0; i < 3; i++) {
+            NoteCreateDto createNoteDto = new NoteCreateDto();
+            createNoteDto.setNote("note" + i);
+
+            given()
+                    .contentType(ContentType.JSON)
+                    .accept(ContentType.JSON)
+                    .body(createNoteDto)
+                    .when()
+                    .post("/api/v1/bookmarks/" + validBookmarkUuid + "/notes")
+                    .then()
+                    .statusCode(HttpStatus.CREATED.value());
+        }
+
+        //Act - first page
+        Response firstPage = given()
+                .accept(ContentType.JSON)
+                .queryParam("size", 2)
+                .when()
+                .get("/api/v1/bookmarks/{uuid}/notes/cursor", validBookmarkUuid);
+
+        //Assert
+        firstPage.then()
+                .statusCode(HttpStatus.OK.value())
+                .body("content.size()", equalTo(2))
+                .body("nextCursor", notNullValue());
+
+        //Act - second page
+        Response secondPage = given()
+                .accept(ContentType.JSON)
+                .queryParam("size", 2)
+                .queryParam("cursor", firstPage.path("nextCursor").toString())
+                .when()
+                .get("/api/v1/bookmarks/{uuid}/notes/cursor", validBookmarkUuid);
+
+        //Assert
+        secondPage.then()
+                .statusCode(HttpStatus.OK.value())
+                .body("content.size()", equalTo(1))
+                .body("content[0].uuid", not(oneOf(firstPage.path("content[0].uuid"), firstPage.path("content[1].uuid"))))
+                .body("nextCursor", nullValue());
+    }
+
+    @Test
+    @DisplayName("Find Notes of Bookmark by Cursor - Bookmark without Notes")
+    void testFindNotesByBookmarkByCursor_whenBookmarkHasNoNotes_returnsEmptyPage(){
+        //Arrange bookmark
+        BookmarkCreateDto bookmarkCreateDto = new BookmarkCreateDto();
+        bookmarkCreateDto.setTitle("bookmark without notes");
+        bookmarkCreateDto.setUrl("url-without-notes");
+
+        UUID emptyBookmarkUuid = given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(bookmarkCreateDto)
+                .when()
+                .post("/api/v1/bookmarks")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .as(BookmarkDto.class)
+                .getUuid();
+
+        //Act
+        Response response = given()
+                .accept(ContentType.JSON)
+                .queryParam("size", 2)
+                .when()
+                .get("/api/v1/bookmarks/{uuid}/notes/cursor", emptyBookmarkUuid);
+
+        //Assert
+        response.then()
+                .statusCode(HttpStatus.OK.value())
+                .body("content.size()", equalTo(0))
+                .body("nextCursor", nullValue());
+    }
+
+    @Test
+    @DisplayName("Find Notes of Bookmark by Cursor - Invalid Bookmark UUID")
+    void testFindNotesByBookmarkByCursor_whenInvalidBookmarkUuidProvided_returnsBookmarkNotFound(){
+        //Arrange bookmark
+        UUID invalidBookmarkUuid = UUID.randomUUID();
+
+        //Act - find notes by bookmark uuid
+        Response response = given()
+                .accept(ContentType.JSON)
+                .when()
+                .get("/api/v1/bookmarks/{uuid}/notes/cursor", invalidBookmarkUuid);
+
+        //Assert
+        response.then()
+                .statusCode(HttpStatus.NOT_FOUND.value());
+    }
+
     @Test
     @DisplayName("Update Note - Valid Body")
     void testUpdateNote_whenValidBodyProvided_returnsUpdatedNote(){
@@ -481,14 +617,16 @@ public class NoteControllerIntegrationTests {
                 .when()
                 .post("/api/v1/notes/{uuid}/images", savedNote.getUuid());
 
-        //Assert - NoteImage created
+        //Assert - NoteImage accepted for processing
         response.then()
-                .statusCode(HttpStatus.CREATED.value())
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .header("Location", notNullValue())
                 .body("uuid", notNullValue())
                 .body("thumbnailPath", notNullValue())
                 .body("thumbnailMimeType", notNullValue())
                 .body("originalImageMimeType", notNullValue())
-                .body("originalImagePath", notNullValue());
+                .body("originalImagePath", notNullValue())
+                .body("status", equalTo("PENDING"));
 
         //Cleanup - delete the created note files
         given()
@@ -498,4 +636,436 @@ public class NoteControllerIntegrationTests {
                 .statusCode(HttpStatus.NO_CONTENT.value());
     }
 
+    @Test
+    @DisplayName("Download NoteImage - Conditional and Range requests")
+    void testDownloadNoteImage_whenImageIsReady_supportsEtagAndRange() throws InterruptedException {
+        //Arrange note
+        NoteCreateDto createNoteDto = new NoteCreateDto();
+        createNoteDto.setNote("my note");
+
+        //Arrange image file
+        File imageFile = new File(
+                Objects.requireNonNull(
+                        getClass().getClassLoader().getResource("test-image.jpg")
+                ).getFile()
+        );
+
+        NoteDto savedNote = given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(createNoteDto)
+                .when()
+                .post("/api/v1/bookmarks/" + validBookmarkUuid + "/notes")
+                .then()
+                .extract()
+                .as(NoteDto.class);
+
+        String imageUuid = given()
+                .multiPart("file", imageFile)
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images", savedNote.getUuid())
+                .then()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .extract()
+                .path("uuid");
+
+        //Wait for the workers to produce the image files
+        String status = "PENDING";
+        for (int attempt = 0; attempt < 50 && status.equals("PENDING"); attempt++) {
+            Thread.sleep(100);
+            status = given()
+                    .accept(ContentType.JSON)
+                    .when()
+                    .get("/api/v1/note-images/{uuid}", imageUuid)
+                    .then()
+                    .extract()
+                    .path("status");
+        }
+        Assertions.assertEquals("READY", status);
+
+        //Act - download the original image
+        Response response = given()
+                .when()
+                .get("/api/v1/note-images/{uuid}/original", imageUuid);
+
+        //Assert - full content with caching headers
+        response.then()
+                .statusCode(HttpStatus.OK.value())
+                .header("ETag", notNullValue())
+                .header("Cache-Control", equalTo("private, max-age=31536000, immutable"))
+                .header("Accept-Ranges", equalTo("bytes"));
+        String etag = response.getHeader("ETag");
+
+        //Assert - matching If-None-Match is not modified
+        given()
+                .header("If-None-Match", etag)
+                .when()
+                .get("/api/v1/note-images/{uuid}/original", imageUuid)
+                .then()
+                .statusCode(HttpStatus.NOT_MODIFIED.value());
+
+        //Assert - single range is partial content
+        byte[] range = given()
+                .header("Range", "bytes=0-9")
+                .when()
+                .get("/api/v1/note-images/{uuid}/thumbnail", imageUuid)
+                .then()
+                .statusCode(HttpStatus.PARTIAL_CONTENT.value())
+                .header("Content-Range", startsWith("bytes 0-9/"))
+                .extract()
+                .asByteArray();
+        Assertions.assertEquals(10, range.length);
+
+        //Cleanup - delete the created note files
+        given()
+                .when()
+                .delete("/api/v1/notes/{uuid}", savedNote.getUuid())
+                .then()
+                .statusCode(HttpStatus.NO_CONTENT.value());
+    }
+
+    @Test
+    @DisplayName("Create NoteImages - Batch of valid files")
+    void testCreateNoteImages_whenValidFilesProvided_returnsCreatedNoteImages() {
+        //Arrange note
+        NoteCreateDto createNoteDto = new NoteCreateDto();
+        createNoteDto.setNote("my note");
+
+        //Arrange image file
+        File imageFile = new File(
+                Objects.requireNonNull(
+                        getClass().getClassLoader().getResource("test-image.jpg")
+                ).getFile()
+        );
+
+        //Act - save note in valid bookmark
+        NoteDto savedNote = given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(createNoteDto)
+                .when()
+                .post("/api/v1/bookmarks/" + validBookmarkUuid + "/notes")
+                .then()
+                .extract()
+                .as(NoteDto.class);
+
+        //Act - upload three images in one request
+        Response response = given()
+                .multiPart("files", imageFile)
+                .multiPart("files", imageFile)
+                .multiPart("files", imageFile)
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images:batch", savedNote.getUuid());
+
+        //Assert - every NoteImage accepted for processing
+        response.then()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .body("size()", equalTo(3))
+                .body("uuid", everyItem(notNullValue()))
+                .body("status", everyItem(equalTo("PENDING")));
+
+        //Cleanup - delete the created note files
+        given()
+                .when()
+                .delete("/api/v1/notes/{uuid}", savedNote.getUuid())
+                .then()
+                .statusCode(HttpStatus.NO_CONTENT.value());
+    }
+
+    @Test
+    @DisplayName("Get NoteImage Rendition - Configured width")
+    void testGetRendition_whenWidthAllowed_returnsResizedImageAndStoresIt() throws Exception {
+        UUID noteUuid = createNote();
+        String imageUuid = uploadImage(noteUuid);
+        Assertions.assertEquals("READY", awaitImageStatus(imageUuid));
+
+        //Act
+        Response response = given()
+                .when()
+                .get("/api/v1/note-images/{uuid}?w=320", imageUuid);
+
+        //Assert - resized image, with an entity tag of its own, stored next to the original
+        response.then()
+                .statusCode(HttpStatus.OK.value())
+                .header("Content-Type", startsWith("image/jpeg"))
+                .header("ETag", containsString("-w320"));
+        Assertions.assertEquals(320, ImageIO.read(new ByteArrayInputStream(response.asByteArray())).getWidth());
+
+        String originalKey = imageStorageService.toKey(noteImageRepository.findById(UUID.fromString(imageUuid))
+                .orElseThrow().getOriginalImagePath());
+        Assertions.assertTrue(blobStore.exists(imageStorageService.generateRenditionPath(originalKey, 320)));
+
+        //Cleanup - delete the created note files
+        given()
+                .when()
+                .delete("/api/v1/notes/{uuid}", noteUuid)
+                .then()
+                .statusCode(HttpStatus.NO_CONTENT.value());
+    }
+
+    @Test
+    @DisplayName("Get NoteImage Rendition - Width not configured")
+    void testGetRendition_whenWidthNotAllowed_returnsBadRequest() throws Exception {
+        UUID noteUuid = createNote();
+        String imageUuid = uploadImage(noteUuid);
+        Assertions.assertEquals("READY", awaitImageStatus(imageUuid));
+
+        given()
+                .when()
+                .get("/api/v1/note-images/{uuid}?w=333", imageUuid)
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body("type", equalTo("/unsupported-image-width"));
+
+        //Cleanup - delete the created note files
+        given()
+                .when()
+                .delete("/api/v1/notes/{uuid}", noteUuid)
+                .then()
+                .statusCode(HttpStatus.NO_CONTENT.value());
+    }
+
+    @Test
+    @DisplayName("Get NoteImage Rendition - Rendered once, then served")
+    void testGetRendition_whenRequestedAgain_reusesRenderedFile() throws Exception {
+        UUID noteUuid = createNote();
+        String imageUuid = uploadImage(noteUuid);
+        Assertions.assertEquals("READY", awaitImageStatus(imageUuid));
+        long rendersBefore = meterRegistry.timer("image.rendition.render").count();
+
+        //Act - request the same rendition twice
+        Response first = given()
+                .when()
+                .get("/api/v1/note-images/{uuid}?w=120", imageUuid);
+        Response second = given()
+                .when()
+                .get("/api/v1/note-images/{uuid}?w=120", imageUuid);
+
+        //Assert - only the first request rendered it, the second got the same file
+        first.then().statusCode(HttpStatus.OK.value());
+        second.then().statusCode(HttpStatus.OK.value());
+        Assertions.assertEquals(rendersBefore + 1, meterRegistry.timer("image.rendition.render").count());
+        Assertions.assertEquals(first.getHeader("ETag"), second.getHeader("ETag"));
+        Assertions.assertArrayEquals(first.asByteArray(), second.asByteArray());
+
+        //Assert - and a conditional request for it is not modified
+        given()
+                .header("If-None-Match", first.getHeader("ETag"))
+                .when()
+                .get("/api/v1/note-images/{uuid}?w=120", imageUuid)
+                .then()
+                .statusCode(HttpStatus.NOT_MODIFIED.value());
+
+        //Cleanup - delete the created note files
+        given()
+                .when()
+                .delete("/api/v1/notes/{uuid}", noteUuid)
+                .then()
+                .statusCode(HttpStatus.NO_CONTENT.value());
+    }
+
+    @Test
+    @DisplayName("Recover NoteImages - Pending images of a previous run")
+    void testRecoverNoteImages_whenPendingImagesLeftBehind_resubmitsOrFailsThem() throws Exception {
+        //Arrange - two processed images, put back to PENDING as if the application stopped before processing them
+        UUID noteUuid = createNote();
+        String resumedUuid = uploadImage(noteUuid);
+        String lostUuid = uploadImage(noteUuid);
+        Assertions.assertEquals("READY", awaitImageStatus(resumedUuid));
+        Assertions.assertEquals("READY", awaitImageStatus(lostUuid));
+
+        Instant previousRun = Instant.now().minus(1, ChronoUnit.HOURS);
+        noteImageRepository.updateStatus(UUID.fromString(resumedUuid), ImageProcessingStatus.PENDING, previousRun);
+        noteImageRepository.updateStatus(UUID.fromString(lostUuid), ImageProcessingStatus.PENDING, previousRun);
+
+        //Arrange - only the first one still has its raw upload, and an upload nobody owns is left in the spool folder
+        Files.createDirectories(spoolPath);
+        Path resumedUpload = spoolPath.resolve("upload_" + resumedUuid + ".jpg");
+        Path orphanUpload = spoolPath.resolve("upload_" + UUID.randomUUID() + ".jpg");
+        Files.copy(testImage().toPath(), resumedUpload);
+        Files.copy(testImage().toPath(), orphanUpload);
+        Files.setLastModifiedTime(resumedUpload, FileTime.from(previousRun));
+        Files.setLastModifiedTime(orphanUpload, FileTime.from(previousRun));
+
+        //Act
+        noteImageRecovery.recover();
+
+        //Assert - resubmitted image is processed again, the other one failed, and the spool folder is swept
+        Assertions.assertEquals("READY", awaitImageStatus(resumedUuid));
+        Assertions.assertEquals("FAILED", given()
+                .accept(ContentType.JSON)
+                .when()
+                .get("/api/v1/note-images/{uuid}", lostUuid)
+                .then()
+                .statusCode(HttpStatus.OK.value())
+                .extract()
+                .path("status"));
+        Assertions.assertFalse(Files.exists(orphanUpload));
+
+        //Cleanup - delete the created note files
+        given()
+                .when()
+                .delete("/api/v1/notes/{uuid}", noteUuid)
+                .then()
+                .statusCode(HttpStatus.NO_CONTENT.value());
+    }
+
+    @Test
+    @DisplayName("Create NoteImage - File that is not an image")
+    void testCreateNoteImage_whenMagicBytesDoNotMatch_returnsUnsupportedMediaType() {
+        UUID noteUuid = createNote();
+
+        given()
+                .multiPart("file", "fake.jpg", "not an image at all".getBytes(), "image/jpeg")
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images", noteUuid)
+                .then()
+                .statusCode(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value())
+                .body("type", equalTo("/invalid-image"));
+
+        Assertions.assertTrue(noteImageRepository.findAllByNoteUuid(noteUuid).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Create NoteImage - WebP upload")
+    void testCreateNoteImage_whenWebpProvided_returnsUnsupportedMediaType() {
+        UUID noteUuid = createNote();
+        byte[] webp = {'R', 'I', 'F', 'F', 0x24, 0, 0, 0, 'W', 'E', 'B', 'P', 'V', 'P', '8', ' '};
+
+        given()
+                .multiPart("file", "image.webp", webp, "image/webp")
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images", noteUuid)
+                .then()
+                .statusCode(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value())
+                .body("type", equalTo("/invalid-image"));
+    }
+
+    @Test
+    @DisplayName("Create NoteImage - Upload above the size limit")
+    void testCreateNoteImage_whenFileTooLarge_returnsPayloadTooLarge() {
+        UUID noteUuid = createNote();
+        byte[] content = new byte[50 * 1024 * 1024 + 1];
+        content[0] = (byte) 0xFF;
+        content[1] = (byte) 0xD8;
+        content[2] = (byte) 0xFF;
+
+        given()
+                .multiPart("file", "large.jpg", content, "image/jpeg")
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images", noteUuid)
+                .then()
+                .statusCode(HttpStatus.PAYLOAD_TOO_LARGE.value());
+
+        Assertions.assertTrue(noteImageRepository.findAllByNoteUuid(noteUuid).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Create NoteImage - Image wider than the dimension limit")
+    void testCreateNoteImage_whenDimensionTooLarge_returnsPayloadTooLarge() throws IOException {
+        UUID noteUuid = createNote();
+
+        given()
+                .multiPart("file", "wide.png", pngHeader(12001, 1), "image/png")
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images", noteUuid)
+                .then()
+                .statusCode(HttpStatus.PAYLOAD_TOO_LARGE.value())
+                .body("type", equalTo("/image-too-large"))
+                .body("detail", containsString("dimension"));
+    }
+
+    @Test
+    @DisplayName("Create NoteImage - Image with too many pixels")
+    void testCreateNoteImage_whenPixelCountTooLarge_returnsPayloadTooLarge() throws IOException {
+        UUID noteUuid = createNote();
+
+        //Act - within the dimension limit, just over the pixel limit
+        given()
+                .multiPart("file", "huge.png", pngHeader(6400, 6300), "image/png")
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images", noteUuid)
+                .then()
+                .statusCode(HttpStatus.PAYLOAD_TOO_LARGE.value())
+                .body("type", equalTo("/image-too-large"))
+                .body("detail", containsString("pixel count"));
+    }
+
+    /**
+     * Build a PNG with a valid header and no pixel data. It is enough for the upload checks, which only read the header.
+     */
+    private byte[] pngHeader(int width, int height) throws IOException {
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        DataOutputStream ihdr = new DataOutputStream(chunk);
+        ihdr.writeBytes("IHDR");
+        ihdr.writeInt(width);
+        ihdr.writeInt(height);
+        ihdr.write(new byte[]{8, 0, 0, 0, 0}); // 8-bit grayscale, no interlace
+        CRC32 crc = new CRC32();
+        crc.update(chunk.toByteArray());
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(png);
+        out.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        out.writeInt(13);
+        out.write(chunk.toByteArray());
+        out.writeInt((int) crc.getValue());
+        return png.toByteArray();
+    }
+
+    private File testImage() {
+        return new File(Objects.requireNonNull(getClass().getClassLoader().getResource("test-image.jpg")).getFile());
+    }
+
+    private UUID createNote() {
+        NoteCreateDto createNoteDto = new NoteCreateDto();
+        createNoteDto.setNote("my note");
+
+        return given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(createNoteDto)
+                .when()
+                .post("/api/v1/bookmarks/" + validBookmarkUuid + "/notes")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .as(NoteDto.class)
+                .getUuid();
+    }
+
+    private String uploadImage(UUID noteUuid) {
+        return given()
+                .multiPart("file", testImage())
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images", noteUuid)
+                .then()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .extract()
+                .path("uuid");
+    }
+
+    private String awaitImageStatus(String imageUuid) throws InterruptedException {
+        String status = "PENDING";
+        for (int attempt = 0; attempt < 50 && status.equals("PENDING"); attempt++) {
+            Thread.sleep(100);
+            status = given()
+                    .accept(ContentType.JSON)
+                    .when()
+                    .get("/api/v1/note-images/{uuid}", imageUuid)
+                    .then()
+                    .extract()
+                    .path("status");
+        }
+        return status;
+    }
+
 }
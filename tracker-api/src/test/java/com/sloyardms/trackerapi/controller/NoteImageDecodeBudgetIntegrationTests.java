@@ -0,0 +1,153 @@
+package com.sloyardms.trackerapi.controller;
+
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkCreateDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkDto;
+import com.sloyardms.trackerapi.note.dto.NoteCreateDto;
+import com.sloyardms.trackerapi.note.dto.NoteDto;
+import com.sloyardms.trackerapi.note_image.dto.NoteImageDto;
+import com.sloyardms.trackerapi.security.DevSecurityConfig;
+import com.sloyardms.trackerapi.security.FakeAuthFilter;
+import com.sloyardms.trackerapi.user.dto.UserCreateDto;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.*;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.File;
+import java.util.Objects;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        // Every image goes over the budget while it is decoded
+        "app.image.decode.cpu-budget=1ns"
+})
+@ActiveProfiles("test")
+@Testcontainers
+@Import(DevSecurityConfig.class)
+public class NoteImageDecodeBudgetIntegrationTests {
+
+    //Need for the tests
+    private static UUID validNoteUuid;
+
+    @Container
+    @ServiceConnection
+    @SuppressWarnings("resource")
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                    .withDatabaseName("tracker_db")
+                    .withUsername("user")
+                    .withPassword("password");
+
+    @BeforeAll
+    static void setupAll(@LocalServerPort int port) {
+        RestAssured.port = port;
+
+        // Create valid User
+
+        UserCreateDto user = new UserCreateDto();
+        user.setUuid(FakeAuthFilter.DEV_USER_UUID);
+        user.setUsername("username");
+
+        given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(user)
+                .when()
+                .post("/api/v1/users")
+                .then()
+                .statusCode(HttpStatus.CREATED.value());
+
+        // Create valid Bookmark (without Group) and Note
+
+        BookmarkCreateDto bookmarkCreateDto = new BookmarkCreateDto();
+        bookmarkCreateDto.setTitle("title");
+        bookmarkCreateDto.setUrl("url");
+
+        UUID bookmarkUuid = given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(bookmarkCreateDto)
+                .when()
+                .post("/api/v1/bookmarks")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .as(BookmarkDto.class)
+                .getUuid();
+
+        NoteCreateDto createNoteDto = new NoteCreateDto();
+        createNoteDto.setNote("my note");
+
+        validNoteUuid = given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(createNoteDto)
+                .when()
+                .post("/api/v1/bookmarks/" + bookmarkUuid + "/notes")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .as(NoteDto.class)
+                .getUuid();
+    }
+
+    @Test
+    @DisplayName("Test Postgres container is created and running")
+    void testPostgresContainer_whenCreatedAndRunning_returnsTrue() {
+        Assertions.assertTrue(postgresContainer.isCreated(), "Postgres container should be created");
+        Assertions.assertTrue(postgresContainer.isRunning(), "Postgres container should be running");
+    }
+
+    @Test
+    @DisplayName("Create NoteImage - Decode over the CPU budget")
+    void testCreateNoteImage_whenDecodeExceedsCpuBudget_marksImageFailed() throws Exception {
+        //Arrange
+        File imageFile = new File(Objects.requireNonNull(getClass().getClassLoader().getResource("test-image.jpg")).getFile());
+
+        //Act - the upload is accepted, the decode is abandoned by the worker
+        NoteImageDto noteImage = given()
+                .multiPart("file", imageFile)
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images", validNoteUuid)
+                .then()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .extract()
+                .as(NoteImageDto.class);
+
+        //Assert - FAILED rather than READY or left PENDING, and no file is served
+        Assertions.assertEquals("FAILED", awaitImageStatus(noteImage.getUuid()));
+        given()
+                .when()
+                .get("/api/v1/note-images/{uuid}/thumbnail", noteImage.getUuid())
+                .then()
+                .statusCode(HttpStatus.CONFLICT.value());
+    }
+
+    private String awaitImageStatus(UUID imageUuid) throws InterruptedException {
+        String status = "PENDING";
+        for (int attempt = 0; attempt < 50 && status.equals("PENDING"); attempt++) {
+            Thread.sleep(100);
+            status = given()
+                    .accept(ContentType.JSON)
+                    .when()
+                    .get("/api/v1/note-images/{uuid}", imageUuid)
+                    .then()
+                    .extract()
+                    .path("status");
+        }
+        return status;
+    }
+
+}
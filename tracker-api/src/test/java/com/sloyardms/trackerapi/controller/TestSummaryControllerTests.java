@@ -3,6 +3,7 @@ package com.sloyardms.trackerapi.controller;
 import com.sloyardms.trackerapi.bookmark.BookmarkRepository;
 import com.sloyardms.trackerapi.group.GroupRepository;
 import com.sloyardms.trackerapi.security.DevSecurityConfig;
+import com.sloyardms.trackerapi.tag_summary.TagSummaryRepository;
 import io.restassured.RestAssured;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -30,7 +31,7 @@ public class TestSummaryControllerTests {
     private GroupRepository groupRepository;
 
     @Autowired
-    private TagS
+    private TagSummaryRepository tagSummaryRepository;
 
     @Container
     @ServiceConnection
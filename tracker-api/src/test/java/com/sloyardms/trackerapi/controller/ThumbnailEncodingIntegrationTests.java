@@ -0,0 +1,290 @@
+package com.sloyardms.trackerapi.controller;
+
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkCreateDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkDto;
+import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.common.web.FileResponse;
+import com.sloyardms.trackerapi.file_deletion.FileDeletionReaper;
+import com.sloyardms.trackerapi.note.dto.NoteCreateDto;
+import com.sloyardms.trackerapi.note.dto.NoteDto;
+import com.sloyardms.trackerapi.note_image.NoteImageThumbnailCache;
+import com.sloyardms.trackerapi.note_image.dto.NoteImageDto;
+import com.sloyardms.trackerapi.security.DevSecurityConfig;
+import com.sloyardms.trackerapi.security.FakeAuthFilter;
+import com.sloyardms.trackerapi.user.dto.UserCreateDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.restassured.RestAssured;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.File;
+import java.util.Objects;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        // Both formats have a writer in the JDK, and a JPEG of a photo is smaller than its PNG, so it is kept
+        "app.image.thumbnail.format=png",
+        "app.image.thumbnail.alternate-formats=jpg",
+        // The outbox is drained by the tests, so they can check the files in between
+        "app.storage.deletion.reaper-delay=1h"
+})
+@ActiveProfiles("test")
+@Testcontainers
+@Import(DevSecurityConfig.class)
+public class ThumbnailEncodingIntegrationTests {
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private FileDeletionReaper fileDeletionReaper;
+
+    @Autowired
+    private NoteImageThumbnailCache noteImageThumbnailCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //Need for the tests
+    private static UUID validNoteUuid;
+
+    @Container
+    @ServiceConnection
+    @SuppressWarnings("resource")
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                    .withDatabaseName("tracker_db")
+                    .withUsername("user")
+                    .withPassword("password");
+
+    @BeforeAll
+    static void setupAll(@LocalServerPort int port) {
+        RestAssured.port = port;
+
+        // Create valid User
+
+        UserCreateDto user = new UserCreateDto();
+        user.setUuid(FakeAuthFilter.DEV_USER_UUID);
+        user.setUsername("username");
+
+        given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(user)
+                .when()
+                .post("/api/v1/users")
+                .then()
+                .statusCode(HttpStatus.CREATED.value());
+
+        // Create valid Bookmark (without Group) and Note
+
+        BookmarkCreateDto bookmarkCreateDto = new BookmarkCreateDto();
+        bookmarkCreateDto.setTitle("title");
+        bookmarkCreateDto.setUrl("url");
+
+        UUID bookmarkUuid = given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(bookmarkCreateDto)
+                .when()
+                .post("/api/v1/bookmarks")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .as(BookmarkDto.class)
+                .getUuid();
+
+        NoteCreateDto createNoteDto = new NoteCreateDto();
+        createNoteDto.setNote("my note");
+
+        validNoteUuid = given()
+                .contentType(ContentType.JSON)
+                .accept(ContentType.JSON)
+                .body(createNoteDto)
+                .when()
+                .post("/api/v1/bookmarks/" + bookmarkUuid + "/notes")
+                .then()
+                .statusCode(HttpStatus.CREATED.value())
+                .extract()
+                .as(NoteDto.class)
+                .getUuid();
+    }
+
+    @Test
+    @DisplayName("Test Postgres container is created and running")
+    void testPostgresContainer_whenCreatedAndRunning_returnsTrue() {
+        Assertions.assertTrue(postgresContainer.isCreated(), "Postgres container should be created");
+        Assertions.assertTrue(postgresContainer.isRunning(), "Postgres container should be running");
+    }
+
+    @Test
+    @DisplayName("Get Thumbnail - Alternate encoding listed in Accept")
+    void testGetThumbnail_whenAlternateFormatAccepted_returnsAlternateEncoding() throws Exception {
+        //Arrange
+        NoteImageDto noteImage = uploadImage();
+        Assertions.assertEquals("READY", awaitImageStatus(noteImage.getUuid()));
+
+        //Act
+        Response alternate = getThumbnail(noteImage.getUuid(), "image/jpeg");
+        Response thumbnail = getThumbnail(noteImage.getUuid(), "*/*");
+
+        //Assert - each encoding in its own type, both varying on Accept
+        alternate.then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType("image/jpeg")
+                .header(HttpHeaders.VARY, equalTo(HttpHeaders.ACCEPT));
+        thumbnail.then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType("image/png")
+                .header(HttpHeaders.VARY, equalTo(HttpHeaders.ACCEPT));
+        Assertions.assertNotEquals(alternate.header(HttpHeaders.ETAG), thumbnail.header(HttpHeaders.ETAG));
+
+        byte[] alternateBytes = alternate.asByteArray();
+        byte[] thumbnailBytes = thumbnail.asByteArray();
+        Assertions.assertEquals((byte) 0xFF, alternateBytes[0], "JPEG start of image");
+        Assertions.assertEquals((byte) 0x89, thumbnailBytes[0], "PNG signature");
+        Assertions.assertTrue(alternateBytes.length < thumbnailBytes.length);
+
+        //Act - same request again, served from the cache under its own encoding
+        Response cachedAlternate = getThumbnail(noteImage.getUuid(), "image/jpeg");
+
+        //Assert
+        cachedAlternate.then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType("image/jpeg")
+                .header(HttpHeaders.ETAG, equalTo(alternate.header(HttpHeaders.ETAG)));
+        Assertions.assertArrayEquals(alternateBytes, cachedAlternate.asByteArray());
+
+        //Cleanup
+        deleteImage(noteImage.getUuid());
+    }
+
+    @Test
+    @DisplayName("Get Thumbnail - Without an explicit Accept")
+    void testGetThumbnail_whenNoAcceptHeader_returnsThumbnail() throws Exception {
+        //Arrange
+        NoteImageDto noteImage = uploadImage();
+        Assertions.assertEquals("READY", awaitImageStatus(noteImage.getUuid()));
+
+        //Act
+        Response response = given()
+                .when()
+                .get("/api/v1/note-images/{uuid}/thumbnail", noteImage.getUuid());
+
+        //Assert
+        response.then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType("image/png")
+                .header(HttpHeaders.VARY, equalTo(HttpHeaders.ACCEPT));
+
+        //Cleanup
+        deleteImage(noteImage.getUuid());
+    }
+
+    @Test
+    @DisplayName("Delete NoteImage - Alternate encoding is removed")
+    void testDeleteNoteImage_whenAlternateEncodingStored_removesItsFile() throws Exception {
+        //Arrange
+        NoteImageDto noteImage = uploadImage();
+        Assertions.assertEquals("READY", awaitImageStatus(noteImage.getUuid()));
+        String thumbnailKey = imageStorageService.toKey(noteImage.getThumbnailPath());
+        String alternateKey = thumbnailKey.substring(0, thumbnailKey.lastIndexOf('.')) + ".jpg";
+        Assertions.assertTrue(blobStore.exists(thumbnailKey), thumbnailKey);
+        Assertions.assertTrue(blobStore.exists(alternateKey), alternateKey);
+        FileResponse cachedThumbnail = new FileResponse(thumbnailKey, "image/png",
+                getThumbnail(noteImage.getUuid(), "*/*").header(HttpHeaders.ETAG));
+
+        //Act
+        deleteImage(noteImage.getUuid());
+
+        //Assert - the cached thumbnail went with the image, it is read again while its file still exists
+        double misses = thumbnailCacheMisses();
+        noteImageThumbnailCache.get(noteImage.getUuid(), cachedThumbnail);
+        Assertions.assertEquals(misses + 1, thumbnailCacheMisses());
+
+        //Act
+        drainOutbox();
+
+        //Assert
+        Assertions.assertFalse(blobStore.exists(thumbnailKey), thumbnailKey);
+        Assertions.assertFalse(blobStore.exists(alternateKey), alternateKey);
+    }
+
+    private NoteImageDto uploadImage() {
+        File imageFile = new File(Objects.requireNonNull(getClass().getClassLoader().getResource("test-image.jpg")).getFile());
+
+        return given()
+                .multiPart("file", imageFile)
+                .accept(ContentType.JSON)
+                .when()
+                .post("/api/v1/notes/{uuid}/images", validNoteUuid)
+                .then()
+                .statusCode(HttpStatus.ACCEPTED.value())
+                .body("thumbnailPath", endsWith(".png"))
+                .extract()
+                .as(NoteImageDto.class);
+    }
+
+    private Response getThumbnail(UUID imageUuid, String accept) {
+        return given()
+                .header(HttpHeaders.ACCEPT, accept)
+                .when()
+                .get("/api/v1/note-images/{uuid}/thumbnail", imageUuid);
+    }
+
+    private double thumbnailCacheMisses() {
+        return meterRegistry.get("cache.gets").tag("cache", "note_image.thumbnails").tag("result", "miss")
+                .functionCounter().count();
+    }
+
+    private void deleteImage(UUID imageUuid) {
+        given()
+                .when()
+                .delete("/api/v1/note-images/{uuid}", imageUuid)
+                .then()
+                .statusCode(HttpStatus.NO_CONTENT.value());
+    }
+
+    private String awaitImageStatus(UUID imageUuid) throws InterruptedException {
+        String status = "PENDING";
+        for (int attempt = 0; attempt < 50 && status.equals("PENDING"); attempt++) {
+            Thread.sleep(100);
+            status = given()
+                    .accept(ContentType.JSON)
+                    .when()
+                    .get("/api/v1/note-images/{uuid}", imageUuid)
+                    .then()
+                    .extract()
+                    .path("status");
+        }
+        return status;
+    }
+
+    private void drainOutbox() throws InterruptedException {
+        // available_at is stored to the second, so a row recorded just now may only be due within the next second
+        Thread.sleep(1000);
+        fileDeletionReaper.drain();
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.sloyardms.trackerapi.image;
+
+import com.sloyardms.trackerapi.common.enums.ResizeMode;
+import com.sloyardms.trackerapi.common.image.ImageBudgetExceededException;
+import com.sloyardms.trackerapi.common.image.ImageVariant;
+import com.sloyardms.trackerapi.common.image.ImageVariantEncoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ImageVariantEncoderTests {
+
+    @TempDir
+    private Path folder;
+
+    private ImageVariantEncoder imageVariantEncoder;
+
+    @BeforeEach
+    void setup() {
+        imageVariantEncoder = new ImageVariantEncoder(40_000_000, Duration.ofMinutes(1));
+    }
+
+    @Test
+    @DisplayName("Encode - Every variant from a JPEG")
+    void testEncode_whenJpegWithSeveralVariants_writesEachVariantAtItsSize() throws IOException {
+        //Arrange
+        Path source = writeImage("source.jpg", 1600, 1200, "jpg");
+        ImageVariant thumbnail = new ImageVariant("thumbnail", "thumbnail_", 200, 100, ResizeMode.FIT_WIDTH, "jpg", 0.9);
+        ImageVariant medium = new ImageVariant("medium", "medium_", 400, 400, ResizeMode.FIT_BOTH, "png", 0.9);
+        ImageVariant original = new ImageVariant("original", "original_", null, null, null, "jpg", 1.0);
+        Map<ImageVariant, Path> variants = new LinkedHashMap<>();
+        variants.put(thumbnail, folder.resolve("out/thumbnail.jpg"));
+        variants.put(medium, folder.resolve("out/medium.png"));
+        variants.put(original, folder.resolve("out/original.jpg"));
+
+        //Act
+        imageVariantEncoder.encode(source, variants);
+
+        //Assert
+        assertSize(read(variants.get(thumbnail)), 200, 150);
+        assertSize(read(variants.get(medium)), 400, 300);
+        assertSize(read(variants.get(original)), 1600, 1200);
+    }
+
+    @Test
+    @DisplayName("Encode - JPEG without a full size variant")
+    void testEncode_whenJpegVariantsAreAllSmaller_writesEachVariantAtItsSize() throws IOException {
+        //Arrange - each variant is decoded at its own subsampling factor
+        Path source = writeImage("source.jpg", 1600, 1200, "jpg");
+        ImageVariant thumbnail = new ImageVariant("thumbnail", "thumbnail_", 100, null, ResizeMode.FIT_WIDTH, "jpg", 0.9);
+        ImageVariant medium = new ImageVariant("medium", "medium_", 700, 700, ResizeMode.FIT_BOTH, "jpg", 0.9);
+        Map<ImageVariant, Path> variants = Map.of(
+                thumbnail, folder.resolve("thumbnail.jpg"),
+                medium, folder.resolve("medium.jpg"));
+
+        //Act
+        imageVariantEncoder.encode(source, variants);
+
+        //Assert
+        assertSize(read(variants.get(thumbnail)), 100, 75);
+        assertSize(read(variants.get(medium)), 700, 525);
+    }
+
+    @Test
+    @DisplayName("Encode - PNG decoded once for every variant")
+    void testEncode_whenPng_writesEachVariantAtItsSize() throws IOException {
+        //Arrange
+        Path source = writeImage("source.png", 640, 480, "png");
+        ImageVariant thumbnail = new ImageVariant("thumbnail", "thumbnail_", null, 120, ResizeMode.FIT_HEIGHT, "jpg", 0.9);
+        ImageVariant original = new ImageVariant("original", "original_", null, null, null, "png", 1.0);
+        Map<ImageVariant, Path> variants = Map.of(
+                thumbnail, folder.resolve("thumbnail.jpg"),
+                original, folder.resolve("original.png"));
+
+        //Act
+        imageVariantEncoder.encode(source, variants);
+
+        //Assert
+        assertSize(read(variants.get(thumbnail)), 160, 120);
+        assertSize(read(variants.get(original)), 640, 480);
+    }
+
+    @Test
+    @DisplayName("Write Variant - Fit both with only a width")
+    void testWriteVariant_whenFitBothHasOnlyWidth_fitsTheWidth() throws IOException {
+        //Arrange
+        BufferedImage image = new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB);
+        ImageVariant variant = new ImageVariant("wide", "wide_", 200, null, ResizeMode.FIT_BOTH, "png", 0.9);
+
+        //Act
+        BufferedImage written = write(image, variant);
+
+        //Assert
+        assertSize(written, 200, 100);
+    }
+
+    @Test
+    @DisplayName("Write Variant - Fit both with only a height")
+    void testWriteVariant_whenFitBothHasOnlyHeight_fitsTheHeight() throws IOException {
+        //Arrange
+        BufferedImage image = new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB);
+        ImageVariant variant = new ImageVariant("tall", "tall_", null, 100, ResizeMode.FIT_BOTH, "png", 0.9);
+
+        //Act
+        BufferedImage written = write(image, variant);
+
+        //Assert
+        assertSize(written, 200, 100);
+    }
+
+    @Test
+    @DisplayName("Write Variant - Without resize mode")
+    void testWriteVariant_whenResizeModeMissing_fitsInsideTheBox() throws IOException {
+        //Arrange
+        BufferedImage image = new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB);
+        ImageVariant variant = new ImageVariant("box", "box_", 300, 300, null, "png", 0.9);
+
+        //Act
+        BufferedImage written = write(image, variant);
+
+        //Assert
+        assertSize(written, 300, 150);
+    }
+
+    @Test
+    @DisplayName("Decode - Subsampled as far as the variants allow")
+    void testDecode_whenVariantsAreSmall_decodesAtReducedResolution() throws IOException {
+        //Arrange
+        Path source = writeImage("source.jpg", 1600, 1200, "jpg");
+        ImageVariant thumbnail = new ImageVariant("thumbnail", "thumbnail_", 200, 150, ResizeMode.FIT_BOTH, "jpg", 0.9);
+
+        //Act
+        BufferedImage decoded = imageVariantEncoder.decode(source, List.of(thumbnail));
+
+        //Assert - 8 times smaller still covers the thumbnail
+        assertSize(decoded, 200, 150);
+    }
+
+    @Test
+    @DisplayName("Decode - Aborted once over the CPU budget")
+    void testDecode_whenCpuBudgetExceeded_abortsTheReader() throws IOException {
+        //Arrange - the budget is spent before the first rows are decoded
+        Path source = writeImage("source.jpg", 1600, 1200, "jpg");
+        ImageVariantEncoder budgetedEncoder = new ImageVariantEncoder(40_000_000, Duration.ofNanos(1));
+        ImageVariant original = new ImageVariant("original", "original_", null, null, null, "jpg", 1.0);
+
+        //Act & Assert - decode only reads, so the exception can only come from the aborted reader
+        assertThrows(ImageBudgetExceededException.class, () -> budgetedEncoder.decode(source, List.of(original)));
+    }
+
+    @Test
+    @DisplayName("Encode - Nothing written once over the CPU budget")
+    void testEncode_whenCpuBudgetExceeded_writesNoVariant() throws IOException {
+        //Arrange
+        Path source = writeImage("source.png", 640, 480, "png");
+        ImageVariantEncoder budgetedEncoder = new ImageVariantEncoder(40_000_000, Duration.ofNanos(1));
+        ImageVariant thumbnail = new ImageVariant("thumbnail", "thumbnail_", 100, null, ResizeMode.FIT_WIDTH, "jpg", 0.9);
+        Path output = folder.resolve("thumbnail.jpg");
+
+        //Act & Assert
+        assertThrows(ImageBudgetExceededException.class, () -> budgetedEncoder.encode(source, Map.of(thumbnail, output)));
+        assertFalse(Files.exists(output));
+    }
+
+    private Path writeImage(String name, int width, int height, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | ((x ^ y) & 0xFF));
+            }
+        }
+        Path target = folder.resolve(name);
+        assertTrue(ImageIO.write(image, format, target.toFile()));
+        return target;
+    }
+
+    private BufferedImage write(BufferedImage image, ImageVariant variant) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        imageVariantEncoder.writeVariant(image, variant, outputStream);
+        return ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    private BufferedImage read(Path path) throws IOException {
+        return ImageIO.read(path.toFile());
+    }
+
+    private void assertSize(BufferedImage image, int width, int height) {
+        assertEquals(width, image.getWidth(), "width");
+        assertEquals(height, image.getHeight(), "height");
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.sloyardms.trackerapi.image;
+
+import com.sloyardms.trackerapi.common.enums.ResizeMode;
+import com.sloyardms.trackerapi.common.image.ImageVariant;
+import com.sloyardms.trackerapi.config.ImageVariantProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.BindException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.NestedExceptionUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ImageVariantPropertiesTests {
+
+    @Test
+    @DisplayName("Bind Variants - Defaults filled in")
+    void testBindVariants_whenResizeModeAndQualityMissing_appliesDefaults() {
+        //Act
+        ImageVariantProperties properties = bind(Map.of(
+                "app.image.variants[0].name", "medium",
+                "app.image.variants[0].prefix", "medium_",
+                "app.image.variants[0].width", "1600",
+                "app.image.variants[0].height", "1600"));
+
+        //Assert
+        ImageVariant variant = properties.variants().getFirst();
+        assertEquals(ResizeMode.FIT_BOTH, variant.resizeMode());
+        assertEquals(ImageVariantProperties.DEFAULT_QUALITY, variant.quality());
+        assertNull(variant.format());
+    }
+
+    @Test
+    @DisplayName("Bind Variants - None configured")
+    void testBindVariants_whenNoneConfigured_returnsEmptyList() {
+        assertTrue(new ImageVariantProperties(null).variants().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Bind Variants - Fit both with a missing dimension")
+    void testBindVariants_whenFitBothMissesHeight_failsToBind() {
+        //Act
+        BindException exception = assertThrows(BindException.class, () -> bind(Map.of(
+                "app.image.variants[0].name", "medium",
+                "app.image.variants[0].prefix", "medium_",
+                "app.image.variants[0].width", "1600",
+                "app.image.variants[0].resize-mode", "fit-both")));
+
+        //Assert
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(exception);
+        assertInstanceOf(IllegalArgumentException.class, cause);
+        assertTrue(cause.getMessage().contains("needs a height"), cause.getMessage());
+    }
+
+    @Test
+    @DisplayName("Bind Variants - Fit width with only a width")
+    void testBindVariants_whenFitWidthHasOnlyWidth_binds() {
+        //Act
+        ImageVariantProperties properties = bind(Map.of(
+                "app.image.variants[0].name", "wide",
+                "app.image.variants[0].prefix", "wide_",
+                "app.image.variants[0].width", "1600",
+                "app.image.variants[0].resize-mode", "fit-width",
+                "app.image.variants[0].quality", "0.8"));
+
+        //Assert
+        ImageVariant variant = properties.variants().getFirst();
+        assertEquals(ResizeMode.FIT_WIDTH, variant.resizeMode());
+        assertEquals(0.8, variant.quality());
+    }
+
+    @Test
+    @DisplayName("Bind Variants - Missing prefix")
+    void testBindVariants_whenPrefixMissing_failsToBind() {
+        assertThrows(BindException.class, () -> bind(Map.of(
+                "app.image.variants[0].name", "medium",
+                "app.image.variants[0].width", "1600",
+                "app.image.variants[0].height", "1600")));
+    }
+
+    @Test
+    @DisplayName("Bind Variants - Quality out of range")
+    void testBindVariants_whenQualityIsZero_failsToBind() {
+        assertThrows(BindException.class, () -> bind(Map.of(
+                "app.image.variants[0].name", "medium",
+                "app.image.variants[0].prefix", "medium_",
+                "app.image.variants[0].quality", "0")));
+    }
+
+    private ImageVariantProperties bind(Map<String, String> properties) {
+        return new Binder(new MapConfigurationPropertySource(properties))
+                .bind("app.image", ImageVariantProperties.class)
+                .get();
+    }
+
+}
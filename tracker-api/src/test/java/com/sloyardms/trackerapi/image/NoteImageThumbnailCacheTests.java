@@ -0,0 +1,196 @@
+package com.sloyardms.trackerapi.image;
+
+import com.sloyardms.trackerapi.common.storage.FileSystemBlobStore;
+import com.sloyardms.trackerapi.common.web.FileResponse;
+import com.sloyardms.trackerapi.note_image.NoteImageThumbnailCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteImageThumbnailCacheTests {
+
+    private static final int THUMBNAIL_SIZE = 1024;
+
+    @TempDir
+    private Path root;
+
+    private FileSystemBlobStore blobStore;
+    private MeterRegistry meterRegistry;
+    private NoteImageThumbnailCache cache;
+
+    @BeforeEach
+    void setup() {
+        blobStore = new FileSystemBlobStore(root.resolve("blobs"));
+        meterRegistry = new SimpleMeterRegistry();
+        // Room for 4 thumbnails
+        cache = new NoteImageThumbnailCache(meterRegistry, blobStore, true, DataSize.ofBytes(4 * THUMBNAIL_SIZE), false);
+    }
+
+    @Test
+    @DisplayName("Get - Read once, then served from the cache")
+    void testGet_whenReadTwice_missesThenHits() throws IOException {
+        //Arrange
+        FileResponse file = putThumbnail("a/thumbnail.jpg", "image/jpeg", "\"v1\"", (byte) 1);
+        UUID uuid = UUID.randomUUID();
+
+        //Act
+        ByteBuffer first = cache.get(uuid, file);
+        ByteBuffer second = cache.get(uuid, file);
+
+        //Assert
+        assertEquals(1, gets("miss"));
+        assertEquals(1, gets("hit"));
+        assertArrayEquals(content((byte) 1), bytes(first));
+        assertArrayEquals(content((byte) 1), bytes(second));
+    }
+
+    @Test
+    @DisplayName("Get - Each encoding is cached on its own")
+    void testGet_whenTwoEncodingsOfSameImage_cachesEachEncoding() throws IOException {
+        //Arrange
+        UUID uuid = UUID.randomUUID();
+        FileResponse jpeg = putThumbnail("a/thumbnail.jpg", "image/jpeg", "\"v1\"", (byte) 1);
+        FileResponse png = putThumbnail("a/thumbnail.png", "image/png", "\"v1\"", (byte) 2);
+
+        //Act
+        cache.get(uuid, jpeg);
+        ByteBuffer cachedPng = cache.get(uuid, png);
+        ByteBuffer cachedJpeg = cache.get(uuid, jpeg);
+
+        //Assert
+        assertEquals(2, gets("miss"));
+        assertEquals(1, gets("hit"));
+        assertArrayEquals(content((byte) 1), bytes(cachedJpeg));
+        assertArrayEquals(content((byte) 2), bytes(cachedPng));
+    }
+
+    @Test
+    @DisplayName("Get - Stale entry is read again")
+    void testGet_whenEntityTagChanged_reloadsContent() throws IOException {
+        //Arrange
+        UUID uuid = UUID.randomUUID();
+        cache.get(uuid, putThumbnail("a/thumbnail.jpg", "image/jpeg", "\"v1\"", (byte) 1));
+
+        //Act
+        ByteBuffer reloaded = cache.get(uuid, putThumbnail("a/thumbnail.jpg", "image/jpeg", "\"v2\"", (byte) 2));
+
+        //Assert
+        assertArrayEquals(content((byte) 2), bytes(reloaded));
+    }
+
+    @Test
+    @DisplayName("Get - Evicted once over the size limit")
+    void testGet_whenMoreThumbnailsThanTheLimit_evictsToTheLimit() throws Exception {
+        //Arrange & Act - twice as many thumbnails as fit
+        for (int i = 0; i < 8; i++) {
+            cache.get(UUID.randomUUID(), putThumbnail("t/" + i + ".jpg", "image/jpeg", "\"v1\"", (byte) i));
+        }
+
+        //Assert - eviction runs in the background, shortly after the writes
+        double resident = resident();
+        for (int attempt = 0; attempt < 50 && resident > 4 * THUMBNAIL_SIZE; attempt++) {
+            Thread.sleep(100);
+            resident = resident();
+        }
+        assertTrue(resident <= 4 * THUMBNAIL_SIZE, "resident bytes " + resident);
+        assertTrue(meterRegistry.get("cache.evictions").functionCounter().count() >= 4);
+    }
+
+    @Test
+    @DisplayName("Invalidate - Every encoding of the image is read again")
+    void testInvalidate_whenImageDeleted_nextReadMisses() throws IOException {
+        //Arrange
+        UUID uuid = UUID.randomUUID();
+        UUID otherUuid = UUID.randomUUID();
+        FileResponse jpeg = putThumbnail("a/thumbnail.jpg", "image/jpeg", "\"v1\"", (byte) 1);
+        FileResponse png = putThumbnail("a/thumbnail.png", "image/png", "\"v1\"", (byte) 2);
+        FileResponse other = putThumbnail("b/thumbnail.jpg", "image/jpeg", "\"v1\"", (byte) 3);
+        cache.get(uuid, jpeg);
+        cache.get(uuid, png);
+        cache.get(otherUuid, other);
+
+        //Act
+        cache.invalidate(uuid);
+
+        //Assert - the invalidated image misses, the other one still hits
+        blobStore.delete(jpeg.key());
+        assertThrows(NoSuchFileException.class, () -> cache.get(uuid, jpeg));
+        cache.get(uuid, png);
+        cache.get(otherUuid, other);
+        assertEquals(5, gets("miss"));
+        assertEquals(1, gets("hit"));
+    }
+
+    @Test
+    @DisplayName("Invalidate All - Images of a deleted note are read again")
+    void testInvalidateAll_whenNoteDeleted_nextReadsMiss() throws IOException {
+        //Arrange
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        FileResponse firstFile = putThumbnail("n/first.jpg", "image/jpeg", "\"v1\"", (byte) 1);
+        FileResponse secondFile = putThumbnail("n/second.jpg", "image/jpeg", "\"v1\"", (byte) 2);
+        cache.get(first, firstFile);
+        cache.get(second, secondFile);
+
+        //Act
+        cache.invalidateAll(List.of(first, second));
+        cache.get(first, firstFile);
+        cache.get(second, secondFile);
+
+        //Assert
+        assertEquals(4, gets("miss"));
+        assertEquals(0, gets("hit"));
+    }
+
+    @Test
+    @DisplayName("Get - Cache disabled")
+    void testGet_whenDisabled_returnsNull() throws IOException {
+        //Arrange
+        NoteImageThumbnailCache disabled = new NoteImageThumbnailCache(new SimpleMeterRegistry(), blobStore, false,
+                DataSize.ofBytes(4 * THUMBNAIL_SIZE), false);
+
+        //Act & Assert
+        assertNull(disabled.get(UUID.randomUUID(), putThumbnail("a/thumbnail.jpg", "image/jpeg", "\"v1\"", (byte) 1)));
+    }
+
+    private FileResponse putThumbnail(String key, String contentType, String etag, byte fill) throws IOException {
+        blobStore.put(key, Files.write(Files.createTempFile(root, "thumbnail-", ".tmp"), content(fill)));
+        return new FileResponse(key, contentType, etag);
+    }
+
+    private byte[] content(byte fill) {
+        byte[] content = new byte[THUMBNAIL_SIZE];
+        Arrays.fill(content, fill);
+        return content;
+    }
+
+    private byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("result", result).functionCounter().count();
+    }
+
+    private double resident() {
+        return meterRegistry.get("note_image.thumbnails.resident.bytes").gauge().value();
+    }
+
+}
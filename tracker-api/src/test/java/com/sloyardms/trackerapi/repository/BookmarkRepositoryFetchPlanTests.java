@@ -0,0 +1,188 @@
+package com.sloyardms.trackerapi.repository;
+
+import com.sloyardms.trackerapi.bookmark.BookmarkRepository;
+import com.sloyardms.trackerapi.bookmark.BookmarkService;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkCreateDto;
+import com.sloyardms.trackerapi.bookmark.dto.BookmarkDto;
+import com.sloyardms.trackerapi.bookmark.entity.Bookmark;
+import com.sloyardms.trackerapi.common.web.CountMode;
+import com.sloyardms.trackerapi.common.web.CursorPage;
+import com.sloyardms.trackerapi.group.GroupRepository;
+import com.sloyardms.trackerapi.group.entity.Group;
+import com.sloyardms.trackerapi.user.UserRepository;
+import com.sloyardms.trackerapi.user.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Testcontainers
+public class BookmarkRepositoryFetchPlanTests {
+
+    private static final UUID USER_UUID = UUID.randomUUID();
+    private static final int BOOKMARK_COUNT = 30;
+
+    @Container
+    @ServiceConnection
+    @SuppressWarnings("resource")
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                    .withDatabaseName("tracker_db")
+                    .withUsername("user")
+                    .withPassword("password");
+
+    @Autowired
+    private BookmarkService bookmarkService;
+
+    @Autowired
+    private BookmarkRepository bookmarkRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void beforeEach(){
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (bookmarkRepository.count() > 0) {
+            return;
+        }
+
+        User user = new User();
+        user.setUuid(USER_UUID);
+        user.setUsername("fetch-plan-user");
+        userRepository.save(user);
+
+        //Every bookmark in its own group, the worst case for lazy loading
+        List<Bookmark> bookmarks = new ArrayList<>();
+        for (int i = 0; i < BOOKMARK_COUNT; i++) {
+            Group group = new Group();
+            group.setUuid(UUID.randomUUID());
+            group.setUserUuid(USER_UUID);
+            group.setName("group" + i);
+            group = groupRepository.save(group);
+
+            Bookmark bookmark = new Bookmark();
+            bookmark.setUuid(UUID.randomUUID());
+            bookmark.setUserUuid(USER_UUID);
+            bookmark.setGroup(group);
+            bookmark.setTitle("title" + i);
+            bookmark.setUrl("url" + i);
+            bookmarks.add(bookmark);
+        }
+        bookmarkRepository.saveAll(bookmarks);
+    }
+
+    @Test
+    @DisplayName("List Bookmarks - Page with exact count")
+    void testListBookmarks_whenCountExact_runsSameStatementsForAnyPageSize(){
+        long smallPage = countStatements(() -> listBookmarks(5, CountMode.EXACT));
+        long largePage = countStatements(() -> listBookmarks(BOOKMARK_COUNT, CountMode.EXACT));
+
+        //Page query and count query
+        assertEquals(2, smallPage);
+        assertEquals(smallPage, largePage);
+    }
+
+    @Test
+    @DisplayName("List Bookmarks - Slice without count")
+    void testListBookmarks_whenCountNone_runsSameStatementsForAnyPageSize(){
+        long smallPage = countStatements(() -> listBookmarks(5, CountMode.NONE));
+        long largePage = countStatements(() -> listBookmarks(BOOKMARK_COUNT, CountMode.NONE));
+
+        assertEquals(1, smallPage);
+        assertEquals(smallPage, largePage);
+    }
+
+    @Test
+    @DisplayName("List Bookmarks - Keyset page")
+    void testListBookmarksByCursor_runsSameStatementsForAnyPageSize(){
+        long smallPage = countStatements(() -> listBookmarksByCursor(5));
+        long largePage = countStatements(() -> listBookmarksByCursor(BOOKMARK_COUNT));
+
+        //First page and page after its cursor
+        assertEquals(2, smallPage);
+        assertEquals(smallPage, largePage);
+    }
+
+    @Test
+    @DisplayName("Create Bookmark - Single insert")
+    void testCreateBookmark_whenNew_runsOnlyTheInsert(){
+        BookmarkCreateDto bookmarkCreateDto = new BookmarkCreateDto();
+        bookmarkCreateDto.setTitle("created-" + UUID.randomUUID());
+        bookmarkCreateDto.setUrl("created-" + UUID.randomUUID());
+
+        long statements = countStatements(() -> bookmarkService.create(USER_UUID, bookmarkCreateDto));
+
+        //No select to tell whether the assigned UUID is new
+        assertEquals(1, statements);
+        assertEquals(1, statistics.getEntityInsertCount());
+    }
+
+    @Test
+    @DisplayName("Save Bookmarks - Batched inserts")
+    void testSaveAllBookmarks_whenNew_sendsOneBatch(){
+        List<Bookmark> bookmarks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Bookmark bookmark = new Bookmark();
+            bookmark.setUuid(UUID.randomUUID());
+            bookmark.setUserUuid(USER_UUID);
+            bookmark.setTitle("batched-" + UUID.randomUUID());
+            bookmark.setUrl("batched-" + UUID.randomUUID());
+            bookmarks.add(bookmark);
+        }
+
+        long statements = countStatements(() -> bookmarkRepository.saveAll(bookmarks));
+
+        //One prepared insert, executed as a single JDBC batch
+        assertEquals(1, statements);
+        assertEquals(bookmarks.size(), statistics.getEntityInsertCount());
+    }
+
+    private void listBookmarks(int size, CountMode count) {
+        Slice<BookmarkDto> page = bookmarkService.getAllBookmarksByUserUuid(USER_UUID,
+                PageRequest.of(0, size, Sort.by("createdAt")), count);
+        page.forEach(bookmark -> assertNotNull(bookmark.getGroup().getName()));
+    }
+
+    private void listBookmarksByCursor(int size) {
+        CursorPage<BookmarkDto> first = bookmarkService.getBookmarksByUserUuidAfter(USER_UUID, null, size - 1);
+        first.content().forEach(bookmark -> assertNotNull(bookmark.getGroup().getName()));
+        CursorPage<BookmarkDto> next = bookmarkService.getBookmarksByUserUuidAfter(USER_UUID, first.nextCursor(), size);
+        next.content().forEach(bookmark -> assertNotNull(bookmark.getGroup().getName()));
+    }
+
+    private long countStatements(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+}
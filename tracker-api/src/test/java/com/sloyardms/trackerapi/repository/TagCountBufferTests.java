@@ -0,0 +1,186 @@
+package com.sloyardms.trackerapi.repository;
+
+import com.sloyardms.trackerapi.group.GroupRepository;
+import com.sloyardms.trackerapi.group.entity.Group;
+import com.sloyardms.trackerapi.tag.TagRepository;
+import com.sloyardms.trackerapi.tag.entity.Tag;
+import com.sloyardms.trackerapi.tag_summary.TagCountBuffer;
+import com.sloyardms.trackerapi.tag_summary.TagSummaryRebuilder;
+import com.sloyardms.trackerapi.tag_summary.TagSummaryRepository;
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDelta;
+import com.sloyardms.trackerapi.tag_summary.entity.TagSummary;
+import com.sloyardms.trackerapi.tag_summary.entity.TagSummaryId;
+import com.sloyardms.trackerapi.tag_summary.exception.TagSummaryRepairUnavailableException;
+import com.sloyardms.trackerapi.user.UserRepository;
+import com.sloyardms.trackerapi.user.entity.User;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Scheduled and threshold flushes are pushed out of the way, so each test decides when the buffer is written
+@SpringBootTest(properties = {"app.tag-summary.buffer.flush-interval=1h", "app.tag-summary.buffer.max-pending=1000000",
+        "app.tag-summary.buffer.journal=false"})
+@ActiveProfiles("test")
+@Testcontainers
+public class TagCountBufferTests {
+
+    private static final int THREADS = 8;
+    private static final int CHANGES_PER_THREAD = 200;
+
+    @Container
+    @ServiceConnection
+    @SuppressWarnings("resource")
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                    .withDatabaseName("tracker_db")
+                    .withUsername("user")
+                    .withPassword("password");
+
+    @Autowired
+    private TagCountBuffer tagCountBuffer;
+
+    @Autowired
+    private TagSummaryRebuilder tagSummaryRebuilder;
+
+    @Autowired
+    private TagSummaryRepository tagSummaryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UUID userUuid;
+    private UUID groupUuid;
+    private UUID tagUuid;
+    private UUID otherTagUuid;
+
+    @BeforeEach
+    void beforeEach(){
+        userUuid = UUID.randomUUID();
+        User user = new User();
+        user.setUuid(userUuid);
+        user.setUsername("buffer-user-" + userUuid);
+        userRepository.save(user);
+
+        groupUuid = UUID.randomUUID();
+        Group group = new Group();
+        group.setUuid(groupUuid);
+        group.setUserUuid(userUuid);
+        group.setName("group");
+        groupRepository.save(group);
+
+        tagUuid = saveTag("tag");
+        otherTagUuid = saveTag("other-tag");
+    }
+
+    @Test
+    @DisplayName("Flush - Concurrent changes are added up")
+    void testFlush_whenChangesAddedConcurrently_writesTheirSum() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < CHANGES_PER_THREAD; j++) {
+                        tagCountBuffer.add(List.of(
+                                new TagCountDelta(userUuid, groupUuid, tagUuid, 1),
+                                new TagCountDelta(userUuid, groupUuid, otherTagUuid, (j % 2 == 0) ? 1 : -1)
+                        ));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        tagCountBuffer.flush();
+
+        assertEquals(THREADS * CHANGES_PER_THREAD, bookmarkCount(tagUuid));
+        assertFalse(tagSummaryRepository.existsById(new TagSummaryId(userUuid, groupUuid, otherTagUuid)));
+    }
+
+    @Test
+    @DisplayName("Flush - Changes of a rolled back transaction")
+    void testFlush_whenTransactionRolledBack_writesOnlyCommittedChanges(){
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status ->
+                tagCountBuffer.add(List.of(new TagCountDelta(userUuid, groupUuid, tagUuid, 2))));
+        transactionTemplate.executeWithoutResult(status -> {
+            tagCountBuffer.add(List.of(new TagCountDelta(userUuid, groupUuid, tagUuid, 5)));
+            status.setRollbackOnly();
+        });
+        tagCountBuffer.flush();
+
+        assertEquals(2, bookmarkCount(tagUuid));
+    }
+
+    @Test
+    @DisplayName("Flush - Counter of a missing tag")
+    void testFlush_whenTagMissing_dropsOnlyItsChange(){
+        UUID missingTagUuid = UUID.randomUUID();
+        tagCountBuffer.add(List.of(
+                new TagCountDelta(userUuid, groupUuid, tagUuid, 1),
+                new TagCountDelta(userUuid, groupUuid, missingTagUuid, 1)
+        ));
+        tagCountBuffer.flush();
+        tagCountBuffer.flush();
+
+        assertEquals(1, bookmarkCount(tagUuid));
+        assertFalse(tagSummaryRepository.existsById(new TagSummaryId(userUuid, groupUuid, missingTagUuid)));
+    }
+
+    @Test
+    @DisplayName("Rebuild - Repair refused while buffering in memory")
+    void testRebuildUser_whenChangesBufferedInMemory_refusesToRepair(){
+        tagCountBuffer.add(List.of(new TagCountDelta(userUuid, groupUuid, tagUuid, 1)));
+
+        // The buffered change is not visible to the check, so a repair would count it twice once flushed
+        assertThrows(TagSummaryRepairUnavailableException.class, () -> tagSummaryRebuilder.rebuildUser(userUuid, true));
+        assertFalse(tagSummaryRebuilder.rebuildUser(userUuid, false).repaired());
+        assertEquals(1, bookmarkCount(tagUuid));
+    }
+
+    private UUID saveTag(String name) {
+        Tag tag = new Tag();
+        tag.setUuid(UUID.randomUUID());
+        tag.setUserUuid(userUuid);
+        tag.setName(name);
+        return tagRepository.save(tag).getUuid();
+    }
+
+    private int bookmarkCount(UUID tag) {
+        return tagSummaryRepository.findById(new TagSummaryId(userUuid, groupUuid, tag))
+                .map(TagSummary::getBookmarkCount)
+                .orElseThrow();
+    }
+
+}
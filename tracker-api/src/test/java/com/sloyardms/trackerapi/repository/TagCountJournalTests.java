@@ -0,0 +1,230 @@
+package com.sloyardms.trackerapi.repository;
+
+import com.sloyardms.trackerapi.group.GroupRepository;
+import com.sloyardms.trackerapi.group.entity.Group;
+import com.sloyardms.trackerapi.tag.TagRepository;
+import com.sloyardms.trackerapi.tag.entity.Tag;
+import com.sloyardms.trackerapi.tag_summary.TagCountBuffer;
+import com.sloyardms.trackerapi.tag_summary.TagCountJournalRepository;
+import com.sloyardms.trackerapi.tag_summary.TagCountJournalRepository.JournalEntry;
+import com.sloyardms.trackerapi.tag_summary.TagSummaryRepository;
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDelta;
+import com.sloyardms.trackerapi.tag_summary.entity.TagSummary;
+import com.sloyardms.trackerapi.tag_summary.entity.TagSummaryId;
+import com.sloyardms.trackerapi.user.UserRepository;
+import com.sloyardms.trackerapi.user.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Scheduled flushes are pushed out of the way, and a small batch size makes a flush drain the journal in several
+// batches. Each test adds fewer changes at once than the batch size, so no flush is started on its own
+@SpringBootTest(properties = {"app.tag-summary.buffer.flush-interval=1h", "app.tag-summary.buffer.max-pending=5",
+        "app.tag-summary.buffer.journal=true"})
+@ActiveProfiles("test")
+@Testcontainers
+public class TagCountJournalTests {
+
+    private static final String COUNT_JOURNAL_SQL = "SELECT COUNT(*) FROM tag_count_journal WHERE user_uuid = ?";
+
+    @Container
+    @ServiceConnection
+    @SuppressWarnings("resource")
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                    .withDatabaseName("tracker_db")
+                    .withUsername("user")
+                    .withPassword("password");
+
+    @Autowired
+    private TagCountBuffer tagCountBuffer;
+
+    @Autowired
+    private TagCountJournalRepository journalRepository;
+
+    @Autowired
+    private TagSummaryRepository tagSummaryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private UUID userUuid;
+    private UUID groupUuid;
+    private UUID tagUuid;
+    private UUID otherTagUuid;
+
+    @BeforeEach
+    void beforeEach(){
+        // Leave no journal row behind from a previous test
+        tagCountBuffer.flush();
+
+        userUuid = UUID.randomUUID();
+        User user = new User();
+        user.setUuid(userUuid);
+        user.setUsername("journal-user-" + userUuid);
+        userRepository.save(user);
+
+        groupUuid = UUID.randomUUID();
+        Group group = new Group();
+        group.setUuid(groupUuid);
+        group.setUserUuid(userUuid);
+        group.setName("group");
+        groupRepository.save(group);
+
+        tagUuid = saveTag("tag");
+        otherTagUuid = saveTag("other-tag");
+    }
+
+    @Test
+    @DisplayName("Flush - Journal drained in several batches")
+    void testFlush_whenJournalLongerThanOneBatch_writesEveryRowAndEmptiesTheJournal(){
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < 4; i++) {
+            transactionTemplate.executeWithoutResult(status -> tagCountBuffer.add(List.of(
+                    new TagCountDelta(userUuid, groupUuid, tagUuid, 1),
+                    new TagCountDelta(userUuid, groupUuid, tagUuid, 1),
+                    new TagCountDelta(userUuid, groupUuid, otherTagUuid, 1)
+            )));
+        }
+        // A rolled back change is never journaled
+        transactionTemplate.executeWithoutResult(status -> {
+            tagCountBuffer.add(List.of(new TagCountDelta(userUuid, groupUuid, tagUuid, 5)));
+            status.setRollbackOnly();
+        });
+        assertEquals(12, journalRows());
+
+        tagCountBuffer.flush();
+
+        assertEquals(8, bookmarkCount(tagUuid));
+        assertEquals(4, bookmarkCount(otherTagUuid));
+        assertEquals(0, journalRows());
+    }
+
+    @Test
+    @DisplayName("Flush - Rows claimed by another drain are skipped")
+    void testFlush_whenRowsLockedByAnotherTransaction_skipsThemUntilReleased() throws Exception {
+        tagCountBuffer.add(List.of(
+                new TagCountDelta(userUuid, groupUuid, tagUuid, 1),
+                new TagCountDelta(userUuid, groupUuid, tagUuid, 1),
+                new TagCountDelta(userUuid, groupUuid, tagUuid, 1)
+        ));
+
+        //Arrange - another transaction, as another instance would, holds the rows of tag
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<List<JournalEntry>> otherDrain = CompletableFuture.supplyAsync(() ->
+                new TransactionTemplate(transactionManager).execute(status -> {
+                    List<JournalEntry> entries = journalRepository.claimBatch(3);
+                    claimed.countDown();
+                    try {
+                        assertTrue(release.await(30, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    status.setRollbackOnly();
+                    return entries;
+                }));
+        assertTrue(claimed.await(30, TimeUnit.SECONDS));
+        tagCountBuffer.add(List.of(
+                new TagCountDelta(userUuid, groupUuid, otherTagUuid, 1),
+                new TagCountDelta(userUuid, groupUuid, otherTagUuid, 1)
+        ));
+
+        //Act - the flush writes the rows nobody holds, without waiting for the others
+        tagCountBuffer.flush();
+
+        //Assert
+        assertEquals(2, bookmarkCount(otherTagUuid));
+        assertFalse(tagSummaryRepository.existsById(new TagSummaryId(userUuid, groupUuid, tagUuid)));
+        assertEquals(3, journalRows());
+
+        //Act - the other drain gives up its rows, the next flush writes them
+        release.countDown();
+        assertEquals(3, otherDrain.get(30, TimeUnit.SECONDS).size());
+        tagCountBuffer.flush();
+
+        //Assert
+        assertEquals(3, bookmarkCount(tagUuid));
+        assertEquals(0, journalRows());
+    }
+
+    @Test
+    @DisplayName("Flush - Journaled change of a missing tag")
+    void testFlush_whenJournaledTagMissing_writesOneRowAtATimeAndDropsOnlyThatRow(){
+        UUID missingTagUuid = UUID.randomUUID();
+        double dropped = droppedChanges();
+        tagCountBuffer.add(List.of(
+                new TagCountDelta(userUuid, groupUuid, tagUuid, 1),
+                new TagCountDelta(userUuid, groupUuid, missingTagUuid, 1),
+                new TagCountDelta(userUuid, groupUuid, otherTagUuid, 1)
+        ));
+
+        //Act - the batch is rejected, so its rows are written one at a time
+        tagCountBuffer.flush();
+
+        //Assert - the rows of existing tags are written, the other one is dropped from the journal
+        assertEquals(1, bookmarkCount(tagUuid));
+        assertEquals(1, bookmarkCount(otherTagUuid));
+        assertFalse(tagSummaryRepository.existsById(new TagSummaryId(userUuid, groupUuid, missingTagUuid)));
+        assertEquals(0, journalRows());
+        assertEquals(dropped + 1, droppedChanges());
+    }
+
+    private UUID saveTag(String name) {
+        Tag tag = new Tag();
+        tag.setUuid(UUID.randomUUID());
+        tag.setUserUuid(userUuid);
+        tag.setName(name);
+        return tagRepository.save(tag).getUuid();
+    }
+
+    private int bookmarkCount(UUID tag) {
+        return tagSummaryRepository.findById(new TagSummaryId(userUuid, groupUuid, tag))
+                .map(TagSummary::getBookmarkCount)
+                .orElseThrow();
+    }
+
+    private long journalRows() {
+        return jdbcTemplate.queryForObject(COUNT_JOURNAL_SQL, Long.class, userUuid);
+    }
+
+    private double droppedChanges() {
+        return meterRegistry.counter("tag.summary.buffer.dropped").count();
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.sloyardms.trackerapi.repository;
+
+import com.sloyardms.trackerapi.group.GroupRepository;
+import com.sloyardms.trackerapi.group.entity.Group;
+import com.sloyardms.trackerapi.tag.TagRepository;
+import com.sloyardms.trackerapi.tag.entity.Tag;
+import com.sloyardms.trackerapi.tag_summary.TagSummaryRepository;
+import com.sloyardms.trackerapi.tag_summary.TagSummaryService;
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDelta;
+import com.sloyardms.trackerapi.tag_summary.entity.TagSummary;
+import com.sloyardms.trackerapi.tag_summary.entity.TagSummaryId;
+import com.sloyardms.trackerapi.user.UserRepository;
+import com.sloyardms.trackerapi.user.entity.User;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Testcontainers
+public class TagSummaryCounterTests {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS_PER_THREAD = 50;
+
+    @Container
+    @ServiceConnection
+    @SuppressWarnings("resource")
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                    .withDatabaseName("tracker_db")
+                    .withUsername("user")
+                    .withPassword("password");
+
+    @Autowired
+    private TagSummaryService tagSummaryService;
+
+    @Autowired
+    private TagSummaryRepository tagSummaryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    private UUID userUuid;
+    private UUID groupUuid;
+    private UUID tagUuid;
+    private UUID otherTagUuid;
+
+    @BeforeEach
+    void beforeEach(){
+        userUuid = UUID.randomUUID();
+        User user = new User();
+        user.setUuid(userUuid);
+        user.setUsername("counter-user-" + userUuid);
+        userRepository.save(user);
+
+        groupUuid = UUID.randomUUID();
+        Group group = new Group();
+        group.setUuid(groupUuid);
+        group.setUserUuid(userUuid);
+        group.setName("group");
+        groupRepository.save(group);
+
+        tagUuid = saveTag("tag");
+        otherTagUuid = saveTag("other-tag");
+    }
+
+    @Test
+    @DisplayName("Increment Tag Count - Concurrent increments")
+    void testIncrementTagCount_whenCalledConcurrently_losesNoUpdates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < INCREMENTS_PER_THREAD; j++) {
+                        tagSummaryService.incrementTagCount(userUuid, groupUuid, tagUuid);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(THREADS * INCREMENTS_PER_THREAD, bookmarkCount(tagUuid));
+    }
+
+    @Test
+    @DisplayName("Decrement Tag Count - Never below zero")
+    void testDecrementTagCount_whenCountIsZero_staysAtZero(){
+        tagSummaryService.incrementTagCount(userUuid, groupUuid, tagUuid);
+        tagSummaryService.decrementTagCount(userUuid, groupUuid, tagUuid);
+        tagSummaryService.decrementTagCount(userUuid, groupUuid, tagUuid);
+
+        assertEquals(0, bookmarkCount(tagUuid));
+    }
+
+    @Test
+    @DisplayName("Decrement Tag Count - Missing counter")
+    void testDecrementTagCount_whenCounterMissing_createsNothing(){
+        tagSummaryService.decrementTagCount(userUuid, groupUuid, tagUuid);
+
+        assertFalse(tagSummaryRepository.existsById(new TagSummaryId(userUuid, groupUuid, tagUuid)));
+    }
+
+    @Test
+    @DisplayName("Apply Tag Count Deltas - Many counters at once")
+    void testApplyTagCountDeltas_whenSameCounterRepeated_addsUpDeltas(){
+        tagSummaryService.applyTagCountDeltas(List.of(
+                new TagCountDelta(userUuid, groupUuid, tagUuid, 3),
+                new TagCountDelta(userUuid, groupUuid, otherTagUuid, 2),
+                new TagCountDelta(userUuid, groupUuid, tagUuid, -1)
+        ));
+        tagSummaryService.applyTagCountDeltas(List.of(
+                new TagCountDelta(userUuid, groupUuid, otherTagUuid, -5)
+        ));
+
+        assertEquals(2, bookmarkCount(tagUuid));
+        assertEquals(0, bookmarkCount(otherTagUuid));
+    }
+
+    private UUID saveTag(String name) {
+        Tag tag = new Tag();
+        tag.setUuid(UUID.randomUUID());
+        tag.setUserUuid(userUuid);
+        tag.setName(name);
+        return tagRepository.save(tag).getUuid();
+    }
+
+    private int bookmarkCount(UUID tag) {
+        return tagSummaryRepository.findById(new TagSummaryId(userUuid, groupUuid, tag))
+                .map(TagSummary::getBookmarkCount)
+                .orElseThrow();
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.sloyardms.trackerapi.repository;
+
+import com.sloyardms.trackerapi.bookmark.BookmarkRepository;
+import com.sloyardms.trackerapi.bookmark.entity.Bookmark;
+import com.sloyardms.trackerapi.group.GroupRepository;
+import com.sloyardms.trackerapi.group.entity.Group;
+import com.sloyardms.trackerapi.tag.TagRepository;
+import com.sloyardms.trackerapi.tag.entity.Tag;
+import com.sloyardms.trackerapi.tag_summary.TagSummaryRebuilder;
+import com.sloyardms.trackerapi.tag_summary.TagSummaryRepository;
+import com.sloyardms.trackerapi.tag_summary.TagSummaryService;
+import com.sloyardms.trackerapi.tag_summary.dto.TagCountDelta;
+import com.sloyardms.trackerapi.tag_summary.dto.TagSummaryRebuildReport;
+import com.sloyardms.trackerapi.tag_summary.entity.TagSummary;
+import com.sloyardms.trackerapi.tag_summary.entity.TagSummaryId;
+import com.sloyardms.trackerapi.user.UserRepository;
+import com.sloyardms.trackerapi.user.entity.User;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Counters are only repaired when their changes are journaled
+@SpringBootTest(properties = {"app.tag-summary.buffer.journal=true"})
+@ActiveProfiles("test")
+@Testcontainers
+public class TagSummaryRebuildTests {
+
+    @Container
+    @ServiceConnection
+    @SuppressWarnings("resource")
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                    .withDatabaseName("tracker_db")
+                    .withUsername("user")
+                    .withPassword("password");
+
+    @Autowired
+    private TagSummaryRebuilder tagSummaryRebuilder;
+
+    @Autowired
+    private TagSummaryService tagSummaryService;
+
+    @Autowired
+    private TagSummaryRepository tagSummaryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private BookmarkRepository bookmarkRepository;
+
+    private UUID userUuid;
+    private Group group;
+    private Tag tag;
+    private Tag otherTag;
+    private Tag unusedTag;
+
+    @BeforeEach
+    void beforeEach(){
+        userUuid = UUID.randomUUID();
+        User user = new User();
+        user.setUuid(userUuid);
+        user.setUsername("rebuild-user-" + userUuid);
+        userRepository.save(user);
+
+        group = new Group();
+        group.setUuid(UUID.randomUUID());
+        group.setUserUuid(userUuid);
+        group.setName("group");
+        group = groupRepository.save(group);
+
+        tag = saveTag("tag");
+        otherTag = saveTag("other-tag");
+        unusedTag = saveTag("unused-tag");
+
+        // 3 bookmarks with tag, 1 with other-tag, and a bookmark without a group that counts for nothing
+        saveBookmark("first", group, tag, otherTag);
+        saveBookmark("second", group, tag);
+        saveBookmark("third", group, tag);
+        saveBookmark("ungrouped", null, tag);
+
+        // tag counted once too many, other-tag never counted, unused-tag left behind
+        tagSummaryService.applyTagCountDeltas(List.of(
+                new TagCountDelta(userUuid, group.getUuid(), tag.getUuid(), 4),
+                new TagCountDelta(userUuid, group.getUuid(), unusedTag.getUuid(), 2)
+        ));
+    }
+
+    @Test
+    @DisplayName("Rebuild User - Report only")
+    void testRebuildUser_whenNotRepairing_reportsDriftWithoutChangingCounters(){
+        TagSummaryRebuildReport report = tagSummaryRebuilder.rebuildUser(userUuid, false);
+
+        assertFalse(report.repaired());
+        assertEquals(1, report.users());
+        assertEquals(3, report.driftedCounters());
+        assertEquals(4, report.totalDrift());
+        assertEquals(3, report.samples().size());
+        assertEquals(4, bookmarkCount(tag));
+        assertFalse(tagSummaryRepository.existsById(new TagSummaryId(userUuid, group.getUuid(), otherTag.getUuid())));
+    }
+
+    @Test
+    @DisplayName("Rebuild User - Repair")
+    void testRebuildUser_whenRepairing_correctsCounters(){
+        TagSummaryRebuildReport report = tagSummaryRebuilder.rebuildUser(userUuid, true);
+
+        assertTrue(report.repaired());
+        assertEquals(3, report.driftedCounters());
+        assertEquals(3, bookmarkCount(tag));
+        assertEquals(1, bookmarkCount(otherTag));
+        assertEquals(0, bookmarkCount(unusedTag));
+
+        TagSummaryRebuildReport again = tagSummaryRebuilder.rebuildUser(userUuid, true);
+        assertEquals(0, again.driftedCounters());
+    }
+
+    @Test
+    @DisplayName("Rebuild All - Repair in chunks")
+    void testRebuildAll_whenRepairing_correctsCountersOfEveryUser(){
+        TagSummaryRebuildReport report = tagSummaryRebuilder.rebuildAll(true);
+
+        assertTrue(report.users() >= 1);
+        assertEquals(0, report.failedUsers());
+        assertEquals(3, bookmarkCount(tag));
+        assertEquals(1, bookmarkCount(otherTag));
+        assertEquals(0, bookmarkCount(unusedTag));
+        assertEquals(0, tagSummaryRebuilder.rebuildAll(false).driftedCounters());
+    }
+
+    private Tag saveTag(String name) {
+        Tag newTag = new Tag();
+        newTag.setUuid(UUID.randomUUID());
+        newTag.setUserUuid(userUuid);
+        newTag.setName(name);
+        return tagRepository.save(newTag);
+    }
+
+    private void saveBookmark(String title, Group bookmarkGroup, Tag... tags) {
+        Bookmark bookmark = new Bookmark();
+        bookmark.setUuid(UUID.randomUUID());
+        bookmark.setUserUuid(userUuid);
+        bookmark.setTitle(title);
+        bookmark.setUrl("https://example.com/" + title);
+        bookmark.setGroup(bookmarkGroup);
+        bookmark.setTags(List.of(tags));
+        bookmarkRepository.save(bookmark);
+    }
+
+    private int bookmarkCount(Tag countedTag) {
+        return tagSummaryRepository.findById(new TagSummaryId(userUuid, group.getUuid(), countedTag.getUuid()))
+                .map(TagSummary::getBookmarkCount)
+                .orElseThrow();
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.sloyardms.trackerapi.storage;
+
+import com.sloyardms.trackerapi.common.storage.BlobEntry;
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behaviour every {@link BlobStore} backend must have. Each subclass runs these tests against one backend, starting
+ * every test from an empty store.
+ */
+public abstract class BlobStoreContractTests {
+
+    @TempDir
+    private Path sourceFolder;
+
+    /**
+     * @return Empty store to run a test against
+     */
+    protected abstract BlobStore blobStore();
+
+    @Test
+    @DisplayName("Put and Open - Full content and ranges")
+    void testPutAndOpen_whenRangeRequested_returnsOnlyThoseBytes() throws IOException {
+        byte[] content = content(1000);
+        Path source = source(content);
+
+        blobStore().put("user/bookmarks/b1/original_1.jpg", source);
+
+        assertFalse(Files.exists(source), "The source file should be consumed");
+        assertEquals(1000, blobStore().size("user/bookmarks/b1/original_1.jpg"));
+        assertArrayEquals(content, read("user/bookmarks/b1/original_1.jpg", 0, 1000));
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 30), read("user/bookmarks/b1/original_1.jpg", 10, 20));
+        assertArrayEquals(Arrays.copyOfRange(content, 990, 1000), read("user/bookmarks/b1/original_1.jpg", 990, 10));
+        assertArrayEquals(new byte[0], read("user/bookmarks/b1/original_1.jpg", 0, 0));
+    }
+
+    @Test
+    @DisplayName("Put - Existing blob is replaced")
+    void testPut_whenBlobExists_replacesContent() throws IOException {
+        blobStore().put("a/blob", source(content(100)));
+        byte[] replacement = "replacement".getBytes();
+
+        blobStore().put("a/blob", source(replacement));
+
+        assertArrayEquals(replacement, read("a/blob", 0, replacement.length));
+        assertEquals(replacement.length, blobStore().size("a/blob"));
+    }
+
+    @Test
+    @DisplayName("Missing blob - Not found everywhere")
+    void testMissingBlob_whenAccessed_reportsNoSuchFile() throws IOException {
+        assertFalse(blobStore().exists("missing/blob"));
+        assertThrows(NoSuchFileException.class, () -> blobStore().size("missing/blob"));
+        assertThrows(NoSuchFileException.class, () -> {
+            try (InputStream inputStream = blobStore().open("missing/blob", 0, 10)) {
+                inputStream.readAllBytes();
+            }
+        });
+
+        // Deleting a missing blob is not an error
+        blobStore().delete("missing/blob");
+    }
+
+    @Test
+    @DisplayName("Delete - Blob is gone, siblings are kept")
+    void testDelete_whenBlobExists_removesOnlyThatBlob() throws IOException {
+        blobStore().put("a/one", source(content(10)));
+        blobStore().put("a/two", source(content(10)));
+        assertTrue(blobStore().exists("a/one"));
+
+        blobStore().delete("a/one");
+
+        assertFalse(blobStore().exists("a/one"));
+        assertTrue(blobStore().exists("a/two"));
+    }
+
+    @Test
+    @DisplayName("Delete All - Folder spanning several listing pages")
+    void testDeleteAll_whenFolderSpansSeveralPages_removesEveryBlobUnderIt() throws IOException {
+        // More than the 1000 keys an S3 listing or bulk delete handles at once
+        for (int i = 0; i < 1001; i++) {
+            blobStore().put("many/notes/n" + (i % 7) + "/blob_" + i, source(content(1)));
+        }
+        blobStore().put("many-other/blob", source(content(1)));
+        blobStore().put("manyx", source(content(1)));
+
+        blobStore().deleteAll("many");
+
+        assertEquals(List.of("many-other/blob", "manyx"), keys(blobStore().list(null, 2000)).stream().sorted().toList());
+    }
+
+    @Test
+    @DisplayName("List - Pages resume after the start key")
+    void testList_whenResumedFromLastKey_returnsEveryBlobOnceInOrder() throws IOException {
+        List<String> written = List.of("a/b/c", "a/b/d", "a/c", "a-b/c", "ba", "b/c/d/e", "c/a", "c/b/a", "d");
+        for (String key : written) {
+            blobStore().put(key, source(content(3)));
+        }
+
+        List<BlobEntry> all = blobStore().list(null, 100);
+        assertEquals(written.stream().sorted().toList(), keys(all).stream().sorted().toList());
+        for (BlobEntry entry : all) {
+            assertEquals(3, entry.size());
+            assertNotNull(entry.lastModified());
+        }
+
+        // Resuming from each key returns the rest of the listing, in the same order
+        for (int i = 0; i < all.size(); i++) {
+            List<String> rest = keys(blobStore().list(all.get(i).key(), 100));
+            assertEquals(keys(all).subList(i + 1, all.size()), rest);
+        }
+
+        // Paging with a small limit walks the same listing
+        List<String> paged = new ArrayList<>();
+        String startAfter = null;
+        List<BlobEntry> page;
+        do {
+            page = blobStore().list(startAfter, 2);
+            assertTrue(page.size() <= 2);
+            paged.addAll(keys(page));
+            startAfter = page.isEmpty() ? startAfter : page.getLast().key();
+        } while (page.size() == 2);
+        assertEquals(keys(all), paged);
+    }
+
+    @Test
+    @DisplayName("List - Empty store")
+    void testList_whenStoreIsEmpty_returnsNothing() throws IOException {
+        assertTrue(blobStore().list(null, 10).isEmpty());
+        assertTrue(blobStore().list("a/b", 10).isEmpty());
+    }
+
+    private byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    private Path source(byte[] content) throws IOException {
+        return Files.write(Files.createTempFile(sourceFolder, "blob-", ".tmp"), content);
+    }
+
+    private byte[] read(String key, long offset, long length) throws IOException {
+        try (InputStream inputStream = blobStore().open(key, offset, length)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private List<String> keys(List<BlobEntry> entries) {
+        return entries.stream().map(BlobEntry::key).toList();
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.sloyardms.trackerapi.storage;
+
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.common.storage.FileSystemBlobStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+public class FileSystemBlobStoreTests extends BlobStoreContractTests {
+
+    @TempDir
+    private Path root;
+
+    private FileSystemBlobStore blobStore;
+
+    @BeforeEach
+    void setup() {
+        blobStore = new FileSystemBlobStore(root.resolve("blobs"));
+    }
+
+    @Override
+    protected BlobStore blobStore() {
+        return blobStore;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.sloyardms.trackerapi.storage;
+
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.common.storage.S3BlobStore;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+import java.net.URI;
+import java.util.UUID;
+
+// MinIO stands in for S3, with a bucket per test so every test starts from an empty store
+@Testcontainers
+public class S3BlobStoreTests extends BlobStoreContractTests {
+
+    private static final int MINIO_PORT = 9000;
+
+    @Container
+    @SuppressWarnings("resource")
+    private static final GenericContainer<?> minioContainer =
+            new GenericContainer<>(DockerImageName.parse("minio/minio:RELEASE.2025-04-22T22-12-26Z"))
+                    .withEnv("MINIO_ROOT_USER", "minioadmin")
+                    .withEnv("MINIO_ROOT_PASSWORD", "minioadmin")
+                    .withCommand("server", "/data")
+                    .withExposedPorts(MINIO_PORT)
+                    .waitingFor(Wait.forHttp("/minio/health/live").forPort(MINIO_PORT));
+
+    private static S3AsyncClient client;
+
+    private S3BlobStore blobStore;
+
+    @BeforeAll
+    static void setupAll() {
+        client = S3AsyncClient.builder()
+                .endpointOverride(URI.create("http://" + minioContainer.getHost() + ":" + minioContainer.getMappedPort(MINIO_PORT)))
+                .region(Region.US_EAST_1)
+                .forcePathStyle(true)
+                .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+                .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("minioadmin", "minioadmin")))
+                .multipartEnabled(true)
+                .build();
+    }
+
+    @AfterAll
+    static void tearDownAll() {
+        client.close();
+    }
+
+    @BeforeEach
+    void setup() {
+        String bucket = "blobs-" + UUID.randomUUID();
+        client.createBucket(request -> request.bucket(bucket)).join();
+        blobStore = new S3BlobStore(client, bucket);
+    }
+
+    @Override
+    protected BlobStore blobStore() {
+        return blobStore;
+    }
+
+}
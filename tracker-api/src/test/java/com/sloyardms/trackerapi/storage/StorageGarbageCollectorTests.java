@@ -0,0 +1,297 @@
+package com.sloyardms.trackerapi.storage;
+
+import com.sloyardms.trackerapi.bookmark.BookmarkRepository;
+import com.sloyardms.trackerapi.bookmark.entity.Bookmark;
+import com.sloyardms.trackerapi.bookmark_image.BookmarkImageRepository;
+import com.sloyardms.trackerapi.bookmark_image.entity.BookmarkImage;
+import com.sloyardms.trackerapi.common.enums.ImageProcessingStatus;
+import com.sloyardms.trackerapi.common.service.ImageStorageService;
+import com.sloyardms.trackerapi.common.storage.BlobEntry;
+import com.sloyardms.trackerapi.common.storage.BlobStore;
+import com.sloyardms.trackerapi.common.storage.FileSystemBlobStore;
+import com.sloyardms.trackerapi.file_deletion.FileDeletionRepository;
+import com.sloyardms.trackerapi.file_deletion.FileDeletionService;
+import com.sloyardms.trackerapi.file_deletion.entity.FileDeletion;
+import com.sloyardms.trackerapi.image_blob.ImageBlobRepository;
+import com.sloyardms.trackerapi.image_blob.entity.ImageBlob;
+import com.sloyardms.trackerapi.note.NoteRepository;
+import com.sloyardms.trackerapi.note.entity.Note;
+import com.sloyardms.trackerapi.note_image.NoteImageRepository;
+import com.sloyardms.trackerapi.note_image.entity.NoteImage;
+import com.sloyardms.trackerapi.storage_gc.StorageGarbageCollector;
+import com.sloyardms.trackerapi.storage_gc.StorageGcCheckpointRepository;
+import com.sloyardms.trackerapi.storage_gc.entity.StorageGcCheckpoint;
+import com.sloyardms.trackerapi.user.UserRepository;
+import com.sloyardms.trackerapi.user.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The collectors are built by the tests, each with its own settings, over a file system blob store in a temp folder.
+// The scheduled collector is disabled and the outbox is not drained, so the tests can read what was scheduled
+@SpringBootTest(properties = {"app.storage.gc.enabled=false", "app.storage.deletion.reaper-delay=1h"})
+@ActiveProfiles("test")
+@Testcontainers
+public class StorageGarbageCollectorTests {
+
+    private static final String CHECKPOINT_NAME = "blobs";
+    private static final Duration MIN_AGE = Duration.ofHours(1);
+
+    @Container
+    @ServiceConnection
+    @SuppressWarnings("resource")
+    private static final PostgreSQLContainer<?> postgresContainer =
+            new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                    .withDatabaseName("tracker_db")
+                    .withUsername("user")
+                    .withPassword("password");
+
+    @Autowired
+    private StorageGcCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private NoteImageRepository noteImageRepository;
+
+    @Autowired
+    private BookmarkImageRepository bookmarkImageRepository;
+
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+
+    @Autowired
+    private FileDeletionService fileDeletionService;
+
+    @Autowired
+    private FileDeletionRepository fileDeletionRepository;
+
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookmarkRepository bookmarkRepository;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @TempDir
+    private Path root;
+
+    private BlobStore blobStore;
+
+    // Keys of the blobs whose owner is gone, old enough to be collected
+    private Set<String> orphanKeys;
+    private String orphanContentHash;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        blobStore = new FileSystemBlobStore(root);
+        fileDeletionRepository.deleteAll();
+        resetCheckpoint();
+
+        UUID userUuid = UUID.randomUUID();
+        User user = new User();
+        user.setUuid(userUuid);
+        user.setUsername("gc-user-" + userUuid);
+        userRepository.save(user);
+
+        Bookmark bookmark = new Bookmark();
+        bookmark.setUuid(UUID.randomUUID());
+        bookmark.setUserUuid(userUuid);
+        bookmark.setTitle("title");
+        bookmark.setUrl("https://example.com");
+        bookmark = bookmarkRepository.save(bookmark);
+
+        Note note = new Note();
+        note.setUuid(UUID.randomUUID());
+        note.setBookmark(bookmark);
+        note.setNote("note");
+        note = noteRepository.save(note);
+
+        NoteImage noteImage = new NoteImage();
+        noteImage.setUuid(UUID.randomUUID());
+        noteImage.setNote(note);
+        noteImage.setThumbnailPath("thumbnail");
+        noteImage.setThumbnailMimeType("image/jpeg");
+        noteImage.setStatus(ImageProcessingStatus.READY);
+        noteImageRepository.save(noteImage);
+
+        BookmarkImage bookmarkImage = new BookmarkImage();
+        bookmarkImage.setUuid(UUID.randomUUID());
+        bookmarkImage.setBookmark(bookmark);
+        bookmarkImage.setThumbnailPath("thumbnail");
+        bookmarkImage.setThumbnailMimetype("image/jpeg");
+        bookmarkImageRepository.save(bookmarkImage);
+
+        String contentHash = hash('a');
+        ImageBlob imageBlob = new ImageBlob();
+        imageBlob.setContentHash(contentHash);
+        imageBlob.setRefCount(1);
+        imageBlob.setCreatedAt(Instant.now());
+        imageBlobRepository.save(imageBlob);
+
+        String notesFolder = userUuid + "/bookmarks/" + bookmark.getUuid() + "/notes/" + note.getUuid() + "/";
+        String bookmarkFolder = userUuid + "/bookmarks/" + bookmark.getUuid() + "/";
+        orphanContentHash = hash('b');
+
+        // Blobs of existing rows, one per table
+        writeBlob(notesFolder + "original_" + noteImage.getUuid() + ".jpg", true);
+        writeBlob(bookmarkFolder + "thumbnail_" + bookmarkImage.getUuid() + ".jpg", true);
+        writeBlob(contentKey(contentHash), true);
+
+        // Orphans, one per table
+        orphanKeys = Set.of(
+                notesFolder + "original_" + UUID.randomUUID() + ".jpg",
+                bookmarkFolder + "thumbnail_" + UUID.randomUUID() + ".jpg",
+                contentKey(orphanContentHash)
+        );
+        for (String key : orphanKeys) {
+            writeBlob(key, true);
+        }
+
+        // An orphan too young to be collected, a spooled upload and a file that is no image file
+        writeBlob(notesFolder + "original_" + UUID.randomUUID() + ".jpg", false);
+        writeBlob(".spool/upload_" + UUID.randomUUID() + ".jpg", true);
+        writeBlob("readme.txt", true);
+    }
+
+    @Test
+    @DisplayName("Collect - Dry run only reports the orphans")
+    void testCollect_whenDryRun_reportsOrphansWithoutSchedulingDeletions(){
+        collector(true, 100).collect();
+
+        StorageGcCheckpoint checkpoint = checkpoint();
+        assertPassCompleted(checkpoint);
+        assertEquals(3, checkpoint.getOrphans());
+        assertEquals(0, checkpoint.getDeleted());
+        assertEquals(1, checkpoint.getUnrecognized());
+        assertTrue(fileDeletionRepository.findAll().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Collect - Orphans of every table are scheduled for deletion")
+    void testCollect_whenNotDryRun_schedulesOnlyOldOrphansForDeletion(){
+        collector(false, 100).collect();
+
+        StorageGcCheckpoint checkpoint = checkpoint();
+        assertPassCompleted(checkpoint);
+        assertEquals(3, checkpoint.getDeleted());
+
+        //Assert - the orphan of each table, and nothing else, is scheduled; content files keep their hash
+        List<FileDeletion> deletions = fileDeletionRepository.findAll();
+        assertEquals(orphanKeys, new HashSet<>(deletions.stream().map(FileDeletion::getBlobKey).toList()));
+        for (FileDeletion deletion : deletions) {
+            String expectedHash = deletion.getBlobKey().startsWith("cas/") ? orphanContentHash : null;
+            assertEquals(expectedHash, deletion.getContentHash());
+        }
+    }
+
+    @Test
+    @DisplayName("Collect - Pass resumes from the checkpoint")
+    void testCollect_whenPassSpansSeveralRuns_resumesFromCheckpointAndCompletesOnce() throws IOException {
+        List<String> keys = blobStore.list(null, 100).stream().map(BlobEntry::key).toList();
+
+        //Act - one page of 3
+        collector(false, 3).collect();
+
+        //Assert - the pass stopped after the page
+        StorageGcCheckpoint checkpoint = checkpoint();
+        assertNotNull(checkpoint.getPassStartedAt());
+        assertEquals(keys.get(2), checkpoint.getCursorKey());
+        assertEquals(3, checkpoint.getScanned());
+
+        //Act - a new collector, as after a restart, goes on from the checkpoint
+        StorageGarbageCollector restarted = collector(false, 3);
+        int runs = 1;
+        while (checkpoint().getPassStartedAt() != null) {
+            restarted.collect();
+            assertTrue(++runs <= keys.size(), "The pass should complete");
+        }
+
+        //Assert - every blob was scanned once, and every orphan scheduled once
+        checkpoint = checkpoint();
+        assertPassCompleted(checkpoint);
+        assertEquals(keys.size(), checkpoint.getScanned());
+        assertEquals(orphanKeys.size(), fileDeletionRepository.count());
+        Instant completedAt = checkpoint.getLastCompletedAt();
+
+        //Act - the next run is within the pass interval
+        restarted.collect();
+
+        //Assert - no new pass started
+        checkpoint = checkpoint();
+        assertNull(checkpoint.getPassStartedAt());
+        assertEquals(completedAt, checkpoint.getLastCompletedAt());
+        assertEquals(orphanKeys.size(), fileDeletionRepository.count());
+    }
+
+    private StorageGarbageCollector collector(boolean dryRun, int batchSize) {
+        return new StorageGarbageCollector(checkpointRepository, noteImageRepository, bookmarkImageRepository,
+                imageBlobRepository, fileDeletionService, imageStorageService, blobStore, transactionManager,
+                new SimpleMeterRegistry(), dryRun, batchSize, MIN_AGE, Duration.ofHours(24));
+    }
+
+    private void assertPassCompleted(StorageGcCheckpoint checkpoint) {
+        assertNull(checkpoint.getPassStartedAt());
+        assertNull(checkpoint.getCursorKey());
+        assertNotNull(checkpoint.getLastCompletedAt());
+    }
+
+    private StorageGcCheckpoint checkpoint() {
+        return checkpointRepository.findById(CHECKPOINT_NAME).orElseThrow();
+    }
+
+    private void resetCheckpoint() {
+        StorageGcCheckpoint checkpoint = checkpoint();
+        checkpoint.setCursorKey(null);
+        checkpoint.setPassStartedAt(null);
+        checkpoint.setLastCompletedAt(null);
+        checkpoint.setScanned(0);
+        checkpoint.setOrphans(0);
+        checkpoint.setOrphanBytes(0);
+        checkpoint.setDeleted(0);
+        checkpoint.setUnrecognized(0);
+        checkpointRepository.save(checkpoint);
+    }
+
+    private void writeBlob(String key, boolean old) throws IOException {
+        Path source = Files.writeString(Files.createTempFile("blob-", ".tmp"), key);
+        if (old) {
+            Files.setLastModifiedTime(source, FileTime.from(Instant.now().minus(MIN_AGE).minus(Duration.ofMinutes(5))));
+        }
+        blobStore.put(key, source);
+    }
+
+    private String contentKey(String contentHash) {
+        return "cas/" + contentHash.substring(0, 2) + "/" + contentHash.substring(2, 4) + "/original_" + contentHash + ".jpg";
+    }
+
+    private String hash(char digit) {
+        return String.valueOf(digit).repeat(64);
+    }
+
+}